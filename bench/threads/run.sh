@@ -0,0 +1,29 @@
+#!/bin/sh
+# Compare blocking entity calls with continuations (CPS rewriting, the
+# default) and with continuation threads (jist --threads), on the
+# continuation micro-benchmark and the SWANS TCP socket driver.
+#
+#   bench/threads/run.sh [events] [bytes]
+#
+# Set JIST to use another launcher (default: bin/jist).
+
+JIST=${JIST:-`dirname $0`/../../bin/jist}
+EVENTS=${1:-1000000}
+BYTES=${2:-1000000}
+
+for mode in null int double string array
+do
+  for opt in "" --threads
+  do
+    s=`$JIST --nocache $opt jist.minisim.cont -m $mode -n $EVENTS -w 100000 2>&1 | grep seconds | grep -o "[0-9.]\+"`
+    echo "cont $mode ${opt:-cps}: ${s:-FAILED} s, $EVENTS blocking calls"
+  done
+done
+
+for opt in "" --threads
+do
+  start=`date +%s%N`
+  ok=`$JIST --nocache $opt jist.swans.Main driver.tcp $BYTES 2>&1 | grep -c "bytes match"`
+  end=`date +%s%N`
+  echo "tcp ${opt:-cps}: $(( (end-start)/1000000 )) ms wall, $BYTES bytes, match=$ok"
+done
@@ -99,6 +99,8 @@ public class aodvsim
     public int spatial_mode = Constants.SPATIAL_HIER;
     /** binning degree. */
     public int spatial_div = 5;
+    /** Whether to cache radio links. */
+    private boolean linkCache = false;
   } // class: CommandLineOptions
 
   /** Prints a usage statement. */
@@ -110,11 +112,13 @@ public class aodvsim
     System.out.println("  -n, --nodes          number of nodes: n [100] ");
     System.out.println("  -f, --field          field dimensions: x,y [100,100]");
     System.out.println("  -a, --arrange        placement model: [random],grid:ixj");
-    System.out.println("  -m, --mobility       mobility: [static],waypoint:opts,teleport:p,walk:opts");
+    System.out.println("  -m, --mobility       mobility: [static],waypoint:opts,lazy:opts,teleport:p,walk:opts,");
+    System.out.println("                       trace:setdest|bonnmotion:file");
     System.out.println("  -l, --loss           packet loss model: [none],uniform:p");
     System.out.println("  -s, --send rate      send rate per-minute: [1.0]");
     System.out.println("  -t, --timing         node activity timing: start,duration,resolution [60,3600,30]");
     System.out.println("  -r, --randomseed     random seed: [0]");
+    System.out.println("  -c, --linkcache      cache radio links in field");
     System.out.println();
     System.out.println("e.g.");
     System.out.println("  swans driver.aodvsim -n 25 -f 2000x2000 -a grid:5x5 -t 10,600,60");
@@ -145,6 +149,7 @@ public class aodvsim
     CmdLineParser.Option opt_rate = parser.addDoubleOption('s', "send rate");
     CmdLineParser.Option opt_timing = parser.addStringOption('t', "timing");
     CmdLineParser.Option opt_randseed = parser.addIntegerOption('r', "randomseed");
+    CmdLineParser.Option opt_linkcache = parser.addBooleanOption('c', "linkcache");
     parser.parse(args);
 
     CommandLineOptions cmdOpts = new CommandLineOptions();
@@ -203,6 +208,14 @@ public class aodvsim
         {
           cmdOpts.mobility = Constants.MOBILITY_WAYPOINT;
         }
+        else if(mobilityString.equalsIgnoreCase("lazy"))
+        {
+          cmdOpts.mobility = Constants.MOBILITY_WAYPOINT_LAZY;
+        }
+        else if(mobilityString.equalsIgnoreCase("trace"))
+        {
+          cmdOpts.mobility = Constants.MOBILITY_TRACE;
+        }
         else if(mobilityString.equalsIgnoreCase("teleport"))
         {
           cmdOpts.mobility = Constants.MOBILITY_TELEPORT;
@@ -272,6 +285,12 @@ public class aodvsim
       cmdOpts.seed = ((Integer)parser.getOptionValue(opt_randseed)).intValue();
     }
 
+    // link cache
+    if (parser.getOptionValue(opt_linkcache) != null)
+    {
+      cmdOpts.linkCache = true;
+    }
+
     return cmdOpts;
 
   } // parseCommandLineOptions
@@ -369,6 +388,12 @@ public class aodvsim
       case Constants.MOBILITY_WAYPOINT:
         mobility = new Mobility.RandomWaypoint(opts.field, opts.mobilityOpts);
         break;
+      case Constants.MOBILITY_WAYPOINT_LAZY:
+        mobility = new Mobility.LazyWaypoint(opts.field, opts.mobilityOpts);
+        break;
+      case Constants.MOBILITY_TRACE:
+        mobility = new Mobility.Trace(opts.mobilityOpts);
+        break;
       case Constants.MOBILITY_TELEPORT:
         mobility = new Mobility.Teleport(opts.field, Long.parseLong(opts.mobilityOpts));
         break;
@@ -391,6 +416,12 @@ public class aodvsim
       case Constants.SPATIAL_HIER:
         spatial = new Spatial.HierGrid(opts.field, opts.spatial_div);
         break;
+      case Constants.SPATIAL_PACKED:
+        spatial = new Spatial.Packed(opts.field);
+        break;
+      case Constants.SPATIAL_KDTREE:
+        spatial = new Spatial.KDTree(opts.field);
+        break;
       default:
         throw new RuntimeException("unknown spatial binning model");
     }
@@ -398,6 +429,7 @@ public class aodvsim
     // initialize field
     Field field = new Field(spatial, new Fading.None(), new PathLoss.FreeSpace(), 
         mobility, Constants.PROPAGATION_LIMIT_DEFAULT);
+    field.setLinkCache(opts.linkCache);
     // initialize shared radio information
     RadioInfo.RadioInfoShared radioInfo = RadioInfo.createShared(
       Constants.FREQUENCY_DEFAULT,
@@ -135,12 +135,13 @@ public class bordercast
     System.out.println("  -n, --nodes          number of nodes: n [100] ");
     System.out.println("  -f, --field          field dimensions: x,y [100,100]");
     System.out.println("  -a, --arrange        placement model: [random],grid:ixj");
-    System.out.println("  -m, --mobility       mobility: [static],waypoint:opts,teleport:p,walk:opts");
+    System.out.println("  -m, --mobility       mobility: [static],waypoint:opts,lazy:opts,teleport:p,walk:opts,");
+    System.out.println("                       trace:setdest|bonnmotion:file");
     System.out.println("  -l, --loss           packet loss model: [none],uniform:p");
     System.out.println("  -b, --bordercasts    number of transmissions: num,start,delay [0,60,10]");
     System.out.println("  -r, --randomseed     random seed: [0]");
     System.out.println("  -w, --wrap           wrap-around field");
-    System.out.println("  -s, --spatial        spatial binning: linear, grid:NxN, hier:N");
+    System.out.println("  -s, --spatial        spatial binning: linear, grid:NxN, hier:N, packed, kdtree[:N]");
     System.out.println();
     System.out.println("e.g.");
     System.out.println("  swans driver.bordercast -p zrp:2 --iarp=iarp:inf -e 300 -n 10 -f 200x200 -a grid:5x5 -b 5,100,20");
@@ -329,6 +330,14 @@ public class bordercast
         {
           cmdOpts.mobility = Constants.MOBILITY_WAYPOINT;
         }
+        else if(mobilityString.equalsIgnoreCase("lazy"))
+        {
+          cmdOpts.mobility = Constants.MOBILITY_WAYPOINT_LAZY;
+        }
+        else if(mobilityString.equalsIgnoreCase("trace"))
+        {
+          cmdOpts.mobility = Constants.MOBILITY_TRACE;
+        }
         else if(mobilityString.equalsIgnoreCase("teleport"))
         {
           cmdOpts.mobility = Constants.MOBILITY_TELEPORT;
@@ -405,6 +414,16 @@ public class bordercast
           cmdOpts.spatial_mode = Constants.SPATIAL_HIER;
           cmdOpts.spatial_div = Integer.parseInt(spatialOpts);
         }
+        else if(spatialString.equalsIgnoreCase("packed"))
+        {
+          cmdOpts.spatial_mode = Constants.SPATIAL_PACKED;
+        }
+        else if(spatialString.equalsIgnoreCase("kdtree"))
+        {
+          cmdOpts.spatial_mode = Constants.SPATIAL_KDTREE;
+          cmdOpts.spatial_div = spatialOpts.length()>0
+            ? Integer.parseInt(spatialOpts) : Spatial.KDTree.BUCKET_DEFAULT;
+        }
         else
         {
           throw new CmdLineParser.IllegalOptionValueException(opt_spatial, "unrecognized spatial binning model");
@@ -599,6 +618,12 @@ public class bordercast
       case Constants.MOBILITY_WAYPOINT:
         mobility = new Mobility.RandomWaypoint(opts.field, opts.mobilityOpts);
         break;
+      case Constants.MOBILITY_WAYPOINT_LAZY:
+        mobility = new Mobility.LazyWaypoint(opts.field, opts.mobilityOpts);
+        break;
+      case Constants.MOBILITY_TRACE:
+        mobility = new Mobility.Trace(opts.mobilityOpts);
+        break;
       case Constants.MOBILITY_TELEPORT:
         mobility = new Mobility.Teleport(opts.field, Long.parseLong(opts.mobilityOpts));
         break;
@@ -621,6 +646,12 @@ public class bordercast
       case Constants.SPATIAL_HIER:
         spatial = new Spatial.HierGrid(opts.field, opts.spatial_div);
         break;
+      case Constants.SPATIAL_PACKED:
+        spatial = new Spatial.Packed(opts.field);
+        break;
+      case Constants.SPATIAL_KDTREE:
+        spatial = new Spatial.KDTree(opts.field, opts.spatial_div);
+        break;
       default:
         throw new RuntimeException("unknown spatial binning model");
     }
@@ -0,0 +1,307 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package driver;
+
+import jist.swans.field.Fading;
+import jist.swans.misc.SplitRandom;
+import jist.swans.Constants;
+
+import java.util.Arrays;
+import java.util.Random;
+import jargs.gnu.*; // Download from: http://jargs.sourceforge.net
+
+/**
+ * Fading model check and benchmark: compares the distribution of a
+ * table-driven fading model against the model it tabulates, with a
+ * two-sample Kolmogorov-Smirnov test and a list of quantiles, and times
+ * both models.
+ */
+
+public class fading
+{
+  //////////////////////////////////////////////////
+  // Constants
+  //
+
+  /** benchmark version. */
+  public static final String VERSION = "0.1";
+
+  /** fading model strings. */
+  private static final String FADING_STRING_NONE     = "none";
+  /** fading model strings. */
+  private static final String FADING_STRING_RAYLEIGH = "rayleigh";
+  /** fading model strings. */
+  private static final String FADING_STRING_RICIAN   = "rician";
+  /** fading model strings. */
+  private static final String FADING_STRING_TABLE    = "table";
+
+  /** Kolmogorov-Smirnov critical value coefficient, at 0.1% significance. */
+  private static final double KS_COEFFICIENT = 1.949;
+
+  /** quantiles to display. */
+  private static final double[] QUANTILES =
+  {
+    0.0001, 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 0.9999,
+  };
+
+  //////////////////////////////////////////////////
+  // Static command-line helper methods
+  //
+
+  /**
+   * Print benchmark version information.
+   */
+  private static void showVersion()
+  {
+    System.out.println("JiST Project: Fading model check v"+VERSION);
+    System.out.println("Rimon Barr <barr+jist@cs.cornell.edu>, Cornell University.");
+    System.out.println();
+  }
+
+  /**
+   * Print benchmark command-line syntax.
+   */
+  private static void showUsage()
+  {
+    System.out.println("Usage: fading [-f <fading>] [-n <num>] [-t <size>] [-s <seed>]");
+    System.out.println("       fading -v | -h");
+    System.out.println();
+    System.out.println("  -h, --help         display this help information");
+    System.out.println("  -v, --version      display version information");
+    System.out.println("  -f, --fading       [rayleigh], rician:k");
+    System.out.println("  -n, --num          number of draws [1000000]");
+    System.out.println("  -t, --table        number of table intervals ["+Fading.Table.SIZE_DEFAULT+"]");
+    System.out.println("  -s, --seed         random seed [0]");
+    System.out.println();
+  }
+
+  /** Parsed command-line options. */
+  private static class cmdlineOpts
+  {
+    // defaults
+    /** print help. */
+    public boolean help = false;
+    /** print version. */
+    public boolean version = false;
+    /** fading model. */
+    public String fading = FADING_STRING_RAYLEIGH;
+    /** number of draws. */
+    public int num = 1000000;
+    /** number of table intervals. */
+    public int table = Fading.Table.SIZE_DEFAULT;
+    /** random seed. */
+    public long seed = 0;
+  }
+
+  /**
+   * Parse command-line options.
+   *
+   * @param args command-line parameters
+   * @return parsed command-line options
+   * @throws CmdLineParser.OptionException invalid option encountered
+   */
+  private static cmdlineOpts parseCommandLineOptions(String[] args)
+    throws CmdLineParser.OptionException
+  {
+    // setup
+    cmdlineOpts options = new cmdlineOpts();
+    CmdLineParser parser = new CmdLineParser();
+    CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+    CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+    CmdLineParser.Option opt_fading = parser.addStringOption('f', "fading");
+    CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+    CmdLineParser.Option opt_table = parser.addStringOption('t', "table");
+    CmdLineParser.Option opt_seed = parser.addStringOption('s', "seed");
+
+    // parse
+    parser.parse(args);
+    if(parser.getOptionValue(opt_help)!=null)
+    {
+      options.help = true;
+    }
+    if(parser.getOptionValue(opt_version)!=null)
+    {
+      options.version = true;
+    }
+    if(parser.getOptionValue(opt_fading)!=null)
+    {
+      options.fading = ((String)parser.getOptionValue(opt_fading)).toLowerCase();
+    }
+    if(parser.getOptionValue(opt_num)!=null)
+    {
+      options.num = Integer.parseInt((String)parser.getOptionValue(opt_num));
+    }
+    if(parser.getOptionValue(opt_table)!=null)
+    {
+      options.table = Integer.parseInt((String)parser.getOptionValue(opt_table));
+    }
+    if(parser.getOptionValue(opt_seed)!=null)
+    {
+      options.seed = Long.parseLong((String)parser.getOptionValue(opt_seed));
+    }
+    return options;
+  }
+
+
+  //////////////////////////////////////////////////
+  // check
+  //
+
+  /**
+   * Create fading model: none, rayleigh or rician:k, and table:model for
+   * the table-driven version of a model.
+   *
+   * @param fading fading configuration string
+   * @return fading model
+   */
+  public static Fading.Stream createFading(String fading)
+  {
+    if(fading.startsWith(FADING_STRING_TABLE+":"))
+    {
+      return new Fading.Table(createFading(fading.substring(FADING_STRING_TABLE.length()+1)));
+    }
+    String[] data = fading.split(":");
+    if(data[0].equals(FADING_STRING_NONE))
+    {
+      return new Fading.None();
+    }
+    else if(data[0].equals(FADING_STRING_RAYLEIGH))
+    {
+      return new Fading.Rayleigh();
+    }
+    else if(data[0].equals(FADING_STRING_RICIAN) && data.length==2)
+    {
+      return new Fading.Rician(Double.parseDouble(data[1]));
+    }
+    throw new RuntimeException("invalid fading model: "+fading);
+  }
+
+  /**
+   * Draw sorted sample of fading losses.
+   *
+   * @param fading fading model
+   * @param random random number generator
+   * @param num number of draws
+   * @return sorted fading losses (units: dB)
+   */
+  private static double[] sample(Fading.Stream fading, Random random, int num)
+  {
+    double[] x = new double[num];
+    for(int i=0; i<num; i++)
+    {
+      x[i] = fading.compute(random);
+    }
+    Arrays.sort(x);
+    return x;
+  }
+
+  /**
+   * Compute two-sample Kolmogorov-Smirnov statistic: the largest
+   * difference between the empirical distribution functions.
+   *
+   * @param x first sorted sample
+   * @param y second sorted sample
+   * @return Kolmogorov-Smirnov statistic
+   */
+  private static double ks(double[] x, double[] y)
+  {
+    int i = 0, j = 0;
+    double d = 0;
+    while(i<x.length && j<y.length)
+    {
+      double v = Math.min(x[i], y[j]);
+      while(i<x.length && x[i]<=v) i++;
+      while(j<y.length && y[j]<=v) j++;
+      d = Math.max(d, Math.abs((double)i/x.length - (double)j/y.length));
+    }
+    return d;
+  }
+
+  /** sum of timed draws, so that they are not optimized away. */
+  private static double sink;
+
+  /**
+   * Time fading draws.
+   *
+   * @param fading fading model
+   * @param random random number generator
+   * @param num number of draws
+   * @return time per draw (in nanoseconds)
+   */
+  private static double time(Fading.Stream fading, Random random, int num)
+  {
+    double sum = 0;
+    long start = System.currentTimeMillis();
+    for(int i=0; i<num; i++)
+    {
+      sum += fading.compute(random);
+    }
+    long end = System.currentTimeMillis();
+    sink += sum;
+    return (end-start)*1e6/num;
+  }
+
+  /**
+   * Check entry point: fading model distribution and performance.
+   *
+   * @param args command-line parameters
+   */
+  public static void main(String[] args)
+  {
+    try
+    {
+      // command line
+      cmdlineOpts options = parseCommandLineOptions(args);
+      // show usage
+      showVersion();
+      if(options.help)
+      {
+        showUsage();
+        return;
+      }
+      // show version
+      if(options.version)
+      {
+        return;
+      }
+      // create models
+      Fading.Stream model = createFading(options.fading);
+      long startTime = System.currentTimeMillis();
+      Fading.Stream table = new Fading.Table(model, options.table);
+      long endTime = System.currentTimeMillis();
+      System.out.println("table setup time: "+(endTime-startTime)+" ms");
+      // compare distributions
+      SplitRandom random = new SplitRandom(options.seed);
+      double[] x = sample(model, random.split(), options.num);
+      double[] y = sample(table, random.split(), options.num);
+      double d = ks(x, y), critical = KS_COEFFICIENT * Math.sqrt(2.0 / options.num);
+      System.out.println("Kolmogorov-Smirnov: D="+d+" critical="+critical
+          +(d<critical ? " PASS" : " FAIL"));
+      System.out.println("quantile  model(dB)  table(dB)");
+      for(int i=0; i<QUANTILES.length; i++)
+      {
+        int k = (int)(QUANTILES[i] * options.num);
+        System.out.println(QUANTILES[i]+"  "+x[k]+"  "+y[k]);
+      }
+      System.out.println("max gain: model="+model.getMaxGain()+" table="+table.getMaxGain());
+      // timing
+      time(model, random, options.num);
+      time(table, random, options.num);
+      System.out.println("model, global random: "+time(model, Constants.random, options.num)+" ns/draw");
+      System.out.println("model, split random:  "+time(model, random, options.num)+" ns/draw");
+      System.out.println("table, split random:  "+time(table, random, options.num)+" ns/draw");
+    }
+    catch(CmdLineParser.OptionException e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
+} // class: fading
+
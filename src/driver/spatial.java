@@ -12,6 +12,7 @@ package driver;
 import jist.swans.field.Field;
 import jist.swans.field.Spatial;
 import jist.swans.field.PathLoss;
+import jist.swans.field.PathLossObstacle;
 import jist.swans.field.Fading;
 import jist.swans.field.Placement;
 import jist.swans.radio.RadioNoiseIndep;
@@ -46,6 +47,10 @@ public class spatial
   private static final int MODE_SPATIAL_GRID   = 1;
   /** benchmark binning types. */
   private static final int MODE_SPATIAL_HIER   = 2;
+  /** benchmark binning types. */
+  private static final int MODE_SPATIAL_PACKED = 3;
+  /** benchmark binning types. */
+  private static final int MODE_SPATIAL_KDTREE = 4;
 
   /** benchmark binning type strings. */
   private static final String MODE_SPATIAL_STRING_LINEAR = "linear";
@@ -53,6 +58,24 @@ public class spatial
   private static final String MODE_SPATIAL_STRING_GRID   = "grid";
   /** benchmark binning type strings. */
   private static final String MODE_SPATIAL_STRING_HIER   = "hier";
+  /** benchmark binning type strings. */
+  private static final String MODE_SPATIAL_STRING_PACKED = "packed";
+  /** benchmark binning type strings. */
+  private static final String MODE_SPATIAL_STRING_KDTREE = "kdtree";
+
+  /** benchmark placement type strings. */
+  private static final String PLACEMENT_STRING_RANDOM  = "random";
+  /** benchmark placement type strings. */
+  private static final String PLACEMENT_STRING_CLUSTER = "cluster";
+
+  /** benchmark path loss type strings. */
+  private static final String LOSS_STRING_FREE      = "free";
+  /** benchmark path loss type strings. */
+  private static final String LOSS_STRING_TWORAY    = "tworay";
+  /** benchmark path loss type strings. */
+  private static final String LOSS_STRING_BUILDINGS = "buildings";
+  /** benchmark path loss type strings. */
+  private static final String LOSS_STRING_TERRAIN   = "terrain";
 
   //////////////////////////////////////////////////
   // Static command-line helper methods
@@ -73,14 +96,18 @@ public class spatial
    */
   private static void showUsage() 
   {
-    System.out.println("Usage: spatial -n <num> -d <size> -s <spatial>");
+    System.out.println("Usage: spatial -n <num> -d <size> -s <spatial> [-p <placement>] [-l <loss>] [-f <fading>]");
     System.out.println("       spatial -v | -h");
     System.out.println();
     System.out.println("  -h, --help         display this help information");
     System.out.println("  -v, --version      display version information");
     System.out.println("  -n, --num          number of nodes");
     System.out.println("  -d, --dim          length of square field (meters)");
-    System.out.println("  -s, --spatial      [linear], grid:n, hier:n");
+    System.out.println("  -s, --spatial      [linear], grid:n, hier:n, packed, kdtree[:bucket]");
+    System.out.println("  -p, --placement    [random], cluster:n:radius");
+    System.out.println("  -l, --loss         [free], tworay, buildings:file[:cell],");
+    System.out.println("                     terrain:file:dB/m[:cell]");
+    System.out.println("  -f, --fading       [none], rayleigh, rician:k, table:rayleigh, table:rician:k");
     System.out.println();
   }
 
@@ -102,6 +129,12 @@ public class spatial
     public int spatial_mode = MODE_SPATIAL_LINEAR;
     /** binning degree. */
     public int spatial_div = -1;
+    /** node placement. */
+    public String placement = "random";
+    /** path loss. */
+    public String loss = "free";
+    /** fading. */
+    public String fading = "none";
   }
 
   /**
@@ -122,6 +155,9 @@ public class spatial
     CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
     CmdLineParser.Option opt_dim = parser.addStringOption('d', "dim");
     CmdLineParser.Option opt_spatial = parser.addStringOption('s', "spatial");
+    CmdLineParser.Option opt_placement = parser.addStringOption('p', "placement");
+    CmdLineParser.Option opt_loss = parser.addStringOption('l', "loss");
+    CmdLineParser.Option opt_fading = parser.addStringOption('f', "fading");
 
     // parse
     parser.parse(args);
@@ -159,10 +195,38 @@ public class spatial
       options.spatial_mode = MODE_SPATIAL_HIER;
       options.spatial_div = Integer.parseInt(options.spatial.split(":")[1]);
     }
+    else if(options.spatial.startsWith(MODE_SPATIAL_STRING_PACKED))
+    {
+      options.spatial_mode = MODE_SPATIAL_PACKED;
+    }
+    else if(options.spatial.startsWith(MODE_SPATIAL_STRING_KDTREE))
+    {
+      options.spatial_mode = MODE_SPATIAL_KDTREE;
+      String[] data = options.spatial.split(":");
+      options.spatial_div = data.length>1 ? Integer.parseInt(data[1]) : Spatial.KDTree.BUCKET_DEFAULT;
+    }
     else
     {
       throw new RuntimeException("invalid spatial structure: "+options.spatial);
     }
+    if(parser.getOptionValue(opt_placement)!=null)
+    {
+      options.placement = ((String)parser.getOptionValue(opt_placement)).toLowerCase();
+    }
+    if(!options.placement.startsWith(PLACEMENT_STRING_RANDOM)
+        && !(options.placement.startsWith(PLACEMENT_STRING_CLUSTER)
+          && options.placement.split(":").length==3))
+    {
+      throw new RuntimeException("invalid placement: "+options.placement);
+    }
+    if(parser.getOptionValue(opt_loss)!=null)
+    {
+      options.loss = (String)parser.getOptionValue(opt_loss);
+    }
+    if(parser.getOptionValue(opt_fading)!=null)
+    {
+      options.fading = ((String)parser.getOptionValue(opt_fading)).toLowerCase();
+    }
     String[] rest = parser.getRemainingArgs();
     return options;
   }
@@ -177,15 +241,16 @@ public class spatial
    *
    * @param bounds size of field
    * @param spatial binning radio container
+   * @param placement node placement model
+   * @param pathloss path loss model
+   * @param fading fading model
    * @param nodes number of nodes
    * @return simulation field
    */
-  public static Field createSim(Location.Location2D bounds, Spatial spatial, long nodes)
+  public static Field createSim(Location.Location2D bounds, Spatial spatial, 
+      Placement placement, PathLoss pathloss, Fading fading, long nodes)
   {
     // create field
-    Placement placement = new Placement.Random(bounds);
-    Fading fading = new Fading.None();
-    PathLoss pathloss = new PathLoss.FreeSpace();
     Field field = new Field(spatial, fading, pathloss, null, Constants.PROPAGATION_LIMIT_DEFAULT);
     // shared radio information
     RadioInfo.RadioInfoShared radioInfoShared = RadioInfo.createShared(
@@ -205,6 +270,41 @@ public class spatial
     return field;
   }
 
+  /**
+   * Create path loss model.
+   *
+   * @param bounds size of field
+   * @param loss path loss configuration string
+   * @return path loss model
+   * @throws IOException unable to read obstacle file
+   */
+  public static PathLoss createPathLoss(Location.Location2D bounds, String loss)
+    throws IOException
+  {
+    String[] data = loss.split(":");
+    String mode = data[0].toLowerCase();
+    if(mode.equals(LOSS_STRING_FREE))
+    {
+      return new PathLoss.FreeSpace();
+    }
+    else if(mode.equals(LOSS_STRING_TWORAY))
+    {
+      return new PathLoss.TwoRay();
+    }
+    else if(mode.equals(LOSS_STRING_BUILDINGS) && data.length>=2)
+    {
+      float cell = data.length>2 ? Float.parseFloat(data[2]) : PathLossObstacle.CELL_DEFAULT;
+      return new PathLossObstacle.Buildings(new PathLoss.TwoRay(), bounds, cell, new File(data[1]));
+    }
+    else if(mode.equals(LOSS_STRING_TERRAIN) && data.length>=3)
+    {
+      float cell = data.length>3 ? Float.parseFloat(data[3]) : PathLossObstacle.CELL_DEFAULT;
+      return new PathLossObstacle.Terrain(new PathLoss.TwoRay(), bounds, cell, 
+          new File(data[1]), Double.parseDouble(data[2]));
+    }
+    throw new RuntimeException("invalid path loss: "+loss);
+  }
+
   /**
    * Benchmark entry point: spatial data structure performance.
    *
@@ -247,6 +347,12 @@ public class spatial
         case MODE_SPATIAL_HIER:
           spatial = new Spatial.HierGrid(bounds, options.spatial_div);
           break;
+        case MODE_SPATIAL_PACKED:
+          spatial = new Spatial.Packed(bounds);
+          break;
+        case MODE_SPATIAL_KDTREE:
+          spatial = new Spatial.KDTree(bounds, options.spatial_div);
+          break;
         default:
           throw new RuntimeException("invalid spatial binning mode");
       }
@@ -254,8 +360,19 @@ public class spatial
       System.out.println("nodes   = "+options.num);
       System.out.println("size    = "+options.dim+" x "+options.dim);
       System.out.println("spatial = "+options.spatial);
+      System.out.println("place   = "+options.placement);
+      System.out.println("loss    = "+options.loss);
+      System.out.println("fading  = "+options.fading);
+      Placement placement = new Placement.Random(bounds);
+      if(options.placement.startsWith(PLACEMENT_STRING_CLUSTER))
+      {
+        String[] data = options.placement.split(":");
+        placement = new Placement.Cluster(bounds, 
+            Integer.parseInt(data[1]), Float.parseFloat(data[2]));
+      }
       System.out.print("Creating simulation nodes... ");
-      Field f = createSim(bounds, spatial, options.num);
+      Field f = createSim(bounds, spatial, placement, 
+          createPathLoss(bounds, options.loss), fading.createFading(options.fading), options.num);
       System.out.println("done.");
       // compute node density metrics
       System.out.println("Average density  = "+f.computeDensity()*1000*1000+"/km^2");
@@ -265,6 +382,7 @@ public class spatial
       switch(options.spatial_mode)
       {
         case MODE_SPATIAL_LINEAR:
+        case MODE_SPATIAL_PACKED:
           bins = 1;
           break;
         case MODE_SPATIAL_GRID:
@@ -273,6 +391,9 @@ public class spatial
         case MODE_SPATIAL_HIER:
           bins = (long)Math.pow(4, options.spatial_div);
           break;
+        case MODE_SPATIAL_KDTREE:
+          bins = ((Spatial.KDTree)spatial).getNumLeaves();
+          break;
         default:
           throw new RuntimeException("invalid spatial binning mode");
       }
@@ -288,6 +409,8 @@ public class spatial
       }
       long endTime = System.currentTimeMillis();
       System.out.println("done.");
+      System.out.println("Seconds          = "+(endTime-startTime)/1000.0);
+      System.out.println("Usec/transmit    = "+(endTime-startTime)*1000.0/(10*options.num));
       /*
       // count bins
       Spatial.LinearList.NUM = 0;
@@ -303,6 +426,10 @@ public class spatial
     {
       System.out.println("Error parsing command line: "+e.getMessage());
     }
+    catch(IOException e)
+    {
+      System.out.println("Error reading obstacles: "+e.getMessage());
+    }
   }
 
 } // class: spatial
@@ -0,0 +1,289 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jist.runtime.JistAPI;
+import jist.runtime.Channel;
+
+import jargs.gnu.*; // Download from: http://jargs.sourceforge.net
+
+/**
+ * Several producers share a multi-slot channel with a single consumer. The
+ * producers all start at once, so that most of them find the channel full
+ * and block until the consumer drains it. The consumer receives all
+ * available data at once, and checks that the data of each producer
+ * arrives in order.
+ *
+ * @since JIST1.0
+ */
+
+public class channel
+{
+  //////////////////////////////////////////////////
+  // Constants
+  //
+
+  /** benchmark version. */
+  public static final String VERSION = "0.1";
+
+  //////////////////////////////////////////////////
+  // Static command-line helper methods
+  //
+
+  /**
+   * Print benchmark version information.
+   */
+  private static void showVersion()
+  {
+    System.out.println("JiST multi-slot channel micro-benchmark v"+VERSION+", Java in Simulation Time Project.");
+    System.out.println("Rimon Barr <barr+jist@cs.cornell.edu>, Cornell University.");
+    System.out.println();
+  }
+
+  /**
+   * Print benchmark command-line syntax.
+   */
+  private static void showUsage()
+  {
+    System.out.println("Usage: channel [-p <num>] [-n <num>] [-c <slots>] [-b <size>]");
+    System.out.println("       channel -v | -h");
+    System.out.println();
+    System.out.println("  -h, --help         display this help information");
+    System.out.println("  -v, --version      display version information");
+    System.out.println("  -p, --producers    number of producers [4]");
+    System.out.println("  -n, --num          number of objects sent by each producer [1000]");
+    System.out.println("  -c, --capacity     number of channel slots [16]");
+    System.out.println("  -b, --batch        objects per send [1]");
+    System.out.println();
+  }
+
+  /** Parsed command-line options. */
+  private static class cmdlineOpts
+  {
+    // defaults
+    /** print help. */
+    public boolean help = false;
+    /** print version. */
+    public boolean version = false;
+    /** number of producers. */
+    public int producers = 4;
+    /** number of objects sent by each producer. */
+    public int num = 1000;
+    /** number of channel slots. */
+    public int capacity = 16;
+    /** objects per send. */
+    public int batch = 1;
+  }
+
+  /**
+   * Parse command-line options.
+   *
+   * @param args command-line parameters
+   * @return parsed command-line options
+   * @throws CmdLineParser.OptionException invalid option encountered
+   */
+  private static cmdlineOpts parseCommandLineOptions(String[] args)
+    throws CmdLineParser.OptionException
+  {
+    // setup
+    cmdlineOpts options = new cmdlineOpts();
+    CmdLineParser parser = new CmdLineParser();
+    CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+    CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+    CmdLineParser.Option opt_producers = parser.addStringOption('p', "producers");
+    CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+    CmdLineParser.Option opt_capacity = parser.addStringOption('c', "capacity");
+    CmdLineParser.Option opt_batch = parser.addStringOption('b', "batch");
+
+    // parse
+    parser.parse(args);
+    if(parser.getOptionValue(opt_help)!=null)
+    {
+      options.help = true;
+    }
+    if(parser.getOptionValue(opt_version)!=null)
+    {
+      options.version = true;
+    }
+    if(parser.getOptionValue(opt_producers)!=null)
+    {
+      options.producers = Integer.parseInt((String)parser.getOptionValue(opt_producers));
+    }
+    if(parser.getOptionValue(opt_num)!=null)
+    {
+      options.num = Integer.parseInt((String)parser.getOptionValue(opt_num));
+    }
+    if(parser.getOptionValue(opt_capacity)!=null)
+    {
+      options.capacity = Integer.parseInt((String)parser.getOptionValue(opt_capacity));
+    }
+    if(parser.getOptionValue(opt_batch)!=null)
+    {
+      options.batch = Integer.parseInt((String)parser.getOptionValue(opt_batch));
+    }
+    return options;
+  }
+
+  //////////////////////////////////////////////////
+  // entities
+  //
+
+  /** shared channel. */
+  private static Channel chan;
+
+  /**
+   * Producer: sends its objects through the shared channel, in order.
+   */
+  public static class producer implements JistAPI.Entity
+  {
+    /** producer number. */
+    private int id;
+
+    /**
+     * Create producer.
+     *
+     * @param id producer number
+     */
+    public producer(int id)
+    {
+      this.id = id;
+    }
+
+    /**
+     * Send objects: producer number times objects per producer, plus
+     * sequence number.
+     *
+     * @param num number of objects to send
+     * @param batch objects per send
+     */
+    public void produce(int num, int batch)
+    {
+      for(int i=0; i<num; i+=batch)
+      {
+        Object[] items = new Object[Math.min(batch, num-i)];
+        for(int j=0; j<items.length; j++)
+        {
+          items[j] = new Integer(id*num+i+j);
+        }
+        if(items.length==1)
+        {
+          chan.send(items[0]);
+        }
+        else
+        {
+          chan.sendAll(items);
+        }
+      }
+    }
+  }
+
+  /**
+   * Consumer: receives all objects, one time step per receive.
+   */
+  public static class consumer implements JistAPI.Entity
+  {
+    /** number of objects sent by each producer. */
+    private int num;
+    /** next sequence number expected from each producer. */
+    private int[] next;
+    /** whether objects of each producer arrived in order. */
+    private boolean ordered = true;
+
+    /**
+     * Create consumer.
+     *
+     * @param producers number of producers
+     * @param num number of objects sent by each producer
+     */
+    public consumer(int producers, int num)
+    {
+      this.num = num;
+      next = new int[producers];
+    }
+
+    /**
+     * Check order of received objects.
+     *
+     * @param items received objects
+     * @return number of received objects
+     */
+    private int check(Object[] items)
+    {
+      for(int i=0; i<items.length; i++)
+      {
+        int v = ((Integer)items[i]).intValue();
+        if(v%num!=next[v/num]) ordered = false;
+        next[v/num] = v%num+1;
+      }
+      return items.length;
+    }
+
+    /**
+     * Receive objects of all producers, and report.
+     */
+    public void consume()
+    {
+      long start = System.currentTimeMillis();
+      int received = 0, receives = 0;
+      while(received<next.length*num)
+      {
+        received += check(chan.receiveAll());
+        receives++;
+        JistAPI.sleep(1);
+      }
+      System.out.println("channel: received="+received+" receives="+receives
+          +" ordered="+ordered+" t="+JistAPI.getTime()
+          +" time="+(System.currentTimeMillis()-start)+"ms");
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // main
+  //
+
+  /**
+   * Benchmark entry point: start consumer and producers.
+   *
+   * @param args command-line parameters
+   */
+  public static void main(String[] args)
+  {
+    try
+    {
+      cmdlineOpts options = parseCommandLineOptions(args);
+      if(options.help)
+      {
+        showVersion();
+        showUsage();
+        return;
+      }
+      if(options.version)
+      {
+        showVersion();
+        return;
+      }
+      if(options.producers<1 || options.num<1 || options.capacity<2 || options.batch<1)
+      {
+        showUsage();
+        return;
+      }
+      chan = JistAPI.createBufferedChannel(options.capacity);
+      new consumer(options.producers, options.num).consume();
+      for(int i=0; i<options.producers; i++)
+      {
+        new producer(i).produce(options.num, options.batch);
+      }
+    }
+    catch(CmdLineParser.OptionException e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
+} // class: channel
@@ -0,0 +1,313 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jist.runtime.JistAPI;
+import jist.runtime.Controller;
+import jist.runtime.Util;
+
+import java.util.Random;
+
+import jargs.gnu.*; // Download from: http://jargs.sourceforge.net
+
+/**
+ * Measures the entity table under node churn: a fixed number of live nodes,
+ * each carrying some state, repeatedly leave and are replaced by new ones.
+ * Departed nodes are unregistered, unless requested otherwise, so that
+ * their slots are reused. Every thousandth departing node has an event
+ * pending, which should be discarded; with <code>-b</code>, it instead
+ * leaves while blocked in a call, whose discarded return should not leave
+ * its continuation (or continuation thread) behind.
+ *
+ * @since JIST1.0
+ */
+
+public class churn
+{
+  //////////////////////////////////////////////////
+  // Constants
+  //
+
+  /** benchmark version. */
+  public static final String VERSION = "0.1";
+
+  /** bytes of state per node. */
+  public static final int NODE_STATE = 128;
+
+  /** departures between pending events. */
+  public static final int PING_INTERVAL = 1000;
+
+  //////////////////////////////////////////////////
+  // Static command-line helper methods
+  //
+
+  /**
+   * Print benchmark version information.
+   */
+  private static void showVersion()
+  {
+    System.out.println("JiST entity churn micro-benchmark v"+VERSION+", Java in Simulation Time Project.");
+    System.out.println("Rimon Barr <barr+jist@cs.cornell.edu>, Cornell University.");
+    System.out.println();
+  }
+
+  /**
+   * Print benchmark command-line syntax.
+   */
+  private static void showUsage()
+  {
+    System.out.println("Usage: churn [-n <num>] [-c <cycles>] [-k] [-b]");
+    System.out.println("       churn -v | -h");
+    System.out.println();
+    System.out.println("  -h, --help         display this help information");
+    System.out.println("  -v, --version      display version information");
+    System.out.println("  -n, --num          number of live nodes [1000]");
+    System.out.println("  -c, --cycles       number of leave/join cycles [10000]");
+    System.out.println("  -k, --keep         do not unregister departed nodes");
+    System.out.println("  -b, --block        nodes with pending events leave while blocked");
+    System.out.println();
+  }
+
+  /** Parsed command-line options. */
+  private static class cmdlineOpts
+  {
+    // defaults
+    /** print help. */
+    public boolean help = false;
+    /** print version. */
+    public boolean version = false;
+    /** number of live nodes. */
+    public int num = 1000;
+    /** number of leave/join cycles. */
+    public int cycles = 10000;
+    /** whether departed nodes are kept registered. */
+    public boolean keep = false;
+    /** whether nodes with pending events leave while blocked. */
+    public boolean block = false;
+  }
+
+  /**
+   * Parse command-line options.
+   *
+   * @param args command-line parameters
+   * @return parsed command-line options
+   * @throws CmdLineParser.OptionException invalid option encountered
+   */
+  private static cmdlineOpts parseCommandLineOptions(String[] args)
+    throws CmdLineParser.OptionException
+  {
+    // setup
+    cmdlineOpts options = new cmdlineOpts();
+    CmdLineParser parser = new CmdLineParser();
+    CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+    CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+    CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+    CmdLineParser.Option opt_cycles = parser.addStringOption('c', "cycles");
+    CmdLineParser.Option opt_keep = parser.addBooleanOption('k', "keep");
+    CmdLineParser.Option opt_block = parser.addBooleanOption('b', "block");
+
+    // parse
+    parser.parse(args);
+    if(parser.getOptionValue(opt_help)!=null)
+    {
+      options.help = true;
+    }
+    if(parser.getOptionValue(opt_version)!=null)
+    {
+      options.version = true;
+    }
+    if(parser.getOptionValue(opt_num)!=null)
+    {
+      options.num = Integer.parseInt((String)parser.getOptionValue(opt_num));
+    }
+    if(parser.getOptionValue(opt_cycles)!=null)
+    {
+      options.cycles = Integer.parseInt((String)parser.getOptionValue(opt_cycles));
+    }
+    if(parser.getOptionValue(opt_keep)!=null)
+    {
+      options.keep = true;
+    }
+    if(parser.getOptionValue(opt_block)!=null)
+    {
+      options.block = true;
+    }
+    return options;
+  }
+
+  //////////////////////////////////////////////////
+  // entities
+  //
+
+  /** number of events received by nodes. */
+  private static int pings;
+
+  /** entity that holds departing nodes. */
+  private static holder hold;
+
+  /**
+   * Node that joins and leaves the simulation.
+   */
+  public static class node implements JistAPI.Entity
+  {
+    /** node state. */
+    private byte[] state = new byte[NODE_STATE];
+
+    /**
+     * Receive event.
+     *
+     * @param i event number
+     */
+    public void ping(int i)
+    {
+      pings++;
+    }
+
+    /**
+     * Leave the simulation with a blocking call pending. The caller does
+     * not wait for this event; only the node itself blocks. (Continuable
+     * methods may not take entity parameters, hence the static holder.)
+     */
+    public void leave()
+    {
+      JistAPI.unregister(JistAPI.THIS);
+      hold.hold();
+      pings++;
+    }
+  }
+
+  /**
+   * Entity that holds its callers for a time step.
+   */
+  public static class holder implements JistAPI.Entity
+  {
+    /**
+     * Return after a time step.
+     *
+     * @throws JistAPI.Continuation never; blocking event
+     */
+    public void hold() throws JistAPI.Continuation
+    {
+      JistAPI.sleep(1);
+    }
+  }
+
+  /**
+   * Entity that reports the outcome once all events have been processed.
+   */
+  public static class reporter implements JistAPI.Entity
+  {
+    /**
+     * Print number of events received and discarded.
+     *
+     * @param sent number of events sent to live nodes
+     */
+    public void report(int sent)
+    {
+      Controller c = Controller.getActiveController();
+      System.out.println("received="+pings+" sent="+sent+" discarded="+c.getStaleEvents()
+          +" blocked="+c.getNumBlockedThreads());
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // main
+  //
+
+  /**
+   * Return heap in use, after garbage collection.
+   *
+   * @return heap in use (in bytes)
+   */
+  private static long heap()
+  {
+    for(int i=0; i<4; i++)
+    {
+      System.gc();
+    }
+    return Util.getUsedMemory();
+  }
+
+  /**
+   * Benchmark entry point: churn nodes and report entity table size.
+   *
+   * @param args command-line parameters
+   */
+  public static void main(String[] args)
+  {
+    try
+    {
+      cmdlineOpts options = parseCommandLineOptions(args);
+      if(options.help)
+      {
+        showVersion();
+        showUsage();
+        return;
+      }
+      if(options.version)
+      {
+        showVersion();
+        return;
+      }
+      if(options.num<1)
+      {
+        showUsage();
+        return;
+      }
+      Controller c = Controller.getActiveController();
+      long heap = heap();
+      hold = new holder();
+      node[] live = new node[options.num];
+      for(int i=0; i<live.length; i++)
+      {
+        live[i] = new node();
+      }
+      Random random = new Random(1);
+      long start = System.currentTimeMillis();
+      for(int k=0; k<options.cycles; k++)
+      {
+        int i = random.nextInt(live.length);
+        if(k%PING_INTERVAL==0)
+        {
+          if(options.block)
+          {
+            live[i].leave();
+          }
+          else
+          {
+            live[i].ping(k);
+          }
+        }
+        if(!options.keep && !(options.block && k%PING_INTERVAL==0))
+        {
+          JistAPI.unregister(live[i]);
+        }
+        live[i] = new node();
+      }
+      long ms = System.currentTimeMillis()-start;
+      int sent = 0;
+      for(int i=0; i<live.length; i+=PING_INTERVAL)
+      {
+        live[i].ping(i);
+        sent++;
+      }
+      System.out.println("live="+c.getNumEntities()+" slots="+c.getNumEntitySlots()
+          +" partitions="+c.getNumEntityPartitions()
+          +" heap="+((heap()-heap)/1024/1024)+"M churn="+ms+"ms");
+      // after held callers would have resumed
+      JistAPI.sleep(2);
+      new reporter().report(sent);
+    }
+    catch(CmdLineParser.OptionException e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
+} // class: churn
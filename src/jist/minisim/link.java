@@ -0,0 +1,212 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jist.runtime.JistAPI;
+import jist.runtime.Controller;
+import jist.runtime.EventTransport;
+
+import jargs.gnu.*; // Download from: http://jargs.sourceforge.net
+
+/**
+ * Exchanges events with the same program at another JiST engine, over an
+ * event transport link. One engine accepts the link and waits:
+ * <code>jist --accept 3001 jist.minisim.link</code>; the other connects
+ * and starts the exchange: <code>jist --link host:3001 jist.minisim.link -n
+ * 1000</code>. Each event passes a proxy entity of its sender, to which the
+ * receiver replies one time step later.
+ *
+ * @since JIST1.0
+ */
+
+public class link
+{
+  //////////////////////////////////////////////////
+  // Constants
+  //
+
+  /** benchmark version. */
+  public static final String VERSION = "0.1";
+
+  //////////////////////////////////////////////////
+  // Static command-line helper methods
+  //
+
+  /**
+   * Print benchmark version information.
+   */
+  private static void showVersion()
+  {
+    System.out.println("JiST event transport link micro-benchmark v"+VERSION+", Java in Simulation Time Project.");
+    System.out.println("Rimon Barr <barr+jist@cs.cornell.edu>, Cornell University.");
+    System.out.println();
+  }
+
+  /**
+   * Print benchmark command-line syntax.
+   */
+  private static void showUsage()
+  {
+    System.out.println("Usage: link [-n <num>]");
+    System.out.println("       link -v | -h");
+    System.out.println();
+    System.out.println("  -h, --help         display this help information");
+    System.out.println("  -v, --version      display version information");
+    System.out.println("  -n, --num          number of events to exchange, or 0 to wait [0]");
+    System.out.println();
+  }
+
+  /** Parsed command-line options. */
+  private static class cmdlineOpts
+  {
+    // defaults
+    /** print help. */
+    public boolean help = false;
+    /** print version. */
+    public boolean version = false;
+    /** number of events to exchange. */
+    public int num = 0;
+  }
+
+  /**
+   * Parse command-line options.
+   *
+   * @param args command-line parameters
+   * @return parsed command-line options
+   * @throws CmdLineParser.OptionException invalid option encountered
+   */
+  private static cmdlineOpts parseCommandLineOptions(String[] args)
+    throws CmdLineParser.OptionException
+  {
+    // setup
+    cmdlineOpts options = new cmdlineOpts();
+    CmdLineParser parser = new CmdLineParser();
+    CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+    CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+    CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+
+    // parse
+    parser.parse(args);
+    if(parser.getOptionValue(opt_help)!=null)
+    {
+      options.help = true;
+    }
+    if(parser.getOptionValue(opt_version)!=null)
+    {
+      options.version = true;
+    }
+    if(parser.getOptionValue(opt_num)!=null)
+    {
+      options.num = Integer.parseInt((String)parser.getOptionValue(opt_num));
+    }
+    return options;
+  }
+
+  /**
+   * Linked entity proxy interface.
+   */
+  public interface pinger extends JistAPI.Proxiable
+  {
+    /**
+     * Receive event from remote engine.
+     *
+     * @param n number of events left to exchange
+     * @param from sender, to reply to
+     */
+    void ping(int n, pinger from);
+  }
+
+  /**
+   * Linked entity: replies to each event, until none are left.
+   */
+  public static class entity implements pinger
+  {
+    /** self-referencing proxy entity. */
+    private pinger self;
+    /** number of events received. */
+    private int received;
+
+    /**
+     * Set self-referencing proxy entity.
+     *
+     * @param self self-referencing proxy entity
+     */
+    public void setSelf(pinger self)
+    {
+      this.self = self;
+    }
+
+    /** {@inheritDoc} */
+    public void ping(int n, pinger from)
+    {
+      received++;
+      if(n>0)
+      {
+        JistAPI.sleep(1);
+        from.ping(n-1, self);
+      }
+      else
+      {
+        System.out.println("link END: received="+received+" t="+JistAPI.getTime());
+        JistAPI.end();
+      }
+    }
+  }
+
+  /**
+   * Benchmark entry point: publish linked entity, and start exchange if
+   * requested.
+   *
+   * @param args command-line parameters
+   */
+  public static void main(String[] args)
+  {
+    try
+    {
+      cmdlineOpts options = parseCommandLineOptions(args);
+      if(options.help)
+      {
+        showVersion();
+        showUsage();
+        return;
+      }
+      if(options.version)
+      {
+        showVersion();
+        return;
+      }
+      EventTransport transport = Controller.getActiveController().getTransport();
+      if(transport==null)
+      {
+        System.out.println("no event transport: run with jist --accept or --link");
+        return;
+      }
+      entity e = new entity();
+      pinger self = (pinger)JistAPI.proxy(e, pinger.class);
+      e.setSelf(self);
+      transport.setRoot(self);
+      if(options.num>0)
+      {
+        EventTransport.Link[] links = transport.getLinks();
+        if(links.length==0)
+        {
+          System.out.println("no event transport link: run with jist --link");
+          return;
+        }
+        pinger remote = (pinger)links[0].getRoot();
+        remote.ping(options.num-1, self);
+      }
+    }
+    catch(CmdLineParser.OptionException e)
+    {
+      System.out.println(e.getMessage());
+    }
+  }
+
+} // class: link
@@ -11,6 +11,7 @@ package jist.runtime;
 
 import java.lang.reflect.Method;
 import java.rmi.RemoteException;
+import java.util.LinkedList;
 
 /**
  * Implements a single-slot channel ala Communicating Sequential Processes
@@ -19,6 +20,15 @@ import java.rmi.RemoteException;
  * may not block the sender, and may drop excessive sends by setting
  * flags accordingly.
  *
+ * <p>A channel may also be created with multiple slots, in which case a
+ * blocking sender is only blocked while the channel is full. Any number of
+ * blocking senders may share such a channel: senders that find it full are
+ * queued, and their data is moved into the channel, in order of arrival, as
+ * the receiver drains it. Batches of
+ * data can be sent and received with <code>sendAll</code> and
+ * <code>receiveAll</code>, which resume a blocked receiver only once per
+ * batch, rather than once per item.
+ *
  * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
  * @version $Id: Channel.java,v 1.16 2004-04-06 16:07:43 barr Exp $
  * @since JIST1.0
@@ -56,6 +66,31 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
    */
   public static Method _jistMethodStub_sendNonBlock_28Ljava_2elang_2eObject_3bZZ_29V;
 
+  /**
+   * Jist method stub for receiveAll method.
+   */
+  public static Method _jistMethodStub_receiveAll_28_29_5bLjava_2elang_2eObject_3b;
+
+  /**
+   * Jist method stub for sendAll(Object[]) method.
+   */
+  public static Method _jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3b_29V;
+
+  /**
+   * Jist method stub for sendAll(Object[], boolean, boolean) method.
+   */
+  public static Method _jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3bZZ_29V;
+
+  /**
+   * Jist method stub for sendAllNonBlock(Object[]) method.
+   */
+  public static Method _jistMethodStub_sendAllNonBlock_28_5bLjava_2elang_2eObject_3b_29V;
+
+  /**
+   * Jist method stub for sendAllNonBlock(Object[], boolean, boolean) method.
+   */
+  public static Method _jistMethodStub_sendAllNonBlock_28_5bLjava_2elang_2eObject_3bZZ_29V;
+
   static 
   {
     try
@@ -80,6 +115,26 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
         Channel.class.getDeclaredMethod(
             "sendNonBlock",
             new Class[] { Object.class, Boolean.TYPE, Boolean.TYPE });
+      _jistMethodStub_receiveAll_28_29_5bLjava_2elang_2eObject_3b =
+        Channel.class.getDeclaredMethod(
+            "receiveAll",
+            new Class[] { });
+      _jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3b_29V =
+        Channel.class.getDeclaredMethod(
+            "sendAll",
+            new Class[] { Object[].class });
+      _jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3bZZ_29V =
+        Channel.class.getDeclaredMethod(
+            "sendAll",
+            new Class[] { Object[].class, Boolean.TYPE, Boolean.TYPE });
+      _jistMethodStub_sendAllNonBlock_28_5bLjava_2elang_2eObject_3b_29V =
+        Channel.class.getDeclaredMethod(
+            "sendAllNonBlock",
+            new Class[] { Object[].class });
+      _jistMethodStub_sendAllNonBlock_28_5bLjava_2elang_2eObject_3bZZ_29V =
+        Channel.class.getDeclaredMethod(
+            "sendAllNonBlock",
+            new Class[] { Object[].class, Boolean.TYPE, Boolean.TYPE });
     }
     catch(NoSuchMethodException e)
     {
@@ -87,14 +142,46 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
     }
   }
 
+  //////////////////////////////////////////////////
+  // blocked senders
+  //
+
+  /**
+   * Blocked sender, and its data that is not yet in the channel.
+   */
+  private static class Sender
+  {
+    /** continuation event of blocked sender. */
+    public final Event cont;
+    /** data objects of sender. */
+    public final Object[] items;
+    /** index of first data object not yet in channel. */
+    public int index;
+
+    /**
+     * Create blocked sender.
+     *
+     * @param cont continuation event of blocked sender
+     * @param items data objects of sender
+     * @param index index of first data object not yet in channel
+     */
+    public Sender(Event cont, Object[] items, int index)
+    {
+      this.cont = cont;
+      this.items = items;
+      this.index = index;
+    }
+  } // class: Sender
+
   //////////////////////////////////////////////////
   // locals
   //
 
   /**
-   * Continuation event of blocked sender.
+   * Blocked senders, in order of arrival: Sender. Senders are only
+   * blocked while the channel is full.
    */ 
-  private Event blockedSender;
+  private final LinkedList senders = new LinkedList();
 
   /**
    * Continuation event of blocked receiver.
@@ -102,14 +189,24 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   private Event blockedReceiver;
 
   /**
-   * Single data object passed through channel.
+   * Whether blocked receiver is waiting for all available data.
+   */
+  private boolean receiverWantsAll;
+
+  /**
+   * Data objects passed through channel (circular buffer).
+   */
+  private final Object[] data;
+
+  /**
+   * Index of first data object in channel.
    */
-  private Object data;
+  private int head;
 
   /**
-   * Whether channel is holding data.
+   * Number of data objects in channel.
    */
-  private boolean hasData;
+  private int count;
 
   /**
    * Create new Channel.
@@ -118,6 +215,20 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   // intentionally prevent out-of-package initialization; use JistAPI
   Channel()
   {
+    this(1);
+  }
+
+  /**
+   * Create new multi-slot Channel.
+   *
+   * @param capacity number of data objects held by channel
+   * @see JistAPI
+   */
+  // intentionally prevent out-of-package initialization; use JistAPI
+  Channel(int capacity)
+  {
+    if(capacity<1) throw new IllegalArgumentException("invalid channel capacity: "+capacity);
+    data = new Object[capacity];
   }
 
   //////////////////////////////////////////////////
@@ -125,44 +236,80 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   //
 
   /**
-   * Blocking send call implementation.
+   * Blocking send call implementation. The sender, if blocked, is resumed
+   * once all of its data is in the channel and the channel is not full. A
+   * blocking sender that finds a multi-slot channel full is queued behind
+   * any other blocked senders.
    *
-   * @param data object to transmit
+   * @param items objects to transmit
    * @param shouldDropIfFull whether over-sent channel should throw exception or silently drop
    * @param shouldDropIfNotReceiveWaiting whether send should be dropped if no receive is waiting
    * @param shouldBlockSender whether sender should be blocked
    */
-  private void send(Object data, boolean shouldDropIfFull, 
+  private void send(Object[] items, boolean shouldDropIfFull, 
       boolean shouldDropIfNotReceiveWaiting, boolean shouldBlockSender)
   {
     try
     {
       if(shouldDropIfNotReceiveWaiting && blockedReceiver==null) return;
-      if(hasData)
+      Controller c = Controller.getActiveController();
+      if(count==data.length)
       {
         if(shouldDropIfFull) return;
-        throw new RuntimeException("only one send at a time");
+        if(!shouldBlockSender || data.length==1)
+        {
+          throw new RuntimeException(data.length==1 ? "only one send at a time" : "channel full");
+        }
+        senders.addLast(new Sender(c.switchCaller(null), items, 0));
+        return;
       }
-      Controller c = Controller.getActiveController();
-      if(shouldBlockSender)
+      int n = items.length;
+      if(!shouldBlockSender)
       {
-        blockedSender = c.switchCaller(null);
+        // non-blocking senders can not leave data pending
+        int room = data.length-count;
+        if(blockedReceiver!=null)
+        {
+          room = receiverWantsAll ? Integer.MAX_VALUE : room+1;
+        }
+        if(n>room)
+        {
+          if(!shouldDropIfFull) throw new RuntimeException("channel full");
+          n = room;
+        }
       }
-      setData(data);
-      if(blockedReceiver!=null)
+      Event sender = shouldBlockSender ? c.switchCaller(null) : null;
+      int i = 0;
+      if(blockedReceiver!=null && receiverWantsAll && count==0 && n==items.length && n>0)
+      {
+        // hand over entire batch
+        wakeReceiver(c, items.clone());
+        i = n;
+      }
+      while(i<n && count<data.length)
+      {
+        put(items[i++]);
+      }
+      if(blockedReceiver!=null && count>0)
       {
         // schedule receive callback with result
-        blockedReceiver.time = c.getSimulationTime();
-        blockedReceiver.cont.result = clearData();
-        blockedReceiver.ref.getController().addEvent(blockedReceiver);
-        // return to sender
-        if(shouldBlockSender)
+        wakeReceiver(c, receiverWantsAll ? clearData(count) : clearData());
+        while(i<n && count<data.length)
         {
-          c.switchCaller(blockedSender);
+          put(items[i++]);
+        }
+      }
+      if(shouldBlockSender)
+      {
+        if(i<n || count==data.length)
+        {
+          senders.addLast(new Sender(sender, items, i));
+        }
+        else
+        {
+          // return to sender
+          c.switchCaller(sender);
         }
-        // clear
-        blockedReceiver = null;
-        blockedSender = null;
       }
     }
     catch(RemoteException e)
@@ -182,7 +329,7 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   public void send(Object data, boolean shouldDropIfFull,
       boolean shouldDropIfNoReceiveWaiting) throws JistAPI.Continuation
   {
-    send(data, shouldDropIfFull, shouldDropIfNoReceiveWaiting, true);
+    send(new Object[] { data }, shouldDropIfFull, shouldDropIfNoReceiveWaiting, true);
   }
 
   /**
@@ -206,7 +353,7 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   public void sendNonBlock(Object data, boolean shouldDropIfFull,
       boolean shouldDropIfNoReceiveWaiting)
   {
-    send(data, shouldDropIfFull, shouldDropIfNoReceiveWaiting, false);
+    send(new Object[] { data }, shouldDropIfFull, shouldDropIfNoReceiveWaiting, false);
   }
 
   /**
@@ -220,14 +367,64 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
   }
 
   /**
-   * Blocking receive call.
+   * Blocking batch send call. The sender is blocked until all objects are
+   * in the channel and the channel is not full, and a blocked receiver is
+   * resumed only once for the entire batch.
    *
-   * @return transmitted data
+   * @param data objects to transmit
+   * @param shouldDropIfFull whether over-sent channel should throw exception or silently drop
+   * @param shouldDropIfNoReceiveWaiting whether send should be dropped if no receive is waiting
    * @throws JistAPI.Continuation never (merely a rewriter tag)
    */
-  public Object receive() throws JistAPI.Continuation
+  public void sendAll(Object[] data, boolean shouldDropIfFull,
+      boolean shouldDropIfNoReceiveWaiting) throws JistAPI.Continuation
+  {
+    send(data, shouldDropIfFull, shouldDropIfNoReceiveWaiting, true);
+  }
+
+  /**
+   * Blocking non-dropping batch send call.
+   *
+   * @param data objects to transmit
+   * @throws JistAPI.Continuation never (merely a rewriter tag)
+   */
+  public void sendAll(Object[] data) throws JistAPI.Continuation
+  {
+    sendAll(data, false, false);
+  }
+
+  /**
+   * Non-blocking batch send call. Objects that do not fit into the channel
+   * are either dropped or cause an exception, in which case none are sent.
+   *
+   * @param data objects to transmit
+   * @param shouldDropIfFull whether over-sent channel should throw exception or silently drop
+   * @param shouldDropIfNoReceiveWaiting whether send should be dropped if no receive is waiting
+   */
+  public void sendAllNonBlock(Object[] data, boolean shouldDropIfFull,
+      boolean shouldDropIfNoReceiveWaiting)
+  {
+    send(data, shouldDropIfFull, shouldDropIfNoReceiveWaiting, false);
+  }
+
+  /**
+   * Non-blocking non-dropping batch send call.
+   *
+   * @param data objects to transmit
+   */
+  public void sendAllNonBlock(Object[] data)
+  {
+    sendAllNonBlock(data, false, false);
+  }
+
+  /**
+   * Blocking receive call implementation.
+   *
+   * @param all whether to receive all available data, or a single object
+   * @return transmitted data: single object, or array of objects
+   */
+  private Object receive(boolean all)
   {
-    
     try
     {
       if(blockedReceiver!=null)
@@ -236,21 +433,17 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
       }
       Controller c = Controller.getActiveController();
       blockedReceiver = c.switchCaller(null);
-      if(hasData)
+      if(count>0)
       {
+        Object result = all ? clearData(count) : clearData();
         // schedule send callback
-        if(blockedSender!=null)
-        {
-          blockedSender.time = c.getSimulationTime();
-          blockedSender.ref.getController().addEvent(blockedSender);
-        }
+        refill(c);
         // return to receiver
         c.switchCaller(blockedReceiver);
-        // clear data and return result
         blockedReceiver = null;
-        blockedSender = null;
-        return clearData();
+        return result;
       }
+      receiverWantsAll = all;
       return null; // won't return anywhere
     }
     catch(RemoteException e)
@@ -259,29 +452,127 @@ public class Channel extends Entity.Empty implements JistAPI.Entity
     }
   }
 
+  /**
+   * Blocking receive call.
+   *
+   * @return transmitted data
+   * @throws JistAPI.Continuation never (merely a rewriter tag)
+   */
+  public Object receive() throws JistAPI.Continuation
+  {
+    return receive(false);
+  }
+
+  /**
+   * Blocking batch receive call. Waits until the channel holds data, and
+   * then returns all of it at once.
+   *
+   * @return transmitted data, in order sent; never empty
+   * @throws JistAPI.Continuation never (merely a rewriter tag)
+   */
+  public Object[] receiveAll() throws JistAPI.Continuation
+  {
+    return (Object[])receive(true);
+  }
+
+  /**
+   * Return number of data objects in channel.
+   *
+   * @return number of data objects in channel
+   */
+  public int size()
+  {
+    return count;
+  }
+
+  /**
+   * Return maximum number of data objects in channel.
+   *
+   * @return maximum number of data objects in channel
+   */
+  public int capacity()
+  {
+    return data.length;
+  }
+
+  /**
+   * Schedule blocked receiver callback with result.
+   *
+   * @param c active controller
+   * @param result receive result
+   * @throws RemoteException distributed simulation failure
+   */
+  private void wakeReceiver(Controller c, Object result) throws RemoteException
+  {
+    blockedReceiver.time = c.getSimulationTime();
+    blockedReceiver.cont.result = result;
+    blockedReceiver.ref.getController().addEvent(blockedReceiver);
+    blockedReceiver = null;
+  }
+
+  /**
+   * Move data of blocked senders into channel, in order of arrival, and
+   * schedule the callback of each sender once all its data is in and the
+   * channel is not full.
+   *
+   * @param c active controller
+   * @throws RemoteException distributed simulation failure
+   */
+  private void refill(Controller c) throws RemoteException
+  {
+    while(!senders.isEmpty())
+    {
+      Sender s = (Sender)senders.getFirst();
+      while(s.index<s.items.length && count<data.length)
+      {
+        put(s.items[s.index++]);
+      }
+      if(count==data.length) return;
+      senders.removeFirst();
+      s.cont.time = c.getSimulationTime();
+      s.cont.ref.getController().addEvent(s.cont);
+    }
+  }
+
   /**
    * Put data in the channel.
    *
-   * @param data data to insert into the channel
+   * @param item data to insert into the channel
    */
-  private void setData(Object data)
+  private void put(Object item)
   {
-    this.data = data;
-    this.hasData = true;
+    data[(head+count) % data.length] = item;
+    count++;
   }
 
   /**
    * Clear data from the channel.
    *
-   * @return data in the channel, if any.
+   * @return first data object in the channel
    */
   private Object clearData()
   {
-    Object data = this.data;
-    this.data = null;
-    this.hasData = false;
-    return data;
+    Object item = data[head];
+    data[head] = null;
+    head = (head+1) % data.length;
+    count--;
+    return item;
   }
 
-} // class: Channel
+  /**
+   * Clear multiple data objects from the channel.
+   *
+   * @param n number of data objects to remove
+   * @return first n data objects in the channel
+   */
+  private Object[] clearData(int n)
+  {
+    Object[] items = new Object[n];
+    for(int i=0; i<n; i++)
+    {
+      items[i] = clearData();
+    }
+    return items;
+  }
 
+} // class: Channel
@@ -0,0 +1,550 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes continuable events on dedicated threads, as an alternative to the
+ * rewriter's CPS transformation. Each continuable event invocation runs on a
+ * worker thread; a blocking call simply parks the worker until its callback
+ * event is processed, so no stack frames are ever captured or replayed.
+ * Exactly one thread (either the controller or a single worker) runs at any
+ * time: control is handed back and forth explicitly, so the simulation
+ * remains deterministic and the Controller data structures need no locking.
+ *
+ * <p>Workers are virtual threads when the JVM supports them, and regular
+ * daemon threads otherwise.
+ *
+ * @since JIST1.0
+ */
+
+final class ContinuationThreads
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /**
+   * Maximum number of idle workers retained for reuse.
+   */
+  public static final int MAX_IDLE = 64;
+
+  /**
+   * Virtual thread builder factory method (Thread.ofVirtual), if available.
+   */
+  private static final Method method_ofVirtual;
+
+  /**
+   * Virtual thread builder creation method (Thread.Builder.unstarted), if available.
+   */
+  private static final Method method_unstarted;
+
+  static
+  {
+    Method ofVirtual = null, unstarted = null;
+    try
+    {
+      ofVirtual = Thread.class.getMethod("ofVirtual", new Class[] { });
+      unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted",
+          new Class[] { Runnable.class });
+    }
+    catch(Exception e)
+    {
+      // pre-virtual thread JVM; fall back to platform threads
+      ofVirtual = null;
+      unstarted = null;
+    }
+    method_ofVirtual = ofVirtual;
+    method_unstarted = unstarted;
+  }
+
+  /**
+   * Return whether workers run on virtual threads.
+   *
+   * @return whether workers run on virtual threads
+   */
+  public static boolean isVirtual()
+  {
+    return method_unstarted!=null;
+  }
+
+  /**
+   * Create a new (unstarted) worker thread.
+   *
+   * @param r worker runnable
+   * @param name thread name
+   * @return new unstarted thread
+   */
+  private static Thread newThread(Runnable r, String name)
+  {
+    if(method_unstarted!=null)
+    {
+      try
+      {
+        Thread t = (Thread)method_unstarted.invoke(
+            method_ofVirtual.invoke(null, new Object[] { }), new Object[] { r });
+        t.setName(name);
+        return t;
+      }
+      catch(Exception e)
+      {
+        throw new JistException("unable to create virtual thread", e);
+      }
+    }
+    Thread t = new Thread(r, name);
+    t.setDaemon(true);
+    return t;
+  }
+
+  //////////////////////////////////////////////////
+  // worker
+  //
+
+  /**
+   * Thrown into blocked workers that will never be resumed, in order to
+   * unwind their stacks when the simulation is reset.
+   */
+  static final class Terminate extends Error
+  {
+    /**
+     * Create new termination error.
+     */
+    public Terminate()
+    {
+      super("continuation thread terminated");
+    }
+  } // class: Terminate
+
+  /**
+   * A worker thread that executes a single continuable event invocation
+   * at a time, parking whenever it makes a blocking call.
+   *
+   * @since JIST1.0
+   */
+  final class Worker implements Runnable
+  {
+    /** worker thread. */
+    private final Thread thread;
+    /** thread that handed control to this worker. */
+    private Thread resumer;
+    /** whether worker currently holds control. */
+    private volatile boolean running;
+    /** whether worker stopped because of a blocking call (as opposed to completion). */
+    private boolean blocked;
+    /** whether worker should exit. */
+    private boolean exit;
+    /** invocation method. */
+    private Method method;
+    /** invocation target. */
+    private Object target;
+    /** invocation arguments. */
+    private Object[] args;
+    /** invocation or blocking call result. */
+    private Object result;
+    /** invocation or blocking call exception. */
+    private Throwable exception;
+
+    /**
+     * Create and start a new (idle) worker.
+     *
+     * @param id worker identifier
+     */
+    public Worker(int id)
+    {
+      thread = newThread(this, "JistContinuation-"+id);
+      thread.start();
+    }
+
+    /**
+     * Pass control to this worker and wait until it is returned.
+     */
+    private void transfer()
+    {
+      resumer = Thread.currentThread();
+      running = true;
+      LockSupport.unpark(thread);
+      while(running)
+      {
+        LockSupport.park(this);
+      }
+    }
+
+    /**
+     * Return control to the resuming thread and wait until it is passed back.
+     */
+    private void release()
+    {
+      running = false;
+      LockSupport.unpark(resumer);
+      while(!running)
+      {
+        LockSupport.park(this);
+      }
+    }
+
+    /**
+     * Park worker as a result of a blocking call, until the callback event
+     * is processed.
+     *
+     * @return result of blocking call
+     * @throws Throwable exception of blocking call
+     */
+    public Object block() throws Throwable
+    {
+      blocked = true;
+      release();
+      if(exception!=null)
+      {
+        Throwable t = exception;
+        exception = null;
+        throw t;
+      }
+      Object r = result;
+      result = null;
+      return r;
+    }
+
+    /** {@inheritDoc} */
+    public void run()
+    {
+      while(!running)
+      {
+        LockSupport.park(this);
+      }
+      while(!exit)
+      {
+        try
+        {
+          result = method.invoke(target, args);
+          exception = null;
+        }
+        catch(Throwable t)
+        {
+          result = null;
+          exception = t;
+        }
+        method = null;
+        target = null;
+        args = null;
+        blocked = false;
+        if(exit) break;
+        release();
+      }
+      running = false;
+      LockSupport.unpark(resumer);
+    }
+  } // class: Worker
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /**
+   * Idle workers.
+   */
+  private final Vector idle;
+
+  /**
+   * Workers blocked on a pending callback.
+   */
+  private final HashSet blocked;
+
+  /**
+   * Worker currently holding control, if any.
+   */
+  private Worker active;
+
+  /**
+   * Cache of whether event methods are continuable: (Method to (target
+   * Class to Boolean)).
+   */
+  private final HashMap continuable;
+
+  /**
+   * Number of workers created.
+   */
+  private int created;
+
+  /**
+   * Create new continuation thread manager.
+   */
+  public ContinuationThreads()
+  {
+    idle = new Vector();
+    blocked = new HashSet();
+    continuable = new HashMap();
+  }
+
+  //////////////////////////////////////////////////
+  // public methods
+  //
+
+  /**
+   * Return whether an event method may block and must therefore be run on a
+   * worker. Continuable methods are marked by the rewriter (in threaded
+   * mode) as throwing <code>JistAPI.Continuable</code>; bootstrap events are
+   * always run on a worker, since the simulation main() may block. Events
+   * of proxy entities are invoked through their interface methods, so the
+   * mark is looked up on the implementation in the target class.
+   *
+   * @param m event method
+   * @param target event entity
+   * @return whether event method must be run on a worker
+   */
+  public boolean isContinuable(Method m, Object target)
+  {
+    HashMap byClass = (HashMap)continuable.get(m);
+    if(byClass==null)
+    {
+      byClass = new HashMap();
+      continuable.put(m, byClass);
+    }
+    Boolean b = (Boolean)byClass.get(target.getClass());
+    if(b==null)
+    {
+      boolean c = Util.contains(m.getExceptionTypes(), JistAPI.Continuable.class)
+        || Bootstrap.class.isAssignableFrom(m.getDeclaringClass());
+      if(!c && m.getDeclaringClass().isInterface())
+      {
+        try
+        {
+          Method impl = target.getClass().getMethod(m.getName(), m.getParameterTypes());
+          c = Util.contains(impl.getExceptionTypes(), JistAPI.Continuable.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+          // not implemented by target; invocation will fail anyway
+        }
+      }
+      b = c ? Boolean.TRUE : Boolean.FALSE;
+      byClass.put(target.getClass(), b);
+    }
+    return b.booleanValue();
+  }
+
+  /**
+   * Invoke event method on a worker. Returns when the invocation either
+   * completes or blocks. Exceptions are wrapped exactly as in
+   * <code>Method.invoke</code>.
+   *
+   * @param m event method
+   * @param target event entity
+   * @param args event arguments
+   * @return invocation result (null if blocked)
+   * @throws InvocationTargetException application exception
+   * @throws IllegalAccessException invalid method access
+   */
+  public Object invoke(Method m, Object target, Object[] args)
+    throws InvocationTargetException, IllegalAccessException
+  {
+    Worker w = idle.isEmpty() ? new Worker(created++) : (Worker)idle.remove(idle.size()-1);
+    w.method = m;
+    w.target = target;
+    w.args = args;
+    return run(w);
+  }
+
+  /**
+   * Resume a blocked worker with the result of its blocking call. Returns
+   * when the invocation either completes or blocks again.
+   *
+   * @param w blocked worker
+   * @param result blocking call result
+   * @param exception blocking call exception
+   * @return invocation result (null if blocked)
+   * @throws InvocationTargetException application exception
+   * @throws IllegalAccessException invalid method access
+   */
+  public Object resume(Worker w, Object result, Throwable exception)
+    throws InvocationTargetException, IllegalAccessException
+  {
+    blocked.remove(w);
+    w.result = result;
+    w.exception = exception;
+    return run(w);
+  }
+
+  /**
+   * Return worker currently holding control.
+   *
+   * @return active worker
+   * @throws JistException if blocking call made outside a worker
+   */
+  public Worker getActive()
+  {
+    if(active==null || active.thread!=Thread.currentThread())
+    {
+      throw new JistException("blocking call outside of continuable event", null);
+    }
+    return active;
+  }
+
+  /**
+   * Return number of workers blocked on a pending callback.
+   *
+   * @return number of blocked workers
+   */
+  public int getNumBlocked()
+  {
+    return blocked.size();
+  }
+
+  /**
+   * Terminate a blocked worker that will never be resumed, for instance
+   * because its entity was unregistered: unwind its stack and let it exit.
+   *
+   * @param w blocked worker
+   */
+  public void terminate(Worker w)
+  {
+    if(!blocked.remove(w)) return;
+    Worker prev = active;
+    unwind(w);
+    active = prev;
+  }
+
+  /**
+   * Terminate all blocked and idle workers.
+   */
+  public void shutdown()
+  {
+    Iterator it = blocked.iterator();
+    while(it.hasNext())
+    {
+      unwind((Worker)it.next());
+    }
+    blocked.clear();
+    for(int i=0; i<idle.size(); i++)
+    {
+      Worker w = (Worker)idle.elementAt(i);
+      w.exit = true;
+      w.transfer();
+    }
+    idle.clear();
+    active = null;
+  }
+
+  //////////////////////////////////////////////////
+  // helpers
+  //
+
+  /**
+   * Throw termination error into blocked worker, and wait for it to exit.
+   *
+   * @param w blocked worker
+   */
+  private void unwind(Worker w)
+  {
+    w.exception = new Terminate();
+    w.exit = true;
+    active = w;
+    w.transfer();
+  }
+
+  /**
+   * Pass control to worker, and process its outcome.
+   *
+   * @param w worker to run
+   * @return invocation result (null if blocked)
+   * @throws InvocationTargetException application exception
+   * @throws IllegalAccessException invalid method access
+   */
+  private Object run(Worker w) throws InvocationTargetException, IllegalAccessException
+  {
+    Worker prev = active;
+    active = w;
+    w.transfer();
+    active = prev;
+    if(w.blocked)
+    {
+      blocked.add(w);
+      return null;
+    }
+    Object result = w.result;
+    Throwable exception = w.exception;
+    w.result = null;
+    w.exception = null;
+    if(idle.size()<MAX_IDLE)
+    {
+      idle.add(w);
+    }
+    else
+    {
+      w.exit = true;
+      w.transfer();
+    }
+    if(exception==null) return result;
+    if(exception instanceof InvocationTargetException) throw (InvocationTargetException)exception;
+    if(exception instanceof IllegalAccessException) throw (IllegalAccessException)exception;
+    if(exception instanceof RuntimeException) throw (RuntimeException)exception;
+    if(exception instanceof Error) throw (Error)exception;
+    throw new JistException("unexpected continuation thread exception", exception);
+  }
+
+  //////////////////////////////////////////////////
+  // testing
+  //
+
+  /** benchmark: worker blocked in round-trip loop. */
+  private static Worker benchWorker;
+
+  /**
+   * Benchmark body: block repeatedly on the active worker.
+   *
+   * @param ct continuation thread manager
+   * @param n number of blocking round trips
+   * @return number of round trips completed
+   * @throws Throwable never
+   */
+  public static Integer benchBody(ContinuationThreads ct, Integer n) throws Throwable
+  {
+    benchWorker = ct.getActive();
+    int i=0;
+    while(i<n.intValue())
+    {
+      i = ((Integer)benchWorker.block()).intValue();
+    }
+    return new Integer(i);
+  }
+
+  /**
+   * Small program to measure the cost of a blocking round trip (park and
+   * resume) on continuation threads, independent of the simulation.
+   *
+   * @param args command-line parameters: [number of round trips]
+   * @throws Exception never
+   */
+  public static void main(String[] args) throws Exception
+  {
+    int n = args.length>0 ? Integer.parseInt(args[0]) : 1000000;
+    Method m = ContinuationThreads.class.getDeclaredMethod("benchBody",
+        new Class[] { ContinuationThreads.class, Integer.class });
+    System.out.println("virtual threads: "+isVirtual());
+    for(int repeat=0; repeat<3; repeat++)
+    {
+      ContinuationThreads ct = new ContinuationThreads();
+      long startTime = System.currentTimeMillis();
+      Object result = ct.invoke(m, null, new Object[] { ct, new Integer(n) });
+      for(int i=1; result==null; i++)
+      {
+        result = ct.resume(benchWorker, new Integer(i), null);
+      }
+      long endTime = System.currentTimeMillis();
+      ct.shutdown();
+      if(((Integer)result).intValue()!=n) throw new RuntimeException("incorrect result");
+      System.out.println(n+" round trips: "+((endTime-startTime)/1000.0)+"s");
+    }
+  } // function: main
+
+} // class: ContinuationThreads
+
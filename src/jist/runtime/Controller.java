@@ -10,12 +10,14 @@
 package jist.runtime;
 
 import java.util.*;
+import java.io.IOException;
 import java.lang.reflect.*;
 import java.rmi.*;
 import java.rmi.server.*;
 import org.apache.log4j.*;
 
 import jist.runtime.guilog.GuiLog;
+import jist.runtime.guilog.StreamLog;
 
 /** 
  * Maintains all the data structures of a single simulation thread of
@@ -176,20 +178,36 @@ public final class Controller implements ControllerRemote, Runnable
   /**
    * Queue of simulation events.
    */
-  private final Scheduler.Heap events = new Scheduler.Heap();
+  private Scheduler events = new Scheduler.Heap();
   //private final Scheduler.Calendar events = new Scheduler.Calendar(1000000000, 1000);
 
 
   /**
-   * List of registered entities (possibly not completely filled).
+   * Entity table partitions, of ENTITY_PARTITION_SIZE slots each (the last
+   * ones possibly not completely filled).
    */
-  private Entity[] entities;
+  private EntityPartition[] partitions;
+
+  /**
+   * Number of entity table partitions.
+   */
+  private int numPartitions;
+
+  /**
+   * Lowest partition that may have a free slot.
+   */
+  private int allocPartition;
 
   /**
    * Number of registered entities.
    */
   private int numEntities;
 
+  /**
+   * Number of events discarded because their entity was unregistered.
+   */
+  private long staleEvents;
+
   /**
    * reference to the entity used for static calls.
    */
@@ -250,6 +268,37 @@ public final class Controller implements ControllerRemote, Runnable
    */
   private ClassLoader loader;
 
+  /**
+   * Binary event transport to remote controllers, or null.
+   */
+  private EventTransport transport;
+
+  /**
+   * Binary event trace recorder, if any.
+   */
+  private EventTrace trace;
+
+  /**
+   * Execution digest log (recording or replay), if any.
+   */
+  private Replay replay;
+
+  /**
+   * Headless GUI log event stream, if any.
+   */
+  private StreamLog eventLog;
+
+  /**
+   * Memory profile of entities and pending events, if any.
+   */
+  private MemoryProfile memprof;
+
+  /**
+   * Whether the display thread has requested a memory profile, to be taken
+   * by the simulation thread between events.
+   */
+  private volatile boolean memprofDue;
+
   /**
    * Simulation time units (number of ticks).
    */
@@ -278,6 +327,17 @@ public final class Controller implements ControllerRemote, Runnable
   /** Blocking sleep singleton entity. */
   public BlockingSleep entityBlockingSleep;
 
+  /**
+   * Continuation threads, if blocking calls are executed on threads rather
+   * than with rewritten (CPS) continuations; null otherwise.
+   */
+  private ContinuationThreads threads;
+
+  /**
+   * Worker thread blocked on outgoing (blocking) call event.
+   */
+  private ContinuationThreads.Worker callThread;
+
   //////////////////////////////////////////////////
   // threading
   //
@@ -361,8 +421,9 @@ public final class Controller implements ControllerRemote, Runnable
   {
     isRunning = false;
     events.clear();
-    entities = new Entity[10];
-    numEntities = 0;
+    if(!(events instanceof Scheduler.Heap)) events = new Scheduler.Heap();
+    clearEntities();
+    staleEvents = 0;
     Entity staticEntity = new Entity.Static();
     staticEntityRef = registerEntity(staticEntity);
     staticEntity._jistMethod_Set__ref(staticEntityRef);
@@ -370,6 +431,12 @@ public final class Controller implements ControllerRemote, Runnable
     call = null;
     callState = null;
     callbackState = null;
+    callThread = null;
+    if(threads!=null)
+    {
+      threads.shutdown();
+      threads = null;
+    }
     setSimUnits(1, " ticks");
     currentSimulationTime = 0;
     currentEvent = new Event();
@@ -381,6 +448,26 @@ public final class Controller implements ControllerRemote, Runnable
     {
       eventCounts = new Hashtable();
     }
+    if(Main.COUNT_FRAMES)
+    {
+      Pool.FramePool.clearStats();
+    }
+    if(trace!=null)
+    {
+      trace.close();
+      trace = null;
+    }
+    if(replay!=null)
+    {
+      replay.close();
+      replay = null;
+    }
+    if(eventLog!=null)
+    {
+      eventLog.close();
+      eventLog = null;
+    }
+    memprof = null;
     // todo:
     Throwable t = simulationException;
     simulationException = null;
@@ -421,13 +508,22 @@ public final class Controller implements ControllerRemote, Runnable
     long numEvents = 0;
     try
     {
+      if(transport!=null) transport.deliver();
       while(events.size()>0)
       {
+        // only the final end event left: wait for events from linked controllers
+        if(transport!=null && events.peekFirst().time>=JistAPI.END-1 && transport.await()) continue;
         currentEvent = events.removeFirst();
         currentSimulationTime = currentEvent.time;
         processEvent();
         numEvents++;
         disposeEvent(currentEvent);
+        if(transport!=null) transport.deliver();
+        if(memprofDue)
+        {
+          memprofDue = false;
+          profileMemory();
+        }
       }
     }
     catch(JistException.JistSimulationEndException e) { }
@@ -449,12 +545,16 @@ public final class Controller implements ControllerRemote, Runnable
     isRunning = true;
     try
     {
-      if(log.isInfoEnabled())
+      if(log.isInfoEnabled() || memprof!=null)
       {
         displayThread = startDisplayThread();
       }
       // cycle until end time
       numEvents += eventLoop();
+      if(memprof!=null)
+      {
+        profileMemory();
+      }
       long lastEventTime = currentSimulationTime;
       // clear out unprocessed events
       while(!events.isEmpty())
@@ -502,11 +602,20 @@ public final class Controller implements ControllerRemote, Runnable
         System.err.println("EVENT TRACE:");
         EventLocation.printEventTrace();
       }
+      if(trace!=null)
+      {
+        trace.force();
+        System.err.println("EVENT TRACE: "+trace.getCount()+" events recorded in "+trace.getFile());
+      }
+      if(eventLog!=null)
+      {
+        eventLog.flush();
+      }
       numEvents = -1;
     }
     catch(VirtualMachineError e)
     {
-      entities = null;
+      clearEntities();
       events.clear();
       System.gc();
       numEvents = -1;
@@ -530,6 +639,10 @@ public final class Controller implements ControllerRemote, Runnable
         log.info("TOTAL: "+Util.getHMS((long)seconds)+" real, "+
             getSimulationTimeString()+" sim, "+
             numEvents+"ev, "+((long)(numEvents/seconds))+"ev/s");
+        if(staleEvents>0)
+        {
+          log.info("discarded "+staleEvents+" events for unregistered entities");
+        }
       }
       if(Main.COUNT_EVENTS)
       {
@@ -541,6 +654,10 @@ public final class Controller implements ControllerRemote, Runnable
           System.out.println(m.getDeclaringClass().getName()+"."+m.getName()+": "+count);
         }
       }
+      if(Main.COUNT_FRAMES)
+      {
+        Pool.FramePool.printStats(System.out);
+      }
     }
   }
 
@@ -553,6 +670,8 @@ public final class Controller implements ControllerRemote, Runnable
   {
     Runnable runner = new Runnable()
     {
+      private long lastProfile = System.currentTimeMillis();
+
       public void run()
       {
         synchronized(this)
@@ -576,6 +695,15 @@ public final class Controller implements ControllerRemote, Runnable
             long memused = Util.getUsedMemory();
             msg += " mem="+(memused/1024/1024)+"M";
             msg += " evQ="+events.size();
+            if(memprof!=null)
+            {
+              if(System.currentTimeMillis()-lastProfile>=Main.MEMPROF_INTERVAL)
+              {
+                lastProfile = System.currentTimeMillis();
+                memprofDue = true;
+              }
+              msg += " "+memprof.getTop(3);
+            }
             long time = System.currentTimeMillis();
             long seconds = (long)((time-startTime)/1000.0);
             msg += " t="+Util.getHMS(seconds);
@@ -585,7 +713,14 @@ public final class Controller implements ControllerRemote, Runnable
               long remaining = (long)(seconds / completed * (1-completed));
               msg += " ("+Util.getHMS(remaining)+")";
             }
-            log.info(msg);
+            if(log.isInfoEnabled())
+            {
+              log.info(msg);
+            }
+            else
+            {
+              System.err.println(msg);
+            }
           }
           catch(InterruptedException e) { }
           catch(Exception e)
@@ -616,6 +751,8 @@ public final class Controller implements ControllerRemote, Runnable
    */
   private void processEvent()
   {
+    if(trace!=null) trace.process(currentEvent);
+    if(replay!=null) replay.process(currentEvent);
     if(isDebugLogging)
     {
       if(log.isDebugEnabled())
@@ -642,12 +779,50 @@ public final class Controller implements ControllerRemote, Runnable
         callbackState = cont.state;
         currentCaller = cont.caller;
       }
+      // discard events for unregistered entities, except blocking calls
+      Entity target = getEntity(currentEvent.ref);
+      if(target==null)
+      {
+        staleEvents++;
+        if(currentCaller==null || cont.state!=null || cont.thread!=null)
+        {
+          if(isDebugLogging)
+          {
+            if(log.isDebugEnabled())
+            {
+              log.debug("discarded event for unregistered entity: "+currentEvent);
+            }
+          }
+          if(cont!=null && cont.thread!=null)
+          {
+            // unwind worker blocked in the unregistered caller
+            threads.terminate(cont.thread);
+            cont.thread = null;
+          }
+          currentCaller = null;
+          callbackState = null;
+          return;
+        }
+      }
       // invoke event
       Object result = null;
       Throwable exception = null;
       try
       {
-        result = currentEvent.method.invoke(entities[currentEvent.ref.getIndex()], currentEvent.args);
+        if(target==null)
+        {
+          // blocking call to unregistered entity: caller receives exception
+          throw new InvocationTargetException(new IllegalStateException(
+                "call to unregistered entity "+currentEvent.ref.getIndex()));
+        }
+        if(threads==null)
+        {
+          result = currentEvent.method.invoke(target, currentEvent.args);
+        }
+        else
+        {
+          result = invokeThreaded(cont, target);
+        }
       }
       catch(InvocationTargetException e)
       {
@@ -659,7 +834,7 @@ public final class Controller implements ControllerRemote, Runnable
       catch(IllegalArgumentException e)
       {
         throw new NoSuchMethodException("Unable to invoke METHOD: "+currentEvent.method
-            +" on target ENTITY: "+entities[currentEvent.ref.getIndex()]);
+            +" on target ENTITY: "+target);
       }
       // handle blocking calls
       if(call!=null)
@@ -677,6 +852,7 @@ public final class Controller implements ControllerRemote, Runnable
         callback.cont.result = null;
         callback.cont.exception = null;
         callback.cont.caller = currentCaller;
+        callback.cont.thread = callThread;
         // hook it onto call event
         call.cont = continuationPool.get();
         call.cont.caller = callback;
@@ -693,6 +869,7 @@ public final class Controller implements ControllerRemote, Runnable
         call = null;
         callState = null;
         callback = null;
+        callThread = null;
       }
       // return to caller
       else if(currentCaller!=null)
@@ -736,6 +913,34 @@ public final class Controller implements ControllerRemote, Runnable
     }
   } // function: processEvent
 
+  /**
+   * Invoke the current event in continuation thread mode: resume a blocked
+   * worker thread, run a continuable event on a worker thread, or otherwise
+   * invoke the event directly.
+   *
+   * @param cont current event continuation, if any
+   * @param target current event entity
+   * @return event invocation result (null if blocked)
+   * @throws InvocationTargetException application exception
+   * @throws IllegalAccessException invalid event method access
+   */
+  private Object invokeThreaded(Event.Continuation cont, Entity target)
+    throws InvocationTargetException, IllegalAccessException
+  {
+    if(cont!=null && cont.thread!=null)
+    {
+      ContinuationThreads.Worker w = cont.thread;
+      cont.thread = null;
+      callbackState = null;
+      return threads.resume(w, cont.result, cont.exception);
+    }
+    if(threads.isContinuable(currentEvent.method, target))
+    {
+      return threads.invoke(currentEvent.method, target, currentEvent.args);
+    }
+    return currentEvent.method.invoke(target, currentEvent.args);
+  }
+
   // ControllerRemote interface
   /** {@inheritDoc} */
   public void start()
@@ -847,6 +1052,7 @@ public final class Controller implements ControllerRemote, Runnable
         ev.cont.result = null;
         ev.cont.exception = null;
         ev.cont.caller = null;
+        ev.cont.thread = null;
         continuationPool.put(ev.cont);
         ev.cont = null;
       }
@@ -878,6 +1084,8 @@ public final class Controller implements ControllerRemote, Runnable
   /** {@inheritDoc} */
   public void addEvent(Event ev)
   {
+    if(trace!=null) trace.schedule(ev, currentEvent);
+    if(eventLog!=null) eventLog.add(ev, currentEvent);
     events.insert(ev);
     if(isDebugLogging) logEventSched(ev);
   }
@@ -887,6 +1095,8 @@ public final class Controller implements ControllerRemote, Runnable
   public void addEvent(Method meth, EntityRef ref, Object[] params)
   {
     Event ev = createEvent(meth, ref, params);
+    if(trace!=null) trace.schedule(ev, currentEvent);
+    if(eventLog!=null) eventLog.add(ev, currentEvent);
     events.insert(ev);
     if(isDebugLogging) logEventSched(ev);
   }
@@ -896,6 +1106,8 @@ public final class Controller implements ControllerRemote, Runnable
   public void addEvent(Method meth, EntityRef ref, Object[] params, long time)
   {
     Event ev = createEvent(meth, ref, params, time);
+    if(trace!=null) trace.schedule(ev, currentEvent);
+    if(eventLog!=null) eventLog.add(ev, currentEvent);
     events.insert(ev);
     if(isDebugLogging) logEventSched(ev);
   }
@@ -971,41 +1183,193 @@ public final class Controller implements ControllerRemote, Runnable
   //
 
   /**
-   * Register an entity with the Controller.
+   * Register an entity with the Controller, in the lowest partition with a
+   * free slot. Slots of unregistered entities are reused.
    * 
    * @param entity entity to register with current controller
    * @return entity reference to given entity
    */
   public synchronized EntityRef registerEntity(Entity entity)
   {
-    EntityRef ref;
+    while(allocPartition<numPartitions && partitions[allocPartition].isFull())
+    {
+      allocPartition++;
+    }
+    return registerEntity(entity, allocPartition);
+  }
+
+  /**
+   * Register an entity with the Controller, in a given partition of the
+   * entity table. Entities that interact mostly with one another may be
+   * placed in the same partition.
+   * 
+   * @param entity entity to register with current controller
+   * @param partition entity table partition
+   * @return entity reference to given entity
+   */
+  public synchronized EntityRef registerEntity(Entity entity, int partition)
+  {
+    if(partition<0 || partition>Main.ENTITY_INDEX_MAX>>>Main.ENTITY_PARTITION_BITS)
+    {
+      throw new IllegalArgumentException("invalid entity partition: "+partition);
+    }
+    while(partition>=numPartitions)
+    {
+      if(numPartitions==partitions.length)
+      {
+        EntityPartition[] partitions2 = new EntityPartition[partitions.length*2];
+        System.arraycopy(partitions, 0, partitions2, 0, partitions.length);
+        partitions = partitions2;
+      }
+      partitions[numPartitions] = new EntityPartition(
+          numPartitions<<Main.ENTITY_PARTITION_BITS, 1<<Main.ENTITY_PARTITION_BITS);
+      numPartitions++;
+    }
+    EntityPartition p = partitions[partition];
+    int slot = p.register(entity);
+    if(slot==-1)
+    {
+      throw new JistException("entity partition full: "+partition, null);
+    }
+    numEntities++;
+    int index = p.getBase()+slot;
     if(Main.SINGLE_CONTROLLER)
     {
-      ref = new EntityRef(numEntities);
+      return new EntityRef(index, p.getGeneration(slot));
     }
     else
     {
-      ref = new EntityRefDist(this, numEntities);
+      return new EntityRefDist(this, index, p.getGeneration(slot));
     }
-    if(numEntities==entities.length)
+  }
+
+  /**
+   * Unregister an entity from the Controller. Its slot is reused by
+   * subsequently registered entities. Events later delivered to the
+   * unregistered entity are discarded, and blocking calls to it throw an
+   * IllegalStateException in the caller. The memory of partitions that
+   * become empty is released.
+   *
+   * @param ref entity reference of entity to unregister
+   * @return whether entity was registered (and is now unregistered)
+   */
+  public synchronized boolean unregisterEntity(EntityRef ref)
+  {
+    if(ref.equals(staticEntityRef) || ref.equals(entityBlockingSleep._jistMethod_Get__ref()))
+    {
+      throw new IllegalArgumentException("can not unregister runtime entity");
+    }
+    int partition = ref.getIndex()>>>Main.ENTITY_PARTITION_BITS;
+    if(partition>=numPartitions) return false;
+    EntityPartition p = partitions[partition];
+    if(!p.unregister(ref.getIndex() & Main.ENTITY_PARTITION_MASK, ref.getGeneration())) return false;
+    numEntities--;
+    if(partition<allocPartition)
     {
-      Entity[] entities2 = new Entity[entities.length*2];
-      System.arraycopy(entities, 0, entities2, 0, entities.length);
-      entities = entities2;
+      allocPartition = partition;
     }
-    entities[numEntities++] = entity;
-    return ref;
+    if(p.getLive()==0 && partition!=allocPartition)
+    {
+      p.release();
+    }
+    return true;
+  }
+
+  /**
+   * Return the entity of an entity reference owned by this Controller.
+   *
+   * @param ref entity reference
+   * @return requested entity object, or null if unregistered
+   */
+  public Entity getEntity(EntityRef ref)
+  {
+    int index = ref.getIndex();
+    EntityPartition[] partitions = this.partitions;
+    int partition = index>>>Main.ENTITY_PARTITION_BITS;
+    if(partition>=partitions.length || partitions[partition]==null) return null;
+    return partitions[partition].get(index & Main.ENTITY_PARTITION_MASK, ref.getGeneration());
   }
 
   /**
    * Return an entity owned by this Controller.
    *
    * @param index local entity identifier
-   * @return requested entity object
+   * @return requested entity object, or null if slot is free
    */
   public Entity getEntity(int index)
   {
-    return entities[index];
+    EntityPartition[] partitions = this.partitions;
+    int partition = index>>>Main.ENTITY_PARTITION_BITS;
+    if(partition>=partitions.length || partitions[partition]==null) return null;
+    return partitions[partition].get(index & Main.ENTITY_PARTITION_MASK);
+  }
+
+  /**
+   * Return number of entities registered with this Controller.
+   *
+   * @return number of registered entities
+   */
+  public int getNumEntities()
+  {
+    return numEntities;
+  }
+
+  /**
+   * Release all entities: empty the entity table.
+   */
+  private void clearEntities()
+  {
+    partitions = new EntityPartition[1];
+    numPartitions = 0;
+    allocPartition = 0;
+    numEntities = 0;
+  }
+
+  /**
+   * Return number of entity slots, one more than the highest entity index
+   * in use.
+   *
+   * @return number of entity slots
+   */
+  public int getNumEntitySlots()
+  {
+    EntityPartition[] partitions = this.partitions;
+    for(int i=Math.min(numPartitions, partitions.length)-1; i>=0; i--)
+    {
+      if(partitions[i].getUsed()>0) return partitions[i].getBase()+partitions[i].getUsed();
+    }
+    return 0;
+  }
+
+  /**
+   * Return number of entity table partitions.
+   *
+   * @return number of entity table partitions
+   */
+  public int getNumEntityPartitions()
+  {
+    return numPartitions;
+  }
+
+  /**
+   * Return number of events discarded because their entity was
+   * unregistered.
+   *
+   * @return number of discarded events
+   */
+  public long getStaleEvents()
+  {
+    return staleEvents;
+  }
+
+  /**
+   * Return simulation event queue.
+   *
+   * @return simulation event queue
+   */
+  Scheduler getEventQueue()
+  {
+    return events;
   }
 
   // ControllerRemote interface
@@ -1034,7 +1398,8 @@ public final class Controller implements ControllerRemote, Runnable
    */
   public String toStringEntity(int index) throws RemoteException
   {
-    return getEntity(index).toString();
+    Entity entity = getEntity(index);
+    return entity==null ? "unregistered" : entity.toString();
   }
 
   /**
@@ -1134,6 +1499,137 @@ public final class Controller implements ControllerRemote, Runnable
     this.loader = loader;
   }
 
+  /**
+   * Set the binary event transport to remote controllers. Received events
+   * are inserted into the event queue from within the event loop.
+   *
+   * @param transport event transport, or null
+   */
+  public void setTransport(EventTransport transport)
+  {
+    this.transport = transport;
+  }
+
+  /**
+   * Return the binary event transport to remote controllers.
+   *
+   * @return event transport, or null
+   */
+  public EventTransport getTransport()
+  {
+    return transport;
+  }
+
+  /**
+   * Set the binary event trace recorder. The recorder is closed when the
+   * controller is reset.
+   *
+   * @param trace event trace recorder, or null
+   */
+  public void setTrace(EventTrace trace)
+  {
+    this.trace = trace;
+  }
+
+  /**
+   * Return the binary event trace recorder. Recording may be toggled at any
+   * time with <code>EventTrace.setEnabled</code>.
+   *
+   * @return event trace recorder, or null
+   */
+  public EventTrace getTrace()
+  {
+    return trace;
+  }
+
+  /**
+   * Set the headless GUI log, which streams every scheduled event with its
+   * parent event to a file or socket, for later display by the GuiLog. The
+   * stream is closed when the controller is reset.
+   *
+   * @param eventLog event stream, or null
+   */
+  public void setEventLog(StreamLog eventLog)
+  {
+    this.eventLog = eventLog;
+  }
+
+  /**
+   * Set the memory profile, which estimates the memory retained by the
+   * entities of each class and by the pending events of each target entity
+   * class. The profile is taken periodically by the simulation thread,
+   * between events, and at the end of the simulation; the largest classes
+   * are summarized on the status line, which is printed to standard error
+   * if info logging is off, and the histogram file is rewritten each time.
+   *
+   * @param memprof memory profile, or null
+   */
+  public void setMemoryProfile(MemoryProfile memprof)
+  {
+    this.memprof = memprof;
+  }
+
+  /**
+   * Return the memory profile.
+   *
+   * @return memory profile, or null
+   */
+  public MemoryProfile getMemoryProfile()
+  {
+    return memprof;
+  }
+
+  /**
+   * Take memory profile and rewrite its histogram file.
+   */
+  private void profileMemory()
+  {
+    MemoryProfile memprof = this.memprof;
+    if(memprof==null) return;
+    memprof.sample(this);
+    try
+    {
+      memprof.dump();
+    }
+    catch(IOException e)
+    {
+      log.warn("unable to write memory profile: "+e.getMessage());
+    }
+  }
+
+  /**
+   * Set the execution digest log, which either records a digest of
+   * processed events, or verifies them against a recorded digest and halts
+   * the simulation at the first divergence. The log is closed when the
+   * controller is reset.
+   *
+   * @param replay execution digest log, or null
+   */
+  public void setReplay(Replay replay)
+  {
+    this.replay = replay;
+  }
+
+  /**
+   * Set the event queue spill horizon. Events scheduled further than the
+   * horizon into the future are written to sorted runs on disk, and merged
+   * back into memory as simulation time approaches them, so that the
+   * in-memory event queue remains bounded. The queue reverts to a purely
+   * in-memory heap when the controller is reset.
+   *
+   * @param horizon spill horizon (simulation time), or zero to disable
+   */
+  public void setSpillHorizon(long horizon)
+  {
+    if(!events.isEmpty())
+    {
+      throw new JistException("can not change event queue with pending events", null);
+    }
+    events = horizon>0
+      ? (Scheduler)new Scheduler.Spilling(this, horizon, Main.SPILL_BATCH)
+      : (Scheduler)new Scheduler.Heap();
+  }
+
   /**
    * Return current entity.
    *
@@ -1181,7 +1677,8 @@ public final class Controller implements ControllerRemote, Runnable
    */
   public static void entityInvocation(Method meth, EntityRef ref, Object[] params)
   {
-    if(Main.SINGLE_CONTROLLER)
+    // distributed references are remote, over an event transport link
+    if(Main.SINGLE_CONTROLLER && !(ref instanceof EntityRefDist))
     {
       activeController.addEvent(meth, ref, params);
     }
@@ -1245,6 +1742,10 @@ public final class Controller implements ControllerRemote, Runnable
   public static Object entityInvocationCont(Method meth, EntityRef ref, Object[] params) throws JistAPI.Continuation, Throwable
   {
     Controller c = getActiveController();
+    if(c.threads!=null)
+    {
+      return c.blockingCallThread(meth, ref, params);
+    }
     if(c.isModeRestore())
     {
       // restore complete
@@ -1306,6 +1807,74 @@ public final class Controller implements ControllerRemote, Runnable
         params);
   }
 
+  //////////////////////////////////////////////////
+  // continuation threads
+  //
+
+  /**
+   * Set whether blocking calls should be executed on (virtual) threads,
+   * rather than with the continuations captured by the rewriter. Must match
+   * the mode of the rewriter that loads the simulation classes.
+   *
+   * @param threaded whether to execute blocking calls on threads
+   * @see Rewriter#isThreaded
+   */
+  public void setThreaded(boolean threaded)
+  {
+    if(threaded && !Main.SINGLE_CONTROLLER)
+    {
+      throw new JistException("continuation threads require a single controller", null);
+    }
+    if(threaded && threads==null)
+    {
+      threads = new ContinuationThreads();
+    }
+    if(!threaded && threads!=null)
+    {
+      threads.shutdown();
+      threads = null;
+    }
+  }
+
+  /**
+   * Return whether blocking calls are executed on (virtual) threads.
+   *
+   * @return whether blocking calls are executed on threads
+   */
+  public boolean isThreaded()
+  {
+    return threads!=null;
+  }
+
+  /**
+   * Return number of continuation threads blocked on a pending callback.
+   *
+   * @return number of blocked continuation threads
+   */
+  public int getNumBlockedThreads()
+  {
+    return threads==null ? 0 : threads.getNumBlocked();
+  }
+
+  /**
+   * Perform a blocking call in continuation thread mode. The call event is
+   * registered as usual, and the current worker thread is parked until the
+   * callback event is processed.
+   *
+   * @param meth method to be invoked
+   * @param ref reference to entity being invoked
+   * @param params invocation parameters
+   * @return whatever was returned by blocking event
+   * @throws Throwable whatever was thrown by blocking event
+   */
+  public Object blockingCallThread(Method meth, EntityRef ref, Object[] params) throws Throwable
+  {
+    ContinuationThreads.Worker w = threads.getActive();
+    registerCallEvent(meth, ref, params);
+    callThread = w;
+    return w.block();
+  }
+
   //////////////////////////////////////////////////
   // continuation state save/restore
   //
@@ -1379,6 +1948,10 @@ public final class Controller implements ControllerRemote, Runnable
     Controller c = getActiveController();
     Event.ContinuationFrame f = c.callbackState;
     c.callbackState = c.callbackState.next;
+    if(Main.COUNT_FRAMES)
+    {
+      Pool.FramePool.count(f.getClass().getName(), Pool.FramePool.STAT_RESTORED);
+    }
     if(isDebugLogging)
     {
       if(log.isDebugEnabled())
@@ -1403,6 +1976,10 @@ public final class Controller implements ControllerRemote, Runnable
         log.debug("pushStateOut "+f.getClass());
       }
     }
+    if(Main.COUNT_FRAMES)
+    {
+      Pool.FramePool.count(f.getClass().getName(), Pool.FramePool.STAT_SAVED);
+    }
     Controller c = getActiveController();
     f.next = c.callState;
     c.callState = f;
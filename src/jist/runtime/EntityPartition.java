@@ -0,0 +1,237 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+/**
+ * A fixed range of entity slots in the Controller entity table. Each slot
+ * carries a generation, which is incremented when its entity is
+ * unregistered, so that entity references to a previous occupant of a
+ * reused slot are detected as stale. Freed slots are reused before the
+ * partition grows, and the memory of an empty partition may be released.
+ *
+ * <p>Partitions are independent of one another, so that ranges of entities
+ * may later be assigned to different controller threads.
+ *
+ * @since JIST1.0
+ */
+
+final class EntityPartition
+{
+
+  /** initial number of slots allocated. */
+  public static final int INIT_LENGTH = 16;
+
+  /** index of first slot. */
+  private final int base;
+
+  /** maximum number of slots. */
+  private final int capacity;
+
+  /** entities, by slot. */
+  private Entity[] entities;
+
+  /** generations, by slot. */
+  private int[] generations;
+
+  /** stack of free slots below the high-water mark. */
+  private int[] free;
+
+  /** number of free slots. */
+  private int numFree;
+
+  /** high-water mark: number of slots ever used. */
+  private int used;
+
+  /** number of registered entities. */
+  private int live;
+
+  /** initial generation of slots, after partition is released. */
+  private int epoch;
+
+  /**
+   * Create new, empty entity partition.
+   *
+   * @param base index of first slot
+   * @param capacity maximum number of slots
+   */
+  public EntityPartition(int base, int capacity)
+  {
+    this.base = base;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Return index of first slot.
+   *
+   * @return index of first slot
+   */
+  public int getBase()
+  {
+    return base;
+  }
+
+  /**
+   * Return number of registered entities.
+   *
+   * @return number of registered entities
+   */
+  public int getLive()
+  {
+    return live;
+  }
+
+  /**
+   * Return number of slots ever used (since last release).
+   *
+   * @return slot high-water mark
+   */
+  public int getUsed()
+  {
+    return used;
+  }
+
+  /**
+   * Return whether all slots are occupied.
+   *
+   * @return whether all slots are occupied
+   */
+  public boolean isFull()
+  {
+    return live==capacity;
+  }
+
+  /**
+   * Return entity in slot, if its generation matches.
+   *
+   * @param slot slot within partition
+   * @param generation expected slot generation
+   * @return entity, or null if slot is empty or reference is stale
+   */
+  public Entity get(int slot, int generation)
+  {
+    Entity[] entities = this.entities;
+    if(entities==null || slot>=used || generations[slot]!=generation) return null;
+    return entities[slot];
+  }
+
+  /**
+   * Return entity in slot, regardless of generation.
+   *
+   * @param slot slot within partition
+   * @return entity, or null if slot is empty
+   */
+  public Entity get(int slot)
+  {
+    Entity[] entities = this.entities;
+    return entities==null || slot>=used || slot>=entities.length ? null : entities[slot];
+  }
+
+  /**
+   * Return current generation of slot.
+   *
+   * @param slot slot within partition
+   * @return slot generation
+   */
+  public int getGeneration(int slot)
+  {
+    return generations[slot];
+  }
+
+  /**
+   * Place entity in a free slot, reusing freed slots first.
+   *
+   * @param entity entity to register
+   * @return slot within partition, or -1 if partition is full
+   */
+  public int register(Entity entity)
+  {
+    int slot;
+    if(numFree>0)
+    {
+      slot = free[--numFree];
+    }
+    else
+    {
+      if(used==capacity) return -1;
+      if(entities==null)
+      {
+        entities = new Entity[Math.min(INIT_LENGTH, capacity)];
+        generations = new int[entities.length];
+      }
+      if(used==entities.length)
+      {
+        int length = Math.min(entities.length*2, capacity);
+        Entity[] entities2 = new Entity[length];
+        System.arraycopy(entities, 0, entities2, 0, used);
+        entities = entities2;
+        int[] generations2 = new int[length];
+        System.arraycopy(generations, 0, generations2, 0, used);
+        generations = generations2;
+      }
+      slot = used++;
+      generations[slot] = epoch;
+    }
+    entities[slot] = entity;
+    live++;
+    return slot;
+  }
+
+  /**
+   * Free slot of entity, if reference is current.
+   *
+   * @param slot slot within partition
+   * @param generation generation of entity reference
+   * @return whether entity was unregistered
+   */
+  public boolean unregister(int slot, int generation)
+  {
+    if(get(slot, generation)==null) return false;
+    entities[slot] = null;
+    generations[slot]++;
+    if(free==null || numFree==free.length)
+    {
+      int[] free2 = new int[free==null ? INIT_LENGTH : Math.min(free.length*2, capacity)];
+      if(free!=null) System.arraycopy(free, 0, free2, 0, numFree);
+      free = free2;
+    }
+    free[numFree++] = slot;
+    live--;
+    return true;
+  }
+
+  /**
+   * Release memory of an empty partition. Slots reused afterwards start at
+   * a generation beyond any previously issued.
+   */
+  public void release()
+  {
+    if(live!=0) throw new IllegalStateException("partition not empty");
+    for(int i=0; i<used; i++)
+    {
+      epoch = Math.max(epoch, generations[i]);
+    }
+    entities = null;
+    generations = null;
+    free = null;
+    numFree = 0;
+    used = 0;
+  }
+
+  /**
+   * Return whether partition memory is released.
+   *
+   * @return whether partition memory is released
+   */
+  public boolean isReleased()
+  {
+    return entities==null;
+  }
+
+} // class: EntityPartition
+
@@ -35,6 +35,11 @@ public class EntityRef implements InvocationHandler
    */
   private final int index;
 
+  /**
+   * Generation of entity slot, to detect references to unregistered entities.
+   */
+  private final int generation;
+
   /**
    * Initialise a new entity reference with given
    * Controller and Entity IDs.
@@ -42,8 +47,21 @@ public class EntityRef implements InvocationHandler
    * @param index entity ID
    */
   public EntityRef(int index)
+  {
+    this(index, 0);
+  }
+
+  /**
+   * Initialise a new entity reference with given
+   * Entity ID and slot generation.
+   *
+   * @param index entity ID
+   * @param generation entity slot generation
+   */
+  public EntityRef(int index, int generation)
   {
     this.index = index;
+    this.generation = generation;
   }
 
   /**
@@ -68,6 +86,7 @@ public class EntityRef implements InvocationHandler
     if(!(o instanceof EntityRef)) return false;
     EntityRef er = (EntityRef)o;
     if(index!=er.index) return false;
+    if(generation!=er.generation) return false;
     return true;
   }
 
@@ -98,6 +117,16 @@ public class EntityRef implements InvocationHandler
     return index;
   }
 
+  /**
+   * Return generation of referenced entity slot.
+   *
+   * @return generation of referenced entity slot
+   */
+  public int getGeneration()
+  {
+    return generation;
+  }
+
   /**
    * Return toString of referenced entity.
    *
@@ -176,7 +205,7 @@ public class EntityRef implements InvocationHandler
       else
       {
         // schedule a simulation event
-        if(Main.SINGLE_CONTROLLER)
+        if(Main.SINGLE_CONTROLLER && !(this instanceof EntityRefDist))
         {
           Controller.activeController.addEvent(method, this, args);
         }
@@ -206,6 +235,10 @@ public class EntityRef implements InvocationHandler
   private Object blockingInvoke(Object proxy, Method method, Object[] args) throws Throwable
   {
     Controller c = Controller.getActiveController();
+    if(c.isThreaded())
+    {
+      return c.blockingCallThread(method, this, args);
+    }
     if(c.isModeRestoreInst())
     {
       // restore complete
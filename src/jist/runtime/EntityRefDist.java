@@ -33,18 +33,32 @@ public class EntityRefDist extends EntityRef
    */
   public EntityRefDist(ControllerRemote controller, int index)
   {
-    super(index);
+    this(controller, index, 0);
+  }
+
+  /**
+   * Initialise a new entity reference with given
+   * Controller and Entity IDs, and slot generation.
+   *
+   * @param controller controller ID
+   * @param index entity ID
+   * @param generation entity slot generation
+   */
+  public EntityRefDist(ControllerRemote controller, int index, int generation)
+  {
+    super(index, generation);
     this.controller = controller;
   }
 
   /**
-   * Return controller of referenced entity.
+   * Return controller of referenced entity. The null reference belongs to the
+   * local controller, when there is only one.
    *
    * @return controller of referenced entity
    */
   public ControllerRemote getController()
   {
-    return controller;
+    return controller==null && Main.SINGLE_CONTROLLER ? Controller.activeController : controller;
   }
 
 } // class: EntityRefDist
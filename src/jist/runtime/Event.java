@@ -55,6 +55,24 @@ public class Event
    */
   public Continuation cont;
 
+  /**
+   * Scheduling sequence number, assigned by the scheduler in order to
+   * process events with equal times in insertion (FIFO) order.
+   */
+  public long seq;
+
+  /**
+   * Event identifier, assigned when scheduled with an event trace recorder
+   * enabled (0 otherwise).
+   */
+  public long id;
+
+  /**
+   * Identifier of the event during which this event was scheduled, when
+   * traced.
+   */
+  public long cause;
+
 
   //////////////////////////////////////////////////
   // initialize
@@ -398,6 +416,11 @@ public class Event
      */
     public Event caller;
 
+    /**
+     * Worker thread blocked on this callback, in continuation thread mode.
+     */
+    ContinuationThreads.Worker thread;
+
     //////////////////////////////////////////////////
     // public methods
     //
@@ -0,0 +1,521 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Lightweight binary event trace recorder. Every processed event is appended
+ * as a fixed-size record (simulation time, event identifier, identifier of
+ * the causing event, target entity index and method identifier) to a ring
+ * of records in a memory-mapped file. The operating system persists the
+ * mapped pages even if the simulation process dies, so the most recent
+ * events are always available for post-mortem debugging, however long the
+ * simulation ran. Method identifiers are listed in a text file alongside
+ * the trace (trace file name plus <code>.methods</code>).
+ *
+ * <p>Unlike <code>Main.EVENT_TRACE</code> and <code>EVENT_LOCATION</code>,
+ * recording is enabled at runtime (jist --trace file), and can be toggled
+ * during the simulation.
+ *
+ * <p>The <code>main</code> method is an offline reader that reconstructs
+ * causal chains and per-entity timelines from a trace file.
+ *
+ * @since JIST1.0
+ */
+
+public class EventTrace
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /** trace file magic number ("JTRC"). */
+  public static final int MAGIC = 0x4a545243;
+
+  /** trace file format version. */
+  public static final int VERSION = 1;
+
+  /** trace file header size (bytes). */
+  public static final int HEADER_SIZE = 64;
+
+  /** trace record size (bytes): time, id, cause, entity, method. */
+  public static final int RECORD_SIZE = 32;
+
+  /** header offset: number of records written. */
+  private static final int HEADER_COUNT = 16;
+
+  /** header offset: wall-clock start time. */
+  private static final int HEADER_START = 24;
+
+  /** suffix of method identifier file. */
+  public static final String METHODS_SUFFIX = ".methods";
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** trace file. */
+  private final File file;
+
+  /** trace file channel. */
+  private RandomAccessFile raf;
+
+  /** memory-mapped trace file. */
+  private MappedByteBuffer map;
+
+  /** method identifier file. */
+  private PrintWriter methodsOut;
+
+  /** number of records in ring. */
+  private final long capacity;
+
+  /** number of records written. */
+  private long count;
+
+  /** last event identifier assigned. */
+  private long lastId;
+
+  /** method identifiers: Method to Integer. */
+  private final HashMap methods;
+
+  /** whether recording is enabled. */
+  private boolean enabled;
+
+  /**
+   * Create new event trace recorder, overwriting any existing trace file.
+   *
+   * @param file trace file
+   * @param capacity number of records in ring
+   * @throws IOException unable to create trace file
+   */
+  public EventTrace(File file, long capacity) throws IOException
+  {
+    if(capacity<=0) throw new IllegalArgumentException("invalid trace capacity: "+capacity);
+    this.file = file;
+    this.capacity = capacity;
+    raf = new RandomAccessFile(file, "rw");
+    raf.setLength(0);
+    long size = HEADER_SIZE+capacity*RECORD_SIZE;
+    if(size>Integer.MAX_VALUE) throw new IllegalArgumentException("trace file too large: "+size);
+    raf.setLength(size);
+    map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    map.putInt(0, MAGIC);
+    map.putInt(4, VERSION);
+    map.putInt(8, RECORD_SIZE);
+    map.putLong(HEADER_COUNT, 0);
+    map.putLong(HEADER_START, System.currentTimeMillis());
+    methodsOut = new PrintWriter(new FileWriter(file.getPath()+METHODS_SUFFIX));
+    methods = new HashMap();
+    count = 0;
+    lastId = 0;
+    enabled = true;
+  }
+
+  //////////////////////////////////////////////////
+  // recording
+  //
+
+  /**
+   * Set whether events are recorded.
+   *
+   * @param enabled whether events are recorded
+   */
+  public void setEnabled(boolean enabled)
+  {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Return whether events are recorded.
+   *
+   * @return whether events are recorded
+   */
+  public boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Return trace file.
+   *
+   * @return trace file
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Return number of events recorded.
+   *
+   * @return number of events recorded
+   */
+  public long getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Assign identifier to newly scheduled event.
+   *
+   * @param ev scheduled event
+   * @param cause event being processed (that scheduled the new event)
+   */
+  public void schedule(Event ev, Event cause)
+  {
+    if(enabled)
+    {
+      ev.id = ++lastId;
+      ev.cause = cause==null ? 0 : cause.id;
+    }
+    else
+    {
+      ev.id = 0;
+      ev.cause = 0;
+    }
+  }
+
+  /**
+   * Record event about to be processed.
+   *
+   * @param ev event about to be processed
+   */
+  public void process(Event ev)
+  {
+    if(!enabled || map==null) return;
+    int pos = HEADER_SIZE+(int)(count % capacity)*RECORD_SIZE;
+    map.putLong(pos, ev.time);
+    map.putLong(pos+8, ev.id);
+    map.putLong(pos+16, ev.cause);
+    map.putInt(pos+24, ev.ref==null ? -1 : ev.ref.getIndex());
+    map.putInt(pos+28, getMethodId(ev.method));
+    map.putLong(HEADER_COUNT, ++count);
+  }
+
+  /**
+   * Return identifier of event method, recording new identifiers in the
+   * method identifier file.
+   *
+   * @param m event method
+   * @return method identifier
+   */
+  private int getMethodId(Method m)
+  {
+    if(m==null) return -1;
+    Integer id = (Integer)methods.get(m);
+    if(id==null)
+    {
+      id = new Integer(methods.size());
+      methods.put(m, id);
+      methodsOut.println(id+"\t"+m.getDeclaringClass().getName()+"."+m.getName());
+      methodsOut.flush();
+    }
+    return id.intValue();
+  }
+
+  /**
+   * Write recorded events to disk.
+   */
+  public void force()
+  {
+    if(map!=null) map.force();
+  }
+
+  /**
+   * Write recorded events to disk, and close trace file.
+   */
+  public void close()
+  {
+    if(map==null) return;
+    map.force();
+    map = null;
+    methodsOut.close();
+    try
+    {
+      raf.close();
+    }
+    catch(IOException e)
+    {
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // reading
+  //
+
+  /**
+   * Recorded events of a trace file, in processing order.
+   */
+  public static class Records
+  {
+    /** number of events recorded in total. */
+    public final long total;
+    /** wall-clock start time of trace. */
+    public final long start;
+    /** event simulation times. */
+    public final long[] time;
+    /** event identifiers. */
+    public final long[] id;
+    /** causing event identifiers. */
+    public final long[] cause;
+    /** event entity indices. */
+    public final int[] entity;
+    /** event method identifiers. */
+    public final int[] method;
+    /** method names, by identifier. */
+    public final Vector methods;
+    /** record index by event identifier: Long to Integer. */
+    private HashMap index;
+
+    /**
+     * Read trace file.
+     *
+     * @param file trace file
+     * @throws IOException unable to read trace file
+     */
+    public Records(File file) throws IOException
+    {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try
+      {
+        ByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        if(b.getInt(0)!=MAGIC || b.getInt(4)!=VERSION || b.getInt(8)!=RECORD_SIZE)
+        {
+          throw new IOException("not an event trace file: "+file);
+        }
+        long capacity = (raf.length()-HEADER_SIZE)/RECORD_SIZE;
+        total = b.getLong(HEADER_COUNT);
+        start = b.getLong(HEADER_START);
+        int n = (int)Math.min(total, capacity);
+        time = new long[n];
+        id = new long[n];
+        cause = new long[n];
+        entity = new int[n];
+        method = new int[n];
+        long first = total-n;
+        for(int i=0; i<n; i++)
+        {
+          int pos = HEADER_SIZE+(int)((first+i) % capacity)*RECORD_SIZE;
+          time[i] = b.getLong(pos);
+          id[i] = b.getLong(pos+8);
+          cause[i] = b.getLong(pos+16);
+          entity[i] = b.getInt(pos+24);
+          method[i] = b.getInt(pos+28);
+        }
+      }
+      finally
+      {
+        raf.close();
+      }
+      methods = new Vector();
+      File mfile = new File(file.getPath()+METHODS_SUFFIX);
+      if(mfile.exists())
+      {
+        BufferedReader in = new BufferedReader(new FileReader(mfile));
+        try
+        {
+          String line;
+          while((line=in.readLine())!=null)
+          {
+            int tab = line.indexOf('\t');
+            if(tab<0) continue;
+            int mid = Integer.parseInt(line.substring(0, tab));
+            if(methods.size()<=mid) methods.setSize(mid+1);
+            methods.setElementAt(line.substring(tab+1), mid);
+          }
+        }
+        finally
+        {
+          in.close();
+        }
+      }
+    }
+
+    /**
+     * Return number of records available.
+     *
+     * @return number of records available
+     */
+    public int size()
+    {
+      return time.length;
+    }
+
+    /**
+     * Return record index of given event.
+     *
+     * @param eid event identifier
+     * @return record index, or -1 if not recorded (or overwritten)
+     */
+    public int find(long eid)
+    {
+      if(eid==0) return -1;
+      if(index==null)
+      {
+        index = new HashMap();
+        for(int i=0; i<id.length; i++)
+        {
+          if(id[i]!=0) index.put(new Long(id[i]), new Integer(i));
+        }
+      }
+      Integer i = (Integer)index.get(new Long(eid));
+      return i==null ? -1 : i.intValue();
+    }
+
+    /**
+     * Return causal chain of record: the record, the record of its causing
+     * event, and so on, as far back as the trace reaches.
+     *
+     * @param i record index
+     * @return record indices of causal chain, most recent first
+     */
+    public int[] getChain(int i)
+    {
+      Vector chain = new Vector();
+      while(i>=0)
+      {
+        chain.add(new Integer(i));
+        i = find(cause[i]);
+      }
+      int[] result = new int[chain.size()];
+      for(int j=0; j<result.length; j++)
+      {
+        result[j] = ((Integer)chain.elementAt(j)).intValue();
+      }
+      return result;
+    }
+
+    /**
+     * Return method name.
+     *
+     * @param mid method identifier
+     * @return method name
+     */
+    public String getMethod(int mid)
+    {
+      if(mid>=0 && mid<methods.size() && methods.elementAt(mid)!=null)
+      {
+        return (String)methods.elementAt(mid);
+      }
+      return "method#"+mid;
+    }
+
+    /**
+     * Return string representation of record.
+     *
+     * @param i record index
+     * @return string representation of record
+     */
+    public String toString(int i)
+    {
+      return "t="+time[i]+" ev="+id[i]+" cause="+cause[i]+" entity="+entity[i]+" "+getMethod(method[i]);
+    }
+
+  } // class: Records
+
+  /**
+   * Display syntax of offline trace reader.
+   */
+  private static void showUsage()
+  {
+    System.out.println("Usage: EventTrace <file> [-n last] [-c event-id] [-e entity]");
+    System.out.println();
+    System.out.println("  -n  number of most recent events to show [20]");
+    System.out.println("  -c  show causal chain of given event [last event]");
+    System.out.println("  -e  show timeline of given entity");
+  }
+
+  /**
+   * Offline trace reader: show the most recent events, the causal chain of
+   * an event (by default, the last one processed, i.e. the one that crashed)
+   * and the timeline of an entity.
+   *
+   * @param args command-line parameters
+   */
+  public static void main(String[] args)
+  {
+    if(args.length<1 || args.length%2!=1)
+    {
+      showUsage();
+      return;
+    }
+    int last = 20, entity = -1;
+    long chain = -1;
+    for(int i=1; i<args.length; i+=2)
+    {
+      if("-n".equals(args[i])) last = Integer.parseInt(args[i+1]);
+      else if("-c".equals(args[i])) chain = Long.parseLong(args[i+1]);
+      else if("-e".equals(args[i])) entity = Integer.parseInt(args[i+1]);
+      else
+      {
+        showUsage();
+        return;
+      }
+    }
+    try
+    {
+      Records r = new Records(new File(args[0]));
+      int n = r.size();
+      System.out.println("trace: "+args[0]+", started "+new Date(r.start));
+      System.out.println("events: "+r.total+" recorded, last "+n+" available");
+      if(n==0) return;
+      System.out.println("sim-time: "+r.time[0]+" to "+r.time[n-1]);
+      System.out.println();
+      System.out.println("LAST EVENTS:");
+      for(int i=Math.max(0, n-last); i<n; i++)
+      {
+        System.out.println("  "+r.toString(i));
+      }
+      System.out.println();
+      int start = chain==-1 ? n-1 : r.find(chain);
+      if(start<0)
+      {
+        System.out.println("event "+chain+" not in trace");
+      }
+      else
+      {
+        System.out.println("CAUSAL CHAIN OF EVENT "+r.id[start]+":");
+        int[] c = r.getChain(start);
+        for(int i=0; i<c.length; i++)
+        {
+          System.out.println("  "+r.toString(c[i]));
+        }
+        if(r.cause[c[c.length-1]]!=0)
+        {
+          System.out.println("  ... (event "+r.cause[c[c.length-1]]+" no longer in trace)");
+        }
+      }
+      if(entity!=-1)
+      {
+        System.out.println();
+        System.out.println("TIMELINE OF ENTITY "+entity+":");
+        for(int i=0; i<n; i++)
+        {
+          if(r.entity[i]==entity)
+          {
+            System.out.println("  "+r.toString(i));
+          }
+        }
+      }
+    }
+    catch(IOException e)
+    {
+      System.out.println("unable to read trace: "+e.getMessage());
+    }
+  }
+
+} // class: EventTrace
+
@@ -0,0 +1,1566 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.lang.reflect.Proxy;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.rmi.*;
+import java.util.*;
+
+/**
+ * Binary event transport between distributed Controllers. Events destined
+ * for entities at a remote Controller are encoded compactly (time, entity
+ * index and generation, method identifier and arguments), batched into length-prefixed
+ * frames and sent over NIO socket channels, rather than as individual
+ * serialized RMI calls. RMI remains in use for control-plane calls only.
+ *
+ * <p>Each connection is represented by a <code>Link</code>, which implements
+ * <code>ControllerRemote</code> and can thus be used as the controller of an
+ * <code>EntityRefDist</code>. Links are symmetric: entity references received
+ * over a link refer back across the same link, and references to entities
+ * at a third Controller carry its identity and listen address, so that the
+ * receiver can use (or open) its own link to it. Event delivery is flow
+ * controlled: a sender may have at most <code>WINDOW</code> events
+ * outstanding that have not yet been inserted into the receiving Controller's
+ * event queue. Frames are written by the network thread; senders only queue
+ * them.
+ *
+ * <p>A transport may publish a root entity (or proxy entity), which the
+ * remote end of each link obtains with <code>Link.getRoot</code>, to start
+ * the exchange of events. Controllers are linked with the <code>jist
+ * --accept</code> and <code>--link</code> options. Links carry no time
+ * synchronization: a simulation must itself ensure that events never arrive
+ * in the past of the receiving Controller.
+ *
+ * <p>Method arguments are encoded by <code>Serializer</code>s. Common types
+ * (primitive wrappers, strings, byte arrays and entity references) are
+ * built-in; other types may be registered, and otherwise fall back to Java
+ * serialization. Serializers encode nested values, such as message
+ * payloads, with <code>writeArg</code> and <code>readArg</code>. Both ends
+ * must register the same serializers in the same order. Blocking
+ * (continuation) events can not be sent over a link.
+ *
+ * @since JIST1.0
+ */
+
+public class EventTransport implements Runnable
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /**
+   * Maximum number of undelivered events per link.
+   */
+  public static final int WINDOW = 4096;
+
+  /**
+   * Frame size at which a link batch is sent immediately.
+   */
+  public static final int BATCH_SIZE = 32 * 1024;
+
+  /**
+   * Maximum delay before a partial batch is sent, in milliseconds.
+   */
+  public static final long FLUSH_INTERVAL = 5;
+
+  /** record kind: method definition. */
+  private static final byte RECORD_METHOD = 1;
+  /** record kind: event. */
+  private static final byte RECORD_EVENT = 2;
+  /** record kind: flow control credit. */
+  private static final byte RECORD_CREDIT = 3;
+  /** record kind: sender identity. */
+  private static final byte RECORD_HELLO = 4;
+  /** record kind: sender root entity. */
+  private static final byte RECORD_ROOT = 5;
+
+  /** argument tag: null. */
+  private static final byte TAG_NULL = 0;
+  /** argument tag: Java serialization. */
+  private static final byte TAG_OBJECT = 1;
+  /** argument tag: entity at sender. */
+  private static final byte TAG_REF_SENDER = 2;
+  /** argument tag: entity at receiver. */
+  private static final byte TAG_REF_RECEIVER = 3;
+  /** argument tag: entity at third controller. */
+  private static final byte TAG_REF_OTHER = 4;
+  /** argument tag: proxy entity. */
+  private static final byte TAG_PROXY = 5;
+  /** first tag of registered serializers. */
+  private static final byte TAG_SERIALIZER = 16;
+
+  //////////////////////////////////////////////////
+  // serializers
+  //
+
+  /**
+   * Encodes event arguments of a given type.
+   */
+  public static interface Serializer
+  {
+    /**
+     * Return type of objects encoded by this serializer. Only exact type
+     * matches are encoded.
+     *
+     * @return type of objects encoded
+     */
+    Class getType();
+
+    /**
+     * Encode object.
+     *
+     * @param o object to encode
+     * @param out output stream
+     * @throws IOException on encoding failure
+     */
+    void write(Object o, DataOutputStream out) throws IOException;
+
+    /**
+     * Decode object.
+     *
+     * @param in input stream
+     * @return decoded object
+     * @throws IOException on decoding failure
+     */
+    Object read(DataInputStream in) throws IOException;
+
+  } // interface: Serializer
+
+  /**
+   * Registered serializers, by tag.
+   */
+  private static final Vector serializers = new Vector();
+
+  /**
+   * Registered serializers: (Class to Byte tag).
+   */
+  private static final HashMap serializerTags = new HashMap();
+
+  /**
+   * Register argument serializer. Must be registered in the same order at
+   * all Controllers. A serializer for a type of the same name as a
+   * registered one (e.g. loaded again by the class loader of another
+   * simulation) replaces it, and keeps its tag.
+   *
+   * @param s argument serializer
+   */
+  public static synchronized void addSerializer(Serializer s)
+  {
+    Byte tag = null;
+    for(int i=0; i<serializers.size() && tag==null; i++)
+    {
+      Class type = ((Serializer)serializers.elementAt(i)).getType();
+      if(type.getName().equals(s.getType().getName()))
+      {
+        serializerTags.remove(type);
+        serializers.setElementAt(s, i);
+        tag = new Byte((byte)(TAG_SERIALIZER+i));
+      }
+    }
+    if(tag==null)
+    {
+      if(TAG_SERIALIZER+serializers.size()>Byte.MAX_VALUE)
+      {
+        throw new JistException("too many event transport serializers", null);
+      }
+      tag = new Byte((byte)(TAG_SERIALIZER+serializers.size()));
+      serializers.add(s);
+    }
+    serializerTags.put(s.getType(), tag);
+  }
+
+  /**
+   * Encode a nested value (e.g. a message payload), in the same way as an
+   * event argument. Only for use by serializers, with the stream that they
+   * are given.
+   *
+   * @param o nested value
+   * @param out serializer output stream
+   * @throws IOException on encoding failure
+   */
+  public static void writeArg(Object o, DataOutputStream out) throws IOException
+  {
+    ((LinkOutputStream)out).link.encodeArg(o);
+  }
+
+  /**
+   * Decode a nested value written by <code>writeArg</code>. Only for use
+   * by serializers, with the stream that they are given.
+   *
+   * @param in serializer input stream
+   * @return nested value
+   * @throws IOException on decoding failure
+   */
+  public static Object readArg(DataInputStream in) throws IOException
+  {
+    return ((LinkInputStream)in).link.decodeArg(in);
+  }
+
+  /**
+   * Frame encoder of a link.
+   */
+  private static final class LinkOutputStream extends DataOutputStream
+  {
+    /** link of frames. */
+    private final Link link;
+
+    /**
+     * Create frame encoder.
+     *
+     * @param link link of frames
+     * @param out frame buffer
+     */
+    public LinkOutputStream(Link link, OutputStream out)
+    {
+      super(out);
+      this.link = link;
+    }
+  } // class: LinkOutputStream
+
+  /**
+   * Frame decoder of a link.
+   */
+  private static final class LinkInputStream extends DataInputStream
+  {
+    /** link of frames. */
+    private final Link link;
+
+    /**
+     * Create frame decoder.
+     *
+     * @param link link of frames
+     * @param in frame contents
+     */
+    public LinkInputStream(Link link, InputStream in)
+    {
+      super(in);
+      this.link = link;
+    }
+  } // class: LinkInputStream
+
+  static
+  {
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Integer.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeInt(((Integer)o).intValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Integer(in.readInt());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Long.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeLong(((Long)o).longValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Long(in.readLong());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Double.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeDouble(((Double)o).doubleValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Double(in.readDouble());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Float.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeFloat(((Float)o).floatValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Float(in.readFloat());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Boolean.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeBoolean(((Boolean)o).booleanValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return in.readBoolean() ? Boolean.TRUE : Boolean.FALSE;
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Byte.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeByte(((Byte)o).byteValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Byte(in.readByte());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Short.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeShort(((Short)o).shortValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Short(in.readShort());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return Character.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeChar(((Character)o).charValue());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new Character(in.readChar());
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return String.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        byte[] b = ((String)o).getBytes("UTF-8");
+        out.writeInt(b.length);
+        out.write(b);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, "UTF-8");
+      }
+    });
+    addSerializer(new Serializer()
+    {
+      public Class getType()
+      {
+        return byte[].class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        byte[] b = (byte[])o;
+        out.writeInt(b.length);
+        out.write(b);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+      }
+    });
+  }
+
+  //////////////////////////////////////////////////
+  // link
+  //
+
+  /**
+   * A connection to a remote Controller, over which events are exchanged in
+   * both directions.
+   */
+  public class Link implements ControllerRemote
+  {
+    /** socket channel. */
+    private final SocketChannel channel;
+    /** remote controller control-plane stub, or null. */
+    private final ControllerRemote control;
+    /** outgoing frame buffer. */
+    private final ByteArrayOutputStream outBuffer;
+    /** outgoing frame encoder. */
+    private final DataOutputStream out;
+    /** outgoing method identifiers: (Method to Short). */
+    private final HashMap outMethods;
+    /** incoming methods, by identifier. */
+    private final Vector inMethods;
+    /** outgoing frames, not yet written. */
+    private final LinkedList frames;
+    /** incoming frame buffer. */
+    private ByteBuffer inBuffer;
+    /** remote transport identity, or 0 if not yet known. */
+    private long peerId;
+    /** remote transport listen port, or -1. */
+    private int peerPort;
+    /** remote root entity. */
+    private Object root;
+    /** whether remote root entity received. */
+    private boolean rootKnown;
+    /** remaining outgoing event credits. */
+    private int credits;
+    /** events delivered, but not yet credited back to sender. */
+    private int delivered;
+    /** number of events sent. */
+    private long eventsSent;
+    /** number of events received. */
+    private long eventsReceived;
+    /** number of frames sent. */
+    private long framesSent;
+    /** number of bytes sent. */
+    private long bytesSent;
+
+    /**
+     * Create new link over connected socket channel.
+     *
+     * @param channel connected socket channel
+     * @param control remote controller control-plane stub, or null
+     */
+    private Link(SocketChannel channel, ControllerRemote control)
+    {
+      this.channel = channel;
+      this.control = control;
+      outBuffer = new ByteArrayOutputStream(BATCH_SIZE*2);
+      out = new LinkOutputStream(this, outBuffer);
+      outMethods = new HashMap();
+      inMethods = new Vector();
+      frames = new LinkedList();
+      inBuffer = ByteBuffer.allocate(BATCH_SIZE*2);
+      credits = WINDOW;
+      delivered = 0;
+      peerId = 0;
+      peerPort = -1;
+    }
+
+    //////////////////////////////////////////////////
+    // sending
+    //
+
+    /**
+     * Wait for event credit from receiver. Incoming events are delivered
+     * meanwhile, to avoid distributed deadlock.
+     */
+    private void acquireCredit()
+    {
+      while(credits==0)
+      {
+        flush();
+        deliver();
+        try
+        {
+          wait(FLUSH_INTERVAL);
+        }
+        catch(InterruptedException e)
+        {
+        }
+      }
+      credits--;
+    }
+
+    /**
+     * Encode a method definition record, if method not yet known at receiver.
+     *
+     * @param meth event method
+     * @return method identifier
+     * @throws IOException on encoding failure
+     */
+    private short encodeMethod(Method meth) throws IOException
+    {
+      Short id = (Short)outMethods.get(meth);
+      if(id==null)
+      {
+        if(outMethods.size()>Short.MAX_VALUE) throw new JistException("too many event methods", null);
+        id = new Short((short)outMethods.size());
+        outMethods.put(meth, id);
+        out.writeByte(RECORD_METHOD);
+        out.writeShort(id.shortValue());
+        out.writeUTF(meth.getDeclaringClass().getName());
+        out.writeUTF(meth.getName());
+        Class[] params = meth.getParameterTypes();
+        out.writeByte(params.length);
+        for(int i=0; i<params.length; i++)
+        {
+          out.writeUTF(params[i].getName());
+        }
+      }
+      return id.shortValue();
+    }
+
+    /**
+     * Encode an event argument.
+     *
+     * @param o event argument
+     * @throws IOException on encoding failure
+     */
+    private void encodeArg(Object o) throws IOException
+    {
+      if(o==null)
+      {
+        out.writeByte(TAG_NULL);
+        return;
+      }
+      if(o instanceof EntityRef)
+      {
+        encodeRef((EntityRef)o);
+        return;
+      }
+      if(Proxy.isProxyClass(o.getClass()) && Proxy.getInvocationHandler(o) instanceof EntityRef)
+      {
+        out.writeByte(TAG_PROXY);
+        Class[] ifaces = o.getClass().getInterfaces();
+        out.writeByte(ifaces.length);
+        for(int i=0; i<ifaces.length; i++)
+        {
+          out.writeUTF(ifaces[i].getName());
+        }
+        encodeRef((EntityRef)Proxy.getInvocationHandler(o));
+        return;
+      }
+      Byte tag = (Byte)serializerTags.get(o.getClass());
+      if(tag!=null)
+      {
+        out.writeByte(tag.byteValue());
+        ((Serializer)serializers.elementAt(tag.byteValue()-TAG_SERIALIZER)).write(o, out);
+        return;
+      }
+      out.writeByte(TAG_OBJECT);
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream oout = new ObjectOutputStream(bout);
+      oout.writeObject(o);
+      oout.close();
+      out.writeInt(bout.size());
+      bout.writeTo(out);
+    }
+
+    /**
+     * Encode an entity reference, by the identity of the controller that
+     * owns the entity: this (sending) controller, the receiver, or a third
+     * controller reached over another link.
+     *
+     * @param ref entity reference
+     * @throws IOException on encoding failure
+     */
+    private void encodeRef(EntityRef ref) throws IOException
+    {
+      ControllerRemote owner = ref instanceof EntityRefDist
+        ? ((EntityRefDist)ref).getController() : controller;
+      if(owner==controller || owner==null)
+      {
+        out.writeByte(TAG_REF_SENDER);
+      }
+      else if(owner==this)
+      {
+        out.writeByte(TAG_REF_RECEIVER);
+      }
+      else if(owner instanceof Link && ((Link)owner).peerId!=0)
+      {
+        Link other = (Link)owner;
+        out.writeByte(TAG_REF_OTHER);
+        out.writeLong(other.peerId);
+        out.writeUTF(other.channel.socket().getInetAddress().getHostAddress());
+        out.writeInt(other.peerPort);
+      }
+      else
+      {
+        throw new JistException("entity reference to controller not reachable by event transport: "+owner, null);
+      }
+      out.writeInt(ref.getIndex());
+      out.writeInt(ref.getGeneration());
+    }
+
+    /**
+     * Encode event into outgoing batch.
+     *
+     * @param meth event method
+     * @param ref target entity (at remote controller)
+     * @param params event arguments
+     * @param time event time
+     */
+    private synchronized void send(Method meth, EntityRef ref, Object[] params, long time)
+    {
+      acquireCredit();
+      try
+      {
+        short id = encodeMethod(meth);
+        out.writeByte(RECORD_EVENT);
+        out.writeLong(time);
+        out.writeInt(ref.getIndex());
+        out.writeInt(ref.getGeneration());
+        out.writeShort(id);
+        int n = params==null ? 0 : params.length;
+        out.writeByte(n);
+        for(int i=0; i<n; i++)
+        {
+          encodeArg(params[i]);
+        }
+      }
+      catch(IOException e)
+      {
+        throw new JistException("event transport encoding failure", e);
+      }
+      eventsSent++;
+      if(outBuffer.size()>=BATCH_SIZE) flush();
+    }
+
+    /**
+     * Encode credit record, granting sender additional events.
+     *
+     * @param n number of credits granted
+     */
+    private synchronized void sendCredit(int n)
+    {
+      try
+      {
+        out.writeByte(RECORD_CREDIT);
+        out.writeInt(n);
+      }
+      catch(IOException e)
+      {
+        throw new JistException("event transport encoding failure", e);
+      }
+      flush();
+    }
+
+    /**
+     * Encode identity record: transport identity and listen port.
+     */
+    private synchronized void sendHello()
+    {
+      try
+      {
+        out.writeByte(RECORD_HELLO);
+        out.writeLong(id);
+        out.writeInt(getPort());
+      }
+      catch(IOException e)
+      {
+        throw new JistException("event transport encoding failure", e);
+      }
+      flush();
+    }
+
+    /**
+     * Encode root entity record.
+     *
+     * @param root root entity (reference or proxy)
+     */
+    private synchronized void sendRoot(Object root)
+    {
+      try
+      {
+        out.writeByte(RECORD_ROOT);
+        encodeArg(root);
+      }
+      catch(IOException e)
+      {
+        throw new JistException("event transport encoding failure", e);
+      }
+      flush();
+    }
+
+    /**
+     * Send outgoing batch, if any, as a single length-prefixed frame. The
+     * frame is queued and written by the network thread.
+     */
+    public void flush()
+    {
+      synchronized(this)
+      {
+        if(outBuffer.size()==0) return;
+        ByteBuffer frame = ByteBuffer.allocate(4+outBuffer.size());
+        frame.putInt(outBuffer.size());
+        frame.put(outBuffer.toByteArray());
+        frame.flip();
+        outBuffer.reset();
+        frames.add(frame);
+        framesSent++;
+        bytesSent += frame.limit();
+        // write already requested
+        if(frames.size()>1) return;
+      }
+      requestWrite(this);
+    }
+
+    /**
+     * Write queued frames, as far as the channel accepts them without
+     * blocking. Called on the network thread.
+     *
+     * @return whether all queued frames written
+     * @throws IOException on write failure
+     */
+    private synchronized boolean write() throws IOException
+    {
+      while(!frames.isEmpty())
+      {
+        ByteBuffer frame = (ByteBuffer)frames.getFirst();
+        channel.write(frame);
+        if(frame.hasRemaining()) return false;
+        frames.removeFirst();
+      }
+      notifyAll();
+      return true;
+    }
+
+    //////////////////////////////////////////////////
+    // receiving
+    //
+
+    /**
+     * Read available data from channel, and decode complete frames.
+     *
+     * @return false if channel closed
+     * @throws IOException on read or decode failure
+     */
+    private boolean read() throws IOException
+    {
+      if(channel.read(inBuffer)==-1) return false;
+      inBuffer.flip();
+      while(inBuffer.remaining()>=4)
+      {
+        int len = inBuffer.getInt(inBuffer.position());
+        if(inBuffer.remaining()<4+len)
+        {
+          if(inBuffer.capacity()<4+len)
+          {
+            ByteBuffer b = ByteBuffer.allocate(4+len);
+            b.put(inBuffer);
+            inBuffer = b;
+            return true;
+          }
+          break;
+        }
+        inBuffer.getInt();
+        byte[] frame = new byte[len];
+        inBuffer.get(frame);
+        decodeFrame(new LinkInputStream(this, new ByteArrayInputStream(frame)));
+      }
+      inBuffer.compact();
+      return true;
+    }
+
+    /**
+     * Decode all records of a frame.
+     *
+     * @param in frame contents
+     * @throws IOException on decode failure
+     */
+    private void decodeFrame(DataInputStream in) throws IOException
+    {
+      while(in.available()>0)
+      {
+        byte kind = in.readByte();
+        switch(kind)
+        {
+          case RECORD_METHOD:
+            decodeMethod(in);
+            break;
+          case RECORD_EVENT:
+            Event ev = new Event();
+            ev.time = in.readLong();
+            ev.ref = getLocalRef(in.readInt(), in.readInt());
+            ev.method = (Method)inMethods.elementAt(in.readShort());
+            ev.args = new Object[in.readByte()];
+            for(int i=0; i<ev.args.length; i++)
+            {
+              ev.args[i] = decodeArg(in);
+            }
+            eventsReceived++;
+            synchronized(inbox)
+            {
+              inbox.add(this);
+              inbox.add(ev);
+              pending = true;
+              inbox.notifyAll();
+            }
+            break;
+          case RECORD_CREDIT:
+            int n = in.readInt();
+            synchronized(this)
+            {
+              credits += n;
+              notifyAll();
+            }
+            break;
+          case RECORD_HELLO:
+            peerId = in.readLong();
+            peerPort = in.readInt();
+            break;
+          case RECORD_ROOT:
+            Object r = decodeArg(in);
+            synchronized(this)
+            {
+              root = r;
+              rootKnown = true;
+              notifyAll();
+            }
+            break;
+          default:
+            throw new IOException("invalid event transport record: "+kind);
+        }
+      }
+    }
+
+    /**
+     * Decode a method definition record.
+     *
+     * @param in frame contents
+     * @throws IOException on decode failure
+     */
+    private void decodeMethod(DataInputStream in) throws IOException
+    {
+      short id = in.readShort();
+      String cl = in.readUTF(), name = in.readUTF();
+      Class[] params = new Class[in.readByte()];
+      try
+      {
+        for(int i=0; i<params.length; i++)
+        {
+          params[i] = resolveClass(in.readUTF());
+        }
+        Method m = resolveClass(cl).getDeclaredMethod(name, params);
+        m.setAccessible(true);
+        inMethods.setSize(Math.max(inMethods.size(), id+1));
+        inMethods.setElementAt(m, id);
+      }
+      catch(ClassNotFoundException e)
+      {
+        throw new IOException("event method class not found: "+e.getMessage());
+      }
+      catch(NoSuchMethodException e)
+      {
+        throw new IOException("event method not found: "+cl+"."+name);
+      }
+    }
+
+    /**
+     * Decode an event argument.
+     *
+     * @param in frame contents
+     * @return decoded argument
+     * @throws IOException on decode failure
+     */
+    private Object decodeArg(DataInputStream in) throws IOException
+    {
+      byte tag = in.readByte();
+      switch(tag)
+      {
+        case TAG_NULL:
+          return null;
+        case TAG_REF_SENDER:
+          return new EntityRefDist(this, in.readInt(), in.readInt());
+        case TAG_REF_RECEIVER:
+          return getLocalRef(in.readInt(), in.readInt());
+        case TAG_REF_OTHER:
+          long owner = in.readLong();
+          String host = in.readUTF();
+          int port = in.readInt();
+          if(owner==id) return getLocalRef(in.readInt(), in.readInt());
+          return new EntityRefDist(getLink(owner, host, port), in.readInt(), in.readInt());
+        case TAG_PROXY:
+          Class[] ifaces = new Class[in.readByte()];
+          try
+          {
+            for(int i=0; i<ifaces.length; i++)
+            {
+              ifaces[i] = resolveClass(in.readUTF());
+            }
+          }
+          catch(ClassNotFoundException e)
+          {
+            throw new IOException("proxy interface not found: "+e.getMessage());
+          }
+          EntityRef ref = (EntityRef)decodeArg(in);
+          return Proxy.newProxyInstance(ifaces[0].getClassLoader(), ifaces, ref);
+        case TAG_OBJECT:
+          byte[] b = new byte[in.readInt()];
+          in.readFully(b);
+          ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(b))
+          {
+            protected Class resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+            {
+              return EventTransport.this.resolveClass(desc.getName());
+            }
+          };
+          try
+          {
+            return oin.readObject();
+          }
+          catch(ClassNotFoundException e)
+          {
+            throw new IOException("event argument class not found: "+e.getMessage());
+          }
+        default:
+          return ((Serializer)serializers.elementAt(tag-TAG_SERIALIZER)).read(in);
+      }
+    }
+
+    /**
+     * Grant credits for delivered events back to sender.
+     *
+     * @param n number of events delivered
+     */
+    private void delivered(int n)
+    {
+      delivered += n;
+      if(delivered>=WINDOW/2)
+      {
+        sendCredit(delivered);
+        delivered = 0;
+      }
+    }
+
+    /**
+     * Return link statistics.
+     *
+     * @return link statistics
+     */
+    public String getStats()
+    {
+      return "events sent="+eventsSent+" received="+eventsReceived
+        +" frames="+framesSent+" bytes="+bytesSent;
+    }
+
+    /**
+     * Return root entity published by remote transport, waiting for it to
+     * arrive if necessary.
+     *
+     * @return remote root entity (reference or proxy), or null if link closed
+     */
+    public synchronized Object getRoot()
+    {
+      while(!rootKnown && channel.isOpen())
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException e)
+        {
+          return null;
+        }
+      }
+      return root;
+    }
+
+    /**
+     * Close link, once queued frames are written.
+     */
+    public void close()
+    {
+      flush();
+      try
+      {
+        synchronized(this)
+        {
+          while(!frames.isEmpty() && channel.isOpen() && thread.isAlive())
+          {
+            wait();
+          }
+        }
+      }
+      catch(InterruptedException e)
+      {
+      }
+      closed();
+    }
+
+    /**
+     * Close channel, and release waiting threads.
+     */
+    private void closed()
+    {
+      try
+      {
+        channel.close();
+      }
+      catch(IOException e)
+      {
+      }
+      synchronized(this)
+      {
+        notifyAll();
+      }
+      synchronized(inbox)
+      {
+        links.remove(this);
+        inbox.notifyAll();
+      }
+    }
+
+    //////////////////////////////////////////////////
+    // ControllerRemote interface
+    //
+
+    /**
+     * Return control-plane stub of remote controller.
+     *
+     * @return control-plane stub of remote controller
+     * @throws RemoteException if link has no control-plane stub
+     */
+    private ControllerRemote getControl() throws RemoteException
+    {
+      if(control==null) throw new RemoteException("event transport link has no control channel");
+      return control;
+    }
+
+    /** {@inheritDoc} */
+    public void start() throws RemoteException
+    {
+      getControl().start();
+    }
+
+    /** {@inheritDoc} */
+    public void endAt(long time) throws RemoteException
+    {
+      getControl().endAt(time);
+    }
+
+    /** {@inheritDoc} */
+    public void setSimUnits(long ticks, String name) throws RemoteException
+    {
+      getControl().setSimUnits(ticks, name);
+    }
+
+    /** {@inheritDoc} */
+    public void addEvent(Event ev)
+    {
+      if(ev.cont!=null)
+      {
+        throw new JistException("blocking events not supported by event transport", null);
+      }
+      send(ev.method, ev.ref, ev.args, ev.time);
+    }
+
+    /** {@inheritDoc} */
+    public void addEvent(Method meth, EntityRef ref, Object[] params)
+    {
+      send(meth, ref, params, controller.getSimulationTime());
+    }
+
+    /** {@inheritDoc} */
+    public void addEvent(Method meth, EntityRef ref, Object[] params, long time)
+    {
+      send(meth, ref, params, time);
+    }
+
+    /** {@inheritDoc} */
+    public Class getEntityClass(int index) throws RemoteException
+    {
+      return getControl().getEntityClass(index);
+    }
+
+    /** {@inheritDoc} */
+    public String toStringEntity(int index) throws RemoteException
+    {
+      return getControl().toStringEntity(index);
+    }
+
+    /** {@inheritDoc} */
+    public void log(String s) throws RemoteException
+    {
+      getControl().log(s);
+    }
+
+  } // class: Link
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /**
+   * Local controller.
+   */
+  private final Controller controller;
+
+  /**
+   * Channel selector.
+   */
+  private final Selector selector;
+
+  /**
+   * Listening server channel, or null.
+   */
+  private ServerSocketChannel server;
+
+  /**
+   * Transport identity.
+   */
+  private final long id;
+
+  /**
+   * Open links.
+   */
+  private final Vector links;
+
+  /**
+   * Whether any link was opened.
+   */
+  private boolean linked;
+
+  /**
+   * Local root entity (reference or proxy), or null.
+   */
+  private Object root;
+
+  /**
+   * Links with frames to write.
+   */
+  private final HashSet writers;
+
+  /**
+   * Received, undelivered events: alternating link and event.
+   */
+  private final LinkedList inbox;
+
+  /**
+   * Whether inbox is non-empty.
+   */
+  private volatile boolean pending;
+
+  /**
+   * Network thread.
+   */
+  private Thread thread;
+
+  /**
+   * Whether transport is open.
+   */
+  private volatile boolean open;
+
+  /**
+   * Create new event transport for given controller.
+   *
+   * @param controller local controller
+   * @throws IOException unable to open selector
+   */
+  public EventTransport(Controller controller) throws IOException
+  {
+    this.controller = controller;
+    id = new Random().nextLong() | 1;
+    selector = Selector.open();
+    links = new Vector();
+    writers = new HashSet();
+    inbox = new LinkedList();
+    pending = false;
+    open = true;
+    thread = new Thread(this, "JistEventTransport");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  //////////////////////////////////////////////////
+  // public methods
+  //
+
+  /**
+   * Accept links from remote controllers on given port.
+   *
+   * @param port listen port
+   * @throws IOException unable to listen on port
+   */
+  public void listen(int port) throws IOException
+  {
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(port));
+    server.configureBlocking(false);
+    synchronized(this)
+    {
+      selector.wakeup();
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+  }
+
+  /**
+   * Return local listen port.
+   *
+   * @return local listen port, or -1 if not listening
+   */
+  public int getPort()
+  {
+    return server==null ? -1 : server.socket().getLocalPort();
+  }
+
+  /**
+   * Create link to remote controller.
+   *
+   * @param host remote host
+   * @param port remote event transport port
+   * @param control remote controller control-plane stub, or null
+   * @return new link
+   * @throws IOException unable to connect
+   */
+  public Link connect(String host, int port, ControllerRemote control) throws IOException
+  {
+    SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+    return addLink(channel, control);
+  }
+
+  /**
+   * Return open links.
+   *
+   * @return open links
+   */
+  public Link[] getLinks()
+  {
+    return (Link[])links.toArray(new Link[links.size()]);
+  }
+
+  /**
+   * Publish root entity to the remote end of all links, present and future.
+   *
+   * @param root root entity (reference or proxy)
+   */
+  public void setRoot(Object root)
+  {
+    this.root = root;
+    Link[] l = getLinks();
+    for(int i=0; i<l.length; i++)
+    {
+      l[i].sendRoot(root);
+    }
+  }
+
+  /**
+   * Wait for received events, and deliver them. Waits while links are open,
+   * or while listening for a first link. Must be called on the controller
+   * thread.
+   *
+   * @return whether events delivered; false if there are no (more) links
+   */
+  public boolean await()
+  {
+    flush();
+    synchronized(inbox)
+    {
+      while(!pending && open && (links.size()>0 || server!=null && !linked))
+      {
+        try
+        {
+          inbox.wait();
+        }
+        catch(InterruptedException e)
+        {
+          return false;
+        }
+      }
+    }
+    if(!pending) return false;
+    deliver();
+    return true;
+  }
+
+  /**
+   * Deliver received events into the local controller event queue. Must be
+   * called on the controller thread.
+   */
+  public void deliver()
+  {
+    if(!pending) return;
+    LinkedList events;
+    synchronized(inbox)
+    {
+      events = new LinkedList(inbox);
+      inbox.clear();
+      pending = false;
+    }
+    HashMap counts = new HashMap();
+    while(!events.isEmpty())
+    {
+      Link link = (Link)events.removeFirst();
+      Event ev = (Event)events.removeFirst();
+      controller.addEvent(ev);
+      int[] count = (int[])counts.get(link);
+      if(count==null)
+      {
+        count = new int[1];
+        counts.put(link, count);
+      }
+      count[0]++;
+    }
+    Iterator it = counts.entrySet().iterator();
+    while(it.hasNext())
+    {
+      Map.Entry e = (Map.Entry)it.next();
+      ((Link)e.getKey()).delivered(((int[])e.getValue())[0]);
+    }
+  }
+
+  /**
+   * Send all partial batches.
+   */
+  public void flush()
+  {
+    Link[] l = getLinks();
+    for(int i=0; i<l.length; i++)
+    {
+      l[i].flush();
+    }
+  }
+
+  /**
+   * Close transport and all its links.
+   */
+  public void close()
+  {
+    Link[] l = getLinks();
+    for(int i=0; i<l.length; i++)
+    {
+      l[i].close();
+    }
+    open = false;
+    selector.wakeup();
+    try
+    {
+      if(server!=null) server.close();
+    }
+    catch(IOException e)
+    {
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // helpers
+  //
+
+  /**
+   * Register new link for given connected channel.
+   *
+   * @param channel connected socket channel
+   * @param control remote controller control-plane stub, or null
+   * @return new link
+   * @throws IOException unable to register channel
+   */
+  private Link addLink(SocketChannel channel, ControllerRemote control) throws IOException
+  {
+    channel.socket().setTcpNoDelay(true);
+    channel.configureBlocking(false);
+    Link link = new Link(channel, control);
+    synchronized(inbox)
+    {
+      links.add(link);
+      linked = true;
+    }
+    synchronized(this)
+    {
+      selector.wakeup();
+      channel.register(selector, SelectionKey.OP_READ, link);
+    }
+    link.sendHello();
+    if(root!=null) link.sendRoot(root);
+    return link;
+  }
+
+  /**
+   * Return link to remote transport of given identity, connecting to it if
+   * there is none yet.
+   *
+   * @param owner remote transport identity
+   * @param host remote host
+   * @param port remote listen port, or -1
+   * @return link to remote transport
+   * @throws IOException unable to connect
+   */
+  private Link getLink(long owner, String host, int port) throws IOException
+  {
+    Link[] l = getLinks();
+    for(int i=0; i<l.length; i++)
+    {
+      if(l[i].peerId==owner) return l[i];
+    }
+    if(port==-1) throw new IOException("entity at controller without event transport listener: "+host);
+    Link link = connect(host, port, null);
+    link.peerId = owner;
+    link.peerPort = port;
+    return link;
+  }
+
+  /**
+   * Request network thread to write queued frames of given link.
+   *
+   * @param link link with queued frames
+   */
+  private void requestWrite(Link link)
+  {
+    synchronized(writers)
+    {
+      writers.add(link);
+    }
+    selector.wakeup();
+  }
+
+  /**
+   * Return local entity reference of given index.
+   *
+   * @param index local entity index
+   * @param generation local entity slot generation
+   * @return local entity reference
+   */
+  private EntityRef getLocalRef(int index, int generation)
+  {
+    return Main.SINGLE_CONTROLLER
+      ? new EntityRef(index, generation)
+      : new EntityRefDist(controller, index, generation);
+  }
+
+  /**
+   * Resolve class (or primitive type) name using controller class loader.
+   *
+   * @param name class name
+   * @return class object
+   * @throws ClassNotFoundException when class not found
+   */
+  private Class resolveClass(String name) throws ClassNotFoundException
+  {
+    if(name.equals("int")) return Integer.TYPE;
+    if(name.equals("long")) return Long.TYPE;
+    if(name.equals("double")) return Double.TYPE;
+    if(name.equals("float")) return Float.TYPE;
+    if(name.equals("boolean")) return Boolean.TYPE;
+    if(name.equals("byte")) return Byte.TYPE;
+    if(name.equals("short")) return Short.TYPE;
+    if(name.equals("char")) return Character.TYPE;
+    ClassLoader loader = controller.getClassLoader();
+    return Class.forName(name, false, loader==null ? EventTransport.class.getClassLoader() : loader);
+  }
+
+  //////////////////////////////////////////////////
+  // network thread
+  //
+
+  /** {@inheritDoc} */
+  public void run()
+  {
+    long lastFlush = System.currentTimeMillis();
+    try
+    {
+      while(open)
+      {
+        selector.select(FLUSH_INTERVAL);
+        // allow registrations to proceed
+        synchronized(this) { }
+        // write requested frames
+        Link[] w;
+        synchronized(writers)
+        {
+          w = (Link[])writers.toArray(new Link[writers.size()]);
+          writers.clear();
+        }
+        for(int i=0; i<w.length; i++)
+        {
+          SelectionKey key = w[i].channel.keyFor(selector);
+          if(key==null || !key.isValid()) continue;
+          try
+          {
+            if(!w[i].write()) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          }
+          catch(IOException e)
+          {
+            Controller.log.warn("event transport link failure: "+e.getMessage());
+            key.cancel();
+            w[i].closed();
+          }
+        }
+        Iterator it = selector.selectedKeys().iterator();
+        while(it.hasNext())
+        {
+          SelectionKey key = (SelectionKey)it.next();
+          it.remove();
+          if(!key.isValid()) continue;
+          if(key.isAcceptable())
+          {
+            SocketChannel channel = server.accept();
+            if(channel!=null) addLink(channel, null);
+            continue;
+          }
+          Link link = (Link)key.attachment();
+          try
+          {
+            if(key.isReadable() && !link.read())
+            {
+              key.cancel();
+              link.closed();
+              continue;
+            }
+            if(key.isValid() && key.isWritable() && link.write())
+            {
+              key.interestOps(SelectionKey.OP_READ);
+            }
+          }
+          catch(CancelledKeyException e)
+          {
+            // link closed locally
+          }
+          catch(IOException e)
+          {
+            Controller.log.warn("event transport link failure: "+e.getMessage());
+            key.cancel();
+            link.closed();
+          }
+        }
+        // time-based flush of partial batches
+        long now = System.currentTimeMillis();
+        if(now-lastFlush>=FLUSH_INTERVAL)
+        {
+          flush();
+          lastFlush = now;
+        }
+      }
+      selector.close();
+    }
+    catch(IOException e)
+    {
+      if(open) throw new JistException("event transport failure", e);
+    }
+  }
+
+} // class: EventTransport
+
@@ -172,6 +172,20 @@ public class JistAPI
     return null;
   }
 
+  /**
+   * Unregister an entity, for instance a node leaving the simulation. Its
+   * pending and future events are discarded, and blocking calls to it
+   * throw an IllegalStateException.
+   *
+   * @param entity entity, entity reference or proxy to unregister
+   * @return whether entity was registered
+   */
+  public static boolean unregister(Object entity)
+  {
+    if(Main.isRunning()) throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
+    return false;
+  }
+
   /**
    * End simulation at current time.
    */
@@ -250,6 +264,20 @@ public class JistAPI
     return new Channel();
   }
 
+  /**
+   * Create a new multi-slot Channel entity. Blocking senders are only
+   * blocked while the channel is full; any number of them may wait, and
+   * their data enters the channel in order of arrival.
+   *
+   * @param capacity number of objects held by channel
+   * @return new Channel entity
+   */
+  public static Channel createBufferedChannel(int capacity)
+  {
+    if(Main.isRunning()) throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
+    return new Channel(capacity);
+  }
+
   /**
    * Install a new rewriting step at top of chain.
    *
@@ -56,6 +56,11 @@ public final class JistAPI_Impl extends JistAPI
    */
   public static Method method_ref;
 
+  /**
+   * Method stub field for unregistering an entity.
+   */
+  public static Method method_unregister;
+
   /**
    * Method stub field for ending simulation now.
    */
@@ -91,6 +96,11 @@ public final class JistAPI_Impl extends JistAPI
    */
   public static Method method_createChannel;
 
+  /**
+   * Method stub field for creating blocking multi-slot channel.
+   */
+  public static Method method_createBufferedChannel;
+
   /**
    * Method stub field for installing a new rewriting step at top of chain.
    */
@@ -150,6 +160,9 @@ public final class JistAPI_Impl extends JistAPI
       method_ref = JistAPI_Impl.class.getDeclaredMethod(
           "ref",
           new Class[] { Object.class });
+      method_unregister = JistAPI_Impl.class.getDeclaredMethod(
+          "unregister",
+          new Class[] { Object.class });
       method_end = JistAPI_Impl.class.getDeclaredMethod(
           "end",
           new Class[] { });
@@ -171,6 +184,9 @@ public final class JistAPI_Impl extends JistAPI
       method_createChannel = JistAPI_Impl.class.getDeclaredMethod(
           "createChannelImpl",
           new Class[] { });
+      method_createBufferedChannel = JistAPI_Impl.class.getDeclaredMethod(
+          "createBufferedChannelImpl",
+          new Class[] { Integer.TYPE });
       method_installRewrite = JistAPI_Impl.class.getDeclaredMethod(
           "installRewrite",
           new Class[] { ClassTraversal.Visitor.class });
@@ -242,6 +258,17 @@ public final class JistAPI_Impl extends JistAPI
       : o; // will always be EntityRef, we save the cast
   }
 
+  /** @see JistAPI */
+  public static boolean unregister(Object o)
+  {
+    o = ref(o);
+    if(Proxy.isProxyClass(o.getClass()))
+    {
+      o = Proxy.getInvocationHandler(o);
+    }
+    return Controller.getActiveController().unregisterEntity((EntityRef)o);
+  }
+
   /** @see JistAPI */
   public static void end()
   {
@@ -305,6 +332,24 @@ public final class JistAPI_Impl extends JistAPI
     return (new Channel())._jistMethod_Get__ref();
   }
 
+  /** @see JistAPI */
+  public static Channel createBufferedChannel(int capacity)
+  {
+    return null;
+  }
+
+  /**
+   * Actual implementation of <code>createBufferedChannel</code> method;
+   * returns new multi-slot Channel Entity reference.
+   *
+   * @param capacity number of objects held by channel
+   * @return entity reference of new Channel Entity.
+   */
+  public static EntityRef createBufferedChannelImpl(int capacity)
+  {
+    return (new Channel(capacity))._jistMethod_Get__ref();
+  }
+
   /** @see JistAPI */
   public static void installRewrite(ClassTraversal.Visitor rewrite)
   {
@@ -18,6 +18,7 @@ import java.rmi.registry.*;
 import java.rmi.server.*;
 import jargs.gnu.*;        // Download from: http://jargs.sourceforge.net
 import org.apache.log4j.*; // Download from: http://jakarta.apache.org/log4j/docs/index.html
+import jist.runtime.guilog.StreamLog;
 
 /** 
  * Primary entry-point into the JIST system. Performs cmd-line parsing, and 
@@ -56,6 +57,26 @@ public final class Main
    */
   public static final boolean EVENT_LOCATION = false;
 
+  /**
+   * debugging: number of events retained in binary event trace (--trace).
+   */
+  public static final int EVENT_TRACE_RING = 1024 * 1024;
+
+  /**
+   * debugging: number of events per window of execution digest log (--record).
+   */
+  public static final int REPLAY_WINDOW = 1000;
+
+  /**
+   * number of far-future events written to each sorted run on disk (--spill).
+   */
+  public static final int SPILL_BATCH = 65536;
+
+  /**
+   * Interval between memory profiles of entities and events (--memprof).
+   */
+  public static final long MEMPROF_INTERVAL = 60 * 1000;
+
   /**
    * Whether rewritten classes should be cached.
    */
@@ -71,6 +92,28 @@ public final class Main
    */
   public static final boolean COUNT_EVENTS = false;
 
+  /**
+   * Whether to count continuation frames saved, restored, allocated and
+   * reused at each continuable call site.
+   */
+  public static final boolean COUNT_FRAMES = false;
+
+  /**
+   * Number of index bits of an entity table partition; entity indices are
+   * assigned in partitions of 2^ENTITY_PARTITION_BITS slots.
+   */
+  public static final int ENTITY_PARTITION_BITS = 12;
+
+  /**
+   * Mask of entity index within its partition.
+   */
+  public static final int ENTITY_PARTITION_MASK = (1<<ENTITY_PARTITION_BITS)-1;
+
+  /**
+   * Largest entity index.
+   */
+  public static final int ENTITY_INDEX_MAX = Integer.MAX_VALUE;
+
   /**
    * Whether to assume a single controller.
    */
@@ -101,6 +144,16 @@ public final class Main
    */
   public static final long SERVER_QUEUE_RELEASE_INTERVAL = 5 * 60 * 1000;
 
+  /**
+   * Maximum number of jobs held by queue server, before clients are blocked.
+   */
+  public static final int SERVER_QUEUE_MAX_JOBS = 256;
+
+  /**
+   * Minimum memory per concurrent job slot, when sizing slots automatically.
+   */
+  public static final long SERVER_SLOT_MIN_MEM = 64 * 1024 * 1024;
+
   //////////////////////////////////////////////////
   // Defaults
   //
@@ -108,6 +161,9 @@ public final class Main
   /** Default jist server (RMI) port. */
   public static final int JIST_PORT = 3000;
 
+  /** Default event transport port. */
+  public static final int EVENT_PORT = 3001;
+
   /** Default jist properties file name. */
   public static final String JIST_PROPERTIES = "jist.properties";
 
@@ -143,7 +199,17 @@ public final class Main
     System.out.println("  --bsh             run input with BeanShell script engine");
     System.out.println("  --jpy             run input with Jython script engine");
     System.out.println("  --nocache         disable rewriter cache");
+    System.out.println("  --threads         run blocking calls on (virtual) threads, not continuations");
+    System.out.println("  -t, --trace       record recent events in binary trace file (see EventTrace)");
+    System.out.println("  --record          record execution digest log for later --replay");
+    System.out.println("  --replay          halt where execution diverges from digest log");
+    System.out.println("  --spill           spill events beyond given time horizon to disk");
+    System.out.println("  --guilog          stream event tree to file or tcp:host:port, for GuiLog");
+    System.out.println("  --memprof         write memory histogram of entity and event classes to file");
+    System.out.println("  --accept          accept event transport links from other engines on port");
+    System.out.println("  --link            link to event transport of another engine at host:port");
     System.out.println("  -r, --remote      specify remote job or processing server");
+    System.out.println("  --sweep           run parameter sweep file on local slots (-k), or remote (-r)");
     System.out.println("  where: ");
     System.out.println("    <sim>  is:      simulation program with command-line arguments, or");
     System.out.println("                    simulation script with command-line arguments");
@@ -153,6 +219,8 @@ public final class Main
     System.out.println("  -p, --port        listen for jobs on given port [3000]");
     System.out.println("  -q, --queue       act only as job queue server, do not process");
     System.out.println("  -r, --remote      process jobs from remote queue");
+    System.out.println("  -k, --slots       process jobs concurrently in k slots [1]");
+    System.out.println("                       (0 implies sized by processors and memory)");
     System.out.println("  -x, --proxy       perform RMI connections via a proxy");
     System.out.println();
   }
@@ -178,6 +246,26 @@ public final class Main
     public boolean jpy = false;
     /** do not use rewriter cache. */
     public boolean nocache = false;
+    /** run blocking calls on threads. */
+    public boolean threads = false;
+    /** parameter sweep file. */
+    public String sweep = null;
+    /** binary event trace file. */
+    public String trace = null;
+    /** execution digest log file to record. */
+    public String record = null;
+    /** execution digest log file to replay. */
+    public String replay = null;
+    /** event queue spill horizon. */
+    public long spill = 0;
+    /** headless GUI log event stream target. */
+    public String guilog = null;
+    /** memory profile histogram file. */
+    public String memprof = null;
+    /** event transport listen port. */
+    public int accept = -1;
+    /** event transport link. */
+    public Node link = null;
     /** remote server job queue. */
     public Node remote = null;
     /** server mode. */
@@ -186,6 +274,8 @@ public final class Main
     public int port = 0;
     /** job queue mode. */
     public boolean queue = false;
+    /** number of concurrent job slots. */
+    public int slots = 1;
     /** command-line parameters to simulation program. */
     public String[] args = new String[0];
     /** rmi proxy point. */
@@ -212,10 +302,21 @@ public final class Main
     CmdLineParser.Option opt_bsh = parser.addBooleanOption('.', "bsh");
     CmdLineParser.Option opt_jpy = parser.addBooleanOption(',', "jpy");
     CmdLineParser.Option opt_nocache = parser.addBooleanOption(']', "nocache");
+    CmdLineParser.Option opt_threads = parser.addBooleanOption('}', "threads");
+    CmdLineParser.Option opt_sweep = parser.addStringOption('[', "sweep");
+    CmdLineParser.Option opt_trace = parser.addStringOption('t', "trace");
+    CmdLineParser.Option opt_record = parser.addStringOption(')', "record");
+    CmdLineParser.Option opt_replay = parser.addStringOption('(', "replay");
+    CmdLineParser.Option opt_spill = parser.addStringOption('{', "spill");
+    CmdLineParser.Option opt_guilog = parser.addStringOption('<', "guilog");
+    CmdLineParser.Option opt_memprof = parser.addStringOption('>', "memprof");
+    CmdLineParser.Option opt_accept = parser.addStringOption('+', "accept");
+    CmdLineParser.Option opt_link = parser.addStringOption('=', "link");
     CmdLineParser.Option opt_remote = parser.addStringOption('r', "remote");
     CmdLineParser.Option opt_server = parser.addBooleanOption('S', "server");
     CmdLineParser.Option opt_port = parser.addStringOption('p', "port");
     CmdLineParser.Option opt_queue = parser.addBooleanOption('q', "queue");
+    CmdLineParser.Option opt_slots = parser.addStringOption('k', "slots");
     CmdLineParser.Option opt_proxy = parser.addStringOption('x', "proxy");
 
     // parse
@@ -249,6 +350,46 @@ public final class Main
     {
       options.nocache = true;
     }
+    if(parser.getOptionValue(opt_threads)!=null)
+    {
+      options.threads = true;
+    }
+    if(parser.getOptionValue(opt_sweep)!=null)
+    {
+      options.sweep = (String)parser.getOptionValue(opt_sweep);
+    }
+    if(parser.getOptionValue(opt_trace)!=null)
+    {
+      options.trace = (String)parser.getOptionValue(opt_trace);
+    }
+    if(parser.getOptionValue(opt_record)!=null)
+    {
+      options.record = (String)parser.getOptionValue(opt_record);
+    }
+    if(parser.getOptionValue(opt_replay)!=null)
+    {
+      options.replay = (String)parser.getOptionValue(opt_replay);
+    }
+    if(parser.getOptionValue(opt_spill)!=null)
+    {
+      options.spill = Long.parseLong((String)parser.getOptionValue(opt_spill));
+    }
+    if(parser.getOptionValue(opt_guilog)!=null)
+    {
+      options.guilog = (String)parser.getOptionValue(opt_guilog);
+    }
+    if(parser.getOptionValue(opt_memprof)!=null)
+    {
+      options.memprof = (String)parser.getOptionValue(opt_memprof);
+    }
+    if(parser.getOptionValue(opt_accept)!=null)
+    {
+      options.accept = Integer.parseInt((String)parser.getOptionValue(opt_accept));
+    }
+    if(parser.getOptionValue(opt_link)!=null)
+    {
+      options.link = Node.parse((String)parser.getOptionValue(opt_link), EVENT_PORT);
+    }
     if(parser.getOptionValue(opt_remote)!=null)
     {
       options.remote = Node.parse((String)parser.getOptionValue(opt_remote), JIST_PORT);
@@ -265,6 +406,10 @@ public final class Main
     {
       options.queue = true;
     }
+    if(parser.getOptionValue(opt_slots)!=null)
+    {
+      options.slots = Integer.parseInt((String)parser.getOptionValue(opt_slots));
+    }
     if(parser.getOptionValue(opt_proxy)!=null)
     {
       options.proxy = Node.parse((String)parser.getOptionValue(opt_proxy), ProxyPoint.PROXY_PORT);
@@ -318,6 +463,7 @@ public final class Main
       {
         Logger.getRootLogger().setLevel(Level.OFF);
         PropertyConfigurator.configure(properties);
+        SimLog.configure(properties);
       }
       else
       {
@@ -330,10 +476,48 @@ public final class Main
       {
         // instantiate rewriter
         String cachedir = options.nocache ? null : System.getProperty("java.io.tmpdir");
-        Rewriter rewriter = new Rewriter(null, cachedir, remote, serverOut);
+        Rewriter rewriter = new Rewriter(null, cachedir, remote, serverOut, options.threads);
         Thread.currentThread().setContextClassLoader(rewriter);
         // instantiate controller
         Controller controller = Controller.newController(rewriter);
+        controller.setThreaded(options.threads);
+        if(options.trace!=null)
+        {
+          controller.setTrace(new EventTrace(new File(options.trace), EVENT_TRACE_RING));
+        }
+        if(options.record!=null)
+        {
+          controller.setReplay(new Replay(new File(options.record), false, REPLAY_WINDOW));
+        }
+        if(options.replay!=null)
+        {
+          controller.setReplay(new Replay(new File(options.replay), true, REPLAY_WINDOW));
+        }
+        if(options.spill>0)
+        {
+          controller.setSpillHorizon(options.spill);
+        }
+        if(options.guilog!=null)
+        {
+          controller.setEventLog(StreamLog.open(options.guilog, controller.getTrace()));
+        }
+        if(options.memprof!=null)
+        {
+          controller.setMemoryProfile(new MemoryProfile(new File(options.memprof)));
+        }
+        if(options.accept!=-1 || options.link!=null)
+        {
+          EventTransport transport = new EventTransport(controller);
+          controller.setTransport(transport);
+          if(options.accept!=-1)
+          {
+            transport.listen(options.accept);
+          }
+          if(options.link!=null)
+          {
+            transport.connect(options.link.getHostString(), options.link.getPort() & 0xffff, null);
+          }
+        }
         if(options.bsh)
         {
           Bootstrap.create(JistAPI.RUN_BSH, controller, options.sim, options.args, null);
@@ -374,6 +558,11 @@ public final class Main
         }
         finally
         {
+          SimLog.close();
+          if(controller.getTransport()!=null)
+          {
+            controller.getTransport().close();
+          }
           Throwable t = controller.reset();
           if(t!=null)
           {
@@ -413,8 +602,8 @@ public final class Main
     try
     {
       PrintStream rout=null, rerr=null;
-      rout = new RemoteIO.PrintStreamWithExceptions(new PrintStream(new RemoteIO.RemoteOutputStream(remote.getStdOut())));
-      rerr = new RemoteIO.PrintStreamWithExceptions(new PrintStream(new RemoteIO.RemoteOutputStream(remote.getStdErr())));
+      rout = new RemoteIO.PrintStreamWithExceptions(new RemoteIO.RemoteOutputStream(remote.getStdOut()));
+      rerr = new RemoteIO.PrintStreamWithExceptions(new RemoteIO.RemoteOutputStream(remote.getStdErr()));
       System.setOut(rout); System.setErr(rerr);
       try
       {
@@ -436,9 +625,16 @@ public final class Main
       finally
       {
         System.setOut(lout); System.setErr(lerr);
+        // release client streams, also when simulation fails
+        try
+        {
+          if(rerr!=null) rerr.close(); 
+        }
+        finally
+        {
+          if(rout!=null) rout.close();
+        }
       }
-      if(rerr!=null) rerr.close(); 
-      if(rout!=null) rout.close();
     }
     catch(Exception e) 
     { 
@@ -447,16 +643,13 @@ public final class Main
   }
 
   /**
-   * Run a JiST client.
+   * Load jist properties file given in command-line options (or default).
    *
    * @param options command-line options
-   * @throws MalformedURLException never
-   * @throws NotBoundException remote JiST server not initialized
-   * @throws RemoteException rpc failure
+   * @return jist properties, or null if not readable
    */
-  public static void runClient(CommandLineOptions options) throws MalformedURLException, NotBoundException, RemoteException
+  public static Properties loadProperties(CommandLineOptions options)
   {
-    // load properties
     if(options.properties==null)
     {
       options.properties = JIST_PROPERTIES;
@@ -474,6 +667,20 @@ public final class Main
     {
       properties = null;
     }
+    return properties;
+  }
+
+  /**
+   * Run a JiST client.
+   *
+   * @param options command-line options
+   * @throws MalformedURLException never
+   * @throws NotBoundException remote JiST server not initialized
+   * @throws RemoteException rpc failure
+   */
+  public static void runClient(CommandLineOptions options) throws MalformedURLException, NotBoundException, RemoteException
+  {
+    Properties properties = loadProperties(options);
     if(options.remote!=null)
     {
       // find remote server or queue server
@@ -490,9 +697,10 @@ public final class Main
       // wait for server to release client
       try
       {
-        synchronized(client)
+        client.waitDone();
+        if(client.getFailure()!=null)
         {
-          client.wait();
+          System.err.println("** Simulation failed at server: "+client.getFailure());
         }
       }
       catch(InterruptedException e)
@@ -570,27 +778,31 @@ public final class Main
         // check that client is still alive
         currentJob.client.ping();
         System.out.println(execMsg+currentJob);
+        Throwable failure = null;
+        boolean requeued = false;
         try
         {
           // redirect output and run simulation
           runSimulationRedirect(currentJob.options, currentJob.properties, currentJob.client);
-          // signal to client that we are finished
-          currentJob.client.done();
-        }
-        catch(RemoteException e)
-        {
-          throw e;
         }
         catch(OutOfMemoryError e)
         {
           System.out.println("out of memory!");
+          failure = e;
           currentJob.mem = maxmem;
           jqs.addJob(currentJob, true);
+          requeued = true;
         }
         catch(Throwable t)
         {
           System.out.println("UNHANDLED SIMULATION PROCESSING EXCEPTION AT SERVER:");
           t.printStackTrace(System.out);
+          failure = t;
+        }
+        finally
+        {
+          // signal to client that we are finished, unless job will run again
+          if(!requeued) signalDone(currentJob.client, failure);
         }
       }
       catch(RemoteException e) 
@@ -604,6 +816,298 @@ public final class Main
     }
   }
 
+  /**
+   * Signal client that its job is done, or has failed. Client control
+   * connection failures are reported, and otherwise ignored.
+   *
+   * @param client job client
+   * @param failure simulation failure, or null if none
+   */
+  private static void signalDone(RemoteJist.JistClientRemote client, Throwable failure)
+  {
+    try
+    {
+      if(failure==null)
+      {
+        client.done();
+      }
+      else
+      {
+        client.failed(failure.toString());
+      }
+    }
+    catch(RemoteException e)
+    {
+      System.out.println("client control connection failure!");
+    }
+  }
+
+  /**
+   * A local job slot: dequeues and processes jobs from a queue, each within
+   * its own isolated copy of the JiST runtime.
+   *
+   * @see RemoteJist.IsolatedClassLoader
+   */
+  public static class JobSlot implements Runnable
+  {
+    /** slot identifier. */
+    private final int id;
+    /** (remote) job queue. */
+    private final RemoteJist.JobQueueServerRemote jqs;
+    /** memory available to slot. */
+    private final long maxmem;
+    /** per-thread standard output. */
+    private final RemoteIO.ThreadPrintStream out;
+    /** per-thread standard error. */
+    private final RemoteIO.ThreadPrintStream err;
+    /** current job, or null if idle. */
+    private volatile RemoteJist.Job job;
+    /** status method of isolated runtime of current job. */
+    private volatile Method status;
+    /** job queue failure. */
+    private RemoteException failure;
+
+    /**
+     * Create new job slot.
+     *
+     * @param id slot identifier
+     * @param jqs (remote) job queue
+     * @param maxmem memory available to slot
+     * @param out per-thread standard output
+     * @param err per-thread standard error
+     */
+    public JobSlot(int id, RemoteJist.JobQueueServerRemote jqs, long maxmem,
+        RemoteIO.ThreadPrintStream out, RemoteIO.ThreadPrintStream err)
+    {
+      this.id = id;
+      this.jqs = jqs;
+      this.maxmem = maxmem;
+      this.out = out;
+      this.err = err;
+    }
+
+    /**
+     * Return progress of current job.
+     *
+     * @return progress of current job, or null if idle
+     */
+    public String getStatus()
+    {
+      RemoteJist.Job j = job;
+      Method m = status;
+      if(j==null || m==null) return null;
+      try
+      {
+        String s = (String)m.invoke(null, new Object[] { });
+        return s==null ? null : "slot "+id+": "+s+"\n  "+j;
+      }
+      catch(Exception e)
+      {
+        return null;
+      }
+    }
+
+    /**
+     * Return job queue failure that terminated slot.
+     *
+     * @return job queue failure, or null
+     */
+    public RemoteException getFailure()
+    {
+      return failure;
+    }
+
+    /**
+     * Redirect output streams and run job in isolated runtime.
+     *
+     * @param j job to process
+     * @throws Throwable any simulation processing failure
+     */
+    private void runIsolated(RemoteJist.Job j) throws Throwable
+    {
+      ClassLoader loader = new RemoteJist.IsolatedClassLoader(Main.class.getClassLoader());
+      Class main = Class.forName(Main.class.getName(), true, loader);
+      Method run = main.getMethod("runSimulation", new Class[] { 
+          CommandLineOptions.class, Properties.class, RemoteJist.JistClientRemote.class,
+          PrintStream.class, RemoteJist.PingRemote.class });
+      PrintStream lout = out.getTarget();
+      PrintStream rout = new RemoteIO.PrintStreamWithExceptions(new RemoteIO.RemoteOutputStream(j.client.getStdOut()));
+      PrintStream rerr = new RemoteIO.PrintStreamWithExceptions(new RemoteIO.RemoteOutputStream(j.client.getStdErr()));
+      out.setTarget(rout); err.setTarget(rerr);
+      status = main.getMethod("getSimulationStatus", new Class[] { });
+      try
+      {
+        run.invoke(null, new Object[] { j.options, j.properties, j.client, lout, j.client });
+      }
+      catch(InvocationTargetException e)
+      {
+        throw e.getTargetException();
+      }
+      finally
+      {
+        status = null;
+        out.setTarget(null); err.setTarget(null);
+        try
+        {
+          rerr.close();
+        }
+        finally
+        {
+          rout.close();
+        }
+      }
+    }
+
+    /** {@inheritDoc} */
+    public void run()
+    {
+      final String execMsg = "** Executing simulation (slot "+id+"): ";
+      try
+      {
+        while(true)
+        {
+          // wait on job queue
+          jqs.waitForJob(maxmem);
+          // get next job, if still available
+          RemoteJist.Job j = jqs.getJob(maxmem);
+          if(j==null) continue;
+          job = j;
+          try
+          {
+            // check that client is still alive
+            j.client.ping();
+            System.out.println(execMsg+j);
+            Throwable failure = null;
+            boolean requeued = false;
+            try
+            {
+              runIsolated(j);
+            }
+            catch(RemoteException e)
+            {
+              // reported when signalling client, if it is gone
+              failure = e;
+            }
+            catch(OutOfMemoryError e)
+            {
+              System.out.println("out of memory (slot "+id+")!");
+              failure = e;
+              j.mem = maxmem;
+              jqs.addJob(j, true);
+              requeued = true;
+            }
+            catch(Throwable t)
+            {
+              System.out.println("UNHANDLED SIMULATION PROCESSING EXCEPTION AT SERVER:");
+              t.printStackTrace(System.out);
+              failure = t;
+            }
+            finally
+            {
+              // signal to client that we are finished, unless job will run again
+              if(!requeued) signalDone(j.client, failure);
+            }
+          }
+          catch(RemoteException e)
+          {
+            System.out.println("client control connection failure!");
+          }
+          finally
+          {
+            job = null;
+          }
+        }
+      }
+      catch(RemoteException e)
+      {
+        failure = e;
+      }
+    }
+
+  } // class: JobSlot
+
+  /**
+   * Return default number of concurrent job slots, based on the number of
+   * available processors and memory.
+   *
+   * @return default number of concurrent job slots
+   */
+  public static int getDefaultSlots()
+  {
+    int cpus = Runtime.getRuntime().availableProcessors();
+    long mem = Runtime.getRuntime().maxMemory()/SERVER_SLOT_MIN_MEM;
+    return (int)Math.max(1, Math.min(cpus, mem));
+  }
+
+  /**
+   * Dequeue and process jobs from queue concurrently, in a number of local
+   * job slots.
+   *
+   * @param jqs (remote) job queue
+   * @param slots number of concurrent job slots; 0 for default
+   * @throws RemoteException rpc failure
+   * @throws InterruptedException local server simulation thread interuptted
+   */
+  public static void jobFarm(RemoteJist.JobQueueServerRemote jqs, int slots) throws RemoteException, InterruptedException
+  {
+    if(slots==0) slots = getDefaultSlots();
+    if(slots==1)
+    {
+      jobPump(jqs);
+      return;
+    }
+    long maxmem = Runtime.getRuntime().maxMemory()/slots;
+    System.out.println("** Waiting for simulations in "+slots+" slots... ");
+    // redirect output per slot
+    PrintStream lout=System.out, lerr=System.err;
+    RemoteIO.ThreadPrintStream out = new RemoteIO.ThreadPrintStream(lout);
+    RemoteIO.ThreadPrintStream err = new RemoteIO.ThreadPrintStream(lerr);
+    System.setOut(out); System.setErr(err);
+    try
+    {
+      JobSlot[] farm = new JobSlot[slots];
+      Thread[] threads = new Thread[slots];
+      for(int i=0; i<slots; i++)
+      {
+        farm[i] = new JobSlot(i, jqs, maxmem, out, err);
+        threads[i] = new Thread(farm[i], "JistJobSlot-"+i);
+        threads[i].start();
+      }
+      startFarmDisplayThread(jqs, farm);
+      // wait for slots to terminate (on job queue failure)
+      RemoteException failure = null;
+      for(int i=0; i<slots; i++)
+      {
+        threads[i].join();
+        if(failure==null) failure = farm[i].getFailure();
+      }
+      if(failure!=null) throw failure;
+    }
+    finally
+    {
+      System.setOut(lout); System.setErr(lerr);
+    }
+  }
+
+  /**
+   * Return progress of the running simulation.
+   *
+   * @return progress of the running simulation, or null if not running
+   */
+  public static String getSimulationStatus()
+  {
+    Controller c = Controller.getActiveController();
+    if(!c.isRunning()) return null;
+    long seconds = (long)((System.currentTimeMillis()-c.getStartTime())/1000.0);
+    String status = "t="+Util.getHMS(seconds)+" sim-time="+c.getSimulationTimeString();
+    MemoryProfile memprof = c.getMemoryProfile();
+    if(memprof!=null)
+    {
+      status += " "+memprof.getTop(3);
+    }
+    return status;
+  }
+
   /**
    * Start server display thread to report simulation status to server queue.
    *
@@ -626,15 +1130,13 @@ public final class Main
           RemoteIO.RemoteOutputStreamRemote jqsOut = jqs.getStdOut();
           while(isRunning())
           {
-            Controller c = Controller.getActiveController();
-            String msg = host+":";
-            if(c.isRunning())
+            String status = getSimulationStatus();
+            if(status!=null)
             {
               long memused = Util.getUsedMemory();
-              long seconds = (long)((System.currentTimeMillis()-c.getStartTime())/1000.0);
+              String msg = host+":";
               msg += " mem="+(memused/1024/1024)+"M";
-              msg += " t="+Util.getHMS(seconds);
-              msg += " sim-time="+c.getSimulationTimeString();
+              msg += " "+status;
               msg += "\n  "+currentJob+"\n";
               jqsOut.write(msg.getBytes());
             }
@@ -672,6 +1174,64 @@ public final class Main
     return t;
   }
 
+  /**
+   * Start server display thread to report status of all job slots to server
+   * queue.
+   *
+   * @param jqs remote job queue server
+   * @param farm job slots
+   * @return display thread
+   */
+  public static Thread startFarmDisplayThread(final RemoteJist.JobQueueServerRemote jqs, final JobSlot[] farm)
+  {
+    Runnable runner = new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          String host = (new Node(1)).getHostString();
+          RemoteIO.RemoteOutputStreamRemote jqsOut = jqs.getStdOut();
+          while(isRunning())
+          {
+            StringBuffer msg = new StringBuffer();
+            for(int i=0; i<farm.length; i++)
+            {
+              String status = farm[i].getStatus();
+              if(status!=null)
+              {
+                msg.append(status);
+                msg.append("\n");
+              }
+            }
+            if(msg.length()>0)
+            {
+              long memused = Util.getUsedMemory();
+              jqsOut.write((host+": mem="+(memused/1024/1024)+"M\n"+msg).getBytes());
+            }
+            try
+            {
+              Thread.sleep(SERVER_DISPLAY_INTERVAL);
+            }
+            catch(InterruptedException e)
+            {
+            }
+          }
+        }
+        catch(RemoteException e)
+        {
+        }
+        catch(IOException e)
+        {
+        }
+      }
+    };
+    Thread t = new Thread(runner);
+    t.setDaemon(true);
+    t.start();
+    return t;
+  }
+
   /**
    * Initiate a server thread to ping client, and abort simulation if client dies.
    *
@@ -753,7 +1313,7 @@ public final class Main
       // pump from job queue server, if necessary
       if(!options.queue)
       {
-        jobPump(jqs);
+        jobFarm(jqs, options.slots);
       }
     }
     // connect to remote job queue server
@@ -768,7 +1328,7 @@ public final class Main
           // pump remote job queue server
           RemoteJist.JobQueueServerRemote jqs = RemoteJist.JobQueueServer.getRemote(options.remote);
           pause = minpause;
-          jobPump(jqs);
+          jobFarm(jqs, options.slots);
         }
         catch(RemoteException e)
         {
@@ -795,7 +1355,7 @@ public final class Main
       CommandLineOptions options = parseCommandLineOptions(args);
       boolean script = options.bsh || options.jpy;
       // show usage
-      if(options.help || (options.sim==null && !script && !options.server))
+      if(options.help || (options.sim==null && !script && !options.server && options.sweep==null))
       {
         showVersion();
         showUsage();
@@ -830,15 +1390,65 @@ public final class Main
           System.out.println("invalid server mode option '--nocache'; type 'jist -h' for syntax");
           return;
         }
+        if(options.threads)
+        {
+          System.out.println("invalid server mode option '--threads'; type 'jist -h' for syntax");
+          return;
+        }
         if(options.sim!=null)
         {
           System.out.println("can not provide simulation program to server mode; type 'jist -h' for syntax");
         }
+        if(options.sweep!=null)
+        {
+          System.out.println("invalid server mode option '--sweep'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.trace!=null)
+        {
+          System.out.println("invalid server mode option '--trace'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.record!=null || options.replay!=null)
+        {
+          System.out.println("invalid server mode option '--record' or '--replay'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.spill!=0)
+        {
+          System.out.println("invalid server mode option '--spill'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.guilog!=null)
+        {
+          System.out.println("invalid server mode option '--guilog'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.memprof!=null)
+        {
+          System.out.println("invalid server mode option '--memprof'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.accept!=-1 || options.link!=null)
+        {
+          System.out.println("invalid server mode option '--accept' or '--link'; type 'jist -h' for syntax");
+          return;
+        }
         if(options.remote!=null && options.port!=0)
         {
           System.out.println("server should have either a local or remote job queue; type 'jist -h' for syntax");
           return;
         }
+        if(options.queue && options.slots!=1)
+        {
+          System.out.println("invalid queue server option '-k'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.slots<0)
+        {
+          System.out.println("invalid number of job slots; type 'jist -h' for syntax");
+          return;
+        }
       }
       else
       {
@@ -852,7 +1462,38 @@ public final class Main
           System.out.println("invalid client mode option '-q'; type 'jist -h' for syntax");
           return;
         }
-        if(options.remote!=null && options.sim==null)
+        if(options.slots!=1 && (options.sweep==null || options.remote!=null))
+        {
+          System.out.println("invalid client mode option '-k'; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.sweep!=null && (options.sim!=null || script))
+        {
+          System.out.println("can not provide simulation program to sweep mode; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.sweep!=null && (options.trace!=null || options.record!=null || options.replay!=null
+              || options.guilog!=null || options.memprof!=null))
+        {
+          System.out.println("invalid sweep mode option '--trace', '--record', '--replay', '--guilog' or '--memprof'; type 'jist -h' for syntax");
+          return;
+        }
+        if((options.accept!=-1 || options.link!=null) && (options.sweep!=null || options.remote!=null))
+        {
+          System.out.println("event transport links only in local engine mode; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.record!=null && options.replay!=null)
+        {
+          System.out.println("can not both record and replay; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.spill<0)
+        {
+          System.out.println("invalid event queue spill horizon; type 'jist -h' for syntax");
+          return;
+        }
+        if(options.remote!=null && options.sim==null && options.sweep==null)
         {
           System.out.println("client should have job to queue; type 'jist -h' for syntax");
           return;
@@ -871,6 +1512,10 @@ public final class Main
         showVersion();
         runServer(host, options);
       }
+      else if(options.sweep!=null)
+      {
+        Sweep.run(options);
+      }
       else
       {
         runClient(options);
@@ -0,0 +1,579 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Estimates the memory retained by the registered entities of each class,
+ * and by the pending events destined to each entity class, using plain
+ * reflection (no native agent). Each class is sampled: a few of its
+ * entities, evenly spaced in registration order, are walked to find the
+ * objects they retain, and the average is extrapolated to all entities of
+ * that class. Pending events are sampled from the event queue in the same
+ * manner.
+ *
+ * <p>Walks stop at other entities, classes, class loaders, threads,
+ * reflection objects and the controller. Objects reachable from several
+ * sampled roots are charged to the first one walked. Object sizes assume a
+ * 64-bit virtual machine with compressed references; they are estimates,
+ * not exact heap accounting.
+ *
+ * @since JIST1.0
+ */
+
+public class MemoryProfile
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /** size of object header. */
+  public static final int SIZE_HEADER = 12;
+
+  /** size of array header (including length). */
+  public static final int SIZE_ARRAY_HEADER = 16;
+
+  /** size of object reference. */
+  public static final int SIZE_REFERENCE = 4;
+
+  /** object size alignment. */
+  public static final int ALIGN = 8;
+
+  /** number of entities walked per entity class. */
+  public static final int ENTITY_SAMPLES = 32;
+
+  /** number of pending events walked. */
+  public static final int EVENT_SAMPLES = 4096;
+
+  /** maximum number of objects walked per profile. */
+  public static final int MAX_OBJECTS = 2 * 1024 * 1024;
+
+  /**
+   * Memory estimate for a single class of entities or of pending events.
+   */
+  public static class Entry
+  {
+    /** class name. */
+    public final String name;
+    /** number of instances. */
+    public long count;
+    /** number of instances walked. */
+    public int samples;
+    /** bytes retained by instances walked. */
+    public long sampled;
+    /** bytes retained by largest instance walked. */
+    public long max;
+
+    /**
+     * Create new class estimate.
+     *
+     * @param name class name
+     */
+    public Entry(String name)
+    {
+      this.name = name;
+    }
+
+    /**
+     * Add walked instance.
+     *
+     * @param bytes bytes retained by instance
+     */
+    public void add(long bytes)
+    {
+      samples++;
+      sampled += bytes;
+      max = Math.max(max, bytes);
+    }
+
+    /**
+     * Return estimated bytes retained by all instances. The largest sample
+     * is counted only once, since it is usually the first to reach (and be
+     * charged for) structures shared by all instances.
+     *
+     * @return estimated bytes retained by all instances
+     */
+    public long getEstimate()
+    {
+      if(samples==0) return 0;
+      if(samples==1) return sampled * count;
+      return max + (long)((double)(sampled-max) / (samples-1) * (count-1));
+    }
+
+    /**
+     * Return average bytes retained per instance walked.
+     *
+     * @return average bytes retained per instance walked
+     */
+    public long getAverage()
+    {
+      return samples==0 ? 0 : sampled / samples;
+    }
+  } // class: Entry
+
+  /** Orders entries by decreasing estimate. */
+  private static final Comparator BY_ESTIMATE = new Comparator()
+  {
+    public int compare(Object o1, Object o2)
+    {
+      long e1 = ((Entry)o1).getEstimate(), e2 = ((Entry)o2).getEstimate();
+      return e1>e2 ? -1 : e1<e2 ? 1 : 0;
+    }
+  };
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** histogram file, or null. */
+  private final File file;
+
+  /** class layouts: Class to Layout. */
+  private final HashMap layouts;
+
+  /** entity estimates of last profile, largest first. */
+  private Entry[] entities;
+
+  /** pending event estimates of last profile, largest first. */
+  private Entry[] events;
+
+  /** simulation time of last profile. */
+  private long simtime;
+
+  /** number of pending events at last profile. */
+  private int pending;
+
+  /** whether last profile reached the object limit. */
+  private boolean truncated;
+
+  /** objects walked by current profile. */
+  private IdentityHashMap seen;
+
+  /** walk stack. */
+  private Object[] stack;
+
+  /**
+   * Create new memory profile.
+   *
+   * @param file histogram file rewritten by <code>dump</code>, or null
+   */
+  public MemoryProfile(File file)
+  {
+    this.file = file;
+    this.layouts = new HashMap();
+    this.entities = new Entry[0];
+    this.events = new Entry[0];
+    this.stack = new Object[1024];
+  }
+
+  //////////////////////////////////////////////////
+  // object sizes
+  //
+
+  /**
+   * Instance size and reference fields of a class.
+   */
+  private static class Layout
+  {
+    /** instance size. */
+    int size;
+    /** non-static reference fields, including inherited ones. */
+    Field[] refs;
+  } // class: Layout
+
+  /**
+   * Return size of primitive or reference field.
+   *
+   * @param type field type
+   * @return field size
+   */
+  private static int fieldSize(Class type)
+  {
+    if(!type.isPrimitive()) return SIZE_REFERENCE;
+    if(type==Long.TYPE || type==Double.TYPE) return 8;
+    if(type==Integer.TYPE || type==Float.TYPE) return 4;
+    if(type==Short.TYPE || type==Character.TYPE) return 2;
+    return 1;
+  }
+
+  /**
+   * Round size up to object alignment.
+   *
+   * @param size unaligned size
+   * @return aligned size
+   */
+  private static long align(long size)
+  {
+    return (size+ALIGN-1) & ~(long)(ALIGN-1);
+  }
+
+  /**
+   * Return whether walks should stop at (and not charge) given object.
+   *
+   * @param o object reached
+   * @return whether object is outside of the profiled memory
+   */
+  private static boolean isBoundary(Object o)
+  {
+    return o instanceof Entity || o instanceof Class || o instanceof ClassLoader
+      || o instanceof Thread || o instanceof Member || o instanceof Controller;
+  }
+
+  /**
+   * Return (cached) layout of class.
+   *
+   * @param c class
+   * @return class layout
+   */
+  private Layout getLayout(Class c)
+  {
+    Layout l = (Layout)layouts.get(c);
+    if(l!=null) return l;
+    l = new Layout();
+    long size = SIZE_HEADER;
+    Vector refs = new Vector();
+    for(Class c2=c; c2!=null; c2=c2.getSuperclass())
+    {
+      Field[] fields;
+      try
+      {
+        fields = c2.getDeclaredFields();
+      }
+      catch(SecurityException e)
+      {
+        continue;
+      }
+      for(int i=0; i<fields.length; i++)
+      {
+        if(Modifier.isStatic(fields[i].getModifiers())) continue;
+        size += fieldSize(fields[i].getType());
+        if(fields[i].getType().isPrimitive()) continue;
+        try
+        {
+          fields[i].setAccessible(true);
+          refs.add(fields[i]);
+        }
+        catch(RuntimeException e)
+        {
+          // inaccessible field: count its shallow size only
+        }
+      }
+    }
+    l.size = (int)align(size);
+    l.refs = new Field[refs.size()];
+    refs.copyInto(l.refs);
+    layouts.put(c, l);
+    return l;
+  }
+
+  /**
+   * Return shallow size of object.
+   *
+   * @param o object
+   * @return estimated shallow size
+   */
+  private long shallow(Object o)
+  {
+    Class c = o.getClass();
+    if(!c.isArray()) return getLayout(c).size;
+    return align(SIZE_ARRAY_HEADER+(long)Array.getLength(o)*fieldSize(c.getComponentType()));
+  }
+
+  /**
+   * Push object onto walk stack, unless already seen.
+   *
+   * @param o object reached, or null
+   * @param sp walk stack pointer
+   * @return new walk stack pointer
+   */
+  private int push(Object o, int sp)
+  {
+    if(o==null || seen.containsKey(o) || isBoundary(o)) return sp;
+    seen.put(o, null);
+    if(sp==stack.length)
+    {
+      Object[] stack2 = new Object[stack.length*2];
+      System.arraycopy(stack, 0, stack2, 0, stack.length);
+      stack = stack2;
+    }
+    stack[sp++] = o;
+    return sp;
+  }
+
+  /**
+   * Return estimated bytes retained by an object, excluding objects already
+   * charged during this profile.
+   *
+   * @param root object to walk
+   * @return estimated retained bytes
+   */
+  private long retained(Object root)
+  {
+    if(seen.containsKey(root)) return 0;
+    seen.put(root, null);
+    stack[0] = root;
+    int sp = 1;
+    long bytes = 0;
+    while(sp>0)
+    {
+      Object o = stack[--sp];
+      stack[sp] = null;
+      bytes += shallow(o);
+      if(seen.size()>=MAX_OBJECTS)
+      {
+        truncated = true;
+        continue;
+      }
+      Class c = o.getClass();
+      if(c.isArray())
+      {
+        if(c.getComponentType().isPrimitive()) continue;
+        Object[] a = (Object[])o;
+        for(int i=0; i<a.length; i++)
+        {
+          sp = push(a[i], sp);
+        }
+        continue;
+      }
+      Field[] refs = getLayout(c).refs;
+      for(int i=0; i<refs.length; i++)
+      {
+        try
+        {
+          sp = push(refs[i].get(o), sp);
+        }
+        catch(IllegalAccessException e)
+        {
+        }
+      }
+    }
+    return bytes;
+  }
+
+  //////////////////////////////////////////////////
+  // profile
+  //
+
+  /**
+   * Return entry for given key, creating it if necessary.
+   *
+   * @param table entries: key to Entry
+   * @param key entry key
+   * @param name entry class name
+   * @return entry for key
+   */
+  private static Entry getEntry(HashMap table, Object key, String name)
+  {
+    Entry e = (Entry)table.get(key);
+    if(e==null)
+    {
+      e = new Entry(name);
+      table.put(key, e);
+    }
+    return e;
+  }
+
+  /**
+   * Return entries sorted by decreasing estimate.
+   *
+   * @param table entries: key to Entry
+   * @return sorted entries
+   */
+  private static Entry[] sort(HashMap table)
+  {
+    Entry[] result = (Entry[])table.values().toArray(new Entry[table.size()]);
+    Arrays.sort(result, BY_ESTIMATE);
+    return result;
+  }
+
+  /**
+   * Profile the entities and pending events of a controller. The controller
+   * calls this from its own thread, between events; when called from
+   * another thread, the estimate is taken while the simulation changes
+   * underneath it.
+   *
+   * @param controller controller to profile
+   */
+  public synchronized void sample(Controller controller)
+  {
+    seen = new IdentityHashMap();
+    truncated = false;
+    simtime = controller.getSimulationTime();
+    // entities: count per class, then walk evenly spaced samples
+    int n = controller.getNumEntitySlots();
+    HashMap table = new HashMap();
+    for(int i=0; i<n; i++)
+    {
+      Entity entity = controller.getEntity(i);
+      if(entity==null) continue;
+      getEntry(table, entity.getClass(), entity.getClass().getName()).count++;
+    }
+    HashMap visits = new HashMap();
+    for(int i=0; i<n; i++)
+    {
+      Entity entity = controller.getEntity(i);
+      if(entity==null) continue;
+      Entry e = (Entry)table.get(entity.getClass());
+      if(e==null || e.samples>=ENTITY_SAMPLES) continue;
+      int[] visit = (int[])visits.get(e);
+      if(visit==null)
+      {
+        visit = new int[1];
+        visits.put(e, visit);
+      }
+      long stride = Math.max(1, e.count/ENTITY_SAMPLES);
+      if(visit[0]++ % stride!=0) continue;
+      e.add(retained(entity));
+    }
+    entities = sort(table);
+    // pending events: classify by target entity class
+    Scheduler queue = controller.getEventQueue();
+    pending = queue.size();
+    table = new HashMap();
+    int stride = Math.max(1, pending/EVENT_SAMPLES), walked = 0;
+    for(int i=0; i<pending; i+=stride)
+    {
+      walked++;
+      Event ev = queue.get(i);
+      if(ev==null) continue;
+      String name;
+      Entity target = ev.ref==null || ev.ref.getIndex()<0 ? null : controller.getEntity(ev.ref);
+      if(target!=null) name = target.getClass().getName();
+      else if(ev.method!=null) name = ev.method.getDeclaringClass().getName();
+      else name = "(none)";
+      Entry e = getEntry(table, name, name);
+      e.add(retained(ev));
+    }
+    // scale sample counts to queue size; events not in memory count nothing
+    Iterator it = table.values().iterator();
+    while(it.hasNext())
+    {
+      Entry e = (Entry)it.next();
+      e.count = (long)((double)e.samples / walked * pending);
+    }
+    events = sort(table);
+    seen = null;
+    stack = new Object[1024];
+  }
+
+  /**
+   * Return entity class estimates of last profile, largest first.
+   *
+   * @return entity class estimates
+   */
+  public synchronized Entry[] getEntities()
+  {
+    return entities;
+  }
+
+  /**
+   * Return pending event estimates (by target entity class) of last
+   * profile, largest first.
+   *
+   * @return pending event estimates
+   */
+  public synchronized Entry[] getEvents()
+  {
+    return events;
+  }
+
+  /**
+   * Return short summary of the largest entity and pending event classes,
+   * for status output.
+   *
+   * @param max number of classes of each kind
+   * @return summary string
+   */
+  public synchronized String getTop(int max)
+  {
+    StringBuffer sb = new StringBuffer();
+    appendTop(sb, "top=", entities, max);
+    appendTop(sb, " topEvQ=", events, max);
+    return sb.toString();
+  }
+
+  /**
+   * Append short summary of largest estimates.
+   *
+   * @param sb output buffer
+   * @param label summary label
+   * @param entries estimates, largest first
+   * @param max number of estimates
+   */
+  private static void appendTop(StringBuffer sb, String label, Entry[] entries, int max)
+  {
+    sb.append(label);
+    for(int i=0; i<Math.min(max, entries.length); i++)
+    {
+      if(i>0) sb.append(',');
+      String name = entries[i].name;
+      sb.append(name.substring(name.lastIndexOf('.')+1));
+      sb.append(':');
+      sb.append(entries[i].getEstimate()/1024/1024);
+      sb.append('M');
+    }
+  }
+
+  /**
+   * Write histogram of last profile.
+   *
+   * @param out output stream
+   */
+  public synchronized void dump(PrintStream out)
+  {
+    out.println("# memory profile at sim-time="+simtime
+        +(truncated ? " (truncated at "+MAX_OBJECTS+" objects)" : ""));
+    out.println("# used heap: "+Util.getUsedMemory()+" bytes");
+    out.println("# entities (by class): count samples avg-bytes est-bytes class");
+    dump(out, "ENTITY", entities);
+    out.println("# pending events (by target entity class), "+pending+" queued: count samples avg-bytes est-bytes class");
+    dump(out, "EVENT", events);
+  }
+
+  /**
+   * Write histogram rows.
+   *
+   * @param out output stream
+   * @param kind row label
+   * @param entries estimates
+   */
+  private static void dump(PrintStream out, String kind, Entry[] entries)
+  {
+    for(int i=0; i<entries.length; i++)
+    {
+      Entry e = entries[i];
+      out.println(kind+" "+e.count+" "+e.samples+" "+e.getAverage()+" "+e.getEstimate()+" "+e.name);
+    }
+  }
+
+  /**
+   * Rewrite histogram file with last profile.
+   *
+   * @throws IOException unable to write histogram file
+   */
+  public void dump() throws IOException
+  {
+    if(file==null) return;
+    PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try
+    {
+      dump(out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+} // class: MemoryProfile
+
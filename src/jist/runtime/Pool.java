@@ -9,6 +9,9 @@
 
 package jist.runtime;
 
+import java.util.Enumeration;
+import java.util.Hashtable;
+
 /** 
  * Contains the various classes that pool objects for performance.
  *
@@ -290,5 +293,237 @@ public abstract class Pool
 
   } // class: EventPool
 
+  /** 
+   * Implements a pool of direct byte buffers, used for network i/o. Buffers
+   * are allocated on demand, since direct buffers are costly to create and
+   * to retain. Note that, for performance reasons, this class is
+   * intentionally NOT thread-safe.
+   *
+   * @since JIST1.0
+   */
+
+  public static class BufferPool extends Pool
+  {
+
+    /**
+     * Capacity of pooled buffers.
+     */
+    private final int capacity;
+
+    /**
+     * Private buffer pool.
+     */
+    private final java.nio.ByteBuffer[] pool;
+
+    /**
+     * Index into buffer pool.
+     */
+    private int count;
+
+    /**
+     * Number of buffers allocated.
+     */
+    private int allocated;
+
+    /**
+     * Create new direct byte buffer pool.
+     *
+     * @param capacity capacity of pooled buffers
+     * @param size maximum number of idle buffers retained
+     */
+    public BufferPool(int capacity, int size)
+    {
+      this.capacity = capacity;
+      pool = new java.nio.ByteBuffer[size];
+      count = 0;
+      allocated = 0;
+    }
+
+    /**
+     * Return a cleared buffer from pool, or allocate new one if pool empty.
+     *
+     * @return cleared direct byte buffer
+     */
+    public java.nio.ByteBuffer get()
+    {
+      if(count>0)
+      {
+        java.nio.ByteBuffer b = pool[--count];
+        pool[count] = null;
+        b.clear();
+        return b;
+      }
+      else
+      {
+        allocated++;
+        return java.nio.ByteBuffer.allocateDirect(capacity);
+      }
+    }
+
+    /**
+     * Place a free (otherwise unused) buffer back in the pool, if there is
+     * space.
+     *
+     * @param b reference to free buffer
+     */
+    public void put(java.nio.ByteBuffer b)
+    {
+      if(count<pool.length)
+      {
+        pool[count++] = b;
+      }
+    }
+
+    /**
+     * Return number of buffers allocated by this pool.
+     *
+     * @return number of buffers allocated
+     */
+    public int getAllocated()
+    {
+      return allocated;
+    }
+
+  } // class: BufferPool
+
+  /** 
+   * Implements a free list of continuation frames of a single generated state
+   * class, that is, of a single continuable call site. The rewriter gives
+   * every state class a static instance of this pool: frames are taken from
+   * the pool before a continuable call and returned to it as soon as the call
+   * completes without blocking, so the non-blocking path no longer allocates
+   * and a frame is reused whenever the same call site is passed repeatedly.
+   * Note that, for performance reasons, this class is intentionally NOT
+   * thread-safe.
+   *
+   * @since JIST1.0
+   */
+  public static class FramePool extends Pool
+  {
+    /** Default number of frames pooled per call site. */
+    public static final int DEFAULT_SIZE = 8;
+
+    /** Statistic: frames pushed onto an outgoing continuation. */
+    public static final int STAT_SAVED = 0;
+    /** Statistic: frames popped from an incoming continuation. */
+    public static final int STAT_RESTORED = 1;
+    /** Statistic: frames newly allocated (pool empty). */
+    public static final int STAT_ALLOCATED = 2;
+    /** Statistic: frames taken from the pool. */
+    public static final int STAT_REUSED = 3;
+    /** Number of statistics. */
+    private static final int STATS = 4;
+
+    /**
+     * Per call site statistics: (state class name to long[STATS]).
+     */
+    private static final Hashtable stats = new Hashtable();
+
+    /**
+     * Call site (state class) name.
+     */
+    private final String site;
+
+    /**
+     * Private object pool.
+     */
+    private final Event.ContinuationFrame[] pool;
+
+    /**
+     * Index into object pool.
+     */
+    private int count;
+
+    /**
+     * Create new (empty) frame pool of fixed given size.
+     *
+     * @param site call site (state class) name
+     * @param size frame pool size
+     */
+    public FramePool(String site, int size)
+    {
+      this.site = site;
+      pool = new Event.ContinuationFrame[size];
+      count = 0;
+    }
+
+    /**
+     * Return a frame from the pool, or null if the pool is empty (in which
+     * case the caller creates a new frame).
+     *
+     * @return pooled frame, or null
+     */
+    public Event.ContinuationFrame get()
+    {
+      if(count>0)
+      {
+        if(Main.COUNT_FRAMES) count(site, STAT_REUSED);
+        return pool[--count];
+      }
+      else
+      {
+        if(Main.COUNT_FRAMES) count(site, STAT_ALLOCATED);
+        return null;
+      }
+    }
+
+    /**
+     * Place a free (otherwise unused) frame back in the pool, if there is
+     * space.
+     *
+     * @param f reference to a free frame
+     */
+    public void put(Event.ContinuationFrame f)
+    {
+      f.next = null;
+      if(count<pool.length)
+      {
+        pool[count++] = f;
+      }
+    }
+
+    /**
+     * Increment a call site statistic.
+     *
+     * @param site call site (state class) name
+     * @param stat statistic identifier
+     */
+    public static void count(String site, int stat)
+    {
+      long[] counts = (long[])stats.get(site);
+      if(counts==null)
+      {
+        counts = new long[STATS];
+        stats.put(site, counts);
+      }
+      counts[stat]++;
+    }
+
+    /**
+     * Clear all call site statistics.
+     */
+    public static void clearStats()
+    {
+      stats.clear();
+    }
+
+    /**
+     * Print call site statistics.
+     *
+     * @param out output stream
+     */
+    public static void printStats(java.io.PrintStream out)
+    {
+      Enumeration keys = stats.keys();
+      while(keys.hasMoreElements())
+      {
+        String site = (String)keys.nextElement();
+        long[] counts = (long[])stats.get(site);
+        out.println(site+": saved="+counts[STAT_SAVED]+" restored="+counts[STAT_RESTORED]
+            +" allocated="+counts[STAT_ALLOCATED]+" reused="+counts[STAT_REUSED]);
+      }
+    }
+  } // class: FramePool
+
 } // class: Pool
 
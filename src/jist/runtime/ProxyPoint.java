@@ -11,6 +11,8 @@ package jist.runtime;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 import java.rmi.*;
 import java.rmi.server.*;
 import java.util.*;
@@ -20,9 +22,14 @@ import java.util.*;
  * Firewall and NAT-busting functionality for JiST (and any RMI client). Basic
  * idea is to avoid any incoming connections. All parties make outgoing
  * connections to the central ProxyPoint, and the ProxyPoint connects people up
- * and marshalls information back and forth. None of this is very efficient,
- * but it works well enough to hooks up scores of clients to scores of servers
- * all over the world! In other words, it's one big hack that does the job.
+ * and marshalls information back and forth. It works well enough to hook up
+ * scores of clients to scores of servers all over the world!
+ *
+ * <p>The proxy server itself is a single thread that multiplexes all
+ * connections with a selector. Relayed data is read into pooled direct
+ * buffers and written straight from there to the paired channel. Relays
+ * support half-close: end-of-stream from one side is passed on to the
+ * other, which may still reply.
  *
  * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
  * @version $Id: ProxyPoint.java,v 1.11 2004-04-06 16:07:43 barr Exp $
@@ -50,6 +57,22 @@ public class ProxyPoint
   /** proxy server command constant. */
   public static final byte COMMAND_CONNECTED = 3;
 
+  /** maximum length of proxy server command payload. */
+  private static final int COMMAND_MAX_LENGTH = 13;
+  /** size of buffer for proxy server control input. */
+  private static final int CONTROL_SIZE = 64;
+
+  /** size of relay buffers (bytes). */
+  public static final int BUFFER_SIZE = 16384;
+  /** maximum number of idle relay buffers retained. */
+  public static final int BUFFER_POOL_SIZE = 256;
+  /** time that a client waits for a proxied server socket (millis). */
+  public static final long CONNECT_TIMEOUT = 9000;
+  /** selector timeout, and granularity of connect timeouts (millis). */
+  public static final long SELECT_INTERVAL = 500;
+  /** interval between statistics output (millis). */
+  public static final long STATS_INTERVAL = 60000;
+
   /** whether to show some output. */
   public static final boolean DEBUG = true;
 
@@ -233,6 +256,18 @@ public class ProxyPoint
       s.close();
     }
 
+    /** {@inheritDoc} */
+    public void shutdownInput() throws IOException
+    {
+      s.shutdownInput();
+    }
+
+    /** {@inheritDoc} */
+    public void shutdownOutput() throws IOException
+    {
+      s.shutdownOutput();
+    }
+
     /** {@inheritDoc} */
     public SocketAddress getRemoteSocketAddress()
     {
@@ -351,142 +386,235 @@ public class ProxyPoint
 
 
   /**
-   * A Runnable object that pumps from an InputStream to an OutputStream.
+   * Read and parse IP address from input stream.
+   *
+   * @param is input stream to read
+   * @return IP address read
+   * @throws IOException when i/o fails
+   */
+  public static InetAddress readInetAddress(DataInput is) throws IOException
+  {
+    byte[] b = new byte[4];
+    is.readFully(b);
+    return InetAddress.getByAddress(b);
+  }
+
+
+  //////////////////////////////////////////////////
+  // proxy connections
+  //
+
+  /**
+   * State of a single connection to the proxy server.
    */
-  public static class StreamPump implements Runnable
+  private static class Connection
   {
-    /** input stream to read from. */
-    private InputStream in;
-    /** output stream to write to. */
-    private OutputStream out;
+    /** connection state: reading control command. */
+    public static final int STATE_CONTROL = 0;
+    /** connection state: proxied server socket waiting for a client. */
+    public static final int STATE_LISTEN  = 1;
+    /** connection state: proxied client waiting for a server socket. */
+    public static final int STATE_CONNECT = 2;
+    /** connection state: relaying data to and from paired connection. */
+    public static final int STATE_RELAY   = 3;
+    /** connection state: closed. */
+    public static final int STATE_CLOSED  = 4;
+
+    /** connection channel. */
+    public final SocketChannel channel;
+    /** connection selection key. */
+    public final SelectionKey key;
+    /** connection state. */
+    public int state;
+    /** data read from channel: control input, or relay data not yet written to peer. */
+    public ByteBuffer in;
+    /** paired connection. */
+    public Connection peer;
+    /** proxied listen or connect address. */
+    public InetSocketAddress address;
+    /** proxied client source address. */
+    public InetAddress source;
+    /** time by which a waiting client must be paired (millis). */
+    public long deadline;
+    /** whether channel has reached end-of-stream. */
+    public boolean eof;
+    /** whether channel output has been shut down, after end-of-stream from peer. */
+    public boolean shutdown;
 
     /**
-     * Create new stream pump.
+     * Create new proxy connection state.
      *
-     * @param in input stream to read
-     * @param out output stream to write to
+     * @param channel connection channel
+     * @param key connection selection key
      */
-    public StreamPump(InputStream in, OutputStream out)
+    public Connection(SocketChannel channel, SelectionKey key)
     {
-      this.in = in;
-      this.out = out;
+      this.channel = channel;
+      this.key = key;
+      this.state = STATE_CONTROL;
+      this.in = ByteBuffer.allocate(CONTROL_SIZE);
     }
 
     /**
-     * Pumps from input to output, until end-of-file or error.
+     * Add or remove interest in a set of operations.
+     *
+     * @param ops operations
+     * @param on whether to add (or remove) interest
      */
-    public void run()
+    public void interest(int ops, boolean on)
     {
-      final byte[] buf = new byte[10240];
-      try
+      if(!key.isValid()) return;
+      key.interestOps(on ? key.interestOps() | ops : key.interestOps() & ~ops);
+    }
+
+  } // class: Connection
+
+
+  /**
+   * Parse a control command from a buffer. Control commands are written by
+   * the proxy sockets through an ObjectOutputStream, that is: a stream
+   * header followed by one or more block data records.
+   *
+   * @param b buffer containing control input (in read mode); its position
+   *   is advanced past the command, if complete
+   * @return command payload; null if command incomplete
+   * @throws IOException invalid control input
+   */
+  private static DataInputStream parseControl(ByteBuffer b) throws IOException
+  {
+    int start = b.position();
+    byte[] payload = new byte[COMMAND_MAX_LENGTH];
+    int count = 0, needed = 1;
+    if(b.remaining()<4)
+    {
+      return null;
+    }
+    if(b.getShort()!=ObjectStreamConstants.STREAM_MAGIC
+        || b.getShort()!=ObjectStreamConstants.STREAM_VERSION)
+    {
+      throw new IOException("invalid proxy control stream header");
+    }
+    while(count<needed)
+    {
+      int len = -1;
+      if(b.remaining()>=2 && b.get(b.position())==ObjectStreamConstants.TC_BLOCKDATA)
       {
-        int n = in.read(buf);
-        while(n!=-1)
-        {
-          out.write(buf, 0, n);
-          out.flush();
-          n = in.read(buf);
-        }
+        b.get();
+        len = b.get() & 0xff;
       }
-      catch(IOException e)
+      else if(b.remaining()>=5 && b.get(b.position())==ObjectStreamConstants.TC_BLOCKDATALONG)
       {
+        b.get();
+        len = b.getInt();
       }
-      try
+      else if(b.hasRemaining() && b.get(b.position())!=ObjectStreamConstants.TC_BLOCKDATA
+          && b.get(b.position())!=ObjectStreamConstants.TC_BLOCKDATALONG)
       {
-        out.close();
+        throw new IOException("invalid proxy control record");
       }
-      catch(IOException e)
+      if(len<0 || len>b.remaining())
       {
+        // incomplete command
+        b.position(start);
+        return null;
       }
-      try
+      if(count+len>payload.length)
       {
-        in.close();
+        throw new IOException("invalid proxy control length");
       }
-      catch(IOException e)
+      b.get(payload, count, len);
+      count += len;
+      if(count>0)
       {
+        switch(payload[0])
+        {
+          case COMMAND_NOOP:    needed = 1;  break;
+          case COMMAND_LISTEN:  needed = 9;  break;
+          case COMMAND_CONNECT: needed = 13; break;
+          default:
+            throw new IOException("invalid proxy command: "+payload[0]);
+        }
       }
     }
-
-  } // class: ProxyPoint
-
+    if(count!=needed)
+    {
+      throw new IOException("invalid proxy control length");
+    }
+    return new DataInputStream(new ByteArrayInputStream(payload, 0, count));
+  }
 
   /**
-   * Pump data between two sockets in both directions, and close both if one fails.
-   * This method is not particularly efficient... it creates three threads to deal with
-   * the work, rather than performing selects, and non-blocking i/o.
+   * Create a control reply, in the format expected by the proxy sockets.
    *
-   * @param s1 first socket to pump
-   * @param s2 second socket to pump
-   * @throws IOException when i/o fails (before pumping begins)
+   * @param cmd reply command, or COMMAND_INVALID for none
+   * @param addr reply address, or null for none
+   * @param port reply port
+   * @return serialized control reply
    */
-  public static void pumpSocket(final Socket s1, final Socket s2) throws IOException
+  private static ByteBuffer createControl(byte cmd, InetAddress addr, int port)
   {
-    final InputStream in1 = s1.getInputStream(), in2 = s2.getInputStream();
-    final OutputStream out1 = s1.getOutputStream(), out2 = s2.getOutputStream();
-    Runnable r = new Runnable()
+    try
     {
-      public void run()
-      {
-        Thread t1 = new Thread(new StreamPump(in1, out2));
-        Thread t2 = new Thread(new StreamPump(in2, out1));
-        t1.start();
-        t2.start();
-        try
-        {
-          t1.join();
-        }
-        catch(InterruptedException e)
-        {
-        }
-        try
-        {
-          t2.join();
-        }
-        catch(InterruptedException e)
-        {
-        }
-        try
-        {
-          s1.close();
-        }
-        catch(IOException e)
-        {
-        }
-        try
-        {
-          s2.close();
-        }
-        catch(IOException e)
-        {
-        }
-      }
-    };
-    Thread t = new Thread(r);
-    t.start();
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      ObjectOutputStream os = new ObjectOutputStream(bos);
+      if(cmd!=COMMAND_INVALID) os.writeByte(cmd);
+      if(addr!=null) os.write(addr.getAddress());
+      os.writeInt(port);
+      os.flush();
+      return ByteBuffer.wrap(bos.toByteArray());
+    }
+    catch(IOException e)
+    {
+      throw new RuntimeException("unable to create proxy control reply: "+e);
+    }
   }
 
   /**
-   * Read and parse IP address from input stream.
+   * Write a control reply to a connection. Replies are tiny and are only
+   * sent before any relay data, so they always fit the socket send buffer.
    *
-   * @param is input stream to read
-   * @return IP address read
+   * @param c connection
+   * @param reply serialized control reply
    * @throws IOException when i/o fails
    */
-  public static InetAddress readInetAddress(ObjectInputStream is) throws IOException
+  private static void writeControl(Connection c, ByteBuffer reply) throws IOException
   {
-    byte[] b = new byte[4];
-    is.readFully(b);
-    return InetAddress.getByAddress(b);
+    c.channel.write(reply);
+    if(reply.hasRemaining()) throw new IOException("proxy control reply not sent");
   }
 
+
   //////////////////////////////////////////////////
   // locals
   //
 
-  /** proxy server listen socket. */
-  private ServerSocket ss;
-  /** listen sockets: SocketAddress -- Socket. */
+  /** proxy server listen channel. */
+  private ServerSocketChannel ss;
+  /** proxy server selector. */
+  private Selector selector;
+  /** proxied server sockets waiting for clients: InetSocketAddress -- Connection. */
   private Hashtable listen;
+  /** proxied clients waiting for a server socket: Connection. */
+  private Vector connecting;
+  /** relay buffers. */
+  private Pool.BufferPool buffers;
+  /** time of last statistics output. */
+  private long statsTime;
+
+  /** statistics: connections accepted. */
+  private long statAccepted;
+  /** statistics: listen commands processed. */
+  private long statListens;
+  /** statistics: connect commands processed. */
+  private long statConnects;
+  /** statistics: connect commands refused, for lack of server. */
+  private long statRefused;
+  /** statistics: relays established. */
+  private long statRelays;
+  /** statistics: relays currently active. */
+  private long statRelaysActive;
+  /** statistics: bytes relayed. */
+  private long statBytes;
 
   //////////////////////////////////////////////////
   // proxy logic
@@ -495,14 +623,50 @@ public class ProxyPoint
   /**
    * Create a new ProxyPoint server object.
    *
-   * @param port port for incoming connections
+   * @param port port for incoming connections; 0 for any free port
    * @throws IOException when i/o fails
    */
   public ProxyPoint(int port) throws IOException
   {
-    ss = new ServerSocket(port);
+    selector = Selector.open();
+    ss = ServerSocketChannel.open();
+    ss.socket().setReuseAddress(true);
+    ss.socket().bind(new InetSocketAddress(port));
+    ss.configureBlocking(false);
+    ss.register(selector, SelectionKey.OP_ACCEPT);
     listen = new Hashtable();
-    if(DEBUG) System.out.println("Proxying on port: "+port);
+    connecting = new Vector();
+    buffers = new Pool.BufferPool(BUFFER_SIZE, BUFFER_POOL_SIZE);
+    statsTime = System.currentTimeMillis();
+    if(DEBUG) System.out.println("Proxying on port: "+getPort());
+  }
+
+  /**
+   * Return proxy server port.
+   *
+   * @return proxy server port
+   */
+  public int getPort()
+  {
+    return ss.socket().getLocalPort();
+  }
+
+  /**
+   * Return proxy server statistics.
+   *
+   * @return proxy server statistics
+   */
+  public String getStats()
+  {
+    return "accepted="+statAccepted
+      +" listens="+statListens
+      +" connects="+statConnects
+      +" refused="+statRefused
+      +" relays="+statRelays
+      +" active="+statRelaysActive
+      +" waiting="+listen.size()+"/"+connecting.size()
+      +" bytes="+statBytes
+      +" buffers="+buffers.getAllocated();
   }
 
   /**
@@ -523,94 +687,305 @@ public class ProxyPoint
   }
 
   /**
-   * Block for and process a single incoming connection.
+   * Accept an incoming connection.
+   *
+   * @throws IOException when i/o fails
    */
-  public void accept()
+  private void acceptConnection() throws IOException
   {
-    try
+    SocketChannel sc = ss.accept();
+    if(sc==null) return;
+    sc.configureBlocking(false);
+    sc.socket().setKeepAlive(true);
+    sc.socket().setTcpNoDelay(true);
+    SelectionKey key = sc.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(sc, key));
+    statAccepted++;
+  }
+
+  /**
+   * Process readable connection.
+   *
+   * @param c connection
+   * @throws IOException when i/o fails
+   */
+  private void readable(Connection c) throws IOException
+  {
+    if(c.state==Connection.STATE_RELAY)
+    {
+      if(c.channel.read(c.in)<0) c.eof = true;
+      relay(c);
+      return;
+    }
+    if(c.channel.read(c.in)<0)
+    {
+      close(c);
+      return;
+    }
+    if(c.state!=Connection.STATE_CONTROL)
+    {
+      // listening server or waiting client sends data before pairing
+      if(!c.in.hasRemaining()) throw new IOException("unexpected proxy data");
+      return;
+    }
+    c.in.flip();
+    DataInputStream is = parseControl(c.in);
+    c.in.compact();
+    if(is==null)
+    {
+      if(!c.in.hasRemaining()) throw new IOException("proxy control command too long");
+      return;
+    }
+    switch(is.readByte())
     {
-      final Socket s = ss.accept();
-      Thread t = new Thread(new Runnable() {
-        public void run() 
+      case COMMAND_NOOP:
+        close(c);
+        break;
+      case COMMAND_LISTEN:
         {
-          try 
-          {
-            ObjectInputStream is = new ObjectInputStream(s.getInputStream());
-            byte cmd = is.readByte();
-            switch(cmd)
-            {
-              case COMMAND_NOOP:
-                s.close();
-                break;
-              case COMMAND_LISTEN:
-                {
-                  InetAddress addr = readInetAddress(is);
-                  int port = is.readInt();
-                  if(port==0)
-                  {
-                    port = getUnusedPort(addr);
-                    ObjectOutputStream os = new ObjectOutputStream(s.getOutputStream());
-                    os.writeInt(port);
-                    os.flush();
-                  }
-                  InetSocketAddress remote = new InetSocketAddress(addr, port);
-                  if(DEBUG) System.out.println("listen: "+remote);
-                  listen.put(remote, s);
-                  break;
-                }
-              case COMMAND_CONNECT:
-                {
-                  InetAddress src = readInetAddress(is);
-                  InetAddress dst = readInetAddress(is);
-                  int port = is.readInt();
-                  InetSocketAddress remote = new InetSocketAddress(dst, port);
-                  if(DEBUG) System.out.println("connect: "+remote);
-                  Socket server = (Socket)listen.remove(remote);
-                  int tries = 3;
-                  long delay = 3000;
-                  while(server==null && tries>0)
-                  {
-                    tries--;
-                    try
-                    {
-                      Thread.sleep(delay);
-                    }
-                    catch(InterruptedException e)
-                    {
-                    }
-                    server = (Socket)listen.remove(remote);
-                  }
-                  if(server!=null)
-                  {
-                    ObjectOutputStream osClient = new ObjectOutputStream(s.getOutputStream());
-                    ObjectOutputStream osServer = new ObjectOutputStream(server.getOutputStream());
-                    osClient.writeByte(COMMAND_CONNECTED);
-                    osClient.writeInt(server.getPort());
-                    osClient.flush();
-                    osServer.writeByte(COMMAND_CONNECTED);
-                    osServer.write(src.getAddress());
-                    osServer.writeInt(s.getPort());
-                    osServer.flush();
-                    pumpSocket(s, server);
-                  }
-                  else
-                  {
-                    s.close();
-                  }
-                  break;
-                }
-              default:
-                throw new RuntimeException("invalid operation");
-            }
-          }
-          catch(Exception e)
+          InetAddress addr = readInetAddress(is);
+          int port = is.readInt();
+          if(port==0)
           {
+            port = getUnusedPort(addr);
+            writeControl(c, createControl(COMMAND_INVALID, null, port));
           }
+          c.address = new InetSocketAddress(addr, port);
+          c.state = Connection.STATE_LISTEN;
+          if(DEBUG) System.out.println("listen: "+c.address);
+          listen.put(c.address, c);
+          statListens++;
+          break;
+        }
+      case COMMAND_CONNECT:
+        {
+          c.source = readInetAddress(is);
+          InetAddress dst = readInetAddress(is);
+          int port = is.readInt();
+          c.address = new InetSocketAddress(dst, port);
+          c.state = Connection.STATE_CONNECT;
+          c.deadline = System.currentTimeMillis()+CONNECT_TIMEOUT;
+          if(DEBUG) System.out.println("connect: "+c.address);
+          connecting.add(c);
+          statConnects++;
+          break;
         }
-      });
-      t.start();
+      default:
+        throw new RuntimeException("invalid operation");
     }
-    catch(Exception e)
+  }
+
+  /**
+   * Pair waiting clients with listening servers, and refuse clients that
+   * have waited too long.
+   */
+  private void matchConnections()
+  {
+    long now = System.currentTimeMillis();
+    for(int i=0; i<connecting.size(); )
+    {
+      Connection client = (Connection)connecting.elementAt(i);
+      Connection server = (Connection)listen.remove(client.address);
+      if(server!=null)
+      {
+        connecting.remove(i);
+        try
+        {
+          pair(client, server);
+        }
+        catch(IOException e)
+        {
+          close(client);
+          close(server);
+        }
+      }
+      else if(now>client.deadline)
+      {
+        connecting.remove(i);
+        statRefused++;
+        close(client);
+      }
+      else
+      {
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Connect a proxied client and server, and begin relaying.
+   *
+   * @param client waiting proxied client connection
+   * @param server listening proxied server connection
+   * @throws IOException when i/o fails
+   */
+  private void pair(Connection client, Connection server) throws IOException
+  {
+    writeControl(client, createControl(COMMAND_CONNECTED, null, server.channel.socket().getPort()));
+    writeControl(server, createControl(COMMAND_CONNECTED, client.source, client.channel.socket().getPort()));
+    client.peer = server;
+    server.peer = client;
+    startRelay(client);
+    startRelay(server);
+    statRelays++;
+    statRelaysActive++;
+    if(DEBUG) System.out.println("relay: "+client.channel.socket().getRemoteSocketAddress()+" -> "+client.address);
+    // forward any data that arrived with the control commands
+    relay(client);
+    relay(server);
+  }
+
+  /**
+   * Move connection into relay state, with a pooled relay buffer.
+   *
+   * @param c connection
+   */
+  private void startRelay(Connection c)
+  {
+    ByteBuffer b = buffers.get();
+    c.in.flip();
+    b.put(c.in);
+    c.in = b;
+    c.state = Connection.STATE_RELAY;
+    c.interest(SelectionKey.OP_READ, true);
+  }
+
+  /**
+   * Write relay data read from a connection directly to its peer. If the
+   * peer can not accept all of it, stop reading from the connection until
+   * the peer becomes writable. Once the connection has reached
+   * end-of-stream and all its data is written, the peer output is shut
+   * down; the relay is closed when both directions are done.
+   *
+   * @param c source connection
+   * @throws IOException when i/o fails
+   */
+  private void relay(Connection c) throws IOException
+  {
+    c.in.flip();
+    if(c.in.hasRemaining())
+    {
+      statBytes += c.peer.channel.write(c.in);
+    }
+    boolean blocked = c.in.hasRemaining();
+    c.in.compact();
+    c.interest(SelectionKey.OP_READ, !blocked && !c.eof);
+    c.peer.interest(SelectionKey.OP_WRITE, blocked);
+    if(!blocked && c.eof && !c.peer.shutdown)
+    {
+      c.peer.channel.socket().shutdownOutput();
+      c.peer.shutdown = true;
+    }
+    if(c.shutdown && c.peer.shutdown)
+    {
+      close(c);
+    }
+  }
+
+  /**
+   * Close a connection, and its paired connection, if any. Any relay data
+   * not yet written is dropped.
+   *
+   * @param c connection
+   */
+  private void close(Connection c)
+  {
+    if(c.state==Connection.STATE_CLOSED) return;
+    if(c.state==Connection.STATE_RELAY)
+    {
+      if(c.peer.state!=Connection.STATE_CLOSED) statRelaysActive--;
+      buffers.put(c.in);
+    }
+    if(c.state==Connection.STATE_LISTEN && listen.get(c.address)==c)
+    {
+      listen.remove(c.address);
+    }
+    if(c.state==Connection.STATE_CONNECT)
+    {
+      connecting.remove(c);
+    }
+    c.state = Connection.STATE_CLOSED;
+    c.in = null;
+    c.key.cancel();
+    try
+    {
+      c.channel.close();
+    }
+    catch(IOException e)
+    {
+    }
+    if(c.peer!=null)
+    {
+      close(c.peer);
+    }
+  }
+
+  /**
+   * Block for, and process, a single round of ready connections.
+   *
+   * @throws IOException when i/o fails
+   */
+  public void select() throws IOException
+  {
+    selector.select(SELECT_INTERVAL);
+    Iterator it = selector.selectedKeys().iterator();
+    while(it.hasNext())
+    {
+      SelectionKey key = (SelectionKey)it.next();
+      it.remove();
+      if(!key.isValid()) continue;
+      if(key.isAcceptable())
+      {
+        acceptConnection();
+        continue;
+      }
+      Connection c = (Connection)key.attachment();
+      try
+      {
+        if(key.isWritable())
+        {
+          relay(c.peer);
+        }
+        if(key.isValid() && key.isReadable())
+        {
+          readable(c);
+        }
+      }
+      catch(Exception e)
+      {
+        close(c);
+      }
+    }
+    matchConnections();
+    if(DEBUG && System.currentTimeMillis()-statsTime>STATS_INTERVAL)
+    {
+      statsTime = System.currentTimeMillis();
+      System.out.println("stats: "+getStats());
+    }
+  }
+
+  /**
+   * Close proxy server and all its connections.
+   */
+  public void close()
+  {
+    Iterator it = selector.keys().iterator();
+    while(it.hasNext())
+    {
+      SelectionKey key = (SelectionKey)it.next();
+      try
+      {
+        key.channel().close();
+      }
+      catch(IOException e)
+      {
+      }
+    }
+    try
+    {
+      selector.close();
+    }
+    catch(IOException e)
     {
     }
   }
@@ -618,14 +993,14 @@ public class ProxyPoint
   /**
    * Entry point to start a proxy point server.
    *
-   * @param args command-line parameters
+   * @param args command-line parameters: [port]
    */
   public static void main(String[] args)
   {
     try
     {
-      ProxyPoint pp = new ProxyPoint(PROXY_PORT);
-      while(true) pp.accept();
+      ProxyPoint pp = new ProxyPoint(args.length>0 ? Integer.parseInt(args[0]) : PROXY_PORT);
+      while(true) pp.select();
     }
     catch(IOException e)
     {
@@ -634,4 +1009,3 @@ public class ProxyPoint
   }
 
 } // class: ProxyPoint
-
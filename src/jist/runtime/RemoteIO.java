@@ -12,9 +12,14 @@ package jist.runtime;
 import java.io.*;
 import java.rmi.*;
 import java.rmi.server.*;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.util.zip.*;
 
 /** 
- * RMI-based remote input and output streams.
+ * RMI-based remote input and output streams. Output is buffered at the
+ * local side and forwarded asynchronously in (compressed) chunks, so that
+ * writers do not wait on the network.
  *
  * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
  * @version $Id: RemoteIO.java,v 1.10 2004-04-06 16:07:43 barr Exp $
@@ -24,6 +29,58 @@ import java.rmi.server.*;
 public class RemoteIO
 {
 
+  //////////////////////////////////////////////////
+  // helpers
+  //
+
+  /**
+   * Read up to len bytes into the given buffer, and return an array of
+   * exactly the bytes read.
+   *
+   * @param in input stream
+   * @param buf read buffer, at least len bytes
+   * @param len number of bytes to read
+   * @return array of bytes read; null for EOF
+   * @throws IOException underlying input/output error
+   */
+  private static byte[] copyRead(InputStream in, byte[] buf, int len) throws IOException
+  {
+    int n = in.read(buf, 0, len);
+    if(n<0) return null;
+    byte[] b = new byte[n];
+    System.arraycopy(buf, 0, b, 0, n);
+    return b;
+  }
+
+  /**
+   * Decompress a chunk of compressed output.
+   *
+   * @param b compressed bytes
+   * @param len uncompressed length
+   * @return uncompressed bytes
+   * @throws IOException corrupt chunk
+   */
+  private static byte[] inflate(byte[] b, int len) throws IOException
+  {
+    Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(b);
+      byte[] result = new byte[len];
+      int n = inflater.inflate(result);
+      if(n!=len || !inflater.finished()) throw new IOException("corrupt compressed output chunk");
+      return result;
+    }
+    catch(DataFormatException e)
+    {
+      throw new IOException("corrupt compressed output chunk: "+e.getMessage());
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
   //////////////////////////////////////////////////
   // INPUT
   //
@@ -130,6 +187,11 @@ public class RemoteIO
      */
     private InputStream lin;
 
+    /**
+     * Read buffer, reused across calls.
+     */
+    private byte[] buf;
+
     /**
      * Create a new remote input stream server.
      *
@@ -166,11 +228,8 @@ public class RemoteIO
     /** {@inheritDoc} */
     public byte[] read(int len) throws IOException, RemoteException
     {
-      byte[] b = new byte[len];
-      int n = lin.read(b);
-      byte[] b2 = new byte[n];
-      System.arraycopy(b, 0, b2, 0, n);
-      return b2;
+      if(buf==null || buf.length<len) buf = new byte[len];
+      return copyRead(lin, buf, len);
     }
 
     /** {@inheritDoc} */
@@ -194,6 +253,11 @@ public class RemoteIO
      */
     private InputStream lin;
 
+    /**
+     * Read buffer, reused across calls.
+     */
+    private byte[] buf;
+
     /**
      * Create a new remote input stream server.
      *
@@ -229,11 +293,8 @@ public class RemoteIO
     /** {@inheritDoc} */
     public byte[] read(int len) throws IOException
     {
-      byte[] b = new byte[len];
-      int n = lin.read(b);
-      byte[] b2 = new byte[n];
-      System.arraycopy(b, 0, b2, 0, n);
-      return b2;
+      if(buf==null || buf.length<len) buf = new byte[len];
+      return copyRead(lin, buf, len);
     }
 
     /** {@inheritDoc} */
@@ -285,6 +346,16 @@ public class RemoteIO
      */
     void write(byte[] b, int off, int len) throws IOException, RemoteException;
 
+    /**
+     * Write a chunk of deflate-compressed bytes.
+     *
+     * @param b compressed bytes
+     * @param len uncompressed length
+     * @throws IOException underlying input/output error
+     * @throws RemoteException rpc failure
+     */
+    void writeCompressed(byte[] b, int len) throws IOException, RemoteException;
+
     /**
      * Flush output.
      * @throws IOException underlying input/output error
@@ -303,16 +374,100 @@ public class RemoteIO
 
 
   /**
-   * Local-side of remote output stream.
+   * Local-side of remote output stream. Writes are coalesced into a local
+   * buffer, which is handed to a sender thread when it fills up, when the
+   * stream is flushed, or when data has been waiting for longer than
+   * <code>FLUSH_INTERVAL</code>. The sender forwards each chunk with a single
+   * remote call, compressed when that helps, so writers never wait on the
+   * network unless <code>MAX_PENDING</code> chunks are already in transit,
+   * or they flush. The sender is a daemon thread that runs only while there
+   * is output to forward, so an idle stream holds no thread, and may be
+   * collected even if it is never closed. Remote failures are reported on
+   * the next write, flush or close.
    */
-  public static class RemoteOutputStream extends OutputStream
+  public static class RemoteOutputStream extends OutputStream implements Runnable
   {
 
+    /**
+     * Size of output chunks (bytes).
+     */
+    public static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Maximum delay of buffered output (milliseconds).
+     */
+    public static final long FLUSH_INTERVAL = 200;
+
+    /**
+     * Maximum number of chunks awaiting transmission, beyond which writers block.
+     */
+    public static final int MAX_PENDING = 16;
+
+    /**
+     * Minimum size of compressed chunks (bytes).
+     */
+    public static final int COMPRESS_MIN = 512;
+
     /**
      * Stub of remote-side of remote output stream.
      */
     private RemoteOutputStreamRemote rout;
 
+    /**
+     * Current output buffer.
+     */
+    private byte[] buf;
+
+    /**
+     * Number of bytes in current output buffer.
+     */
+    private int count;
+
+    /**
+     * Time of first write into current output buffer.
+     */
+    private long bufTime;
+
+    /**
+     * Chunks awaiting transmission: buffers and their lengths.
+     */
+    private LinkedList pending, pendingLength;
+
+    /**
+     * Transmitted buffers, available for reuse.
+     */
+    private Vector free;
+
+    /**
+     * Whether stream is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Remote failure, if any.
+     */
+    private IOException failure;
+
+    /**
+     * Chunk compressor (used only by sender).
+     */
+    private Deflater deflater;
+
+    /**
+     * Compression buffer (used only by sender).
+     */
+    private byte[] zbuf;
+
+    /**
+     * Sender thread, or null if idle.
+     */
+    private Thread sender;
+
+    /**
+     * Whether sender is transmitting a chunk.
+     */
+    private boolean sending;
+
     /**
      * Create a new local-side remote output stream connected to the given
      * remote output stream stub.
@@ -322,6 +477,165 @@ public class RemoteIO
     public RemoteOutputStream(RemoteOutputStreamRemote rout)
     {
       this.rout = rout;
+      buf = new byte[BUFFER_SIZE];
+      pending = new LinkedList();
+      pendingLength = new LinkedList();
+      free = new Vector();
+      deflater = new Deflater(Deflater.BEST_SPEED);
+      zbuf = new byte[BUFFER_SIZE];
+    }
+
+    //////////////////////////////////////////////////
+    // helpers
+    //
+
+    /**
+     * Throw remote failure, if any, or fail if stream closed.
+     *
+     * @throws IOException remote failure or stream closed
+     */
+    private void check() throws IOException
+    {
+      if(failure!=null) throw failure;
+      if(closed) throw new IOException("remote output stream closed");
+    }
+
+    /**
+     * Start sender thread, unless running. Called with lock held.
+     */
+    private void startSender()
+    {
+      if(sender!=null) return;
+      sender = new Thread(this, "RemoteOutput");
+      sender.setDaemon(true);
+      sender.start();
+    }
+
+    /**
+     * Hand current output buffer to sender. Called with lock held.
+     *
+     * @param block whether to wait while too many chunks are pending
+     * @throws IOException remote failure
+     */
+    private void handoff(boolean block) throws IOException
+    {
+      if(count==0) return;
+      while(block && pending.size()>=MAX_PENDING && failure==null)
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException e)
+        {
+          throw new InterruptedIOException("interrupted waiting on remote output");
+        }
+      }
+      if(failure!=null) throw failure;
+      pending.addLast(buf);
+      pendingLength.addLast(new Integer(count));
+      buf = free.isEmpty() ? new byte[BUFFER_SIZE] : (byte[])free.remove(free.size()-1);
+      count = 0;
+      notifyAll();
+    }
+
+    /**
+     * Transmit a single chunk, compressed if worthwhile.
+     *
+     * @param b chunk buffer
+     * @param len chunk length
+     * @throws IOException remote failure
+     */
+    private void transmit(byte[] b, int len) throws IOException
+    {
+      if(len>=COMPRESS_MIN)
+      {
+        deflater.reset();
+        deflater.setInput(b, 0, len);
+        deflater.finish();
+        int n = deflater.deflate(zbuf);
+        if(deflater.finished() && n<len)
+        {
+          byte[] z = new byte[n];
+          System.arraycopy(zbuf, 0, z, 0, n);
+          rout.writeCompressed(z, len);
+          return;
+        }
+      }
+      byte[] b2 = new byte[len];
+      System.arraycopy(b, 0, b2, 0, len);
+      rout.write(b2);
+    }
+
+    //////////////////////////////////////////////////
+    // sender
+    //
+
+    /**
+     * Sender thread: transmit pending chunks, and hand off buffered output
+     * that has been waiting too long. Exits when there is no more output,
+     * or on remote failure.
+     */
+    public void run()
+    {
+      while(true)
+      {
+        byte[] b;
+        int len;
+        synchronized(this)
+        {
+          while(pending.isEmpty() && count>0 && failure==null)
+          {
+            long wait = bufTime+FLUSH_INTERVAL-System.currentTimeMillis();
+            if(wait<=0)
+            {
+              try
+              {
+                handoff(false);
+              }
+              catch(IOException e)
+              {
+              }
+              continue;
+            }
+            try
+            {
+              wait(wait);
+            }
+            catch(InterruptedException e)
+            {
+            }
+          }
+          if(pending.isEmpty() || failure!=null)
+          {
+            pending.clear();
+            pendingLength.clear();
+            sender = null;
+            notifyAll();
+            return;
+          }
+          b = (byte[])pending.removeFirst();
+          len = ((Integer)pendingLength.removeFirst()).intValue();
+          sending = true;
+        }
+        try
+        {
+          transmit(b, len);
+        }
+        catch(IOException e)
+        {
+          synchronized(this)
+          {
+            failure = e;
+          }
+        }
+        synchronized(this)
+        {
+          sending = false;
+          free.add(b);
+          notifyAll();
+        }
+      }
     }
 
     //////////////////////////////////////////////////
@@ -329,32 +643,102 @@ public class RemoteIO
     //
 
     /** {@inheritDoc} */
-    public void write(int b) throws IOException
+    public synchronized void write(int b) throws IOException
     {
-      rout.write(b);
+      check();
+      if(count==0)
+      {
+        bufTime = System.currentTimeMillis();
+        startSender();
+      }
+      buf[count++] = (byte)b;
+      if(count==buf.length) handoff(true);
     }
 
     /** {@inheritDoc} */
     public void write(byte[] b) throws IOException
     {
-      rout.write(b);
+      write(b, 0, b.length);
     }
 
     /** {@inheritDoc} */
-    public void write(byte[] b, int off, int len) throws IOException
+    public synchronized void write(byte[] b, int off, int len) throws IOException
     {
-      rout.write(b, off, len);
+      check();
+      while(len>0)
+      {
+        if(count==0)
+        {
+          bufTime = System.currentTimeMillis();
+          startSender();
+        }
+        int n = Math.min(len, buf.length-count);
+        System.arraycopy(b, off, buf, count, n);
+        count += n;
+        off += n;
+        len -= n;
+        if(count==buf.length) handoff(true);
+      }
     }
 
-    /** {@inheritDoc} */
-    public void flush() throws IOException
+    /**
+     * Transmit all buffered output, and flush the remote output stream.
+     *
+     * @throws IOException remote failure
+     */
+    public synchronized void flush() throws IOException
     {
+      check();
+      handoff(true);
+      while((!pending.isEmpty() || sending) && failure==null)
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException e)
+        {
+          throw new InterruptedIOException("interrupted waiting on remote output");
+        }
+      }
+      if(failure!=null) throw failure;
       rout.flush();
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Transmit all buffered output, and close the remote output stream.
+     *
+     * @throws IOException remote failure
+     */
     public void close() throws IOException
     {
+      Thread t;
+      synchronized(this)
+      {
+        if(closed) return;
+        try
+        {
+          handoff(true);
+        }
+        finally
+        {
+          closed = true;
+          t = sender;
+        }
+      }
+      if(t!=null)
+      {
+        try
+        {
+          t.join();
+        }
+        catch(InterruptedException e)
+        {
+          throw new InterruptedIOException("interrupted waiting on remote output");
+        }
+      }
+      deflater.end();
+      if(failure!=null) throw failure;
       rout.close();
     }
 
@@ -418,6 +802,13 @@ public class RemoteIO
       lout.write(b, off, len);
     }
 
+    /** {@inheritDoc} */
+    public void writeCompressed(byte[] b, int len) throws IOException, RemoteException
+    {
+      lout.write(inflate(b, len));
+      lout.flush();
+    }
+
     /** {@inheritDoc} */
     public void flush() throws IOException, RemoteException
     {
@@ -489,6 +880,13 @@ public class RemoteIO
       lout.write(b, off, len);
     }
 
+    /** {@inheritDoc} */
+    public void writeCompressed(byte[] b, int len) throws IOException
+    {
+      lout.write(inflate(b, len));
+      lout.flush();
+    }
+
     /** {@inheritDoc} */
     public void flush() throws IOException
     {
@@ -519,8 +917,13 @@ public class RemoteIO
     /** underlying PrintStream. */
     private PrintStream out;
 
+    /** failure recorder of underlying output stream, or null. */
+    private ErrorTrap trap;
+
     /**
-     * Create new PrintStream that throws exceptions on error.
+     * Create new PrintStream that throws exceptions on error. Errors are
+     * detected with checkError, which flushes the underlying PrintStream
+     * after every print.
      *
      * @param out underlying PrintStream
      */
@@ -531,12 +934,35 @@ public class RemoteIO
       check(); 
     }
 
+    /**
+     * Create new PrintStream that throws exceptions on error. Errors are
+     * detected as they occur, so output is flushed only on request.
+     *
+     * @param out underlying output stream
+     */
+    public PrintStreamWithExceptions(OutputStream out)
+    {
+      this(new ErrorTrap(out));
+    }
+
+    /**
+     * Create new PrintStream that throws exceptions on error.
+     *
+     * @param trap failure recorder of underlying output stream
+     */
+    private PrintStreamWithExceptions(ErrorTrap trap)
+    {
+      super(new PrintStream(trap));
+      this.out=(PrintStream)super.out;
+      this.trap=trap;
+    }
+
     /**
      * Throw exception on error in underlying PrintStream.
      */
     private void check()
     {
-      if(out.checkError()) throw new RuntimeException("IOException");
+      if(trap!=null ? trap.failed : out.checkError()) throw new RuntimeException("IOException");
     }
 
     //////////////////////////////////////////////////
@@ -684,5 +1110,169 @@ public class RemoteIO
 
   } // class: PrintStreamWithExceptions
 
+
+  /**
+   * Output stream filter that records failures, so that they can be
+   * detected without flushing.
+   */
+  private static class ErrorTrap extends FilterOutputStream
+  {
+
+    /** whether an operation failed. */
+    private boolean failed;
+
+    /**
+     * Create new failure recorder.
+     *
+     * @param out underlying output stream
+     */
+    public ErrorTrap(OutputStream out)
+    {
+      super(out);
+    }
+
+    //////////////////////////////////////////////////
+    // inherited from FilterOutputStream
+    //
+
+    /** {@inheritDoc} */
+    public void write(int b) throws IOException
+    {
+      try
+      {
+        out.write(b);
+      }
+      catch(IOException e)
+      {
+        failed = true;
+        throw e;
+      }
+    }
+
+    /** {@inheritDoc} */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      try
+      {
+        out.write(b, off, len);
+      }
+      catch(IOException e)
+      {
+        failed = true;
+        throw e;
+      }
+    }
+
+    /** {@inheritDoc} */
+    public void flush() throws IOException
+    {
+      try
+      {
+        out.flush();
+      }
+      catch(IOException e)
+      {
+        failed = true;
+        throw e;
+      }
+    }
+
+    /** {@inheritDoc} */
+    public void close() throws IOException
+    {
+      try
+      {
+        out.close();
+      }
+      catch(IOException e)
+      {
+        failed = true;
+        throw e;
+      }
+    }
+
+  } // class: ErrorTrap
+
+  /**
+   * A PrintStream that forwards output to a per-thread stream. Used as a
+   * substitute System.stdout when several simulations run concurrently
+   * within a single server, each with its own (remote) output. The target
+   * stream is inherited by child threads, such as the simulation Controller
+   * thread. Threads without a target write to the default stream.
+   */
+  public static class ThreadPrintStream extends PrintStream
+  {
+
+    /** default PrintStream. */
+    private PrintStream out;
+
+    /** per-thread PrintStream. */
+    private InheritableThreadLocal target;
+
+    /**
+     * Create new per-thread PrintStream.
+     *
+     * @param out default PrintStream
+     */
+    public ThreadPrintStream(PrintStream out)
+    {
+      super(out);
+      this.out = out;
+      this.target = new InheritableThreadLocal();
+    }
+
+    /**
+     * Set PrintStream of current thread (and its future children).
+     *
+     * @param ps PrintStream of current thread, or null for default
+     */
+    public void setTarget(PrintStream ps)
+    {
+      target.set(ps);
+    }
+
+    /**
+     * Return PrintStream of current thread.
+     *
+     * @return PrintStream of current thread
+     */
+    public PrintStream getTarget()
+    {
+      PrintStream ps = (PrintStream)target.get();
+      return ps==null ? out : ps;
+    }
+
+    //////////////////////////////////////////////////
+    // inherited from PrintStream
+    //
+
+    /** {@inheritDoc} */
+    public boolean checkError()
+    {
+      return getTarget().checkError();
+    }
+    /** {@inheritDoc} */
+    public void close()
+    {
+      getTarget().flush();
+    }
+    /** {@inheritDoc} */
+    public void flush()
+    {
+      getTarget().flush();
+    }
+    /** {@inheritDoc} */
+    public void write(byte[] buf, int off, int len)
+    {
+      getTarget().write(buf, off, len);
+    }
+    /** {@inheritDoc} */
+    public void write(int b)
+    {
+      getTarget().write(b);
+    }
+
+  } // class: ThreadPrintStream
+
 } // class: RemoteIO
 
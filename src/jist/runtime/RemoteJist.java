@@ -284,6 +284,18 @@ public class RemoteJist
     /** {@inheritDoc} */
     public synchronized void addJob(Job job, boolean front) throws RemoteException
     {
+      // back-pressure: hold new jobs until there is space in the queue
+      // note: re-queued jobs (front) are always accepted
+      while(!front && jobs.size()>=Main.SERVER_QUEUE_MAX_JOBS)
+      {
+        try
+        {
+          wait(Main.SERVER_QUEUE_RELEASE_INTERVAL);
+        }
+        catch(InterruptedException e)
+        {
+        }
+      }
       if(front)
       {
         jobs.add(0, job);
@@ -332,7 +344,11 @@ public class RemoteJist
           break;
         }
       }
-      if(selected!=null) showJobs();
+      if(selected!=null) 
+      {
+        showJobs();
+        notifyAll();
+      }
       return selected;
     }
 
@@ -437,6 +453,103 @@ public class RemoteJist
   } // class: RemoteClassLoader
 
 
+  /**
+   * A class loader that loads its own private copy of the JiST runtime, so
+   * that several simulations can be processed concurrently within a single
+   * server VM, each with its own Controller, Rewriter and static state. Only
+   * the (stateless) types used to pass jobs into the isolated runtime are
+   * shared with the parent loader.
+   */
+  public static class IsolatedClassLoader extends ClassLoader
+  {
+    /**
+     * Class name prefix of isolated classes.
+     */
+    private static final String ISOLATED_PREFIX = "jist.";
+
+    /**
+     * Classes shared with the parent loader.
+     */
+    private static final String[] shared = new String[]
+    {
+      Main.CommandLineOptions.class.getName(),
+      Node.class.getName(),
+      Job.class.getName(),
+      PingRemote.class.getName(),
+      ResourceFinderRemote.class.getName(),
+      JistClientRemote.class.getName(),
+      JobQueueServerRemote.class.getName(),
+      RemoteIO.RemoteInputStreamRemote.class.getName(),
+      RemoteIO.RemoteOutputStreamRemote.class.getName(),
+    };
+
+    /**
+     * Create new isolating class loader.
+     *
+     * @param parent loader of the shared JiST runtime
+     */
+    public IsolatedClassLoader(ClassLoader parent)
+    {
+      super(parent);
+    }
+
+    /**
+     * Return whether class should be loaded privately.
+     *
+     * @param name class name
+     * @return whether class should be loaded privately
+     */
+    private static boolean isIsolated(String name)
+    {
+      if(!name.startsWith(ISOLATED_PREFIX)) return false;
+      for(int i=0; i<shared.length; i++)
+      {
+        if(shared[i].equals(name)) return false;
+      }
+      return true;
+    }
+
+    //////////////////////////////////////////////////
+    // inherited from ClassLoader
+    //
+
+    /** {@inheritDoc} */
+    protected synchronized Class loadClass(String name, boolean resolve)
+      throws ClassNotFoundException
+    {
+      if(!isIsolated(name)) return super.loadClass(name, resolve);
+      Class cl = findLoadedClass(name);
+      if(cl==null) cl = findClass(name);
+      if(resolve) resolveClass(cl);
+      return cl;
+    }
+
+    /** {@inheritDoc} */
+    protected Class findClass(String name) throws ClassNotFoundException
+    {
+      InputStream in = getParent().getResourceAsStream(name.replace('.', '/')+".class");
+      if(in==null) throw new ClassNotFoundException(name);
+      try
+      {
+        try
+        {
+          byte[] b = Util.readAll(in);
+          return defineClass(name, b, 0, b.length);
+        }
+        finally
+        {
+          in.close();
+        }
+      }
+      catch(IOException e)
+      {
+        throw new ClassNotFoundException(name+": "+e.getMessage());
+      }
+    }
+
+  } // class: IsolatedClassLoader
+
+
 
   /**
    * An RMI-based remote BCEL repository.
@@ -573,6 +686,13 @@ public class RemoteJist
      */
     void done() throws RemoteException;
 
+    /**
+     * Signal client that simulation failed, and is done.
+     * @param error description of failure
+     * @throws RemoteException rpc failure
+     */
+    void failed(String error) throws RemoteException;
+
   } // interface: JistClientRemote
 
 
@@ -594,14 +714,60 @@ public class RemoteJist
      */
     private RemoteIO.RemoteOutputStreamRemote rerr;
 
+    /**
+     * Whether server has signalled completion.
+     */
+    private boolean finished;
+
+    /**
+     * Failure signalled by server, or null.
+     */
+    private String failure;
+
     /**
      * Create new Jist client RMI "server".
      * @throws RemoteException rpc failure
      */
     public JistClient() throws RemoteException
     {
-      rout = new RemoteIO.RemoteOutputStreamReceiver(System.out);
-      rerr = new RemoteIO.RemoteOutputStreamReceiver(System.err);
+      this(System.out, System.err);
+    }
+
+    /**
+     * Create new Jist client RMI "server" with given output streams.
+     *
+     * @param out local stream for remote stdout
+     * @param err local stream for remote stderr
+     * @throws RemoteException rpc failure
+     */
+    public JistClient(OutputStream out, OutputStream err) throws RemoteException
+    {
+      rout = new RemoteIO.RemoteOutputStreamReceiver(out);
+      rerr = new RemoteIO.RemoteOutputStreamReceiver(err);
+      finished = false;
+    }
+
+    /**
+     * Wait until server signals that simulation is done.
+     *
+     * @throws InterruptedException interrupted while waiting
+     */
+    public synchronized void waitDone() throws InterruptedException
+    {
+      while(!finished)
+      {
+        wait();
+      }
+    }
+
+    /**
+     * Return failure signalled by server.
+     *
+     * @return description of simulation failure, or null if none
+     */
+    public synchronized String getFailure()
+    {
+      return failure;
     }
 
     //////////////////////////////////////////////////
@@ -626,7 +792,15 @@ public class RemoteJist
       UnicastRemoteObject.unexportObject(this, true);
       rout = null;
       rerr = null;
-      notify();
+      finished = true;
+      notifyAll();
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void failed(String error) throws RemoteException
+    {
+      failure = error;
+      done();
     }
 
     //////////////////////////////////////////////////
@@ -715,6 +889,12 @@ public class RemoteJist
       notify();
     }
 
+    /** {@inheritDoc} */
+    public void failed(String error)
+    {
+      done();
+    }
+
     //////////////////////////////////////////////////
     // ResourceFinderRemote
     //
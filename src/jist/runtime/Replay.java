@@ -0,0 +1,502 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+
+/**
+ * Records and verifies a compact digest of simulation execution, in order to
+ * find where two runs of a simulation diverge. A rolling hash of every
+ * processed event (time, entity index, method and a digest of its
+ * arguments) is written to a log after every window of events. In replay
+ * mode, the simulation is run again and compared against the log, and is
+ * halted at the first window whose hash differs, reporting the events of
+ * that window.
+ *
+ * <p>Arguments are digested by value when they are primitive wrappers,
+ * strings, entity references, arrays of these, or instances of classes that
+ * override <code>hashCode</code>. Instances of classes that only override
+ * <code>toString</code>, such as most messages, are digested by their string
+ * form, with any identity hash codes (<code>@</code> followed by hex digits)
+ * left out. All other arguments contribute only their class name, since
+ * their identity hash codes differ from run to run.
+ *
+ * @since JIST1.0
+ */
+
+public class Replay
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /** replay log magic number ("JRPL"). */
+  public static final int MAGIC = 0x4a52504c;
+
+  /** replay log format version. */
+  public static final int VERSION = 2;
+
+  /** FNV 64-bit hash offset basis. */
+  private static final long HASH_INIT = 0xcbf29ce484222325L;
+
+  /** FNV 64-bit hash prime. */
+  private static final long HASH_PRIME = 0x100000001b3L;
+
+  /** argument digest: class name only. */
+  private static final Integer DIGEST_NAME = new Integer(0);
+
+  /** argument digest: hashCode. */
+  private static final Integer DIGEST_HASH = new Integer(1);
+
+  /** argument digest: toString. */
+  private static final Integer DIGEST_STRING = new Integer(2);
+
+  /**
+   * Thrown (nested within a JistException) to halt the simulation when
+   * replay diverges from the log.
+   */
+  public static class DivergenceException extends RuntimeException
+  {
+    /**
+     * Create new divergence exception.
+     *
+     * @param msg divergence report
+     */
+    public DivergenceException(String msg)
+    {
+      super(msg);
+    }
+  } // class: DivergenceException
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** log file. */
+  private final File file;
+
+  /** log output, when recording. */
+  private DataOutputStream out;
+
+  /** log input, when replaying. */
+  private DataInputStream in;
+
+  /** number of events per window. */
+  private final int window;
+
+  /** number of events processed. */
+  private long count;
+
+  /** rolling hash of events processed. */
+  private long hash;
+
+  /** how arguments of a class are digested: Class to DIGEST_* kind. */
+  private final HashMap digestKinds;
+
+  /** events of current window, when replaying: time. */
+  private long[] winTime;
+
+  /** events of current window, when replaying: entity index. */
+  private int[] winEntity;
+
+  /** events of current window, when replaying: method. */
+  private Method[] winMethod;
+
+  /**
+   * Create new replay log, either recording a new log or verifying against
+   * an existing one.
+   *
+   * @param file log file
+   * @param replay whether to verify against existing log (or to record)
+   * @param window number of events per window, when recording
+   * @throws IOException unable to create or read log
+   */
+  public Replay(File file, boolean replay, int window) throws IOException
+  {
+    this.file = file;
+    if(replay)
+    {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if(in.readInt()!=MAGIC || in.readInt()!=VERSION)
+      {
+        in.close();
+        throw new IOException("not a replay log: "+file);
+      }
+      window = in.readInt();
+      winTime = new long[window];
+      winEntity = new int[window];
+      winMethod = new Method[window];
+    }
+    else
+    {
+      if(window<=0) throw new IllegalArgumentException("invalid replay window: "+window);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(window);
+    }
+    this.window = window;
+    this.digestKinds = new HashMap();
+    count = 0;
+    hash = HASH_INIT;
+  }
+
+  //////////////////////////////////////////////////
+  // digests
+  //
+
+  /**
+   * Mix value into hash.
+   *
+   * @param h hash
+   * @param v value
+   * @return new hash
+   */
+  private static long mix(long h, long v)
+  {
+    return (h ^ v) * HASH_PRIME;
+  }
+
+  /**
+   * Return run-independent hash of method.
+   *
+   * @param m method
+   * @return method hash
+   */
+  private static int methodHash(Method m)
+  {
+    return m==null ? 0 : m.getDeclaringClass().getName().hashCode()*31+m.getName().hashCode();
+  }
+
+  /**
+   * Return whether class overrides given method of Object.
+   *
+   * @param c class
+   * @param name method name
+   * @return whether class overrides method
+   */
+  private static boolean overrides(Class c, String name)
+  {
+    try
+    {
+      return c.getMethod(name, new Class[] { }).getDeclaringClass()!=Object.class;
+    }
+    catch(NoSuchMethodException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Return how arguments of class are digested: by hashCode, if the class
+   * overrides it, otherwise by toString, if overridden, otherwise by class
+   * name.
+   *
+   * @param c class
+   * @return DIGEST_* kind
+   */
+  private Integer getDigestKind(Class c)
+  {
+    Integer kind = (Integer)digestKinds.get(c);
+    if(kind==null)
+    {
+      if(c.isArray()) kind = DIGEST_NAME;
+      else if(overrides(c, "hashCode")) kind = DIGEST_HASH;
+      else if(overrides(c, "toString")) kind = DIGEST_STRING;
+      else kind = DIGEST_NAME;
+      digestKinds.put(c, kind);
+    }
+    return kind;
+  }
+
+  /**
+   * Return digest of string, leaving out identity hash codes: any
+   * <code>@</code> followed by hex digits.
+   *
+   * @param s string
+   * @return string digest
+   */
+  private static long digest(String s)
+  {
+    long h = HASH_INIT;
+    int n = s.length();
+    for(int i=0; i<n; i++)
+    {
+      char ch = s.charAt(i);
+      if(ch=='@')
+      {
+        while(i+1<n && Character.digit(s.charAt(i+1), 16)!=-1) i++;
+      }
+      h = mix(h, ch);
+    }
+    return h;
+  }
+
+  /**
+   * Return run-independent digest of event argument.
+   *
+   * @param o event argument
+   * @return argument digest
+   */
+  private long digest(Object o)
+  {
+    if(o==null) return 0;
+    if(o instanceof EntityRef) return ((EntityRef)o).getIndex();
+    if(Proxy.isProxyClass(o.getClass()))
+    {
+      InvocationHandler h = Proxy.getInvocationHandler(o);
+      return h instanceof EntityRef ? ((EntityRef)h).getIndex() : h.getClass().getName().hashCode();
+    }
+    if(o instanceof Object[])
+    {
+      Object[] a = (Object[])o;
+      long h = HASH_INIT;
+      for(int i=0; i<a.length; i++)
+      {
+        h = mix(h, digest(a[i]));
+      }
+      return h;
+    }
+    if(o instanceof byte[])
+    {
+      byte[] a = (byte[])o;
+      long h = HASH_INIT;
+      for(int i=0; i<a.length; i++)
+      {
+        h = mix(h, a[i]);
+      }
+      return h;
+    }
+    if(o instanceof int[])
+    {
+      int[] a = (int[])o;
+      long h = HASH_INIT;
+      for(int i=0; i<a.length; i++)
+      {
+        h = mix(h, a[i]);
+      }
+      return h;
+    }
+    if(o instanceof long[])
+    {
+      long[] a = (long[])o;
+      long h = HASH_INIT;
+      for(int i=0; i<a.length; i++)
+      {
+        h = mix(h, a[i]);
+      }
+      return h;
+    }
+    if(o instanceof double[])
+    {
+      double[] a = (double[])o;
+      long h = HASH_INIT;
+      for(int i=0; i<a.length; i++)
+      {
+        h = mix(h, Double.doubleToLongBits(a[i]));
+      }
+      return h;
+    }
+    Class c = o.getClass();
+    Integer kind = getDigestKind(c);
+    if(kind==DIGEST_HASH) return o.hashCode();
+    if(kind==DIGEST_STRING) return digest(o.toString());
+    return c.getName().hashCode();
+  }
+
+  //////////////////////////////////////////////////
+  // recording and replay
+  //
+
+  /**
+   * Return log file.
+   *
+   * @return log file
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Return whether verifying against an existing log.
+   *
+   * @return whether verifying against an existing log
+   */
+  public boolean isReplay()
+  {
+    return in!=null;
+  }
+
+  /**
+   * Digest event about to be processed, and record or verify the hash at
+   * the end of every window.
+   *
+   * @param ev event about to be processed
+   * @throws JistException on replay divergence
+   */
+  public void process(Event ev)
+  {
+    int entity = ev.ref==null ? -1 : ev.ref.getIndex();
+    long h = mix(hash, ev.time);
+    h = mix(h, entity);
+    h = mix(h, methodHash(ev.method));
+    if(ev.args!=null)
+    {
+      for(int i=0; i<ev.args.length; i++)
+      {
+        h = mix(h, digest(ev.args[i]));
+      }
+    }
+    hash = h;
+    if(in!=null)
+    {
+      int i = (int)(count % window);
+      winTime[i] = ev.time;
+      winEntity[i] = entity;
+      winMethod[i] = ev.method;
+    }
+    count++;
+    if(count % window==0)
+    {
+      endWindow(ev.time, entity, methodHash(ev.method));
+    }
+  }
+
+  /**
+   * Record or verify window hash.
+   *
+   * @param time time of last event in window
+   * @param entity entity index of last event in window
+   * @param method method hash of last event in window
+   */
+  private void endWindow(long time, int entity, int method)
+  {
+    try
+    {
+      if(out!=null)
+      {
+        out.writeLong(count);
+        out.writeLong(time);
+        out.writeLong(hash);
+        out.writeInt(entity);
+        out.writeInt(method);
+        return;
+      }
+      long expectCount, expectTime, expectHash;
+      int expectEntity, expectMethod;
+      try
+      {
+        expectCount = in.readLong();
+        expectTime = in.readLong();
+        expectHash = in.readLong();
+        expectEntity = in.readInt();
+        expectMethod = in.readInt();
+      }
+      catch(EOFException e)
+      {
+        diverge("replay continues after end of logged simulation", count);
+        return;
+      }
+      if(expectCount!=count || expectHash!=hash)
+      {
+        diverge("replay diverges from log"
+            +"\n  logged:  "+expectCount+" events, last at t="+expectTime
+            +" entity="+expectEntity+" method#"+Integer.toHexString(expectMethod)
+            +"\n  replay:  "+count+" events, last at t="+time
+            +" entity="+entity+" method#"+Integer.toHexString(method), count);
+      }
+    }
+    catch(IOException e)
+    {
+      throw new JistException("replay log failure", e);
+    }
+  }
+
+  /**
+   * Halt replay with a divergence report, listing the events of the current
+   * window.
+   *
+   * @param msg divergence message
+   * @param end number of events processed at end of window
+   */
+  private void diverge(String msg, long end)
+  {
+    StringBuffer sb = new StringBuffer(msg);
+    int n = (int)((end-1) % window)+1;
+    long start = end-n;
+    sb.append("\n  first divergent window: events "+(start+1)+" to "+end+":");
+    for(int i=0; i<n; i++)
+    {
+      Method m = winMethod[i];
+      sb.append("\n    "+(start+i+1)+": t="+winTime[i]+" entity="+winEntity[i]
+          +" "+(m==null ? "?" : m.getDeclaringClass().getName()+"."+m.getName())
+          +" (method#"+Integer.toHexString(methodHash(m))+")");
+    }
+    try
+    {
+      in.close();
+    }
+    catch(IOException e)
+    {
+    }
+    in = null;
+    throw new JistException("replay divergence", new DivergenceException(sb.toString()));
+  }
+
+  /**
+   * Record or verify final (partial) window, and close log.
+   */
+  public void close()
+  {
+    try
+    {
+      if(out!=null)
+      {
+        if(count % window!=0)
+        {
+          endWindow(-1, -1, 0);
+        }
+        out.close();
+        out = null;
+      }
+      if(in!=null)
+      {
+        long expectCount = -1, expectHash = 0;
+        try
+        {
+          expectCount = in.readLong();
+          in.readLong();
+          expectHash = in.readLong();
+        }
+        catch(EOFException e)
+        {
+        }
+        in.close();
+        in = null;
+        if(count % window!=0 ? expectCount!=count || expectHash!=hash : expectCount!=-1)
+        {
+          System.err.println("REPLAY: simulation ended after "+count
+              +" events, diverging from log"+(expectCount==-1 ? "" : " of "+expectCount+" events"));
+        }
+      }
+    }
+    catch(IOException e)
+    {
+      System.err.println("REPLAY: unable to complete replay log: "+e.getMessage());
+    }
+  }
+
+} // class: Replay
+
@@ -85,6 +85,16 @@ public final class Rewriter extends ClassLoader
    */
   public static final String JIST_STATIC_TRIGGER = JIST_FIELD_PREFIX+JIST_STATIC_TRIGGER_SUFFIX;
 
+  /**
+   * Suffix of the continuation state frame pool field.
+   */
+  public static final String JIST_FRAMEPOOL_SUFFIX = "_framePool";
+
+  /**
+   * Name of the continuation state frame pool field.
+   */
+  public static final String JIST_FRAMEPOOL = JIST_FIELD_PREFIX+JIST_FRAMEPOOL_SUFFIX;
+
   /**
    * Prefix for all classes to capture continuation state.
    */
@@ -99,6 +109,11 @@ public final class Rewriter extends ClassLoader
    * Class cache prefix.
    */
   public static final String CACHE_PREFIX = "jistRewriterCache-";
+
+  /**
+   * Class cache prefix for classes rewritten in continuation thread mode.
+   */
+  public static final String CACHE_PREFIX_THREADED = CACHE_PREFIX+"threaded-";
   
   /**
    * List of objects that are pre-defined to be timeless.
@@ -146,6 +161,9 @@ public final class Rewriter extends ClassLoader
         Channel._jistMethodStub_receive_28_29Ljava_2elang_2eObject_3b,
         Channel._jistMethodStub_send_28Ljava_2elang_2eObject_3b_29V,
         Channel._jistMethodStub_send_28Ljava_2elang_2eObject_3bZZ_29V,
+        Channel._jistMethodStub_receiveAll_28_29_5bLjava_2elang_2eObject_3b,
+        Channel._jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3b_29V,
+        Channel._jistMethodStub_sendAll_28_5bLjava_2elang_2eObject_3bZZ_29V,
       };
     }
     catch(Exception e)
@@ -202,9 +220,13 @@ public final class Rewriter extends ClassLoader
   };
 
   /**
-   * Mutex access to BCEL repository object.
+   * Mutex access to BCEL repository object. The (global) BCEL repository class
+   * itself is used, since it is shared by the rewriters of all isolated job
+   * slots.
+   *
+   * @see RemoteJist.IsolatedClassLoader
    */
-  private static Object repositoryLock = new Object();
+  private static Object repositoryLock = Repository.class;
 
   //////////////////////////////////////////////////
   // state
@@ -268,6 +290,12 @@ public final class Rewriter extends ClassLoader
    */
   private HashMap calledBy;
 
+  /**
+   * Whether blocking calls are executed on threads, rather than with
+   * continuations (CPS-transformed continuable methods).
+   */
+  private final boolean threaded;
+
   //////////////////////////////////////////////////
   // initialization
   //
@@ -302,6 +330,26 @@ public final class Rewriter extends ClassLoader
    */
   public Rewriter(String[] processedPackages, String cacheDir, RemoteJist.ResourceFinderRemote resources, PrintStream serverOut)
   {
+    this(processedPackages, cacheDir, resources, serverOut, false);
+  }
+
+  /**
+   * Initialize an Rewriter instance, with a list of packages to
+   * be processed (others are ignored).
+   *
+   * @param processedPackages list of packages to process, or null to process
+   * all packages, except those in the (default) ignoredPackages list.
+   * @param cacheDir directory for rewritten classfile cache
+   * @param resources remote resources finder
+   * @param serverOut server machine output stream
+   * @param threaded whether blocking calls are executed on threads, in which
+   *   case continuable methods are only marked, not transformed
+   */
+  public Rewriter(String[] processedPackages, String cacheDir, RemoteJist.ResourceFinderRemote resources, PrintStream serverOut, boolean threaded)
+  {
+    // delegate to the loader of this runtime (possibly an isolated job slot)
+    super(Rewriter.class.getClassLoader());
+    this.threaded = threaded;
     this.processedPackages = processedPackages;
     this.cacheDir = cacheDir;
     this.resources = resources;
@@ -627,6 +675,18 @@ public final class Rewriter extends ClassLoader
   // disk rewriter class cache
   //
 
+  /**
+   * Return disk cache file of a rewritten class. Classes rewritten for
+   * continuation threads are cached separately.
+   *
+   * @param name class name
+   * @return disk cache file
+   */
+  private File getDiskCacheFile(String name)
+  {
+    return new File(cacheDir, (threaded ? CACHE_PREFIX_THREADED : CACHE_PREFIX)+name);
+  }
+
   /**
    * Read a cached rewritten class file from disk.
    * 
@@ -637,7 +697,7 @@ public final class Rewriter extends ClassLoader
   {
     try
     {
-      File f = new File(cacheDir, CACHE_PREFIX+name);
+      File f = getDiskCacheFile(name);
       long cachetime = f.lastModified();
       // ensure cached class is newer than original
       long cltime = resources.getResourceLastModificationDate(classToFileName(name));
@@ -678,10 +738,18 @@ public final class Rewriter extends ClassLoader
   {
     try
     {
-      File f = new File(cacheDir, CACHE_PREFIX+name);
-      FileOutputStream fos = new FileOutputStream(f);
+      // write to temporary file and rename, since the cache may be shared
+      // by concurrent jobs
+      File f = getDiskCacheFile(name);
+      File tmp = File.createTempFile(CACHE_PREFIX, null, f.getParentFile());
+      FileOutputStream fos = new FileOutputStream(tmp);
       fos.write(b);
       fos.close();
+      if(!tmp.renameTo(f))
+      {
+        f.delete();
+        if(!tmp.renameTo(f)) tmp.delete();
+      }
     }
     catch(Exception e)
     {
@@ -775,6 +843,12 @@ public final class Rewriter extends ClassLoader
           }
           else
           {
+            // in thread mode, reflective calls may reach blocking code
+            if(threaded && ii.getClassName(cpg).equals(java.lang.reflect.Method.class.getName())
+                && ii.getMethodName(cpg).equals("invoke"))
+            {
+              addContinuable(mySig);
+            }
             // add to call-graph
             String isig = getSignature(ii, cpg);
             HashSet callers = (HashSet)calledBy.get(isig);
@@ -1247,6 +1321,17 @@ public final class Rewriter extends ClassLoader
     return continuable.contains(getSignature(ii, cpg));
   }
 
+  /**
+   * Whether blocking calls are executed on threads rather than with
+   * continuations.
+   *
+   * @return whether blocking calls are executed on threads
+   */
+  public boolean isThreaded()
+  {
+    return threaded;
+  }
+
   /**
    * Determine whether given class should not be rewritten. A class can turn
    * off the rewriter by implementing the <code>JistAPI.DoNotRewrite</code>
@@ -2552,6 +2637,11 @@ class RewriterTraversalModifyEntityInvocation extends ClassTraversal.Empty
                   Rewriter.getPrimitiveObjectConversionMethod((BasicType)retType),
                   retType, new Type[] { }, Constants.INVOKEVIRTUAL));
           }
+          else if(!retType.equals(Type.OBJECT))
+          {
+            // e.g. array result of Channel.receiveAll
+            il.append(ifc.createCheckCast((ReferenceType)retType));
+          }
         }
         // insert the code
         InstructionHandle ihStart = mg.getInstructionList().append(ih, il);
@@ -3001,6 +3091,10 @@ class RewriterTraversalTranslateAPICalls extends ClassTraversal.Empty
  *   - jump to pause point
  * </pre>
  *
+ * In continuation thread mode, continuable methods are not transformed.
+ * They are only marked as throwing <code>JistAPI.Continuable</code>, so that
+ * the Controller can execute them on threads that park at blocking calls.
+ *
  * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
  * @since JIST1.0
  * @see JistAPI
@@ -3048,6 +3142,16 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
   /** {@inheritDoc} */
   public MethodGen doMethod(ClassGen cg, MethodGen mg)
   {
+    // in thread mode, merely mark continuable methods for the Controller
+    if(rewriter.isThreaded())
+    {
+      String marker = JistAPI.Continuable.class.getName();
+      if(rewriter.isContinuable(mg) && !Util.contains(mg.getExceptions(), marker))
+      {
+        mg.addException(marker);
+      }
+      return mg;
+    }
     // if method is continuable
     if(rewriter.isContinuable(mg) && !mg.isAbstract())
     {
@@ -3217,6 +3321,29 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
     mginit.setMaxStack();
     mginit.setMaxLocals();
     cg.addMethod(mginit.getMethod());
+    // add frame pool field
+    Type poolType = Rewriter.getType(Pool.FramePool.class);
+    FieldGen fgpool = new FieldGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC | Constants.ACC_FINAL, 
+        poolType, Rewriter.JIST_FRAMEPOOL, cpg);
+    cg.addField(fgpool.getField());
+    // add static initializer for frame pool
+    il = new InstructionList();
+    il.append(ifc.createNew(Pool.FramePool.class.getName()));
+    il.append(InstructionConstants.DUP);
+    il.append(new PUSH(cpg, name));
+    il.append(new PUSH(cpg, Pool.FramePool.DEFAULT_SIZE));
+    il.append(ifc.createInvoke(Pool.FramePool.class.getName(), 
+          Constants.CONSTRUCTOR_NAME, Type.VOID, new Type[] { Type.STRING, Type.INT }, 
+          Constants.INVOKESPECIAL));
+    il.append(ifc.createPutStatic(name, Rewriter.JIST_FRAMEPOOL, poolType));
+    il.append(ifc.createReturn(Type.VOID));
+    MethodGen mgclinit = new MethodGen(Constants.ACC_STATIC, Type.VOID,
+        new Type[] { }, new String[] { },
+        Constants.STATIC_INITIALIZER_NAME,
+        name, il, cpg);
+    mgclinit.setMaxStack();
+    mgclinit.setMaxLocals();
+    cg.addMethod(mgclinit.getMethod());
     // add fields for locals
     LocalVariables lv = f.getLocals();
     for(int i=0; i<lv.maxLocals(); i++)
@@ -3254,7 +3381,21 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
     InstructionList pre = new InstructionList();
     int locals = mg.getMaxLocals();
 
-    // ** create and initialize state object
+    // ** obtain state object from frame pool, or create and initialize
+    Type poolType = Rewriter.getType(Pool.FramePool.class);
+    pre.append(ifc.createGetStatic(stateName, Rewriter.JIST_FRAMEPOOL, poolType));
+    // stack: (stuff) pool
+    pre.append(ifc.createInvoke(Pool.FramePool.class.getName(), "get",
+          Rewriter.getType(Event.ContinuationFrame.class), new Type[] { },
+          Constants.INVOKEVIRTUAL));
+    // stack: (stuff) pooled_object
+    pre.append(InstructionConstants.DUP);
+    // stack: (stuff) pooled_object pooled_object
+    BranchInstruction ifPooled = ifc.createBranchInstruction(Constants.IFNONNULL, null);
+    pre.append(ifPooled);
+    // stack: (stuff) null
+    pre.append(InstructionConstants.POP);
+    // stack: (stuff)
     pre.append(ifc.createNew(stateName));
     // stack: (stuff) state_object
     pre.append(InstructionConstants.DUP);
@@ -3262,6 +3403,8 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
     pre.append(ifc.createInvoke(stateName, Constants.CONSTRUCTOR_NAME, 
           Type.VOID, new Type[] { }, Constants.INVOKESPECIAL));
     // stack: (stuff) state_object
+    ifPooled.setTarget(pre.append(ifc.createCheckCast((ReferenceType)stateType)));
+    // stack: (stuff) state_object
     pre.append(ifc.createStore(stateType, locals));
     // stack: (stuff)
 
@@ -3276,23 +3419,7 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
           Event.ContinuationFrame.field_pc.getName(), Type.INT));
     // stack: (stuff) state_object
 
-    // ** store locals into state object
-    LocalVariables lv = f.getLocals();
-    for(int i=0; i<lv.maxLocals(); i++)
-    {
-      Type t = lv.get(i);
-      if(t==null) continue;
-      if(t!=Type.NULL && !isNotInit(t))
-      {
-        pre.append(InstructionFactory.DUP);
-        // stack: (stuff) state_object state_object
-        pre.append(ifc.createLoad(t, i));
-        // stack: (stuff) state_object state_object local_i
-        pre.append(ifc.createPutField(stateName, "local_"+i, t));
-        // stack: (stuff) state_object
-      }
-    }
-    // stack: (stuff) state_object
+    // locals are stored lazily, only if call is saving (see below)
 
     // ** store stack into state object (and leave untouched)
     OperandStack os = f.getStack().getClone();
@@ -3361,11 +3488,43 @@ class RewriterTraversalContinuableMethods extends ClassTraversal.Empty
           Rewriter.getTypes(Controller.method_isModeSave.getParameterTypes()),
           Constants.INVOKESTATIC));
     // stack: (stuff) true
-    post.append(ifc.createBranchInstruction(Constants.IFEQ, ih.getNext()));
+    BranchInstruction ifSave = ifc.createBranchInstruction(Constants.IFNE, null);
+    post.append(ifSave);
     // stack: (stuff)
 
-    // ** pushStateFrame(state_obj)
+    // ** else return state_obj to frame pool and continue
+    post.append(ifc.createGetStatic(stateName, Rewriter.JIST_FRAMEPOOL, poolType));
+    // stack: (post-call stuff) pool
     post.append(ifc.createLoad(Type.OBJECT, locals));
+    // stack: (post-call stuff) pool state_obj
+    post.append(ifc.createInvoke(Pool.FramePool.class.getName(), "put",
+          Type.VOID, new Type[] { Rewriter.getType(Event.ContinuationFrame.class) },
+          Constants.INVOKEVIRTUAL));
+    // stack: (post-call stuff)
+    post.append(ifc.createBranchInstruction(Constants.GOTO, ih.getNext()));
+
+    // ** store locals into state object (unchanged by call)
+    ifSave.setTarget(post.append(ifc.createLoad(Type.OBJECT, locals)));
+    // stack: (post-call stuff) state_obj
+    post.append(ifc.createCheckCast((ReferenceType)stateType));
+    // stack: (post-call stuff) state_obj
+    LocalVariables lv = f.getLocals();
+    for(int i=0; i<lv.maxLocals(); i++)
+    {
+      Type t = lv.get(i);
+      if(t==null) continue;
+      if(t!=Type.NULL && !isNotInit(t))
+      {
+        post.append(InstructionFactory.DUP);
+        // stack: (post-call stuff) state_obj state_obj
+        post.append(ifc.createLoad(t, i));
+        // stack: (post-call stuff) state_obj state_obj local_i
+        post.append(ifc.createPutField(stateName, "local_"+i, t));
+        // stack: (post-call stuff) state_obj
+      }
+    }
+
+    // ** pushStateFrame(state_obj)
     // stack: (post-call stuff) state_obj
     post.append(ifc.createInvoke(
           Controller.method_pushStateOutFrame.getDeclaringClass().getName(), 
@@ -9,6 +9,14 @@
 
 package jist.runtime;
 
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Vector;
+
 /** 
  * Event scheduler interface and implementations.
  *
@@ -55,6 +63,18 @@ abstract class Scheduler
    */
   public abstract Event peekFirst();
 
+  /**
+   * Return an event in the queue, in no particular order, for inspection.
+   * May be called from another thread; the result is then only a snapshot.
+   *
+   * @param i event index, between zero and queue size
+   * @return event at given index, or null if not held in memory
+   */
+  public Event get(int i)
+  {
+    return null;
+  }
+
   /**
    * Clear all events in the queue.
    */
@@ -66,6 +86,9 @@ abstract class Scheduler
   /** 
    * Implements an array-based heap of Events. In addition to the regular heap
    * functionality, there are methods for extracting elements other than the min.
+   * Events with equal times are removed in insertion order, so that event
+   * ordering depends only on the order in which events are scheduled, and
+   * not on the shape of the heap.
    *
    * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
    * @version $Id: Scheduler.java,v 1.14 2005-03-13 16:11:54 barr Exp $
@@ -86,6 +109,9 @@ abstract class Scheduler
     /** Collapse size. */
     private int halveSize;
 
+    /** Insertion sequence number of last inserted event. */
+    private long seq;
+
     //////////////////////////////////////////////////
     // public interface
     //
@@ -145,15 +171,39 @@ abstract class Scheduler
       items[j] = temp;
     }
 
+    /**
+     * Return whether first event precedes second: by time, and then by
+     * insertion sequence.
+     *
+     * @param e1 first event
+     * @param e2 second event
+     * @return whether first event precedes second
+     */
+    static boolean before(Event e1, Event e2)
+    {
+      return e1.time<e2.time || (e1.time==e2.time && e1.seq<e2.seq);
+    }
+
     /** {@inheritDoc} */
     public void insert(Event ev)
+    {
+      ev.seq = ++seq;
+      place(ev);
+    }
+
+    /**
+     * Insert event into heap, retaining its sequence number.
+     *
+     * @param ev event to insert
+     */
+    private void place(Event ev)
     {
       try
       {
         // bubble the value to the right spot
         int i = size, parent;
         Event parentItem;
-        while(i>0 && ev.time<(parentItem=items[parent=(i-1)/2]).time)
+        while(i>0 && before(ev, parentItem=items[parent=(i-1)/2]))
         {
           items[i] = parentItem;
           i = parent;
@@ -168,7 +218,7 @@ abstract class Scheduler
         if(size!=items.length) throw e;
         // expand and reinsert
         doubleCapacity();
-        insert(ev);
+        place(ev);
       }
     }
 
@@ -196,6 +246,13 @@ abstract class Scheduler
       return items[0];
     }
 
+    /** {@inheritDoc} */
+    public Event get(int i)
+    {
+      Event[] items = this.items;
+      return i<size && i<items.length ? items[i] : null;
+    }
+
     /** {@inheritDoc} */
     public Event removeFirst()
     {
@@ -251,7 +308,7 @@ abstract class Scheduler
         int right = left + 1;
         // find "largest" element
         int largest;
-        if(left<size && items[left].time<items[i].time)
+        if(left<size && before(items[left], items[i]))
         {
           largest = left;
         }
@@ -259,7 +316,7 @@ abstract class Scheduler
         {
           largest = i;
         }
-        if(right<size && items[right].time<items[largest].time)
+        if(right<size && before(items[right], items[largest]))
         {
           largest = right;
         }
@@ -473,6 +530,565 @@ abstract class Scheduler
   } // class: Calendar
 
 
+  /**
+   * Implements a memory-bounded hybrid event scheduler. Events within a
+   * horizon of the current simulation time are kept in an in-memory heap.
+   * Events further in the future are collected in a spill buffer and, once
+   * the buffer is full, written out as a sorted run to a memory-mapped
+   * temporary file. Runs are merged back into the heap as simulation time
+   * approaches them, so the heap stays bounded regardless of how far ahead
+   * events are scheduled. Events are ordered by time and insertion
+   * sequence, exactly as in the Heap scheduler.
+   *
+   * <p>Only events that can be re-created exactly are spilled: events
+   * without continuations, that target local entities, and whose arguments
+   * are null, primitive wrappers, strings or local entity references. All
+   * other events remain in memory, since their arguments are shared by
+   * reference.
+   *
+   * @since JIST1.0
+   */
+  static final class Spilling extends Scheduler
+  {
+
+    /** argument tag. */
+    private static final byte TAG_NULL      = 0;
+    /** argument tag. */
+    private static final byte TAG_REF       = 1;
+    /** argument tag. */
+    private static final byte TAG_STRING    = 2;
+    /** argument tag. */
+    private static final byte TAG_INTEGER   = 3;
+    /** argument tag. */
+    private static final byte TAG_LONG      = 4;
+    /** argument tag. */
+    private static final byte TAG_DOUBLE    = 5;
+    /** argument tag. */
+    private static final byte TAG_FLOAT     = 6;
+    /** argument tag. */
+    private static final byte TAG_SHORT     = 7;
+    /** argument tag. */
+    private static final byte TAG_BYTE      = 8;
+    /** argument tag. */
+    private static final byte TAG_CHARACTER = 9;
+    /** argument tag. */
+    private static final byte TAG_BOOLEAN   = 10;
+
+    /**
+     * A sorted run of spilled events in a memory-mapped file.
+     */
+    private static final class Run
+    {
+      /** run file. */
+      public File file;
+      /** mapped run file contents. */
+      public MappedByteBuffer buf;
+      /** number of events remaining (including head). */
+      public int remaining;
+      /** decoded first remaining event. */
+      public Event head;
+    }
+
+    /** controller, used to resolve entity references. */
+    private final Controller controller;
+
+    /** scheduling horizon (simulation time). */
+    private final long horizon;
+
+    /** maximum number of events in spill buffer. */
+    private final int batch;
+
+    /** events within horizon, or not spillable. */
+    private final Heap near;
+
+    /** spill buffer: events beyond horizon, not yet written. */
+    private final Heap far;
+
+    /** sorted runs of spilled events. */
+    private final Vector runs;
+
+    /** spilled event methods, by identifier. */
+    private final Vector methods;
+
+    /** spilled event method identifiers: Method to Integer. */
+    private final HashMap methodIds;
+
+    /** encoding buffer. */
+    private final ByteArrayOutputStream bout;
+
+    /** insertion sequence number of last inserted event. */
+    private long seq;
+
+    /** time of last removed event. */
+    private long current;
+
+    /** number of events in queue. */
+    private int size;
+
+    /** first spilled event (in buffer or runs), or null. */
+    private Event spillHead;
+
+    /** source of first spilled event: far heap or Run. */
+    private Object spillSource;
+
+    /** statistics: events spilled to disk. */
+    private long statSpilled;
+
+    /** statistics: runs written. */
+    private int statRuns;
+
+    /**
+     * Create new spilling scheduler.
+     *
+     * @param controller controller, used to resolve entity references
+     * @param horizon events further than this in the future may be spilled
+     * @param batch number of events in each spilled run
+     */
+    public Spilling(Controller controller, long horizon, int batch)
+    {
+      if(horizon<=0) throw new IllegalArgumentException("invalid spill horizon: "+horizon);
+      if(batch<=0) throw new IllegalArgumentException("invalid spill batch: "+batch);
+      this.controller = controller;
+      this.horizon = horizon;
+      this.batch = batch;
+      near = new Heap();
+      far = new Heap();
+      runs = new Vector();
+      methods = new Vector();
+      methodIds = new HashMap();
+      bout = new ByteArrayOutputStream();
+    }
+
+    //////////////////////////////////////////////////
+    // encoding
+    //
+
+    /**
+     * Return whether event argument can be spilled.
+     *
+     * @param o event argument
+     * @return whether event argument can be spilled
+     */
+    private static boolean isSpillable(Object o)
+    {
+      if(o==null) return true;
+      Class c = o.getClass();
+      return c==Integer.class || c==String.class || c==Long.class || c==Double.class
+        || c==EntityRef.class || c==Float.class || c==Short.class || c==Byte.class
+        || c==Character.class || c==Boolean.class;
+    }
+
+    /**
+     * Return whether event can be spilled.
+     *
+     * @param ev event
+     * @return whether event can be spilled
+     */
+    private static boolean isSpillable(Event ev)
+    {
+      if(ev.cont!=null || ev.method==null || ev.ref==null || ev.ref.getClass()!=EntityRef.class)
+      {
+        return false;
+      }
+      if(ev.args!=null)
+      {
+        for(int i=0; i<ev.args.length; i++)
+        {
+          if(!isSpillable(ev.args[i])) return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Encode event.
+     *
+     * @param ev event to encode
+     * @param out output stream
+     * @throws IOException never
+     */
+    private void encode(Event ev, DataOutputStream out) throws IOException
+    {
+      Integer mid = (Integer)methodIds.get(ev.method);
+      if(mid==null)
+      {
+        mid = new Integer(methods.size());
+        methods.add(ev.method);
+        methodIds.put(ev.method, mid);
+      }
+      out.writeLong(ev.time);
+      out.writeLong(ev.seq);
+      out.writeLong(ev.id);
+      out.writeLong(ev.cause);
+      out.writeInt(mid.intValue());
+      out.writeInt(ev.ref.getIndex());
+      out.writeInt(ev.ref.getGeneration());
+      if(ev.args==null)
+      {
+        out.writeShort(-1);
+        return;
+      }
+      out.writeShort(ev.args.length);
+      for(int i=0; i<ev.args.length; i++)
+      {
+        Object o = ev.args[i];
+        if(o==null)
+        {
+          out.writeByte(TAG_NULL);
+        }
+        else if(o instanceof Integer)
+        {
+          out.writeByte(TAG_INTEGER);
+          out.writeInt(((Integer)o).intValue());
+        }
+        else if(o instanceof String)
+        {
+          out.writeByte(TAG_STRING);
+          out.writeUTF((String)o);
+        }
+        else if(o instanceof Long)
+        {
+          out.writeByte(TAG_LONG);
+          out.writeLong(((Long)o).longValue());
+        }
+        else if(o instanceof Double)
+        {
+          out.writeByte(TAG_DOUBLE);
+          out.writeDouble(((Double)o).doubleValue());
+        }
+        else if(o instanceof EntityRef)
+        {
+          out.writeByte(TAG_REF);
+          out.writeInt(((EntityRef)o).getIndex());
+          out.writeInt(((EntityRef)o).getGeneration());
+        }
+        else if(o instanceof Float)
+        {
+          out.writeByte(TAG_FLOAT);
+          out.writeFloat(((Float)o).floatValue());
+        }
+        else if(o instanceof Short)
+        {
+          out.writeByte(TAG_SHORT);
+          out.writeShort(((Short)o).shortValue());
+        }
+        else if(o instanceof Byte)
+        {
+          out.writeByte(TAG_BYTE);
+          out.writeByte(((Byte)o).byteValue());
+        }
+        else if(o instanceof Character)
+        {
+          out.writeByte(TAG_CHARACTER);
+          out.writeChar(((Character)o).charValue());
+        }
+        else if(o instanceof Boolean)
+        {
+          out.writeByte(TAG_BOOLEAN);
+          out.writeBoolean(((Boolean)o).booleanValue());
+        }
+        else
+        {
+          throw new JistException("unexpected spilled event argument: "+o.getClass(), null);
+        }
+      }
+    }
+
+    /**
+     * Return entity reference of local entity.
+     *
+     * @param index entity index
+     * @param generation entity slot generation
+     * @return entity reference
+     */
+    private EntityRef getRef(int index, int generation)
+    {
+      Entity e = controller==null ? null : controller.getEntity(index);
+      EntityRef ref = e==null ? null : e._jistMethod_Get__ref();
+      return ref!=null && ref.getGeneration()==generation ? ref : new EntityRef(index, generation);
+    }
+
+    /**
+     * Decode next event of a run.
+     *
+     * @param b run buffer, positioned at event
+     * @return decoded event
+     */
+    private Event decode(ByteBuffer b)
+    {
+      Event ev = new Event();
+      ev.time = b.getLong();
+      ev.seq = b.getLong();
+      ev.id = b.getLong();
+      ev.cause = b.getLong();
+      ev.method = (Method)methods.elementAt(b.getInt());
+      ev.ref = getRef(b.getInt(), b.getInt());
+      int n = b.getShort();
+      if(n<0) return ev;
+      ev.args = new Object[n];
+      for(int i=0; i<n; i++)
+      {
+        switch(b.get())
+        {
+          case TAG_NULL:
+            break;
+          case TAG_INTEGER:
+            ev.args[i] = new Integer(b.getInt());
+            break;
+          case TAG_STRING:
+            {
+              int len = b.getShort() & 0xffff;
+              byte[] utf = new byte[len+2];
+              utf[0] = (byte)(len>>8);
+              utf[1] = (byte)len;
+              b.get(utf, 2, len);
+              try
+              {
+                ev.args[i] = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+              }
+              catch(IOException e)
+              {
+                throw new JistException("corrupt spilled event", e);
+              }
+              break;
+            }
+          case TAG_LONG:
+            ev.args[i] = new Long(b.getLong());
+            break;
+          case TAG_DOUBLE:
+            ev.args[i] = new Double(b.getDouble());
+            break;
+          case TAG_REF:
+            ev.args[i] = getRef(b.getInt(), b.getInt());
+            break;
+          case TAG_FLOAT:
+            ev.args[i] = new Float(b.getFloat());
+            break;
+          case TAG_SHORT:
+            ev.args[i] = new Short(b.getShort());
+            break;
+          case TAG_BYTE:
+            ev.args[i] = new Byte(b.get());
+            break;
+          case TAG_CHARACTER:
+            ev.args[i] = new Character(b.getChar());
+            break;
+          case TAG_BOOLEAN:
+            ev.args[i] = b.get()!=0 ? Boolean.TRUE : Boolean.FALSE;
+            break;
+          default:
+            throw new JistException("corrupt spilled event", null);
+        }
+      }
+      return ev;
+    }
+
+    //////////////////////////////////////////////////
+    // spilling
+    //
+
+    /**
+     * Write spill buffer to a new sorted run.
+     */
+    private void writeRun()
+    {
+      Run r = new Run();
+      try
+      {
+        r.file = File.createTempFile("jistSpill", ".run");
+        r.file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(r.file);
+        try
+        {
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout, 65536));
+          while(!far.isEmpty())
+          {
+            Event ev = far.removeFirst();
+            encode(ev, out);
+            r.remaining++;
+            if(controller!=null) controller.disposeEvent(ev);
+          }
+          out.flush();
+        }
+        finally
+        {
+          fout.close();
+        }
+        RandomAccessFile raf = new RandomAccessFile(r.file, "r");
+        try
+        {
+          r.buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally
+        {
+          raf.close();
+        }
+      }
+      catch(IOException e)
+      {
+        throw new JistException("unable to spill events to disk", e);
+      }
+      statSpilled += r.remaining;
+      statRuns++;
+      r.head = decode(r.buf);
+      r.remaining--;
+      runs.add(r);
+      findSpillHead();
+    }
+
+    /**
+     * Find first spilled event, in buffer or runs.
+     */
+    private void findSpillHead()
+    {
+      spillHead = far.isEmpty() ? null : far.peekFirst();
+      spillSource = far;
+      for(int i=0; i<runs.size(); i++)
+      {
+        Run r = (Run)runs.elementAt(i);
+        if(spillHead==null || Heap.before(r.head, spillHead))
+        {
+          spillHead = r.head;
+          spillSource = r;
+        }
+      }
+    }
+
+    /**
+     * Move spilled events back into the heap: all those that precede the
+     * first event of the heap, or that are now within the horizon.
+     */
+    private void refill()
+    {
+      while(spillHead!=null && (near.isEmpty() || spillHead.time-current<horizon
+            || Heap.before(spillHead, near.peekFirst())))
+      {
+        if(spillSource==far)
+        {
+          near.place(far.removeFirst());
+        }
+        else
+        {
+          Run r = (Run)spillSource;
+          near.place(r.head);
+          if(r.remaining>0)
+          {
+            r.head = decode(r.buf);
+            r.remaining--;
+          }
+          else
+          {
+            r.head = null;
+            r.buf = null;
+            r.file.delete();
+            runs.remove(r);
+          }
+        }
+        findSpillHead();
+      }
+    }
+
+    /**
+     * Return number of events written to disk.
+     *
+     * @return number of events written to disk
+     */
+    public long getSpilled()
+    {
+      return statSpilled;
+    }
+
+    /**
+     * Return number of sorted runs written to disk.
+     *
+     * @return number of sorted runs written to disk
+     */
+    public int getRuns()
+    {
+      return statRuns;
+    }
+
+    //////////////////////////////////////////////////
+    // Scheduler interface
+    //
+
+    /** {@inheritDoc} */
+    public void insert(Event ev)
+    {
+      ev.seq = ++seq;
+      if(ev.time-current>=horizon && isSpillable(ev))
+      {
+        far.place(ev);
+        if(spillHead==null || Heap.before(ev, spillHead))
+        {
+          spillHead = ev;
+          spillSource = far;
+        }
+        if(far.size()>=batch) writeRun();
+      }
+      else
+      {
+        near.place(ev);
+      }
+      size++;
+    }
+
+    /** {@inheritDoc} */
+    public Event removeFirst()
+    {
+      refill();
+      Event ev = near.removeFirst();
+      current = ev.time;
+      size--;
+      return ev;
+    }
+
+    /** {@inheritDoc} */
+    public Event peekFirst()
+    {
+      refill();
+      return near.peekFirst();
+    }
+
+    /** {@inheritDoc} */
+    public Event get(int i)
+    {
+      int n = near.size();
+      return i<n ? near.get(i) : far.get(i-n);
+    }
+
+    /** {@inheritDoc} */
+    public int size()
+    {
+      return size;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isEmpty()
+    {
+      return size==0;
+    }
+
+    /** {@inheritDoc} */
+    public void clear()
+    {
+      near.clear();
+      far.clear();
+      for(int i=0; i<runs.size(); i++)
+      {
+        Run r = (Run)runs.elementAt(i);
+        r.buf = null;
+        r.file.delete();
+      }
+      runs.clear();
+      spillHead = null;
+      spillSource = null;
+      size = 0;
+    }
+
+  } // class: Spilling
+
+
 
   //////////////////////////////////////////////////
   // testing
@@ -511,6 +1127,41 @@ abstract class Scheduler
     System.out.println("seems to work!");
   }
 
+  /**
+   * Heap tie-breaking test... Schedule events with few distinct times and
+   * check that events with equal times are dequeued in insertion order.
+   *
+   * @param s heap to test
+   */
+  private static void testStable(Heap s)
+  {
+    int num = 500000;
+    java.util.Random rand = new java.util.Random();
+    System.out.println("inserting "+num+" elements with equal times.");
+    for(int i=0; i<num; i++)
+    {
+      Event ev = new Event();
+      ev.time = rand.nextInt(100);
+      s.insert(ev);
+      if(i%3==0)
+      {
+        s.insert(s.removeFirst());
+      }
+    }
+    System.out.println("checking order of ties.");
+    Event ev = s.removeFirst();
+    while(!s.isEmpty())
+    {
+      Event ev2 = s.removeFirst();
+      if(ev2.time<ev.time || (ev2.time==ev.time && ev2.seq<=ev.seq)) 
+      {
+        throw new RuntimeException("incorrect tie ordering");
+      }
+      ev = ev2;
+    }
+    System.out.println("seems to work!");
+  }
+
   /**
    * Test various schedular implementations.
    *
@@ -520,6 +1171,7 @@ abstract class Scheduler
   {
     System.out.println("testing heap scheduler implementation.");
     test(new Heap());
+    testStable(new Heap());
     System.out.println("testing heap calendar implementation.");
     test(new Calendar(Long.MAX_VALUE/10000, 1000));
   }
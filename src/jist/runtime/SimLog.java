@@ -0,0 +1,741 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Asynchronous, structured simulation log. Log records carry the simulation
+ * time, the index of the current entity, a category and a format string with
+ * <code>{}</code> placeholders for up to four parameters. The simulation
+ * thread only copies these into a pre-allocated ring of records; formatting
+ * and writing happen on a background thread. The ring has a single producer
+ * (the simulation event loop) and a single consumer (the writer thread), and
+ * requires no locks. When the ring is full, records are dropped and counted,
+ * rather than stalling the simulation.
+ *
+ * <p>Each category has a sampling rate: zero disables it, one logs every
+ * record, and <i>n</i> logs every <i>n</i>th record, so that tracing of
+ * frequent occurrences can remain on in long runs. Categories are
+ * configured in the jist properties file:
+ *
+ * <pre>
+ *   jist.simlog.file=sim.log          (default: standard output)
+ *   jist.simlog.ring=65536
+ *   jist.simlog.category.field=1
+ *   jist.simlog.category.zrp=100
+ * </pre>
+ *
+ * <p>A category that replaces a log4j logger may take its default
+ * sampling rate from it, so that existing log4j configuration continues
+ * to enable it: see {@link #getCategory(String, org.apache.log4j.Logger)}.
+ *
+ * <p>Parameters are formatted after the call returns. Strings and boxed
+ * primitives are kept as they are; other objects may change in the
+ * meantime, and are converted to strings when added. Primitive parameters
+ * are stored without allocation:
+ *
+ * <pre>
+ *   if(cat.begin("move radio id={} to={},{}"))
+ *   {
+ *     cat.arg(id).arg(x).arg(y).end();
+ *   }
+ * </pre>
+ *
+ * @since JIST1.0
+ */
+
+public final class SimLog implements Runnable
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /** property prefix. */
+  public static final String PROPERTY_PREFIX = "jist.simlog.";
+
+  /** property: output file name. */
+  public static final String PROPERTY_FILE = PROPERTY_PREFIX+"file";
+
+  /** property: number of records in ring. */
+  public static final String PROPERTY_RING = PROPERTY_PREFIX+"ring";
+
+  /** property prefix: category sampling rate. */
+  public static final String PROPERTY_CATEGORY = PROPERTY_PREFIX+"category.";
+
+  /** maximum number of parameters per record. */
+  public static final int MAX_ARGS = 4;
+
+  /** default number of records in ring. */
+  public static final int DEFAULT_RING = 65536;
+
+  /** writer thread poll interval, when ring is empty (ms). */
+  public static final int POLL_INTERVAL = 20;
+
+  /** parameter kind: none. */
+  private static final byte ARG_NONE   = 0;
+  /** parameter kind: object. */
+  private static final byte ARG_OBJECT = 1;
+  /** parameter kind: long. */
+  private static final byte ARG_LONG   = 2;
+  /** parameter kind: double. */
+  private static final byte ARG_DOUBLE = 3;
+
+  //////////////////////////////////////////////////
+  // categories
+  //
+
+  /**
+   * Log category, with its own sampling rate.
+   */
+  public static final class Category
+  {
+    /** category name. */
+    private final String name;
+    /** sampling rate: 0 is off, otherwise log every n-th record. */
+    private volatile int sample;
+    /** records offered since last sampled record. */
+    private int skipped;
+
+    /**
+     * Create new log category.
+     *
+     * @param name category name
+     * @param sample sampling rate
+     */
+    private Category(String name, int sample)
+    {
+      this.name = name;
+      this.sample = sample;
+    }
+
+    /**
+     * Return category name.
+     *
+     * @return category name
+     */
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Set category sampling rate.
+     *
+     * @param sample 0 to disable, 1 to log all records, n to log every n-th
+     */
+    public void setSample(int sample)
+    {
+      if(sample<0) throw new IllegalArgumentException("invalid sampling rate: "+sample);
+      this.sample = sample;
+      skipped = 0;
+    }
+
+    /**
+     * Return category sampling rate.
+     *
+     * @return category sampling rate
+     */
+    public int getSample()
+    {
+      return sample;
+    }
+
+    /**
+     * Return whether category is enabled. Useful to guard computation of
+     * log parameters.
+     *
+     * @return whether category is enabled
+     */
+    public boolean isEnabled()
+    {
+      return sample!=0;
+    }
+
+    /**
+     * Begin new log record, if this record is sampled and there is room
+     * in the ring. Only if this method returns true, the parameters should
+     * be added with <code>arg</code> and the record completed with
+     * <code>end</code>.
+     *
+     * @param format message format, with <code>{}</code> placeholders
+     * @return whether record was begun
+     */
+    public boolean begin(String format)
+    {
+      int n = sample;
+      if(n==0) return false;
+      if(n>1)
+      {
+        if(++skipped<n) return false;
+        skipped = 0;
+      }
+      return SimLog.begin(this, format);
+    }
+
+    /**
+     * Add object parameter to current record. Objects other than strings
+     * and boxed primitives are converted to strings now, rather than when
+     * the record is written.
+     *
+     * @param o parameter
+     * @return this category
+     */
+    public Category arg(Object o)
+    {
+      SimLog.arg(ARG_OBJECT, isImmutable(o) ? o : String.valueOf(o), 0);
+      return this;
+    }
+
+    /**
+     * Add integer parameter to current record.
+     *
+     * @param v parameter
+     * @return this category
+     */
+    public Category arg(long v)
+    {
+      SimLog.arg(ARG_LONG, null, v);
+      return this;
+    }
+
+    /**
+     * Add floating point parameter to current record.
+     *
+     * @param v parameter
+     * @return this category
+     */
+    public Category arg(double v)
+    {
+      SimLog.arg(ARG_DOUBLE, null, Double.doubleToLongBits(v));
+      return this;
+    }
+
+    /**
+     * Complete current record.
+     */
+    public void end()
+    {
+      SimLog.end();
+    }
+
+    /**
+     * Log message without parameters.
+     *
+     * @param format message
+     */
+    public void log(String format)
+    {
+      if(begin(format)) end();
+    }
+
+    /**
+     * Log message with one parameter.
+     *
+     * @param format message format
+     * @param a parameter
+     */
+    public void log(String format, Object a)
+    {
+      if(begin(format)) arg(a).end();
+    }
+
+    /**
+     * Log message with two parameters.
+     *
+     * @param format message format
+     * @param a first parameter
+     * @param b second parameter
+     */
+    public void log(String format, Object a, Object b)
+    {
+      if(begin(format)) arg(a).arg(b).end();
+    }
+
+    /**
+     * Log message with three parameters.
+     *
+     * @param format message format
+     * @param a first parameter
+     * @param b second parameter
+     * @param c third parameter
+     */
+    public void log(String format, Object a, Object b, Object c)
+    {
+      if(begin(format)) arg(a).arg(b).arg(c).end();
+    }
+
+    /**
+     * Log message with one integer parameter.
+     *
+     * @param format message format
+     * @param a parameter
+     */
+    public void log(String format, long a)
+    {
+      if(begin(format)) arg(a).end();
+    }
+
+  } // class: Category
+
+  /**
+   * Application logger that passes <code>JistAPI.log</code> messages
+   * through the "app" category, rather than writing them on the simulation
+   * thread. Install with <code>jist -l jist.runtime.SimLog$Logger</code>.
+   */
+  public static class Logger implements JistAPI.Logger
+  {
+    /** application log category. */
+    private final Category app = getCategory("app", 1);
+
+    /** {@inheritDoc} */
+    public void log(Object o)
+    {
+      app.log("{}", o);
+    }
+  } // class: Logger
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** categories: name to Category. */
+  private static final HashMap categories = new HashMap();
+
+  /** configured sampling rates: name to Integer. */
+  private static final HashMap samples = new HashMap();
+
+  /** ring of records: simulation time. */
+  private static long[] recTime;
+  /** ring of records: entity index. */
+  private static int[] recEntity;
+  /** ring of records: category. */
+  private static Category[] recCategory;
+  /** ring of records: message format. */
+  private static String[] recFormat;
+  /** ring of records: parameter kinds. */
+  private static byte[] argKind;
+  /** ring of records: object parameters. */
+  private static Object[] argObject;
+  /** ring of records: primitive parameters. */
+  private static long[] argValue;
+
+  /** number of records begun (producer). */
+  private static volatile long head;
+  /** number of records written (consumer). */
+  private static volatile long tail;
+  /** slot of record being filled, or -1. */
+  private static int current = -1;
+  /** number of parameters of record being filled. */
+  private static int currentArgs;
+  /** number of records dropped because ring was full. */
+  private static volatile long dropped;
+
+  /** output file name, or null for standard output. */
+  private static String file;
+  /** writer thread. */
+  private static Thread writer;
+  /** writer thread instance. */
+  private static SimLog instance;
+
+  /** writer thread: output. */
+  private final Writer out;
+  /** writer thread: whether output should be closed. */
+  private final boolean closeOut;
+  /** writer thread: message buffer. */
+  private final StringBuffer sb;
+  /** writer thread: whether to stop after draining ring. */
+  private volatile boolean stopping;
+  /** writer thread: number of dropped records reported. */
+  private long reported;
+
+  static
+  {
+    allocate(DEFAULT_RING);
+  }
+
+  /**
+   * Create new writer.
+   *
+   * @param out output
+   * @param closeOut whether output should be closed when done
+   */
+  private SimLog(Writer out, boolean closeOut)
+  {
+    this.out = out;
+    this.closeOut = closeOut;
+    this.sb = new StringBuffer();
+  }
+
+  /**
+   * Allocate ring of records.
+   *
+   * @param size number of records
+   */
+  private static void allocate(int size)
+  {
+    if(size<1) throw new IllegalArgumentException("invalid log ring size: "+size);
+    recTime = new long[size];
+    recEntity = new int[size];
+    recCategory = new Category[size];
+    recFormat = new String[size];
+    argKind = new byte[size*MAX_ARGS];
+    argObject = new Object[size*MAX_ARGS];
+    argValue = new long[size*MAX_ARGS];
+    head = 0;
+    tail = 0;
+  }
+
+  /**
+   * Return whether parameter can be formatted later, because it can not
+   * change: null, strings and boxed primitives.
+   *
+   * @param o parameter
+   * @return whether parameter is immutable
+   */
+  private static boolean isImmutable(Object o)
+  {
+    return o==null || o instanceof String || o instanceof Integer || o instanceof Long
+      || o instanceof Double || o instanceof Float || o instanceof Short || o instanceof Byte
+      || o instanceof Character || o instanceof Boolean;
+  }
+
+  //////////////////////////////////////////////////
+  // configuration
+  //
+
+  /**
+   * Return log category, creating it if necessary. A new category is
+   * disabled, unless configured otherwise.
+   *
+   * @param name category name
+   * @return log category
+   */
+  public static Category getCategory(String name)
+  {
+    return getCategory(name, 0);
+  }
+
+  /**
+   * Return log category, creating it if necessary.
+   *
+   * @param name category name
+   * @param sample sampling rate of new category, unless configured otherwise
+   * @return log category
+   */
+  public static synchronized Category getCategory(String name, int sample)
+  {
+    Category c = (Category)categories.get(name);
+    if(c==null)
+    {
+      Integer configured = (Integer)samples.get(name);
+      c = new Category(name, configured==null ? sample : configured.intValue());
+      categories.put(name, c);
+    }
+    return c;
+  }
+
+  /**
+   * Return log category, creating it if necessary. A new category that
+   * replaces a log4j logger logs every record if that logger is enabled
+   * at info level, and is otherwise disabled, unless configured otherwise
+   * in the jist properties.
+   *
+   * @param name category name
+   * @param logger log4j logger replaced by category
+   * @return log category
+   */
+  public static Category getCategory(String name, org.apache.log4j.Logger logger)
+  {
+    return getCategory(name, logger.isInfoEnabled() ? 1 : 0);
+  }
+
+  /**
+   * Configure log from jist properties: output file, ring size and
+   * category sampling rates. Must be called before the simulation starts.
+   *
+   * @param properties jist properties
+   */
+  public static synchronized void configure(Properties properties)
+  {
+    close();
+    file = properties.getProperty(PROPERTY_FILE);
+    String ring = properties.getProperty(PROPERTY_RING);
+    allocate(ring==null ? DEFAULT_RING : Integer.parseInt(ring.trim()));
+    Enumeration e = properties.propertyNames();
+    while(e.hasMoreElements())
+    {
+      String key = (String)e.nextElement();
+      if(!key.startsWith(PROPERTY_CATEGORY)) continue;
+      String name = key.substring(PROPERTY_CATEGORY.length());
+      int sample = Integer.parseInt(properties.getProperty(key).trim());
+      samples.put(name, new Integer(sample));
+      Category c = (Category)categories.get(name);
+      if(c!=null) c.setSample(sample);
+    }
+  }
+
+  /**
+   * Set output file.
+   *
+   * @param name output file name, or null for standard output
+   */
+  public static synchronized void setFile(String name)
+  {
+    close();
+    file = name;
+  }
+
+  /**
+   * Return number of records dropped because the ring was full.
+   *
+   * @return number of records dropped
+   */
+  public static long getDropped()
+  {
+    return dropped;
+  }
+
+  //////////////////////////////////////////////////
+  // producer
+  //
+
+  /**
+   * Begin new record in ring.
+   *
+   * @param c record category
+   * @param format message format
+   * @return whether there is room for the record
+   */
+  private static boolean begin(Category c, String format)
+  {
+    if(current!=-1) throw new IllegalStateException("log record not ended");
+    long h = head;
+    if(h-tail>=recTime.length)
+    {
+      dropped++;
+      return false;
+    }
+    if(writer==null) start();
+    int i = (int)(h % recTime.length);
+    Controller controller = Controller.getActiveController();
+    Event ev = controller.getCurrentEvent();
+    recTime[i] = controller.getSimulationTime();
+    recEntity[i] = ev==null || ev.ref==null ? -1 : ev.ref.getIndex();
+    recCategory[i] = c;
+    recFormat[i] = format;
+    current = i;
+    currentArgs = 0;
+    return true;
+  }
+
+  /**
+   * Add parameter to current record.
+   *
+   * @param kind parameter kind
+   * @param o object parameter
+   * @param v primitive parameter
+   */
+  private static void arg(byte kind, Object o, long v)
+  {
+    if(current==-1) throw new IllegalStateException("log record not begun");
+    if(currentArgs==MAX_ARGS) throw new IllegalArgumentException("too many log parameters");
+    int j = current*MAX_ARGS+currentArgs++;
+    argKind[j] = kind;
+    argObject[j] = o;
+    argValue[j] = v;
+  }
+
+  /**
+   * Complete current record, and publish it to the writer.
+   */
+  private static void end()
+  {
+    if(current==-1) throw new IllegalStateException("log record not begun");
+    if(currentArgs<MAX_ARGS)
+    {
+      argKind[current*MAX_ARGS+currentArgs] = ARG_NONE;
+    }
+    current = -1;
+    head++;
+  }
+
+  //////////////////////////////////////////////////
+  // consumer
+  //
+
+  /**
+   * Start writer thread.
+   */
+  private static synchronized void start()
+  {
+    if(writer!=null) return;
+    Writer w;
+    boolean closeOut;
+    try
+    {
+      if(file==null)
+      {
+        w = new OutputStreamWriter(System.out);
+        closeOut = false;
+      }
+      else
+      {
+        w = new FileWriter(file);
+        closeOut = true;
+      }
+    }
+    catch(IOException e)
+    {
+      throw new JistException("unable to open simulation log: "+file, e);
+    }
+    instance = new SimLog(new BufferedWriter(w, 65536), closeOut);
+    writer = new Thread(instance, "SimLog");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Write all records in ring, and stop writer thread.
+   */
+  public static synchronized void close()
+  {
+    if(writer==null) return;
+    instance.stopping = true;
+    writer.interrupt();
+    try
+    {
+      writer.join();
+    }
+    catch(InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    writer = null;
+    instance = null;
+  }
+
+  /**
+   * Writer thread: format and write records until stopped.
+   */
+  public void run()
+  {
+    try
+    {
+      while(true)
+      {
+        boolean stop = stopping;
+        long t = tail, h = head;
+        if(t==h)
+        {
+          reportDropped();
+          out.flush();
+          if(stop) break;
+          try
+          {
+            Thread.sleep(POLL_INTERVAL);
+          }
+          catch(InterruptedException e)
+          {
+          }
+          continue;
+        }
+        for(; t<h; t++)
+        {
+          write((int)(t % recTime.length));
+          tail = t+1;
+        }
+        reportDropped();
+      }
+    }
+    catch(IOException e)
+    {
+      // ring fills up, and further records are dropped
+      System.err.println("SIMLOG: unable to write simulation log: "+e.getMessage());
+    }
+    finally
+    {
+      try
+      {
+        if(closeOut) out.close(); else out.flush();
+      }
+      catch(IOException e)
+      {
+      }
+    }
+  }
+
+  /**
+   * Write note of newly dropped records.
+   *
+   * @throws IOException output failure
+   */
+  private void reportDropped() throws IOException
+  {
+    long d = dropped;
+    if(d==reported) return;
+    out.write("# "+(d-reported)+" records dropped\n");
+    reported = d;
+  }
+
+  /**
+   * Format and write record.
+   *
+   * @param i record slot
+   * @throws IOException output failure
+   */
+  private void write(int i) throws IOException
+  {
+    sb.setLength(0);
+    sb.append(recTime[i]);
+    sb.append('\t');
+    sb.append(recEntity[i]);
+    sb.append('\t');
+    sb.append(recCategory[i].name);
+    sb.append('\t');
+    String format = recFormat[i];
+    int a = 0, from = 0, to;
+    while((to = format.indexOf("{}", from))!=-1 && a<MAX_ARGS)
+    {
+      int j = i*MAX_ARGS+a;
+      if(argKind[j]==ARG_NONE) break;
+      sb.append(format.substring(from, to));
+      switch(argKind[j])
+      {
+        case ARG_OBJECT:
+          sb.append(argObject[j]);
+          argObject[j] = null;
+          break;
+        case ARG_LONG:
+          sb.append(argValue[j]);
+          break;
+        case ARG_DOUBLE:
+          sb.append(Double.longBitsToDouble(argValue[j]));
+          break;
+        default:
+          throw new RuntimeException("invalid parameter kind");
+      }
+      from = to+2;
+      a++;
+    }
+    sb.append(format.substring(from));
+    sb.append('\n');
+    recCategory[i] = null;
+    recFormat[i] = null;
+    // clear any unformatted object parameters
+    for(; a<MAX_ARGS; a++)
+    {
+      argObject[i*MAX_ARGS+a] = null;
+    }
+    out.write(sb.toString());
+  }
+
+} // class: SimLog
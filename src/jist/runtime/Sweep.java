@@ -0,0 +1,584 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.util.*;
+import java.rmi.*;
+import java.rmi.server.*;
+import java.security.*;
+
+/**
+ * Parameter sweep and replication engine. Expands a parameter grid into
+ * simulation jobs, processes them on local job slots or a remote job queue,
+ * skips points already in the result cache, and aggregates the results of
+ * all replications of each point into a single table.
+ *
+ * <p>A sweep is described by a properties file:
+ * <pre>
+ *   # simulation program and fixed arguments
+ *   sim = driver.aodvsim
+ *   args = -f 2000x2000 -t 10,600,60
+ *   # swept options (numbered from 1), each followed by its values
+ *   param.1 = -n 25 50 100
+ *   param.2 = -m static waypoint:2,0,10,5
+ *   # replications per point [1], each with seed option set to 0..n-1
+ *   replications = 10
+ *   seed = -r
+ *   # result cache directory [.] and results table file [stdout]
+ *   cache = sweep-cache
+ *   output = results.txt
+ * </pre>
+ *
+ * <p>The result of a run is the last line of its standard output that
+ * contains only whitespace-separated numbers (as output by the
+ * <code>driver</code> programs). The table contains, for each point, the
+ * parameter values, the number of replications, and the mean and 95%
+ * confidence interval half-width of each result column.
+ *
+ * @since JIST1.0
+ */
+
+public final class Sweep
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /**
+   * Prefix of result cache files.
+   */
+  public static final String CACHE_PREFIX = "jistSweep-";
+
+  /**
+   * Critical values of two-sided 95% Student t-distribution, by degrees of
+   * freedom (1-30).
+   */
+  private static final double[] T95 = new double[]
+  {
+    Double.NaN,
+    12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+    2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+    2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+  };
+
+  /**
+   * Critical value of two-sided 95% normal distribution.
+   */
+  private static final double Z95 = 1.960;
+
+  //////////////////////////////////////////////////
+  // sweep run
+  //
+
+  /**
+   * A single simulation run: a point of the grid and a replication.
+   */
+  private static class Run
+  {
+    /** simulation command-line arguments. */
+    public String[] args;
+    /** cache file. */
+    public File cache;
+    /** captured standard output. */
+    public ByteArrayOutputStream out;
+    /** captured standard error. */
+    public ByteArrayOutputStream err;
+    /** jist client of queued job, if not cached. */
+    public RemoteJist.JistClient client;
+    /** result values, or null if none. */
+    public double[] result;
+  }
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** simulation program. */
+  private String sim;
+  /** fixed simulation arguments. */
+  private String[] args;
+  /** swept options. */
+  private String[] params;
+  /** values of each swept option. */
+  private String[][] values;
+  /** replication seed option, or null. */
+  private String seed;
+  /** replications per point. */
+  private int replications;
+  /** result cache directory. */
+  private File cacheDir;
+  /** results table file, or null for stdout. */
+  private String output;
+
+  /**
+   * Create new sweep from description file.
+   *
+   * @param file sweep description file
+   * @throws IOException unable to read sweep description
+   */
+  public Sweep(String file) throws IOException
+  {
+    Properties p = new Properties();
+    FileInputStream fin = new FileInputStream(file);
+    try
+    {
+      p.load(fin);
+    }
+    finally
+    {
+      fin.close();
+    }
+    sim = p.getProperty("sim");
+    if(sim==null) throw new IOException("sweep file missing 'sim'");
+    sim = sim.trim();
+    args = split(p.getProperty("args", ""));
+    Vector ps = new Vector(), vs = new Vector();
+    for(int i=1; p.getProperty("param."+i)!=null; i++)
+    {
+      String[] param = split(p.getProperty("param."+i));
+      if(param.length<2) throw new IOException("sweep parameter 'param."+i+"' has no values");
+      String[] v = new String[param.length-1];
+      System.arraycopy(param, 1, v, 0, v.length);
+      ps.add(param[0]);
+      vs.add(v);
+    }
+    params = (String[])ps.toArray(new String[ps.size()]);
+    values = (String[][])vs.toArray(new String[vs.size()][]);
+    seed = p.getProperty("seed");
+    if(seed!=null) seed = seed.trim();
+    replications = Integer.parseInt(p.getProperty("replications", "1").trim());
+    cacheDir = new File(p.getProperty("cache", ".").trim());
+    output = p.getProperty("output");
+    if(output!=null) output = output.trim();
+  }
+
+  /**
+   * Split string on whitespace.
+   *
+   * @param s string to split
+   * @return whitespace-separated tokens
+   */
+  private static String[] split(String s)
+  {
+    StringTokenizer st = new StringTokenizer(s);
+    String[] tokens = new String[st.countTokens()];
+    for(int i=0; i<tokens.length; i++)
+    {
+      tokens[i] = st.nextToken();
+    }
+    return tokens;
+  }
+
+  /**
+   * Return number of points in parameter grid.
+   *
+   * @return number of points in parameter grid
+   */
+  public int getNumPoints()
+  {
+    int n = 1;
+    for(int i=0; i<values.length; i++)
+    {
+      n *= values[i].length;
+    }
+    return n;
+  }
+
+  /**
+   * Return parameter values of a grid point.
+   *
+   * @param point grid point index
+   * @return parameter values of grid point
+   */
+  private String[] getPoint(int point)
+  {
+    String[] v = new String[params.length];
+    for(int i=params.length-1; i>=0; i--)
+    {
+      v[i] = values[i][point % values[i].length];
+      point /= values[i].length;
+    }
+    return v;
+  }
+
+  /**
+   * Return simulation arguments of a grid point replication.
+   *
+   * @param point grid point parameter values
+   * @param rep replication number
+   * @return simulation arguments
+   */
+  private String[] getArgs(String[] point, int rep)
+  {
+    Vector v = new Vector(Arrays.asList(args));
+    for(int i=0; i<params.length; i++)
+    {
+      v.add(params[i]);
+      v.add(point[i]);
+    }
+    if(seed!=null)
+    {
+      v.add(seed);
+      v.add(Integer.toString(rep));
+    }
+    return (String[])v.toArray(new String[v.size()]);
+  }
+
+  /**
+   * Return result cache file of simulation run.
+   *
+   * @param args simulation arguments
+   * @return result cache file
+   */
+  private File getCacheFile(String[] args)
+  {
+    StringBuffer cmd = new StringBuffer(sim);
+    for(int i=0; i<args.length; i++)
+    {
+      cmd.append(' ');
+      cmd.append(args[i]);
+    }
+    try
+    {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(cmd.toString().getBytes());
+      StringBuffer name = new StringBuffer(CACHE_PREFIX);
+      for(int i=0; i<8; i++)
+      {
+        name.append(Character.forDigit((digest[i]>>4)&0xf, 16));
+        name.append(Character.forDigit(digest[i]&0xf, 16));
+      }
+      return new File(cacheDir, name.toString());
+    }
+    catch(NoSuchAlgorithmException e)
+    {
+      throw new JistException("should never happen", e);
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // execution
+  //
+
+  /**
+   * Process all (uncached) runs of the sweep on given job queue, and wait for
+   * them to complete.
+   *
+   * @param jqs job queue
+   * @param options command-line options of sweep
+   * @param properties jist properties
+   * @param out progress output stream
+   * @param err error output stream
+   * @return sweep runs, by point and replication
+   * @throws IOException unable to access result cache
+   * @throws InterruptedException interrupted while waiting for runs
+   */
+  private Run[][] process(RemoteJist.JobQueueServerRemote jqs,
+      Main.CommandLineOptions options, Properties properties,
+      PrintStream out, PrintStream err)
+    throws IOException, InterruptedException
+  {
+    int points = getNumPoints(), queued = 0, cached = 0;
+    Run[][] runs = new Run[points][replications];
+    // queue uncached runs
+    for(int i=0; i<points; i++)
+    {
+      String[] point = getPoint(i);
+      for(int j=0; j<replications; j++)
+      {
+        Run r = new Run();
+        r.args = getArgs(point, j);
+        r.cache = getCacheFile(r.args);
+        r.out = new ByteArrayOutputStream();
+        runs[i][j] = r;
+        if(r.cache.exists())
+        {
+          FileInputStream fin = new FileInputStream(r.cache);
+          try
+          {
+            r.out.write(Util.readAll(fin));
+          }
+          finally
+          {
+            fin.close();
+          }
+          cached++;
+          continue;
+        }
+        Main.CommandLineOptions jobOptions = new Main.CommandLineOptions();
+        jobOptions.sim = sim;
+        jobOptions.args = r.args;
+        jobOptions.nocache = options.nocache;
+        jobOptions.threads = options.threads;
+        r.err = new ByteArrayOutputStream();
+        r.client = new RemoteJist.JistClient(r.out, r.err);
+        RemoteJist.Job job = new RemoteJist.Job();
+        job.options = jobOptions;
+        job.properties = properties;
+        job.client = r.client;
+        // note: blocks when job queue is full
+        jqs.addJob(job, false);
+        queued++;
+      }
+    }
+    out.println("** Sweep: "+points+" points x "+replications+" replications; "
+        +cached+" cached, "+queued+" queued.");
+    // wait for runs and fill cache
+    int done = 0;
+    for(int i=0; i<points; i++)
+    {
+      for(int j=0; j<replications; j++)
+      {
+        Run r = runs[i][j];
+        if(r.client==null) continue;
+        r.client.waitDone();
+        String failure = r.client.getFailure();
+        r.client = null;
+        done++;
+        if(failure!=null)
+        {
+          err.println("** Sweep: run failed: "+sim+" "+Util.stringJoin(r.args, " ")+": "+failure);
+          err.print(r.err.toString());
+        }
+        else if(parseResult(r.out.toString())==null)
+        {
+          err.println("** Sweep: no result for: "+sim+" "+Util.stringJoin(r.args, " "));
+          err.print(r.err.toString());
+        }
+        else
+        {
+          FileOutputStream fout = new FileOutputStream(r.cache);
+          try
+          {
+            r.out.writeTo(fout);
+          }
+          finally
+          {
+            fout.close();
+          }
+        }
+        r.err = null;
+        out.println("** Sweep: "+done+"/"+queued+" runs done.");
+      }
+    }
+    return runs;
+  }
+
+  /**
+   * Parse result values of a run: the last line of output that consists of
+   * numbers, so that log lines printed after the result are skipped.
+   *
+   * @param out run output
+   * @return result values, or null if no numeric result found
+   */
+  private static double[] parseResult(String out)
+  {
+    StringTokenizer lines = new StringTokenizer(out, "\r\n");
+    double[] result = null;
+    while(lines.hasMoreTokens())
+    {
+      double[] values = parseNumbers(lines.nextToken());
+      if(values!=null) result = values;
+    }
+    return result;
+  }
+
+  /**
+   * Parse whitespace-separated numbers.
+   *
+   * @param line line of output
+   * @return numbers, or null if line is empty or not all numeric
+   */
+  private static double[] parseNumbers(String line)
+  {
+    String[] tokens = split(line);
+    if(tokens.length==0) return null;
+    double[] result = new double[tokens.length];
+    try
+    {
+      for(int i=0; i<tokens.length; i++)
+      {
+        result[i] = Double.parseDouble(tokens[i]);
+      }
+    }
+    catch(NumberFormatException e)
+    {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Return two-sided 95% confidence interval half-width of the mean.
+   *
+   * @param n number of samples
+   * @param sum sum of samples
+   * @param sumsq sum of squared samples
+   * @return confidence interval half-width
+   */
+  private static double getConfidence(int n, double sum, double sumsq)
+  {
+    if(n<2) return 0;
+    double mean = sum/n;
+    double var = Math.max(0, (sumsq-n*mean*mean)/(n-1));
+    double t = n-1<T95.length ? T95[n-1] : Z95;
+    return t*Math.sqrt(var/n);
+  }
+
+  /**
+   * Write table of per-point result statistics.
+   *
+   * @param runs sweep runs, by point and replication
+   * @param out output stream
+   */
+  private void writeTable(Run[][] runs, PrintStream out)
+  {
+    // header
+    int cols = 0;
+    for(int i=0; i<runs.length; i++)
+    {
+      for(int j=0; j<runs[i].length; j++)
+      {
+        runs[i][j].result = parseResult(runs[i][j].out.toString());
+        runs[i][j].out = null;
+        if(runs[i][j].result!=null) cols = Math.max(cols, runs[i][j].result.length);
+      }
+    }
+    StringBuffer sb = new StringBuffer("#");
+    for(int i=0; i<params.length; i++)
+    {
+      sb.append(params[i]);
+      sb.append('\t');
+    }
+    sb.append("n");
+    for(int c=0; c<cols; c++)
+    {
+      sb.append("\tmean"+c+"\tci"+c);
+    }
+    out.println(sb);
+    // rows
+    for(int i=0; i<runs.length; i++)
+    {
+      sb = new StringBuffer(Util.stringJoin(getPoint(i), "\t"));
+      if(params.length>0) sb.append('\t');
+      int n = 0;
+      double[] sum = new double[cols], sumsq = new double[cols];
+      for(int j=0; j<runs[i].length; j++)
+      {
+        double[] result = runs[i][j].result;
+        if(result==null || result.length!=cols) continue;
+        n++;
+        for(int c=0; c<cols; c++)
+        {
+          sum[c] += result[c];
+          sumsq[c] += result[c]*result[c];
+        }
+      }
+      sb.append(n);
+      for(int c=0; c<cols; c++)
+      {
+        sb.append('\t');
+        sb.append(n>0 ? (float)(sum[c]/n) : Float.NaN);
+        sb.append('\t');
+        sb.append((float)getConfidence(n, sum[c], sumsq[c]));
+      }
+      out.println(sb);
+    }
+    out.flush();
+  }
+
+  //////////////////////////////////////////////////
+  // entry point
+  //
+
+  /**
+   * Run a parameter sweep, either on local job slots or on a remote job
+   * queue.
+   *
+   * @param options command-line options (sweep, remote, slots)
+   * @throws IOException unable to read sweep description or access cache
+   * @throws NotBoundException remote JiST server not initialized
+   * @throws InterruptedException interrupted while waiting for runs
+   */
+  public static void run(Main.CommandLineOptions options)
+    throws IOException, NotBoundException, InterruptedException
+  {
+    Sweep sweep = new Sweep(options.sweep);
+    if(!sweep.cacheDir.exists()) sweep.cacheDir.mkdirs();
+    // a single local slot redirects System.out to the running job
+    PrintStream lout = System.out, lerr = System.err;
+    Properties properties = Main.loadProperties(options);
+    RemoteJist.JobQueueServer local = null;
+    final RemoteJist.JobQueueServerRemote jqs;
+    if(options.remote!=null)
+    {
+      jqs = RemoteJist.JobQueueServer.getRemote(options.remote);
+    }
+    else
+    {
+      // local job queue and slots; queue listings are not shown
+      PrintStream quiet = new PrintStream(new OutputStream()
+      {
+        public void write(int b)
+        {
+        }
+      });
+      local = new RemoteJist.JobQueueServer(0, quiet);
+      jqs = local;
+      final int slots = options.slots;
+      Thread farm = new Thread(new Runnable()
+      {
+        public void run()
+        {
+          try
+          {
+            Main.jobFarm(jqs, slots);
+          }
+          catch(Exception e)
+          {
+            e.printStackTrace();
+          }
+        }
+      }, "JistSweepFarm");
+      farm.setDaemon(true);
+      farm.start();
+    }
+    try
+    {
+      Run[][] runs = sweep.process(jqs, options, properties, lout, lerr);
+      if(sweep.output==null)
+      {
+        sweep.writeTable(runs, lout);
+      }
+      else
+      {
+        PrintStream out = new PrintStream(new FileOutputStream(sweep.output));
+        try
+        {
+          sweep.writeTable(runs, out);
+        }
+        finally
+        {
+          out.close();
+        }
+      }
+    }
+    finally
+    {
+      if(local!=null)
+      {
+        local.getStdOut().close();
+        UnicastRemoteObject.unexportObject(local, true);
+      }
+    }
+  }
+
+} // class: Sweep
+
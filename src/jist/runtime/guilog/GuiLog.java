@@ -14,12 +14,17 @@ import jist.runtime.Controller;
 import jist.runtime.Util;
 
 import java.rmi.RemoteException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
 
 import java.lang.reflect.*;
 import java.awt.*;
 import java.awt.event.*;
 
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Arrays;
 import java.util.Vector;
@@ -53,7 +58,7 @@ import java.awt.Dimension;
  * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
  * @version 1.0
  */
-public class GuiLog
+public class GuiLog implements LogInterface
 {
   //////////////////////////////////////////////////
   // statics
@@ -535,24 +540,17 @@ public class GuiLog
           alignment  = SwingConstants.RIGHT;
           break;
         case 1:// set the type
-          cellString = evn.getEvent().getTypeString();
+          cellString = evn.getTypeString();
           alignment  = SwingConstants.CENTER;
           break;
         case 2:// set the method
-          cellString = evn.getEvent().method.toString();
+          cellString = evn.getMethodString();
           break;
         case 3:// set the object
-          try
-          {
-            cellString = Controller.toString(evn.getEvent().ref);
-          }
-          catch(RemoteException e)
-          {
-            cellString = "RemoteException error: " +e.toString();
-          }
+          cellString = evn.getObjectString();
           break;
         case 4:// set the continuation
-          cellString = evn.getEvent().getContinuationString();
+          cellString = evn.getContinuationString();
           break;
         case 5:// set the parent
           if(evn.getParent()!=null)
@@ -857,6 +855,12 @@ public class GuiLog
      */
     private Vector children;
 
+    /**
+     * Type, method, object and continuation strings of an Event read from
+     * an event stream, or null for a live Event.
+     */
+    private String[] labels;
+
     /**
      * The constructor for the EventNode creates the relationships of Parent and Children
      * between the Event and its Parent.
@@ -872,6 +876,68 @@ public class GuiLog
       if(parent!=null) parent.addChild(this);
     }
 
+    /**
+     * Creates an EventNode for an Event read from an event stream, which
+     * has only a time.
+     *
+     * @param ev Event The node's Event.
+     * @param parent EventNode The node's parent EventNode.
+     * @param labels String[] The type, method, object and continuation strings.
+     */
+    public EventNode(Event ev, EventNode parent, String[] labels)
+    {
+      this(ev, parent);
+      this.labels = labels;
+    }
+
+    /**
+     * Returns the node's Event type.
+     *
+     * @return String
+     */
+    public String getTypeString()
+    {
+      return labels!=null ? labels[0] : ev.getTypeString();
+    }
+
+    /**
+     * Returns the node's Event method.
+     *
+     * @return String
+     */
+    public String getMethodString()
+    {
+      return labels!=null ? labels[1] : ev.method.toString();
+    }
+
+    /**
+     * Returns the node's Event target.
+     *
+     * @return String
+     */
+    public String getObjectString()
+    {
+      if(labels!=null) return labels[2];
+      try
+      {
+        return Controller.toString(ev.ref);
+      }
+      catch(RemoteException e)
+      {
+        return "RemoteException error: " +e.toString();
+      }
+    }
+
+    /**
+     * Returns the node's Event continuation summary.
+     *
+     * @return String
+     */
+    public String getContinuationString()
+    {
+      return labels!=null ? labels[3] : ev.getContinuationString();
+    }
+
     /**
      * Returns the node's Event.
      *
@@ -1037,6 +1103,21 @@ public class GuiLog
       return -1;
     }
 
+    /**
+     * Given an EventNode, returns the index of the events[] array where that EventNode is located.
+     *
+     * @param evn EventNode The desired EventNode.
+     * @return int The index of the events[] array where the desired EventNode is located.
+     */
+    public int findNodeIndex(EventNode evn)
+    {
+      for(int i=0; i<numEvents; i++)
+      {
+        if(events[i]==evn) return i;
+      }
+      return -1;
+    }
+
     /**
      * Given an EventNode's index, returns the Parent EventNode's index in the events[] array.
      * This is also equivalent to the table row number.
@@ -1048,7 +1129,7 @@ public class GuiLog
     {
       if(events[index].getParent()!=null)
       {
-        return findNodeIndex(events[index].getParent().getEvent());
+        return findNodeIndex(events[index].getParent());
       }
       return -1;
     }
@@ -1065,7 +1146,7 @@ public class GuiLog
     {
       if(events[index].getNumChildren()>childNum)
       {
-        return findNodeIndex(events[index].getChild(childNum).getEvent());
+        return findNodeIndex(events[index].getChild(childNum));
       }
       return -1;
     }
@@ -1079,7 +1160,16 @@ public class GuiLog
     public void add(Event ev, Event parent)
     {
       // Create the wrapper for the two inputs.
-      EventNode evn = new EventNode(ev, findNode(parent));
+      add(new EventNode(ev, findNode(parent)));
+    }
+
+    /**
+     * Add an event node to the table's data model.
+     *
+     * @param evn EventNode The EventNode that is being added.
+     */
+    public void add(EventNode evn)
+    {
       ensureCapacity();
       // Add the Event.
       events[numEvents] = evn;
@@ -1097,7 +1187,26 @@ public class GuiLog
      */
     public void del(Event ev)
     {
-      int i = findNodeIndex(ev);
+      del(findNodeIndex(ev));
+    }
+
+    /**
+     * Delete an event node from the table's data model.
+     *
+     * @param evn EventNode The EventNode that is being deleted.
+     */
+    public void del(EventNode evn)
+    {
+      del(findNodeIndex(evn));
+    }
+
+    /**
+     * Delete an event from the table's data model.
+     *
+     * @param i int The index of the EventNode in the events[] array, or -1.
+     */
+    private void del(int i)
+    {
       if(i!=-1)
       {
         // Delete the Event and its Children.
@@ -1218,6 +1327,21 @@ public class GuiLog
     panel.repaint();
   }
 
+  /**
+   * Adds an EventNode read from an event stream to the GUI.
+   *
+   * @param evn EventNode
+   */
+  public void add(EventNode evn)
+  {
+    // If the GUI is paused, wait.
+    checkLock();
+    checkListSize();
+    model.add(evn);
+    list.add(evn);
+    panel.repaint();
+  }
+
   /**
    * Deletes an Event from the GUI.
    *
@@ -1315,7 +1439,17 @@ public class GuiLog
     // If numEventsThreshHold has been reached, delete one event.  This creates a smooth moving window of viewable Events.
     if(list.size()>=this.numEventsThreshHold)
     {
-      this.del((Event)this.list.getFirst());
+      Object first = this.list.getFirst();
+      if(first instanceof EventNode)
+      {
+        model.del((EventNode)first);
+        list.removeFirst();
+        panel.repaint();
+      }
+      else
+      {
+        this.del((Event)first);
+      }
     }
   }
 
@@ -1339,6 +1473,51 @@ public class GuiLog
     }
   }
 
+  /**
+   * Displays a window of an event stream recorded by StreamLog.  Events before the
+   * window are skipped, and parents of events are linked while they are still
+   * within the window.  When following a live stream, the window slides forward as
+   * events arrive.
+   *
+   * @param in InputStream The event stream.
+   * @param first long The number of events to skip.
+   * @param count int The number of events in the window.
+   * @param follow boolean Whether to slide the window until the end of the stream.
+   * @return GuiLog The GuiLog displaying the stream.
+   * @throws IOException if the stream can not be read.
+   */
+  public static GuiLog open(InputStream in, long first, int count, boolean follow) throws IOException
+  {
+    StreamLog.Reader r = new StreamLog.Reader(in);
+    GuiLog gl = new GuiLog(count);
+    // nodes within the window, by event identifier
+    HashMap nodes = new HashMap();
+    LinkedList ids = new LinkedList();
+    try
+    {
+      for(long i=0; (follow || i<first+count) && r.next(); i++)
+      {
+        if(i<first) continue;
+        Long id = new Long(r.id);
+        EventNode evn = new EventNode(new Event(r.time, null, null, null),
+            (EventNode)nodes.get(new Long(r.parent)),
+            new String[] { r.getType(), r.getMethod(), "entity:"+r.entity, "" });
+        gl.add(evn);
+        nodes.put(id, evn);
+        ids.add(id);
+        if(ids.size()>count)
+        {
+          nodes.remove(ids.removeFirst());
+        }
+      }
+    }
+    finally
+    {
+      r.close();
+    }
+    return gl;
+  }
+
   /**
    * Dummy method for testing.  Used in GuiLog's main method.
    */
@@ -1364,6 +1543,33 @@ public class GuiLog
    */
   public static void main(String[] args)
   {
+    if(args.length>0)
+    {
+      try
+      {
+        if("-l".equals(args[0]))
+        {
+          // GuiLog -l port [count]: display live stream
+          ServerSocket ss = new ServerSocket(Integer.parseInt(args[1]));
+          System.out.println("waiting for event stream on port "+ss.getLocalPort());
+          InputStream in = ss.accept().getInputStream();
+          ss.close();
+          open(in, 0, args.length>2 ? Integer.parseInt(args[2]) : 1000, true);
+        }
+        else
+        {
+          // GuiLog file [first [count]]: display window of recorded stream
+          open(new FileInputStream(args[0]),
+              args.length>1 ? Long.parseLong(args[1]) : 0,
+              args.length>2 ? Integer.parseInt(args[2]) : 1000, false);
+        }
+      }
+      catch(IOException e)
+      {
+        System.out.println("unable to read event stream: "+e.getMessage());
+      }
+      return;
+    }
     Event A = new Event(1, m, null, null);
     Event B = new Event(2, m, null, null);
     Event C = new Event(3, m, null, null);
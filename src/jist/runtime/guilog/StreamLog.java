@@ -0,0 +1,461 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime.guilog;
+
+import jist.runtime.Event;
+import jist.runtime.EventTrace;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * Headless backend for the GuiLog. Rather than keeping a window of events
+ * in a Swing table, every scheduled event (identifier, parent identifier,
+ * time, scheduling time, type, entity and method) is streamed as a compact
+ * binary record to a file or socket. The GuiLog can later open the stream
+ * and display any window of it, so event causality can be inspected for
+ * runs of any size, on machines without a display.
+ *
+ * <p>Streams to a file, or to a listening GuiLog (see
+ * <code>GuiLog -l port</code>) given as <code>tcp:host:port</code>. The
+ * <code>main</code> method summarizes a stream, and shows the causal chain
+ * and children of a given event.
+ *
+ * @since JIST1.0
+ */
+
+public class StreamLog implements LogInterface
+{
+
+  //////////////////////////////////////////////////
+  // constants
+  //
+
+  /** stream magic number ("JGLG"). */
+  public static final int MAGIC = 0x4a474c47;
+
+  /** stream format version. */
+  public static final int VERSION = 1;
+
+  /** record tag: method definition (id, name). */
+  public static final byte TAG_METHOD = 1;
+
+  /** record tag: scheduled event. */
+  public static final byte TAG_EVENT = 2;
+
+  /** event type: regular event. */
+  public static final byte TYPE_EVENT = 0;
+
+  /** event type: blocking call. */
+  public static final byte TYPE_CALL = 1;
+
+  /** event type: blocking call callback. */
+  public static final byte TYPE_CALLBACK = 2;
+
+  /** event type names. */
+  public static final String[] TYPE_NAMES = { "EVNT", "CALL", "CBCK" };
+
+  /** socket stream target prefix. */
+  public static final String TCP_PREFIX = "tcp:";
+
+  //////////////////////////////////////////////////
+  // locals
+  //
+
+  /** output stream. */
+  private DataOutputStream out;
+
+  /** binary event trace, which may be assigning event identifiers. */
+  private final EventTrace trace;
+
+  /** method identifiers: Method to Integer. */
+  private final HashMap methods;
+
+  /** last assigned event identifier. */
+  private long lastId;
+
+  /** number of events written. */
+  private long count;
+
+  /**
+   * Create new stream log.
+   *
+   * @param out output stream
+   * @param trace binary event trace, whose event identifiers are used while
+   *   it is recording, or null
+   * @throws IOException unable to write stream header
+   */
+  public StreamLog(OutputStream out, EventTrace trace) throws IOException
+  {
+    this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+    this.trace = trace;
+    this.methods = new HashMap();
+    this.out.writeInt(MAGIC);
+    this.out.writeInt(VERSION);
+  }
+
+  /**
+   * Open stream log to file, or to socket (<code>tcp:host:port</code>).
+   *
+   * @param target file name or socket address
+   * @param trace binary event trace, or null
+   * @return new stream log
+   * @throws IOException unable to open target
+   */
+  public static StreamLog open(String target, EventTrace trace) throws IOException
+  {
+    if(target.startsWith(TCP_PREFIX))
+    {
+      String addr = target.substring(TCP_PREFIX.length());
+      int i = addr.lastIndexOf(':');
+      if(i==-1) throw new IOException("invalid socket address: "+target);
+      Socket s = new Socket(addr.substring(0, i), Integer.parseInt(addr.substring(i+1)));
+      s.setTcpNoDelay(false);
+      return new StreamLog(s.getOutputStream(), trace);
+    }
+    return new StreamLog(new FileOutputStream(target), trace);
+  }
+
+  //////////////////////////////////////////////////
+  // LogInterface
+  //
+
+  /**
+   * Stream newly scheduled event.
+   *
+   * @param ev scheduled event
+   * @param parent event being processed (that scheduled the new event)
+   */
+  public void add(Event ev, Event parent)
+  {
+    if(out==null) return;
+    if(trace==null || !trace.isEnabled())
+    {
+      ev.id = ++lastId;
+      ev.cause = parent==null ? 0 : parent.id;
+    }
+    try
+    {
+      int method = getMethodId(ev.method);
+      out.writeByte(TAG_EVENT);
+      out.writeLong(ev.id);
+      out.writeLong(ev.cause);
+      out.writeLong(ev.time);
+      out.writeLong(parent==null ? ev.time : parent.time);
+      out.writeByte(ev.cont==null ? TYPE_EVENT : ev.cont.state==null ? TYPE_CALL : TYPE_CALLBACK);
+      out.writeInt(ev.ref==null ? -1 : ev.ref.getIndex());
+      out.writeInt(method);
+      count++;
+    }
+    catch(IOException e)
+    {
+      close();
+      throw new RuntimeException("event log failure", e);
+    }
+  }
+
+  /**
+   * Ignored: events are never removed from the stream.
+   *
+   * @param ev event
+   */
+  public void del(Event ev)
+  {
+  }
+
+  /**
+   * Return method identifier, defining new methods in the stream.
+   *
+   * @param m event method
+   * @return method identifier
+   * @throws IOException output failure
+   */
+  private int getMethodId(Method m) throws IOException
+  {
+    if(m==null) return -1;
+    Integer id = (Integer)methods.get(m);
+    if(id==null)
+    {
+      id = new Integer(methods.size());
+      methods.put(m, id);
+      out.writeByte(TAG_METHOD);
+      out.writeInt(id.intValue());
+      out.writeUTF(m.toString());
+    }
+    return id.intValue();
+  }
+
+  /**
+   * Return number of events written.
+   *
+   * @return number of events written
+   */
+  public long getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Write buffered records.
+   */
+  public void flush()
+  {
+    if(out==null) return;
+    try
+    {
+      out.flush();
+    }
+    catch(IOException e)
+    {
+      close();
+      throw new RuntimeException("event log failure", e);
+    }
+  }
+
+  /**
+   * Write buffered records and close stream.
+   */
+  public void close()
+  {
+    if(out==null) return;
+    try
+    {
+      out.close();
+    }
+    catch(IOException e)
+    {
+    }
+    out = null;
+  }
+
+  //////////////////////////////////////////////////
+  // reader
+  //
+
+  /**
+   * Sequential reader of an event stream. After each successful call to
+   * <code>next</code>, the public fields hold the current event.
+   */
+  public static class Reader
+  {
+    /** input stream. */
+    private final DataInputStream in;
+    /** method names, by identifier. */
+    private final Vector methods;
+
+    /** event identifier. */
+    public long id;
+    /** identifier of parent event, or zero. */
+    public long parent;
+    /** event time. */
+    public long time;
+    /** time at which event was scheduled. */
+    public long scheduled;
+    /** event type. */
+    public byte type;
+    /** target entity index, or -1. */
+    public int entity;
+    /** method identifier, or -1. */
+    public int method;
+
+    /**
+     * Create new stream reader.
+     *
+     * @param in input stream
+     * @throws IOException not an event stream
+     */
+    public Reader(InputStream in) throws IOException
+    {
+      this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+      this.methods = new Vector();
+      if(this.in.readInt()!=MAGIC || this.in.readInt()!=VERSION)
+      {
+        throw new IOException("not an event stream");
+      }
+    }
+
+    /**
+     * Read next event.
+     *
+     * @return whether an event was read, or end of stream reached
+     * @throws IOException input failure
+     */
+    public boolean next() throws IOException
+    {
+      while(true)
+      {
+        int tag = in.read();
+        switch(tag)
+        {
+          case -1:
+            return false;
+          case TAG_METHOD:
+            {
+              int i = in.readInt();
+              methods.setSize(Math.max(methods.size(), i+1));
+              methods.set(i, in.readUTF());
+              break;
+            }
+          case TAG_EVENT:
+            try
+            {
+              id = in.readLong();
+              parent = in.readLong();
+              time = in.readLong();
+              scheduled = in.readLong();
+              type = in.readByte();
+              entity = in.readInt();
+              method = in.readInt();
+            }
+            catch(EOFException e)
+            {
+              // truncated record of interrupted stream
+              return false;
+            }
+            return true;
+          default:
+            throw new IOException("corrupt event stream");
+        }
+      }
+    }
+
+    /**
+     * Return method name of current event.
+     *
+     * @return method name of current event
+     */
+    public String getMethod()
+    {
+      return method==-1 ? "NOOP" : (String)methods.elementAt(method);
+    }
+
+    /**
+     * Return type of current event.
+     *
+     * @return type of current event
+     */
+    public String getType()
+    {
+      return TYPE_NAMES[type];
+    }
+
+    /**
+     * Return current event as string.
+     *
+     * @return current event as string
+     */
+    public String toString()
+    {
+      return "#"+id+" t="+time+" (from #"+parent+" at t="+scheduled+") "
+        +getType()+" entity:"+entity+" "+getMethod();
+    }
+
+    /**
+     * Close stream.
+     *
+     * @throws IOException input failure
+     */
+    public void close() throws IOException
+    {
+      in.close();
+    }
+  } // class: Reader
+
+  //////////////////////////////////////////////////
+  // offline reader
+  //
+
+  /**
+   * Summarize event stream, or show causal chain and children of an event.
+   * Event identifiers are assigned in scheduling order, so a parent always
+   * has a smaller identifier than its children.
+   *
+   * @param args command-line parameters: file [event]
+   * @throws IOException unable to read stream
+   */
+  public static void main(String[] args) throws IOException
+  {
+    if(args.length<1 || args.length>2)
+    {
+      System.out.println("syntax: StreamLog <file> [event id]");
+      return;
+    }
+    long target = args.length>1 ? Long.parseLong(args[1]) : 0;
+    // first pass: parent identifiers up to target, and children of target
+    long[] parentOf = new long[target>0 ? 1024 : 0];
+    boolean found = false;
+    Vector children = new Vector();
+    long count = 0, first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+    Reader r = new Reader(new FileInputStream(args[0]));
+    try
+    {
+      while(r.next())
+      {
+        count++;
+        first = Math.min(first, r.time);
+        last = Math.max(last, r.time);
+        if(target==0) continue;
+        if(r.id==target) found = true;
+        if(r.parent==target) children.add(r.toString());
+        if(r.id>0 && r.id<=target)
+        {
+          while(r.id>=parentOf.length)
+          {
+            long[] parentOf2 = new long[(int)Math.min(parentOf.length*2L, target+1)];
+            System.arraycopy(parentOf, 0, parentOf2, 0, parentOf.length);
+            parentOf = parentOf2;
+          }
+          parentOf[(int)r.id] = r.parent;
+        }
+      }
+    }
+    finally
+    {
+      r.close();
+    }
+    System.out.println(count+" events"+(count>0 ? ", times "+first+" to "+last : ""));
+    if(target==0) return;
+    if(!found)
+    {
+      System.out.println("event "+target+" not found");
+      return;
+    }
+    // second pass: describe events of causal chain, root first
+    HashMap chain = new HashMap();
+    for(long id=target; id>0 && id<parentOf.length; id=parentOf[(int)id])
+    {
+      chain.put(new Long(id), null);
+    }
+    System.out.println("CAUSAL CHAIN OF EVENT "+target+":");
+    r = new Reader(new FileInputStream(args[0]));
+    try
+    {
+      while(r.next() && r.id<=target)
+      {
+        if(chain.containsKey(new Long(r.id)))
+        {
+          System.out.println("  "+r);
+        }
+      }
+    }
+    finally
+    {
+      r.close();
+    }
+    System.out.println("CHILDREN OF EVENT "+target+":");
+    for(int i=0; i<children.size(); i++)
+    {
+      System.out.println("  "+children.elementAt(i));
+    }
+  }
+
+} // class: StreamLog
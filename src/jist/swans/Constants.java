@@ -93,6 +93,10 @@ public final class Constants
   /** node mobility choice constant. */
   public static final int MOBILITY_WALK     = 4;
   /** node mobility choice constant. */
+  public static final int MOBILITY_WAYPOINT_LAZY = 5;
+  /** node mobility choice constant. */
+  public static final int MOBILITY_TRACE    = 6;
+  /** node mobility choice constant. */
   public static final int MOBILITY_DEFAULT  = MOBILITY_STATIC;
 
   /** spatial data structure choice constant. */
@@ -104,6 +108,10 @@ public final class Constants
   /** spatial data structure choice constant. */
   public static final int SPATIAL_HIER    = 2;
   /** spatial data structure choice constant. */
+  public static final int SPATIAL_PACKED  = 3;
+  /** spatial data structure choice constant. */
+  public static final int SPATIAL_KDTREE  = 4;
+  /** spatial data structure choice constant. */
   public static final int SPATIAL_WRAP    = 16;
 
   //////////////////////////////////////////////////
@@ -10,6 +10,7 @@
 package jist.swans;
 
 import jist.runtime.JistAPI;
+import jist.swans.misc.MessageSerializers;
 
 import jargs.gnu.*; // Download from: http://jargs.sourceforge.net
 import org.apache.log4j.*; // Download from: http://jakarta.apache.org/log4j/docs/index.html
@@ -236,6 +237,8 @@ public final class Main
 
       // install swans rewriter
       JistAPI.installRewrite(new Rewriter());
+      // message serializers, for linked engines
+      MessageSerializers.register();
       // set simulation time seconds
       JistAPI.setSimUnits(Constants.SECOND, "s");
       // and start the show
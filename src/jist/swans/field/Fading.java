@@ -11,6 +11,8 @@ package jist.swans.field;
 
 import jist.swans.Constants;
 
+import java.util.Random;
+
 /** 
  * Interface for performing fading calculations.
  *
@@ -32,6 +34,35 @@ public interface Fading
    */
   double compute();
 
+  /**
+   * Fading model that draws from a given random stream, and bounds its
+   * gain. The field draws the fading at each radio from a stream of its
+   * own, and prunes receivers by distance, only for models of this kind;
+   * other models draw from the global random number generator, and are not
+   * pruned.
+   *
+   * @since SWANS1.0
+   */
+  interface Stream extends Fading
+  {
+    /**
+     * Compute the fading loss, drawing from the given random stream.
+     * 
+     * @param random random number generator
+     * @return fading loss (units: dB)
+     */
+    double compute(Random random);
+
+    /**
+     * Return largest fading gain that may be computed. Used as a margin when
+     * pruning receivers by distance.
+     *
+     * @return upper bound of fading gain (units: dB)
+     */
+    double getMaxGain();
+
+  } // interface: Stream
+
   //////////////////////////////////////////////////
   // implementations
   //
@@ -42,7 +73,7 @@ public interface Fading
    * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
    * @since SWANS1.0
    */
-  final class None implements Fading
+  final class None implements Fading.Stream
   {
     // Fading interface
     /** {@inheritDoc} */
@@ -50,6 +81,18 @@ public interface Fading
     {
       return 0.0;
     }
+
+    /** {@inheritDoc} */
+    public double compute(Random random)
+    {
+      return 0.0;
+    }
+
+    /** {@inheritDoc} */
+    public double getMaxGain()
+    {
+      return 0.0;
+    }
   }
 
   /** 
@@ -58,17 +101,32 @@ public interface Fading
    * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
    * @since SWANS1.0
    */
-  final class Rayleigh implements Fading
+  final class Rayleigh implements Fading.Stream
   {
     /** Rayleigh distribution variance constant. */
     private static final double VARIANCE = 0.6366197723676;
 
+    /** largest value of -log(u), for the smallest non-zero random double u. */
+    private static final double MAX_NEG_LOG = 53 * Math.log(2.0);
+
     // Fading interface
     /** {@inheritDoc} */
     public double compute()
+    {
+      return compute(Constants.random);
+    }
+
+    /** {@inheritDoc} */
+    public double compute(Random random)
     {
       // compute fading_dB; positive values are signal gains
-      return 5.0 * Math.log(-2.0 * VARIANCE * Math.log(Constants.random.nextDouble())) / Constants.log10;
+      return 5.0 * Math.log(-2.0 * VARIANCE * Math.log(random.nextDouble())) / Constants.log10;
+    }
+
+    /** {@inheritDoc} */
+    public double getMaxGain()
+    {
+      return 5.0 * Math.log(2.0 * VARIANCE * MAX_NEG_LOG) / Constants.log10;
     }
   }
 
@@ -78,8 +136,14 @@ public interface Fading
    * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
    * @since SWANS1.0
    */
-  final class Rician implements Fading
+  final class Rician implements Fading.Stream
   {
+    /**
+     * Largest value of -2log(r), for the smallest non-zero r=v1*v1+v2*v2,
+     * with v1, v2 random doubles in steps of 2^-52.
+     */
+    private static final double MAX_NEG_LOG = 2 * 104 * Math.log(2.0);
+
     /** distribution parameters. */
     private final double kFactor, stddev;
 
@@ -159,13 +223,19 @@ public interface Fading
     // Fading interface
     /** {@inheritDoc} */
     public double compute()
+    {
+      return compute(Constants.random);
+    }
+
+    /** {@inheritDoc} */
+    public double compute(Random random)
     {
       // compute fading_dB; positive values are signal gains
       double a = Math.sqrt(2.0 * kFactor * stddev * stddev), r, v1, v2;
       do 
       {
-        v1 = -1.0 + 2.0 * Constants.random.nextDouble();
-        v2 = -1.0 + 2.0 * Constants.random.nextDouble();
+        v1 = -1.0 + 2.0 * random.nextDouble();
+        v2 = -1.0 + 2.0 * random.nextDouble();
         r = v1 * v1 + v2 * v2;
       }
       while (r > 1.0);
@@ -174,6 +244,287 @@ public interface Fading
       v2 = stddev * v2 * r;
       return 5.0 * Math.log(v1*v1 + v2*v2) / Constants.log10;
     }
+
+    /** {@inheritDoc} */
+    public double getMaxGain()
+    {
+      // (v1*r)^2 + (v2*r)^2 = -2log(r), so v1^2 + v2^2 <= (a + stddev*sqrt(-2log(r)))^2
+      double a = Math.sqrt(2.0 * kFactor * stddev * stddev);
+      return 10.0 * Math.log(a + stddev * Math.sqrt(MAX_NEG_LOG)) / Constants.log10;
+    }
+  }
+
+  /** 
+   * Computes Rayleigh or Rician fading by table lookup, from a single
+   * uniform random draw. The inverse of the distribution function of the
+   * fading loss is tabulated at evenly spaced probabilities, and
+   * interpolated linearly. In the two outermost intervals, where the
+   * inverse diverges, it is tabulated instead against the logarithm of the
+   * (upper or lower) tail probability, down to the smallest probability of
+   * a random double. Draws follow the distribution of the given model, but
+   * not its sequence of values.
+   *
+   * <p>The fading power of both models, over twice the variance of its
+   * normal components, has a non-central gamma distribution: a Poisson
+   * (with mean k) mixture of gamma distributions of integer shape. Rayleigh
+   * fading is the case k=0. The table is computed from this distribution
+   * function.
+   *
+   * @since SWANS1.0
+   */
+  final class Table implements Fading.Stream
+  {
+    /** default number of table intervals. */
+    public static final int SIZE_DEFAULT = 4096;
+
+    /** number of tail table intervals. */
+    private static final int TAIL_SIZE = 256;
+
+    /** largest value of -log(p), for the smallest non-zero tail probability p. */
+    private static final double MAX_NEG_LOG = 53 * Math.log(2.0);
+
+    /** Poisson mixture weights. */
+    private final double[] weights;
+
+    /** fading power of unit gamma variable: twice the component variance. */
+    private final double scale;
+
+    /** number of table intervals. */
+    private final int size;
+
+    /** fading loss at probabilities i/size (units: dB). */
+    private final double[] table;
+
+    /** smallest -log(p) of tail tables. */
+    private final double tailStart;
+
+    /** tail table intervals per unit of -log(p). */
+    private final double tailStep;
+
+    /** fading loss at lower tail probabilities p (units: dB). */
+    private final double[] lower;
+
+    /** fading loss at upper tail probabilities p (units: dB). */
+    private final double[] upper;
+
+    /**
+     * Create new table-driven fading model.
+     *
+     * @param model Rayleigh or Rician fading model
+     * @param size number of table intervals
+     */
+    public Table(Fading model, int size)
+    {
+      double kFactor, variance;
+      if(model instanceof Rayleigh)
+      {
+        kFactor = 0;
+        variance = Rayleigh.VARIANCE;
+      }
+      else if(model instanceof Rician)
+      {
+        kFactor = ((Rician)model).kFactor;
+        variance = ((Rician)model).stddev * ((Rician)model).stddev;
+      }
+      else
+      {
+        throw new IllegalArgumentException("Rayleigh or Rician fading model expected");
+      }
+      if(size<4) throw new IllegalArgumentException("table too small");
+      this.weights = computeWeights(kFactor);
+      this.scale = 2.0 * variance;
+      this.size = size;
+      table = new double[size];
+      for(int i=1; i<size; i++)
+      {
+        table[i] = i<=size/2
+          ? toDB(inverse((double)i/size, false))
+          : toDB(inverse((double)(size-i)/size, true));
+      }
+      tailStart = Math.log(size);
+      tailStep = TAIL_SIZE / (MAX_NEG_LOG - tailStart);
+      lower = new double[TAIL_SIZE+1];
+      upper = new double[TAIL_SIZE+1];
+      for(int i=0; i<=TAIL_SIZE; i++)
+      {
+        double p = Math.exp(-(tailStart + i / tailStep));
+        lower[i] = toDB(inverse(p, false));
+        upper[i] = toDB(inverse(p, true));
+      }
+    }
+
+    /**
+     * Create new table-driven fading model, with default table size.
+     *
+     * @param model Rayleigh or Rician fading model
+     */
+    public Table(Fading model)
+    {
+      this(model, SIZE_DEFAULT);
+    }
+
+    /**
+     * Compute Poisson weights, truncated where negligible.
+     *
+     * @param mean Poisson mean
+     * @return Poisson probabilities of 0, 1, 2, ...
+     */
+    private static double[] computeWeights(double mean)
+    {
+      double[] w = new double[16];
+      w[0] = Math.exp(-mean);
+      int n = 1;
+      while(true)
+      {
+        double next = w[n-1] * mean / n;
+        if(next==0 || (n>mean && next<1e-20)) break;
+        if(n==w.length)
+        {
+          double[] w2 = new double[n*2];
+          System.arraycopy(w, 0, w2, 0, n);
+          w = w2;
+        }
+        w[n++] = next;
+      }
+      double[] result = new double[n];
+      System.arraycopy(w, 0, result, 0, n);
+      return result;
+    }
+
+    /**
+     * Compute lower or upper tail probability of normalized fading power.
+     * Both are sums of positive terms, and accurate down to the smallest
+     * doubles.
+     *
+     * @param y normalized fading power
+     * @param tail whether to compute upper tail probability P(Y&gt;y)
+     * @return tail probability
+     */
+    private double probability(double y, boolean tail)
+    {
+      // gamma terms e^-y y^i/i!, until past all weights and negligible
+      double t = Math.exp(-y), sum = 0, result = 0;
+      if(tail)
+      {
+        // P(Gamma(j+1)>y) = sum of terms i<=j
+        for(int j=0; j<weights.length; j++)
+        {
+          if(j>0) t *= y / j;
+          sum += t;
+          result += weights[j] * sum;
+        }
+        return result;
+      }
+      // P(Gamma(j+1)<=y) = sum of terms i>j
+      int n = weights.length;
+      double[] terms = new double[n];
+      for(int i=0; i<n; i++)
+      {
+        if(i>0) t *= y / i;
+        terms[i] = t;
+      }
+      double rest = 0;
+      for(int i=n; ; i++)
+      {
+        t *= y / i;
+        rest += t;
+        if(i>y && t<=rest*1e-17) break;
+      }
+      for(int j=n-1; j>=0; j--)
+      {
+        result += weights[j] * rest;
+        rest += terms[j];
+      }
+      return result;
+    }
+
+    /**
+     * Invert tail probability of normalized fading power, by bisection.
+     *
+     * @param p tail probability
+     * @param tail whether p is an upper tail probability
+     * @return normalized fading power
+     */
+    private double inverse(double p, boolean tail)
+    {
+      if(weights.length==1)
+      {
+        // exponential
+        return tail ? -Math.log(p) : -Math.log(1.0 - p);
+      }
+      double lo = 1.0, hi = 1.0;
+      if(tail == probability(1.0, tail) > p)
+      {
+        do { lo = hi; hi *= 2; } while(tail == probability(hi, tail) > p);
+      }
+      else
+      {
+        do { hi = lo; lo /= 2; } while(tail != probability(lo, tail) > p);
+      }
+      for(int i=0; i<64; i++)
+      {
+        double mid = (lo + hi) / 2;
+        if(mid<=lo || mid>=hi) break;
+        if(tail == probability(mid, tail) > p) lo = mid; else hi = mid;
+      }
+      return (lo + hi) / 2;
+    }
+
+    /**
+     * Convert normalized fading power to fading loss.
+     *
+     * @param y normalized fading power
+     * @return fading loss (units: dB)
+     */
+    private double toDB(double y)
+    {
+      return 5.0 * Math.log(scale * y) / Constants.log10;
+    }
+
+    /**
+     * Interpolate tail table.
+     *
+     * @param tail tail table
+     * @param p tail probability
+     * @return fading loss (units: dB)
+     */
+    private double interpolate(double[] tail, double p)
+    {
+      double x = (-Math.log(p) - tailStart) * tailStep;
+      if(x>=TAIL_SIZE) return tail[TAIL_SIZE];
+      if(x<0) x = 0;
+      int i = (int)x;
+      return tail[i] + (x - i) * (tail[i+1] - tail[i]);
+    }
+
+    // Fading interface
+    /** {@inheritDoc} */
+    public double compute()
+    {
+      return compute(Constants.random);
+    }
+
+    /** {@inheritDoc} */
+    public double compute(Random random)
+    {
+      double u = random.nextDouble(), x = u * size;
+      int i = (int)x;
+      if(i==0)
+      {
+        return u==0 ? Double.NEGATIVE_INFINITY : interpolate(lower, u);
+      }
+      if(i>=size-1)
+      {
+        return interpolate(upper, 1.0 - u);
+      }
+      return table[i] + (x - i) * (table[i+1] - table[i]);
+    }
+
+    /** {@inheritDoc} */
+    public double getMaxGain()
+    {
+      return upper[TAIL_SIZE];
+    }
   }
 
 } // class: Fading
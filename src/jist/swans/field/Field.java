@@ -14,12 +14,17 @@ import jist.swans.radio.RadioInfo;
 import jist.swans.misc.Message;
 import jist.swans.misc.Location;
 import jist.swans.misc.Util;
+import jist.swans.misc.FanOut;
+import jist.swans.misc.SplitRandom;
 import jist.swans.Constants;
 
 import jist.runtime.JistAPI;
+import jist.runtime.SimLog;
 
 import org.apache.log4j.Logger;
 
+import java.util.HashMap;
+
 /** 
  * An abstract parent of Field implementations, which contains
  * the common code.
@@ -32,8 +37,24 @@ import org.apache.log4j.Logger;
 public class Field implements FieldInterface
 {
 
-  /** logger for field events. */
-  public static final Logger logField = Logger.getLogger(Field.class.getName());
+  /**
+   * simulation log category for field events ("field"); on if the log4j
+   * logger of this class is at info level.
+   */
+  public static final SimLog.Category logField = SimLog.getCategory("field",
+      Logger.getLogger(Field.class.getName()));
+
+  /** propagation range search: largest range considered finite (meters). */
+  public static final double RANGE_MAX = 1e7;
+
+  /** propagation range search: number of bisection steps. */
+  public static final int RANGE_STEPS = 32;
+
+  /** propagation range search: relative slack added to range. */
+  public static final double RANGE_SLACK = 0.01;
+
+  /** lazy mobility: default displacement between location updates (meters). */
+  public static final float MOBILITY_SLACK_DEFAULT = 100;
 
   //////////////////////////////////////////////////
   // locals
@@ -54,6 +75,11 @@ public class Field implements FieldInterface
    */
   protected Fading fading;
 
+  /**
+   * Fading model, if it draws from given random streams; otherwise null.
+   */
+  protected Fading.Stream fadingStream;
+
   /**
    * Mobility model.
    */
@@ -74,6 +100,81 @@ public class Field implements FieldInterface
    */
   protected RadioData[] radios;
 
+  /**
+   * Whether to cache links (neighbours and their path loss) of each radio.
+   */
+  protected boolean linkCache;
+
+  /**
+   * Number of radios with valid cached links.
+   */
+  protected int numLinked;
+
+  /**
+   * Whether any radio moves along analytic segments, with its location
+   * computed on demand.
+   */
+  protected boolean lazyMobility;
+
+  /**
+   * Largest displacement (in meters) of a radio that moves along analytic
+   * segments from its location in the spatial data structure.
+   */
+  protected float mobilitySlack;
+
+  /**
+   * Fading margin (in dB): largest fading gain considered when pruning
+   * receivers by distance.
+   */
+  protected double fadingMargin;
+
+  /**
+   * Maximum transmit power of radios on field (in dBm).
+   */
+  protected double maxPower;
+
+  /**
+   * Minimum receive sensitivity of radios on field (in dBm).
+   */
+  protected double minSensitivity;
+
+  /**
+   * Maximum antenna gain of radios on field (in dB).
+   */
+  protected double maxGain;
+
+  /**
+   * Maximum antenna height of radios on field (in meters).
+   */
+  protected float maxHeight;
+
+  /**
+   * Cached propagation ranges: RadioInfoShared to a list of
+   * { power, limit, range } triples.
+   */
+  protected HashMap ranges;
+
+  /**
+   * Random stream from which the fading stream of each radio is split, or
+   * null until a random fading model needs it.
+   */
+  protected SplitRandom random;
+
+  /**
+   * Parallel transmission workers, or null for serial transmission.
+   */
+  protected FanOut fanOut;
+
+  /**
+   * Most recently computed propagation range: { power, limit, range }.
+   */
+  private double[] lastRange;
+
+  /**
+   * Shared radio properties of most recently computed propagation range.
+   */
+  private RadioInfo.RadioInfoShared lastRangeShared;
+
 
   //////////////////////////////////////////////////
   // initialize
@@ -123,6 +224,13 @@ public class Field implements FieldInterface
       Mobility mobility, double propagationLimit)
   {
     radios = new RadioData[10];
+    linkCache = false;
+    mobilitySlack = MOBILITY_SLACK_DEFAULT;
+    maxPower = Double.NEGATIVE_INFINITY;
+    minSensitivity = Double.POSITIVE_INFINITY;
+    maxGain = Double.NEGATIVE_INFINITY;
+    maxHeight = 0;
+    ranges = new HashMap();
     this.spatial = spatial;
     setFading(fading);
     setPathLoss(pathloss);
@@ -144,6 +252,53 @@ public class Field implements FieldInterface
   public void setFading(Fading fading)
   {
     this.fading = fading;
+    this.fadingStream = fading instanceof Fading.Stream ? (Fading.Stream)fading : null;
+    this.fadingMargin = fadingStream!=null ? fadingStream.getMaxGain() : Double.POSITIVE_INFINITY;
+    if(isRandomFading())
+    {
+      for(int i=0; i<radios.length; i++)
+      {
+        if(radios[i]!=null && radios[i].random==null) radios[i].random = getRandom().split();
+      }
+    }
+    invalidateLinks();
+  }
+
+  /**
+   * Return whether fading model draws from the random streams of radios.
+   *
+   * @return whether fading model draws from the random streams of radios
+   */
+  private boolean isRandomFading()
+  {
+    return fadingStream!=null && !(fading instanceof Fading.None);
+  }
+
+  /**
+   * Return random stream from which radio fading streams are split,
+   * seeding it from the global random number generator on first use.
+   *
+   * @return random stream of field
+   */
+  private SplitRandom getRandom()
+  {
+    if(random==null) random = new SplitRandom(Constants.random.nextLong());
+    return random;
+  }
+
+  /**
+   * Set fading margin. By default, this is the largest gain of the fading
+   * model, so that pruning receivers by distance is exact; models that do
+   * not bound their gain are not pruned. A smaller margin
+   * trades the rare receptions of strongly faded signals for fewer receivers
+   * visited per transmission.
+   *
+   * @param margin largest fading gain considered when pruning (in dB)
+   */
+  public void setFadingMargin(double margin)
+  {
+    this.fadingMargin = margin;
+    invalidateLinks();
   }
   
   /**
@@ -154,6 +309,9 @@ public class Field implements FieldInterface
   public void setPathLoss(PathLoss pathloss)
   {
     this.pathloss = pathloss;
+    ranges.clear();
+    lastRangeShared = null;
+    invalidateLinks();
   }
 
   /**
@@ -174,6 +332,71 @@ public class Field implements FieldInterface
   public void setPropagationLimit(double limit)
   {
     this.limit = limit;
+    invalidateLinks();
+  }
+
+  /**
+   * Set whether to cache the links of each radio. When enabled, each radio
+   * keeps a list of its receivers and their path loss, which is computed on
+   * its first transmission and updated only when radios move, are added or
+   * are removed. Transmissions then iterate over this list instead of
+   * searching the spatial data structure. Disabled by default: it pays off
+   * when radios transmit often relative to how often they move.
+   *
+   * @param linkCache whether to cache radio links
+   */
+  public void setLinkCache(boolean linkCache)
+  {
+    this.linkCache = linkCache;
+    invalidateLinks();
+  }
+
+  /**
+   * Set largest displacement of a radio that moves along analytic segments
+   * from its location in the spatial data structure. The location is
+   * updated whenever the radio may have moved this far, and propagation
+   * ranges are extended by this distance. Smaller values mean more update
+   * events, larger values mean more receivers visited per transmission.
+   *
+   * @param mobilitySlack largest displacement (in meters)
+   */
+  public void setMobilitySlack(float mobilitySlack)
+  {
+    if(mobilitySlack<=0) throw new IllegalArgumentException("mobility slack must be positive");
+    this.mobilitySlack = mobilitySlack;
+  }
+
+  /**
+   * Set seed of fading random streams. Each radio draws the fading of its
+   * receptions from its own stream, split off in the order in which radios
+   * are added; the seed must be set before radios are added. By default,
+   * the seed is drawn from the global random number generator, once the
+   * first radio is added under a random fading model; fields without
+   * random fading leave the global generator untouched.
+   *
+   * @param seed seed of fading random streams
+   */
+  public void setSeed(long seed)
+  {
+    if(spatial.size>0) throw new IllegalStateException("seed must be set before radios are added");
+    random = new SplitRandom(seed);
+  }
+
+  /**
+   * Set number of threads that compute the signal strength at the receivers
+   * of each transmission. With more than one thread, receivers are split
+   * into fixed-size chunks. Since each receiver draws its fading from its
+   * own random stream, results are the same as those of serial
+   * transmission, regardless of the number of threads. Path loss models
+   * must be thread-safe. Worker threads are daemons; they are stopped when
+   * the number of threads is changed again, for instance back to one.
+   *
+   * @param threads number of threads, including the simulation thread
+   */
+  public void setParallel(int threads)
+  {
+    if(fanOut!=null) fanOut.close();
+    fanOut = threads>1 ? new FanOut(threads, FanOut.CHUNK_DEFAULT) : null;
   }
 
 
@@ -231,6 +454,41 @@ public class Field implements FieldInterface
      */
     protected RadioData prev, next;
 
+    /**
+     * cached links: receivers of this radio.
+     */
+    protected RadioData[] links;
+
+    /**
+     * cached links: path loss to each receiver (in dB).
+     */
+    protected double[] linkLoss;
+
+    /**
+     * cached links: number of receivers.
+     */
+    protected int numLinks;
+
+    /**
+     * whether cached links are up to date.
+     */
+    protected boolean linksValid;
+
+    /**
+     * cached links: radios that list this radio as a receiver.
+     */
+    protected RadioData[] linkedBy;
+
+    /**
+     * cached links: number of radios that list this radio.
+     */
+    protected int numLinkedBy;
+
+    /**
+     * random stream of fading at this radio.
+     */
+    protected SplitRandom random;
+
   } // class: RadioData
 
 
@@ -244,15 +502,16 @@ public class Field implements FieldInterface
   public void addRadio(RadioInfo info, RadioInterface entity, Location loc)
   {
     if(!JistAPI.isEntity(entity)) throw new IllegalArgumentException("entity expected");
-    if(logField.isInfoEnabled())
+    if(logField.begin("add radio: info=[{}] loc={},{}"))
     {
-      logField.info("add radio: info=["+info+"] loc="+loc);
+      logField.arg(info).arg(loc.getX()).arg(loc.getY()).end();
     }
     RadioData data = new RadioData();
     Integer id = info.getUnique().getID();
     data.entity = entity;
     data.info = info;
     data.loc = loc;
+    if(isRandomFading()) data.random = getRandom().split();
     // insert into array
     int idi = id.intValue();
     while(radios.length<=idi)
@@ -264,6 +523,11 @@ public class Field implements FieldInterface
     radios[idi] = data;
     // add into spatial data structure
     spatial.add(data);
+    extendBounds(info, loc);
+    // update cached links
+    maxPower = Math.max(maxPower, info.getShared().getPower());
+    minSensitivity = Math.min(minSensitivity, Util.toDB(info.getShared().getSensitivity_mW()));
+    if(cacheLinks()) updateLinks(data);
   }
 
   /**
@@ -273,15 +537,15 @@ public class Field implements FieldInterface
    */
   public void delRadio(Integer id)
   {
-    if(logField.isInfoEnabled())
-    {
-      logField.info("delete radio: id="+id);
-    }
+    logField.log("delete radio: id={}", id);
     // remove from array
     RadioData data = getRadioData(id);
     radios[id.intValue()] = null;
     // remove from spatial data structure
     spatial.del(data);
+    // remove cached links
+    clearLinks(data);
+    unlinkIncoming(data);
   }
 
   /**
@@ -302,20 +566,42 @@ public class Field implements FieldInterface
   /** {@inheritDoc} */
   public void moveRadio(Integer id, Location loc)
   {
-    if(logField.isInfoEnabled())
+    if(logField.begin("move radio id={} to={},{}"))
     {
-      logField.info("move radio id="+id+" to="+loc);
+      logField.arg(id.intValue()).arg(loc.getX()).arg(loc.getY()).end();
     }
     // update spatial data structure
     RadioData rd = getRadioData(id);
     spatial.moveInside(rd, loc);
+    extendBounds(rd.info, loc);
+    // update cached links
+    if(cacheLinks()) updateLinks(rd);
     // schedule next step
     if(rd.mobilityInfo!=null)
     {
+      // start location updates along new segment, before time advances
+      if(rd.mobilityInfo instanceof Mobility.SegmentInfo) self.refreshRadio(id);
       mobility.next(self, id, loc, rd.mobilityInfo);
     }
   }
 
+  /** {@inheritDoc} */
+  public void refreshRadio(Integer id)
+  {
+    RadioData rd = getRadioData(id);
+    if(rd==null || !(rd.mobilityInfo instanceof Mobility.SegmentInfo)) return;
+    Mobility.SegmentInfo si = (Mobility.SegmentInfo)rd.mobilityInfo;
+    long now = JistAPI.getTime();
+    spatial.moveInside(rd, si.getLocation(now));
+    // schedule next update, unless segment ends first
+    long next = si.getDisplacementTime(now, mobilitySlack);
+    if(next<si.getEnd())
+    {
+      JistAPI.sleep(next-now);
+      self.refreshRadio(id);
+    }
+  }
+
   /** {@inheritDoc} */
   public void moveRadioOff(Integer id, Location delta)
   {
@@ -333,33 +619,455 @@ public class Field implements FieldInterface
   {
     RadioData rd = getRadioData(id);
     rd.mobilityInfo = mobility.init(self, id, rd.loc);
+    if(rd.mobilityInfo instanceof Mobility.SegmentInfo && !lazyMobility)
+    {
+      lazyMobility = true;
+      invalidateLinks();
+    }
     self.moveRadio(id, rd.loc);
   }
 
+  /**
+   * Return whether radio links are cached. Links are not cached when radios
+   * move along analytic segments, since their locations change between
+   * mobility events, nor when path loss varies over time.
+   *
+   * @return whether radio links are cached
+   */
+  protected boolean cacheLinks()
+  {
+    return linkCache && !lazyMobility && !(pathloss instanceof PathLossMatrix);
+  }
+
+  /**
+   * Return current location of radio. Radios that move along analytic
+   * segments may have moved away from their location in the spatial data
+   * structure; the given location, which may be shifted if the field
+   * wraps, is offset by the same displacement.
+   *
+   * @param rd radio data
+   * @param loc radio location, as reported by spatial data structure
+   * @return current radio location
+   */
+  protected Location locate(RadioData rd, Location loc)
+  {
+    if(!(rd.mobilityInfo instanceof Mobility.SegmentInfo)) return loc;
+    Location now = ((Mobility.SegmentInfo)rd.mobilityInfo).getLocation(JistAPI.getTime());
+    if(loc==rd.loc) return now;
+    return new Location.Location2D(
+        loc.getX() + now.getX() - rd.loc.getX(),
+        loc.getY() + now.getY() - rd.loc.getY(),
+        loc.getHeight());
+  }
+
+
+  //////////////////////////////////////////////////
+  // propagation range
+  //
+
+  /**
+   * Extend largest antenna gain and height on the field, which bound the
+   * propagation ranges, to include a radio. Cached ranges are discarded
+   * when either grows.
+   *
+   * @param info radio information
+   * @param loc radio location
+   */
+  private void extendBounds(RadioInfo info, Location loc)
+  {
+    double gain = info.getShared().getGain();
+    float height = loc.getHeight();
+    if(gain>maxGain || height>maxHeight)
+    {
+      maxGain = Math.max(maxGain, gain);
+      maxHeight = Math.max(maxHeight, height);
+      ranges.clear();
+      lastRangeShared = null;
+    }
+  }
+
+  /**
+   * Return lower bound of path loss from a radio to any receiver at a
+   * given location: one with the largest antenna gain and height on the
+   * field. Path loss models add the gains of both antennas, and their loss
+   * does not grow with antenna height.
+   *
+   * @param info radio information
+   * @param src radio location
+   * @param dst receiver location
+   * @return lower bound of path loss (in dB)
+   */
+  protected double minLoss(RadioInfo info, Location src, Location dst)
+  {
+    if(dst.getHeight()<maxHeight)
+    {
+      dst = new Location.Location2D(dst.getX(), dst.getY(), maxHeight);
+    }
+    double gain = info.getShared().getGain();
+    return pathloss.compute(info, src, info, dst) + gain - Math.max(maxGain, gain);
+  }
+
+  /**
+   * Return distance beyond which a radio, transmitting at given power, is
+   * below the propagation limit. The receiver may have the largest antenna
+   * gain on the field, and both antennas the largest height.
+   * Any fading gain must be included in the given power. Ranges are cached
+   * per shared radio properties, transmit power and limit, so that spatial
+   * data structures may prune bins by distance alone, without computing
+   * signal strengths.
+   *
+   * @param info transmitting radio information
+   * @param power transmit power (in dBm)
+   * @param limit propagation limit (in dBm)
+   * @return propagation range (in meters), or infinity if unbounded
+   */
+  protected double computeRange(RadioInfo info, double power, double limit)
+  {
+    RadioInfo.RadioInfoShared shared = info.getShared();
+    double[] range = lastRange;
+    if(shared==lastRangeShared && range[0]==power && range[1]==limit) return range[2];
+    double[] list = (double[])ranges.get(shared);
+    int i = 0;
+    while(list!=null && i<list.length && !(list[i]==power && list[i+1]==limit)) i += 3;
+    if(list==null || i==list.length)
+    {
+      double[] list2 = new double[i+3];
+      if(list!=null) System.arraycopy(list, 0, list2, 0, i);
+      list2[i] = power;
+      list2[i+1] = limit;
+      list2[i+2] = findRange(info, power, limit);
+      list = list2;
+      ranges.put(shared, list);
+    }
+    lastRange = new double[] { power, limit, list[i+2] };
+    lastRangeShared = shared;
+    return list[i+2];
+  }
+
+  /**
+   * Search for propagation range by bisection. Only path loss models known
+   * to increase with distance are bounded. Obstacles only add loss, so the
+   * range of their underlying model bounds the range of obstacle models.
+   *
+   * @param info transmitting radio information
+   * @param power transmit power (in dBm)
+   * @param limit propagation limit (in dBm)
+   * @return propagation range (in meters), or infinity if unbounded
+   */
+  private double findRange(RadioInfo info, double power, double limit)
+  {
+    PathLoss pathloss = this.pathloss;
+    if(pathloss instanceof PathLossObstacle) pathloss = ((PathLossObstacle)pathloss).getBase();
+    if(!(pathloss instanceof PathLoss.FreeSpace || pathloss instanceof PathLoss.TwoRay))
+    {
+      return Double.POSITIVE_INFINITY;
+    }
+    Location origin = new Location.Location2D(0, 0, maxHeight);
+    double lo = 0, hi = 1;
+    while(power - minLoss(info, origin, new Location.Location2D((float)hi, 0, maxHeight)) >= limit)
+    {
+      lo = hi;
+      hi *= 2;
+      if(hi>RANGE_MAX) return Double.POSITIVE_INFINITY;
+    }
+    for(int i=0; i<RANGE_STEPS; i++)
+    {
+      double mid = (lo+hi)/2;
+      if(power - minLoss(info, origin, new Location.Location2D((float)mid, 0, maxHeight)) >= limit)
+      {
+        lo = mid;
+      }
+      else
+      {
+        hi = mid;
+      }
+    }
+    return hi*(1+RANGE_SLACK);
+  }
+
+
+  //////////////////////////////////////////////////
+  // link cache
+  //
+
+  /**
+   * Return whether a radio reaches a receiver, given the path loss between
+   * them. Receivers must be above the propagation limit and their
+   * sensitivity, given the maximum fading gain (the fading margin).
+   *
+   * @param src transmitting radio
+   * @param loss path loss (in dB)
+   * @param dst receiving radio
+   * @return whether receiver belongs in transmitter links
+   */
+  protected boolean isLink(RadioData src, double loss, RadioData dst)
+  {
+    double power = src.info.getShared().getPower() + fadingMargin - loss;
+    if(power < limit) return false;
+    return Util.fromDB(power) >= dst.info.getShared().getSensitivity_mW();
+  }
+
+  /**
+   * Add receiver to links of transmitter.
+   *
+   * @param src transmitting radio
+   * @param dst receiving radio
+   * @param loss path loss (in dB)
+   */
+  private static void addLink(RadioData src, RadioData dst, double loss)
+  {
+    if(src.links==null || src.numLinks==src.links.length)
+    {
+      int length = src.links==null ? 8 : src.links.length*2;
+      RadioData[] links2 = new RadioData[length];
+      double[] linkLoss2 = new double[length];
+      if(src.links!=null)
+      {
+        System.arraycopy(src.links, 0, links2, 0, src.numLinks);
+        System.arraycopy(src.linkLoss, 0, linkLoss2, 0, src.numLinks);
+      }
+      src.links = links2;
+      src.linkLoss = linkLoss2;
+    }
+    src.links[src.numLinks] = dst;
+    src.linkLoss[src.numLinks] = loss;
+    src.numLinks++;
+    if(dst.linkedBy==null || dst.numLinkedBy==dst.linkedBy.length)
+    {
+      RadioData[] linkedBy2 = new RadioData[dst.linkedBy==null ? 8 : dst.linkedBy.length*2];
+      if(dst.linkedBy!=null) System.arraycopy(dst.linkedBy, 0, linkedBy2, 0, dst.numLinkedBy);
+      dst.linkedBy = linkedBy2;
+    }
+    dst.linkedBy[dst.numLinkedBy++] = src;
+  }
+
+  /**
+   * Remove radio from array prefix, by swapping in the last element.
+   *
+   * @param a radio array
+   * @param n number of radios in array
+   * @param rd radio to remove
+   * @return index of removed radio, or -1 if not found
+   */
+  private static int remove(RadioData[] a, int n, RadioData rd)
+  {
+    for(int i=0; i<n; i++)
+    {
+      if(a[i]==rd)
+      {
+        a[i] = a[n-1];
+        a[n-1] = null;
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Discard cached links of transmitter.
+   *
+   * @param rd transmitting radio
+   */
+  private void clearLinks(RadioData rd)
+  {
+    if(rd.linksValid) numLinked--;
+    for(int i=0; i<rd.numLinks; i++)
+    {
+      RadioData dst = rd.links[i];
+      if(remove(dst.linkedBy, dst.numLinkedBy, rd)!=-1) dst.numLinkedBy--;
+      rd.links[i] = null;
+    }
+    rd.numLinks = 0;
+    rd.linksValid = false;
+  }
+
+  /**
+   * Remove receiver from the cached links of all transmitters.
+   *
+   * @param rd receiving radio
+   */
+  private static void unlinkIncoming(RadioData rd)
+  {
+    for(int i=0; i<rd.numLinkedBy; i++)
+    {
+      RadioData src = rd.linkedBy[i];
+      int j = remove(src.links, src.numLinks, rd);
+      if(j!=-1)
+      {
+        src.numLinks--;
+        src.linkLoss[j] = src.linkLoss[src.numLinks];
+      }
+      rd.linkedBy[i] = null;
+    }
+    rd.numLinkedBy = 0;
+  }
+
+  /**
+   * Discard all cached links.
+   */
+  protected void invalidateLinks()
+  {
+    if(radios==null) return;
+    for(int i=0; i<radios.length; i++)
+    {
+      if(radios[i]!=null)
+      {
+        clearLinks(radios[i]);
+        unlinkIncoming(radios[i]);
+      }
+    }
+  }
+
+  /**
+   * Compute cached links of transmitter.
+   *
+   * @param src transmitting radio
+   */
+  protected void buildLinks(RadioData src)
+  {
+    clearLinks(src);
+    linkBuilder.src = src;
+    spatial.visitTransmit(linkBuilder, src.info, src.loc, null, null, limit);
+    linkBuilder.src = null;
+    src.linksValid = true;
+    numLinked++;
+  }
+
+  /**
+   * Update cached links after a radio is added or moved: its own links are
+   * recomputed on its next transmission, and it is removed from and then
+   * added (at its new path loss) to the links of all nearby transmitters.
+   * No walk is needed until some transmitter has cached links.
+   *
+   * @param rd added or moved radio
+   */
+  protected void updateLinks(RadioData rd)
+  {
+    clearLinks(rd);
+    unlinkIncoming(rd);
+    if(numLinked==0) return;
+    linkUpdater.dst = rd;
+    spatial.visitTransmit(linkUpdater, rd.info, rd.loc, null, null, limit);
+    linkUpdater.dst = null;
+  }
+
+  /**
+   * Link builder visitor: collects the receivers of a transmitter.
+   */
+  private class LinkBuilder implements Spatial.SpatialRangeVisitor
+  {
+    /** transmitting radio. */
+    private RadioData src;
+
+    /** {@inheritDoc} */
+    public double computeRange(RadioInfo srcInfo, double limit)
+    {
+      return Field.this.computeRange(srcInfo, srcInfo.getShared().getPower() + fadingMargin, limit);
+    }
+
+    /** {@inheritDoc} */
+    public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc)
+    {
+      return srcInfo.getShared().getPower() + fadingMargin - minLoss(srcInfo, srcLoc, dstLoc);
+    }
+
+    /** {@inheritDoc} */
+    public void visitTransmit(RadioInfo srcInfo, Location srcLoc, 
+        RadioInfo dstInfo, RadioInterface dstEntity, Location dstLoc,
+        Message msg, Long durationObj)
+    {
+      RadioData dst = getRadioData(dstInfo.getUnique().getID());
+      if(dst==src) return;
+      double loss = pathloss.compute(srcInfo, srcLoc, dstInfo, dstLoc);
+      if(isLink(src, loss, dst)) addLink(src, dst, loss);
+    }
+  } // class: LinkBuilder
+
+  /**
+   * Link updater visitor: adds a receiver to the cached links of nearby
+   * transmitters. Bins are pruned as if every transmitter had the maximum
+   * transmit power on the field.
+   */
+  private class LinkUpdater implements Spatial.SpatialRangeVisitor
+  {
+    /** receiving radio. */
+    private RadioData dst;
+
+    /** {@inheritDoc} */
+    public double computeRange(RadioInfo dstInfo, double limit)
+    {
+      return Field.this.computeRange(dstInfo, maxPower + fadingMargin, limit);
+    }
+
+    /** {@inheritDoc} */
+    public double computeSignal(RadioInfo dstInfo, Location dstLoc, Location srcLoc)
+    {
+      return maxPower + fadingMargin - minLoss(dstInfo, dstLoc, srcLoc);
+    }
+
+    /** {@inheritDoc} */
+    public void visitTransmit(RadioInfo dstInfo, Location dstLoc, 
+        RadioInfo srcInfo, RadioInterface srcEntity, Location srcLoc,
+        Message msg, Long durationObj)
+    {
+      RadioData src = getRadioData(srcInfo.getUnique().getID());
+      if(src==dst || !src.linksValid) return;
+      double loss = pathloss.compute(srcInfo, srcLoc, dstInfo, dstLoc);
+      if(isLink(src, loss, dst)) addLink(src, dst, loss);
+    }
+  } // class: LinkUpdater
+
+  /** link builder visitor. */
+  private final LinkBuilder linkBuilder = new LinkBuilder();
+
+  /** link updater visitor. */
+  private final LinkUpdater linkUpdater = new LinkUpdater();
+
 
   //////////////////////////////////////////////////
   // communication
   //
 
+  /**
+   * Draw fading loss at receiving radio: from its own random stream, if
+   * the fading model supports it.
+   *
+   * @param dst receiving radio
+   * @return fading loss (in dB)
+   */
+  private double fade(RadioData dst)
+  {
+    return fadingStream!=null ? fadingStream.compute(dst.random) : fading.compute();
+  }
+
   /**
    * Transmission visitor object.
    */
-  private Spatial.SpatialTransmitVisitor transmitVisitor = new Spatial.SpatialTransmitVisitor()
+  private Spatial.SpatialRangeVisitor transmitVisitor = new Spatial.SpatialRangeVisitor()
   {
+    public double computeRange(RadioInfo srcInfo, double limit)
+    {
+      // receivers below sensitivity are dropped, even with maximum fading gain
+      double range = Field.this.computeRange(srcInfo, 
+          srcInfo.getShared().getPower() + fadingMargin, 
+          Math.max(limit, minSensitivity));
+      // receivers may have moved from their binned locations
+      return lazyMobility ? range + mobilitySlack : range;
+    }
     public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc)
     {
-      double loss = pathloss.compute(srcInfo, srcLoc, srcInfo, dstLoc);
-      double fade = fading.compute();
-      return srcInfo.getShared().getPower() - loss + fade;
+      return srcInfo.getShared().getPower() - minLoss(srcInfo, srcLoc, dstLoc) + fadingMargin;
     }
     public void visitTransmit(RadioInfo srcInfo, Location srcLoc, 
         RadioInfo dstInfo, RadioInterface dstEntity, Location dstLoc,
         Message msg, Long durationObj)
     {
       if(srcInfo.getUnique().getID()==dstInfo.getUnique().getID()) return;
+      RadioData dst = getRadioData(dstInfo.getUnique().getID());
+      if(lazyMobility) dstLoc = locate(dst, dstLoc);
       // compute signal strength
       double loss = pathloss.compute(srcInfo, srcLoc, dstInfo, dstLoc);
-      double fade = fading.compute();
+      double fade = fade(dst);
       double dstPower = srcInfo.getShared().getPower() - loss + fade;
       // additional cuttoffs
       double dstPower_mW = Util.fromDB(dstPower);
@@ -369,12 +1077,156 @@ public class Field implements FieldInterface
     }
   };
 
+  /**
+   * Parallel transmission: receivers are collected from the link cache or
+   * the spatial data structure, their signal strengths are computed by the
+   * fan-out workers, and receptions are then scheduled in order by the
+   * simulation thread.
+   */
+  private class ParallelTransmit implements Spatial.SpatialRangeVisitor, FanOut.Task
+  {
+    /** transmitting radio. */
+    private RadioData src;
+    /** transmit power (in dBm). */
+    private double power;
+    /** receivers. */
+    private RadioData[] dsts = new RadioData[16];
+    /** transmitter location for each receiver (shifted, if field wraps). */
+    private Location[] srcLocs = new Location[16];
+    /** location of each receiver. */
+    private Location[] dstLocs = new Location[16];
+    /** path loss to each receiver, if receivers are cached links. */
+    private double[] loss;
+    /** signal strength at each receiver (in mW). */
+    private double[] power_mW = new double[16];
+    /** number of receivers. */
+    private int n;
+
+    /** {@inheritDoc} */
+    public double computeRange(RadioInfo srcInfo, double limit)
+    {
+      return transmitVisitor.computeRange(srcInfo, limit);
+    }
+
+    /** {@inheritDoc} */
+    public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc)
+    {
+      return transmitVisitor.computeSignal(srcInfo, srcLoc, dstLoc);
+    }
+
+    /** {@inheritDoc} */
+    public void visitTransmit(RadioInfo srcInfo, Location srcLoc, 
+        RadioInfo dstInfo, RadioInterface dstEntity, Location dstLoc,
+        Message msg, Long durationObj)
+    {
+      if(srcInfo.getUnique().getID()==dstInfo.getUnique().getID()) return;
+      if(n==dsts.length)
+      {
+        RadioData[] dsts2 = new RadioData[n*2];
+        System.arraycopy(dsts, 0, dsts2, 0, n);
+        dsts = dsts2;
+        Location[] srcLocs2 = new Location[n*2];
+        System.arraycopy(srcLocs, 0, srcLocs2, 0, n);
+        srcLocs = srcLocs2;
+        Location[] dstLocs2 = new Location[n*2];
+        System.arraycopy(dstLocs, 0, dstLocs2, 0, n);
+        dstLocs = dstLocs2;
+      }
+      dsts[n] = getRadioData(dstInfo.getUnique().getID());
+      srcLocs[n] = srcLoc;
+      dstLocs[n] = lazyMobility ? locate(dsts[n], dstLoc) : dstLoc;
+      n++;
+    }
+
+    /** {@inheritDoc} */
+    public void run(int chunk, int from, int to)
+    {
+      for(int i=from; i<to; i++)
+      {
+        RadioData dst = dsts[i];
+        double l = loss!=null ? loss[i] 
+          : pathloss.compute(src.info, srcLocs[i], dst.info, dstLocs[i]);
+        power_mW[i] = Util.fromDB(power - l + fade(dst));
+      }
+    }
+
+    /**
+     * Transmit packet to all receivers.
+     *
+     * @param srcData transmitting radio
+     * @param msg message to transmit
+     * @param duration transmission duration
+     */
+    private void transmit(RadioData srcData, Message msg, long duration)
+    {
+      src = srcData;
+      power = srcData.info.getShared().getPower();
+      n = 0;
+      if(cacheLinks())
+      {
+        if(!srcData.linksValid) buildLinks(srcData);
+        if(dsts.length<srcData.numLinks) dsts = new RadioData[srcData.links.length];
+        System.arraycopy(srcData.links, 0, dsts, 0, srcData.numLinks);
+        n = srcData.numLinks;
+        loss = srcData.linkLoss;
+      }
+      else
+      {
+        spatial.visitTransmit(this, srcData.info, locate(srcData, srcData.loc), null, null, limit);
+        loss = null;
+      }
+      if(power_mW.length<n) power_mW = new double[dsts.length];
+      fanOut.run(this, n);
+      // schedule receptions in order
+      Long durationObj = new Long(duration);
+      for(int i=0; i<n; i++)
+      {
+        RadioData dst = dsts[i];
+        dsts[i] = null;
+        if(loss==null)
+        {
+          srcLocs[i] = null;
+          dstLocs[i] = null;
+        }
+        if(power_mW[i] < dst.info.getShared().getSensitivity_mW()) continue;
+        dst.entity.receive(msg, new Double(power_mW[i]), durationObj);
+      }
+      src = null;
+      loss = null;
+    }
+  } // class: ParallelTransmit
+
+  /** parallel transmission visitor. */
+  private final ParallelTransmit parallelTransmit = new ParallelTransmit();
+
   // FieldInterface interface
   /** {@inheritDoc} */
   public void transmit(RadioInfo srcInfo, Message msg, long duration)
   {
     RadioData srcData = getRadioData(srcInfo.getUnique().getID());
-    spatial.visitTransmit(transmitVisitor, srcData.info, srcData.loc, msg, new Long(duration), limit);
+    if(fanOut!=null)
+    {
+      parallelTransmit.transmit(srcData, msg, duration);
+      return;
+    }
+    if(!cacheLinks())
+    {
+      spatial.visitTransmit(transmitVisitor, srcData.info, locate(srcData, srcData.loc), 
+          msg, new Long(duration), limit);
+      return;
+    }
+    if(!srcData.linksValid) buildLinks(srcData);
+    Long durationObj = new Long(duration);
+    double power = srcData.info.getShared().getPower();
+    RadioData[] links = srcData.links;
+    double[] linkLoss = srcData.linkLoss;
+    for(int i=0; i<srcData.numLinks; i++)
+    {
+      RadioData dst = links[i];
+      double dstPower_mW = Util.fromDB(power - linkLoss[i] + fade(dst));
+      if(dstPower_mW < dst.info.getShared().getSensitivity_mW()) continue;
+      dst.entity.receive(msg, new Double(dstPower_mW), durationObj);
+    }
   }
 
 
@@ -396,7 +1248,7 @@ public class Field implements FieldInterface
    * Connectivity visitor interface.
    */
   public static interface ConnectivityVisitor 
-      extends Spatial.SpatialTransmitVisitor, Spatial.SpatialVisitor
+      extends Spatial.SpatialRangeVisitor, Spatial.SpatialVisitor
   {
     /**
      * Return average number of links (connectivity).
@@ -422,6 +1274,10 @@ public class Field implements FieldInterface
       {
         return (double)links/(double)nodes;
       }
+      public double computeRange(RadioInfo srcInfo, double limit)
+      {
+        return transmitVisitor.computeRange(srcInfo, limit);
+      }
       public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc)
       {
         return transmitVisitor.computeSignal(srcInfo, srcLoc, dstLoc);
@@ -59,5 +59,13 @@ public interface FieldInterface extends JistAPI.Proxiable
    */
   void moveRadioOff(Integer id, Location delta);
 
+  /**
+   * Update location of radio that moves along an analytic segment in the
+   * spatial data structure, and schedule its next update.
+   *
+   * @param id unique radio identifier
+   */
+  void refreshRadio(Integer id);
+
 } // interface: FieldInterface
 
@@ -16,6 +16,8 @@ import jist.swans.Main;
 
 import jist.runtime.JistAPI;
 
+import java.io.IOException;
+
 /** 
  * Interface of all mobility models.
  *
@@ -239,6 +241,351 @@ public interface Mobility
   } // class RandomWaypoint
 
 
+  //////////////////////////////////////////////////
+  // lazy (analytic) random waypoint mobility model
+  //
+
+  /**
+   * Interface of mobility information objects that describe the current
+   * movement as a straight segment, so that the location of a radio can be
+   * computed analytically at any time, rather than stepped by events.
+   *
+   * @since SWANS1.0
+   */
+  public static interface SegmentInfo extends MobilityInfo
+  {
+    /**
+     * Return location along current segment.
+     *
+     * @param time simulation time
+     * @return location at given time
+     */
+    Location getLocation(long time);
+
+    /**
+     * Return earliest time at which radio may have moved a given distance
+     * from its location at the given time, along the current segment.
+     *
+     * @param time simulation time
+     * @param distance displacement (in meters)
+     * @return time of displacement, or Long.MAX_VALUE if radio does not move
+     */
+    long getDisplacementTime(long time, float distance);
+
+    /**
+     * Return end time of current segment.
+     *
+     * @return end time of current segment
+     */
+    long getEnd();
+  }
+
+  /**
+   * Lazy random waypoint state object: a pause at the start location,
+   * followed by a movement at constant speed to the waypoint.
+   *
+   * @since SWANS1.0
+   */
+  public static class LazyWaypointInfo implements SegmentInfo
+  {
+    /** segment start location. */
+    public Location from;
+
+    /** waypoint. */
+    public Location waypoint;
+
+    /** departure time from start location. */
+    public long depart;
+
+    /** arrival time at waypoint. */
+    public long arrive;
+
+    //////////////////////////////////////////////////
+    // SegmentInfo interface
+    //
+
+    /** {@inheritDoc} */
+    public Location getLocation(long time)
+    {
+      if(time<=depart) return from;
+      if(time>=arrive) return waypoint;
+      float frac = (float)((time-depart)/(double)(arrive-depart));
+      return new Location.Location2D(
+          from.getX() + (waypoint.getX()-from.getX())*frac,
+          from.getY() + (waypoint.getY()-from.getY())*frac,
+          from.getHeight());
+    }
+
+    /** {@inheritDoc} */
+    public long getDisplacementTime(long time, float distance)
+    {
+      float dist = from.distance(waypoint);
+      if(dist==0 || arrive<=depart) return Long.MAX_VALUE;
+      return Math.max(time, depart) + (long)(distance/dist*(arrive-depart));
+    }
+
+    /** {@inheritDoc} */
+    public long getEnd()
+    {
+      return arrive;
+    }
+  }
+
+  /**
+   * Lazy random waypoint mobility model. Radios pause, then move at a random
+   * speed to a random waypoint, as in RandomWaypoint, but a single event is
+   * scheduled per waypoint. In between, radio locations are computed
+   * analytically from the current segment by the field, on demand. The next
+   * waypoint is drawn on arrival, before the pause rather than after it, so
+   * the trajectories follow the same distribution as those of
+   * RandomWaypoint, but are not the same for a given seed.
+   *
+   * @since SWANS1.0
+   */
+  public static class LazyWaypoint implements Mobility
+  {
+    /** Movement boundaries. */
+    private Location.Location2D bounds;
+
+    /** Waypoint pause time. */
+    private long pauseTime;
+
+    /** Minimum movement speed. */
+    private float minspeed; 
+
+    /** Maximum movement speed. */
+    private float maxspeed;
+
+    /**
+     * Initialize lazy random waypoint mobility model.
+     *
+     * @param bounds boundaries of movement
+     * @param pauseTime waypoint pause time (in ticks)
+     * @param minspeed minimum speed
+     * @param maxspeed maximum speed
+     */
+    public LazyWaypoint(Location.Location2D bounds, long pauseTime, 
+        float minspeed, float maxspeed)
+    {
+      init(bounds, pauseTime, minspeed, maxspeed);
+    }
+
+    /**
+     * Initialize lazy random waypoint mobility model.
+     *
+     * @param bounds boundaries of movement
+     * @param config configuration string: "pause(in seconds),minspeed,maxspeed"
+     */
+    public LazyWaypoint(Location.Location2D bounds, String config)
+    {
+      String[] data = config.split(",");
+      if(data.length!=3)
+      {
+        throw new RuntimeException("expected format: pausetime(in seconds),minspeed,maxspeed");
+      }
+      long pauseTime = Long.parseLong(data[0])*Constants.SECOND;
+      float minspeed = Float.parseFloat(data[1]);
+      float maxspeed = Float.parseFloat(data[2]);
+      init(bounds, pauseTime, minspeed, maxspeed);
+    }
+
+    /**
+     * Initialize lazy random waypoint mobility model.
+     *
+     * @param bounds boundaries of movement
+     * @param pauseTime waypoint pause time (in ticks)
+     * @param minspeed minimum speed
+     * @param maxspeed maximum speed
+     */
+    private void init(Location.Location2D bounds, long pauseTime, 
+        float minspeed, float maxspeed)
+    {
+      if(minspeed<=0 || maxspeed<minspeed)
+      {
+        throw new RuntimeException("expected 0 < minspeed <= maxspeed");
+      }
+      this.bounds = bounds;
+      this.pauseTime = pauseTime;
+      this.minspeed = minspeed;
+      this.maxspeed = maxspeed;
+    }
+
+    //////////////////////////////////////////////////
+    // Mobility interface
+    //
+
+    /** {@inheritDoc} */
+    public MobilityInfo init(FieldInterface f, Integer id, Location loc)
+    {
+      LazyWaypointInfo lwi = new LazyWaypointInfo();
+      lwi.from = loc;
+      lwi.waypoint = loc;
+      return lwi;
+    }
+
+    /** {@inheritDoc} */
+    public void next(FieldInterface f, Integer id, Location loc, MobilityInfo info)
+    {
+      if(Main.ASSERT) Util.assertion(loc.inside(bounds));
+      try
+      {
+        LazyWaypointInfo lwi = (LazyWaypointInfo)info;
+        // reached waypoint: pause, then move to next waypoint
+        long now = JistAPI.getTime();
+        lwi.from = loc;
+        lwi.waypoint = new Location.Location2D(
+            RandomWaypoint.BORDER + (bounds.getX()-2*RandomWaypoint.BORDER)*Constants.random.nextFloat(),
+            RandomWaypoint.BORDER + (bounds.getY()-2*RandomWaypoint.BORDER)*Constants.random.nextFloat(),
+            loc.getHeight());
+        if(Main.ASSERT) Util.assertion(lwi.waypoint.inside(bounds));
+        float speed = minspeed + (maxspeed-minspeed) * Constants.random.nextFloat();
+        float dist = loc.distance(lwi.waypoint);
+        lwi.depart = now + pauseTime;
+        lwi.arrive = lwi.depart + Math.max((long)(dist/speed*Constants.SECOND), 1);
+        JistAPI.sleep(lwi.arrive-now);
+        f.moveRadio(id, lwi.waypoint);
+      }
+      catch(ClassCastException e) 
+      {
+        // different mobility model installed
+      }
+    }
+
+    /** {@inheritDoc} */
+    public String toString()
+    {
+      return "LazyWaypoint(p="+pauseTime+",v="+minspeed+"-"+maxspeed+")";
+    }
+
+  } // class: LazyWaypoint
+
+
+  //////////////////////////////////////////////////
+  // trace mobility model
+  //
+
+  /**
+   * Trace playback state object: current segment of node, and index of its
+   * next segment in the trace.
+   *
+   * @since SWANS1.0
+   */
+  public static class TraceInfo extends LazyWaypointInfo
+  {
+    /** trace node index. */
+    public int node;
+
+    /** index of next segment. */
+    public int next;
+
+    /** departure time of next segment. */
+    public long end;
+
+    /** {@inheritDoc} */
+    public long getEnd()
+    {
+      return Math.min(arrive, end);
+    }
+  }
+
+  /**
+   * Trace-driven mobility model. Nodes follow the segments of an indexed
+   * mobility trace (ns-2 setdest or BonnMotion), one event per segment;
+   * in between, radio locations are computed analytically by the field.
+   * Only the current segment of each node is held in memory. The field
+   * must contain all trace locations.
+   *
+   * @since SWANS1.0
+   */
+  public static class Trace implements Mobility
+  {
+    /** mobility trace. */
+    private MobilityTrace trace;
+
+    /** radio identifier of first trace node. */
+    private int first;
+
+    /**
+     * Initialize trace mobility model.
+     *
+     * @param trace mobility trace
+     * @param first radio identifier of first trace node
+     */
+    public Trace(MobilityTrace trace, int first)
+    {
+      this.trace = trace;
+      this.first = first;
+    }
+
+    /**
+     * Initialize trace mobility model; radio identifiers start at one.
+     *
+     * @param config configuration string: "setdest|bonnmotion:filename"
+     */
+    public Trace(String config)
+    {
+      try
+      {
+        this.trace = MobilityTrace.parse(config);
+        this.first = 1;
+      }
+      catch(IOException e)
+      {
+        throw new RuntimeException("unable to read mobility trace: "+e.getMessage());
+      }
+    }
+
+    //////////////////////////////////////////////////
+    // Mobility interface
+    //
+
+    /** {@inheritDoc} */
+    public MobilityInfo init(FieldInterface f, Integer id, Location loc)
+    {
+      int node = id.intValue()-first;
+      if(node<0 || node>=trace.getNumNodes()) return null;
+      TraceInfo ti = new TraceInfo();
+      ti.node = node;
+      ti.from = trace.getLocation(node);
+      ti.waypoint = ti.from;
+      ti.end = trace.getNumSegments(node)>0 ? trace.getDepart(node, 0) : Long.MAX_VALUE;
+      return ti;
+    }
+
+    /** {@inheritDoc} */
+    public void next(FieldInterface f, Integer id, Location loc, MobilityInfo info)
+    {
+      try
+      {
+        TraceInfo ti = (TraceInfo)info;
+        long now = JistAPI.getTime();
+        // load segments that have started
+        int n = trace.getNumSegments(ti.node);
+        while(ti.end<=now)
+        {
+          trace.getSegment(ti.node, ti.next++, ti);
+          ti.end = ti.next<n ? trace.getDepart(ti.node, ti.next) : Long.MAX_VALUE;
+        }
+        if(ti.end==Long.MAX_VALUE) return;
+        // schedule start of next segment
+        JistAPI.sleep(ti.end-now);
+        f.moveRadio(id, ti.getLocation(ti.end));
+      }
+      catch(ClassCastException e) 
+      {
+        // different mobility model installed
+      }
+    }
+
+    /** {@inheritDoc} */
+    public String toString()
+    {
+      return "Trace(nodes="+trace.getNumNodes()+")";
+    }
+
+  } // class: Trace
+
+
   //////////////////////////////////////////////////
   // Teleport mobility model
   //
@@ -284,8 +631,8 @@ public interface Mobility
       {
         JistAPI.sleep(pauseTime);
         loc = new Location.Location2D(
-            (float)bounds.getX()*Constants.random.nextFloat(),
-            (float)bounds.getY()*Constants.random.nextFloat());
+            bounds.getX()*Constants.random.nextFloat(),
+            bounds.getY()*Constants.random.nextFloat());
         f.moveRadio(id, loc);
       }
     }
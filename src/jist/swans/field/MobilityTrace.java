@@ -0,0 +1,438 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import jist.swans.misc.Location;
+import jist.swans.misc.MappedReader;
+import jist.swans.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Index of a node mobility trace, in ns-2 setdest or BonnMotion format.
+ * The text trace is read through a memory-mapped reader, in two passes:
+ * the first counts the movement segments of each node, and the second
+ * writes them, grouped by node, into a binary index file that is itself
+ * memory-mapped. Only per-node offsets and initial locations are kept in
+ * memory, so traces with many nodes and many hours of movement can be
+ * played back segment by segment, without loading the whole file.
+ *
+ * <p>Each segment is a movement along a straight line at constant speed,
+ * from a start location at a departure time to a destination at an arrival
+ * time. A segment lasts until the departure time of the next segment of
+ * the same node, which may precede its arrival time (ns-2 allows a new
+ * destination before the current one is reached).
+ *
+ * @since SWANS1.0
+ */
+
+public class MobilityTrace
+{
+
+  /** trace format: ns-2 setdest (movement commands). */
+  public static final int FORMAT_SETDEST = 1;
+
+  /** trace format: BonnMotion (one line of time-stamped waypoints per node). */
+  public static final int FORMAT_BONNMOTION = 2;
+
+  /** segment record: depart(8), from x,y(8), to x,y(8), arrive(8). */
+  private static final int SEGMENT_SIZE = 32;
+
+  /** size of mapped index window (bytes); a multiple of segment size. */
+  private static final int WINDOW = 1<<30;
+
+  /** number of nodes. */
+  private int nodes;
+
+  /** first segment index of each node. */
+  private long[] base;
+
+  /** number of segments of each node. */
+  private int[] count;
+
+  /** initial location of each node. */
+  private float[] x0, y0;
+
+  /** index file. */
+  private File indexFile;
+
+  /** mapped index windows. */
+  private MappedByteBuffer[] windows;
+
+  /**
+   * Read and index mobility trace.
+   *
+   * @param trace trace file
+   * @param format trace format (FORMAT_SETDEST or FORMAT_BONNMOTION)
+   * @throws IOException unable to read trace or write index
+   */
+  public MobilityTrace(File trace, int format) throws IOException
+  {
+    if(format!=FORMAT_SETDEST && format!=FORMAT_BONNMOTION)
+    {
+      throw new IllegalArgumentException("unknown trace format: "+format);
+    }
+    base = new long[16];
+    count = new int[16];
+    x0 = new float[16];
+    y0 = new float[16];
+    MappedReader in = new MappedReader(trace, format==FORMAT_SETDEST ? "\"()" : "");
+    try
+    {
+      if(format==FORMAT_SETDEST) countSetdest(in); else countBonnMotion(in);
+      long total = 0;
+      for(int i=0; i<nodes; i++)
+      {
+        base[i] = total;
+        total += count[i];
+      }
+      indexFile = File.createTempFile("mobility", ".idx");
+      indexFile.deleteOnExit();
+      RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+      try
+      {
+        long size = total*SEGMENT_SIZE;
+        raf.setLength(size);
+        windows = new MappedByteBuffer[(int)((size+WINDOW-1)/WINDOW)];
+        for(int i=0; i<windows.length; i++)
+        {
+          long start = (long)i*WINDOW;
+          windows[i] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,
+              start, Math.min(WINDOW, size-start));
+        }
+      }
+      finally
+      {
+        raf.close();
+      }
+      in.seek(0);
+      if(format==FORMAT_SETDEST) writeSetdest(in); else writeBonnMotion(in);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Read and index mobility trace.
+   *
+   * @param config trace configuration string: "setdest|bonnmotion:filename"
+   * @return mobility trace index
+   * @throws IOException unable to read trace or write index
+   */
+  public static MobilityTrace parse(String config) throws IOException
+  {
+    String[] data = config.split(":", 2);
+    if(data.length!=2) throw new IllegalArgumentException("expected format: setdest|bonnmotion:filename");
+    int format;
+    if(data[0].equalsIgnoreCase("setdest") || data[0].equalsIgnoreCase("ns2"))
+    {
+      format = FORMAT_SETDEST;
+    }
+    else if(data[0].equalsIgnoreCase("bonnmotion"))
+    {
+      format = FORMAT_BONNMOTION;
+    }
+    else throw new IllegalArgumentException("unknown trace format: "+data[0]);
+    return new MobilityTrace(new File(data[1]), format);
+  }
+
+  //////////////////////////////////////////////////
+  // accessors
+  //
+
+  /**
+   * Return number of nodes in trace.
+   *
+   * @return number of nodes
+   */
+  public int getNumNodes()
+  {
+    return nodes;
+  }
+
+  /**
+   * Return number of movement segments of node.
+   *
+   * @param node trace node index
+   * @return number of segments
+   */
+  public int getNumSegments(int node)
+  {
+    return count[node];
+  }
+
+  /**
+   * Return initial location of node.
+   *
+   * @param node trace node index
+   * @return initial location
+   */
+  public Location getLocation(int node)
+  {
+    return new Location.Location2D(x0[node], y0[node]);
+  }
+
+  /**
+   * Return departure time of segment.
+   *
+   * @param node trace node index
+   * @param k segment index
+   * @return departure time (in simulation time)
+   */
+  public long getDepart(int node, int k)
+  {
+    long pos = (base[node]+k)*SEGMENT_SIZE;
+    return windows[(int)(pos/WINDOW)].getLong((int)(pos%WINDOW));
+  }
+
+  /**
+   * Load segment into mobility information object.
+   *
+   * @param node trace node index
+   * @param k segment index
+   * @param info mobility information object
+   */
+  public void getSegment(int node, int k, Mobility.LazyWaypointInfo info)
+  {
+    if(k<0 || k>=count[node]) throw new IndexOutOfBoundsException("segment "+k+" of node "+node);
+    long pos = (base[node]+k)*SEGMENT_SIZE;
+    MappedByteBuffer w = windows[(int)(pos/WINDOW)];
+    int i = (int)(pos%WINDOW);
+    info.depart = w.getLong(i);
+    info.from = new Location.Location2D(w.getFloat(i+8), w.getFloat(i+12));
+    info.waypoint = new Location.Location2D(w.getFloat(i+16), w.getFloat(i+20));
+    info.arrive = w.getLong(i+24);
+  }
+
+  /**
+   * Release index file. The trace may no longer be used.
+   */
+  public void close()
+  {
+    windows = null;
+    indexFile.delete();
+  }
+
+  //////////////////////////////////////////////////
+  // indexing
+  //
+
+  /**
+   * Ensure per-node arrays can hold given node.
+   *
+   * @param node trace node index
+   */
+  private void ensureNode(int node)
+  {
+    if(node<nodes) return;
+    nodes = node+1;
+    if(nodes<=base.length) return;
+    int n = Math.max(nodes, base.length*2);
+    long[] base2 = new long[n];
+    int[] count2 = new int[n];
+    float[] x2 = new float[n], y2 = new float[n];
+    System.arraycopy(base, 0, base2, 0, base.length);
+    System.arraycopy(count, 0, count2, 0, count.length);
+    System.arraycopy(x0, 0, x2, 0, x0.length);
+    System.arraycopy(y0, 0, y2, 0, y0.length);
+    base = base2;
+    count = count2;
+    x0 = x2;
+    y0 = y2;
+  }
+
+  /**
+   * Write segment record.
+   *
+   * @param k global segment index
+   * @param depart departure time
+   * @param fx start x-coordinate
+   * @param fy start y-coordinate
+   * @param tx destination x-coordinate
+   * @param ty destination y-coordinate
+   * @param arrive arrival time
+   */
+  private void putSegment(long k, long depart, float fx, float fy, float tx, float ty, long arrive)
+  {
+    long pos = k*SEGMENT_SIZE;
+    MappedByteBuffer w = windows[(int)(pos/WINDOW)];
+    int i = (int)(pos%WINDOW);
+    w.putLong(i, depart);
+    w.putFloat(i+8, fx);
+    w.putFloat(i+12, fy);
+    w.putFloat(i+16, tx);
+    w.putFloat(i+20, ty);
+    w.putLong(i+24, arrive);
+  }
+
+  /**
+   * Convert trace time to simulation time.
+   *
+   * @param seconds trace time (in seconds)
+   * @return simulation time
+   */
+  private static long toTime(double seconds)
+  {
+    return (long)(seconds*Constants.SECOND);
+  }
+
+  /**
+   * Return node index of ns-2 "$node_(i) set X_ x" line, or -1.
+   *
+   * @param in trace reader, at current line
+   * @return node index, or -1 if line is not an initial location
+   * @throws IOException parse error
+   */
+  private static int setdestInitial(MappedReader in) throws IOException
+  {
+    if(in.getNumTokens()!=5 || !in.tokenEquals(0, "$node_") || !in.tokenEquals(2, "set")) return -1;
+    return in.getInt(1);
+  }
+
+  /**
+   * Return node index of ns-2 '$ns_ at t "$node_(i) setdest x y v"' line, or -1.
+   *
+   * @param in trace reader, at current line
+   * @return node index, or -1 if line is not a movement command
+   * @throws IOException parse error
+   */
+  private static int setdestCommand(MappedReader in) throws IOException
+  {
+    if(in.getNumTokens()!=9 || !in.tokenEquals(0, "$ns_") || !in.tokenEquals(1, "at")
+        || !in.tokenEquals(3, "$node_") || !in.tokenEquals(5, "setdest")) return -1;
+    return in.getInt(4);
+  }
+
+  /**
+   * First pass over ns-2 trace: initial locations and segment counts.
+   *
+   * @param in trace reader
+   * @throws IOException unable to read or parse trace
+   */
+  private void countSetdest(MappedReader in) throws IOException
+  {
+    while(in.nextLine())
+    {
+      int node = setdestInitial(in);
+      if(node>=0)
+      {
+        ensureNode(node);
+        if(in.tokenEquals(3, "X_")) x0[node] = (float)in.getDouble(4);
+        else if(in.tokenEquals(3, "Y_")) y0[node] = (float)in.getDouble(4);
+        continue;
+      }
+      node = setdestCommand(in);
+      if(node>=0)
+      {
+        ensureNode(node);
+        count[node]++;
+      }
+    }
+  }
+
+  /**
+   * Second pass over ns-2 trace: write segments. Each command starts a
+   * segment at the location reached along the previous segment.
+   *
+   * @param in trace reader
+   * @throws IOException unable to read or parse trace
+   */
+  private void writeSetdest(MappedReader in) throws IOException
+  {
+    int[] written = new int[nodes];
+    Mobility.LazyWaypointInfo[] current = new Mobility.LazyWaypointInfo[nodes];
+    while(in.nextLine())
+    {
+      int node = setdestCommand(in);
+      if(node<0) continue;
+      Mobility.LazyWaypointInfo seg = current[node];
+      if(seg==null)
+      {
+        seg = new Mobility.LazyWaypointInfo();
+        seg.from = seg.waypoint = getLocation(node);
+        current[node] = seg;
+      }
+      long t = toTime(in.getDouble(2));
+      if(t<seg.depart) throw in.error("commands of node "+node+" not in time order");
+      Location from = seg.getLocation(t);
+      Location to = new Location.Location2D((float)in.getDouble(6), (float)in.getDouble(7));
+      double speed = in.getDouble(8);
+      if(speed<=0) to = from;
+      seg.from = from;
+      seg.waypoint = to;
+      seg.depart = t;
+      seg.arrive = speed>0 ? t+Math.max(toTime(from.distance(to)/speed), 1) : t;
+      putSegment(base[node]+written[node]++, seg.depart,
+          from.getX(), from.getY(), to.getX(), to.getY(), seg.arrive);
+      // only current segment of each node is kept
+      if(written[node]==count[node]) current[node] = null;
+    }
+  }
+
+  /**
+   * First pass over BonnMotion trace: initial locations and segment counts.
+   *
+   * @param in trace reader
+   * @throws IOException unable to read or parse trace
+   */
+  private void countBonnMotion(MappedReader in) throws IOException
+  {
+    int node = 0;
+    while(in.nextLine())
+    {
+      int n = in.getNumTokens();
+      if(n==0 || in.getToken(0).startsWith("#")) continue;
+      if(n%3!=0) throw in.error("expected time x y waypoints");
+      ensureNode(node);
+      x0[node] = (float)in.getDouble(1);
+      y0[node] = (float)in.getDouble(2);
+      count[node] = n/3-1;
+      node++;
+    }
+  }
+
+  /**
+   * Second pass over BonnMotion trace: write segments between consecutive
+   * waypoints.
+   *
+   * @param in trace reader
+   * @throws IOException unable to read or parse trace
+   */
+  private void writeBonnMotion(MappedReader in) throws IOException
+  {
+    int node = 0;
+    while(in.nextLine())
+    {
+      int n = in.getNumTokens();
+      if(n==0 || in.getToken(0).startsWith("#")) continue;
+      long k = base[node];
+      long t = toTime(in.getDouble(0));
+      float x = (float)in.getDouble(1), y = (float)in.getDouble(2);
+      for(int i=3; i<n; i+=3)
+      {
+        long t2 = toTime(in.getDouble(i));
+        float x2 = (float)in.getDouble(i+1), y2 = (float)in.getDouble(i+2);
+        if(t2<t) throw in.error("waypoints of node "+node+" not in time order");
+        putSegment(k++, t, x, y, x2, y2, t2);
+        t = t2;
+        x = x2;
+        y = y2;
+      }
+      node++;
+    }
+  }
+
+} // class: MobilityTrace
+
@@ -108,9 +108,5 @@ public interface PathLoss
     }
   } // class: TwoRay
 
-  // todo: MITRE's pathloss format
-  // Time (nearest whole second)    Node A     Node B     Path Loss (dB) Range (meters)
-  // End of file is indicated by a -1 in the first column.  (And nothing else on the line.)  
-
 } // class: PathLoss
 
@@ -0,0 +1,352 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import jist.swans.radio.RadioInfo;
+import jist.swans.misc.Location;
+import jist.swans.misc.MappedReader;
+import jist.swans.Constants;
+
+import jist.runtime.JistAPI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Time-varying path loss, read from an external link loss file in MITRE
+ * format. Each line holds:
+ *
+ * <pre>
+ *   time (nearest whole second)  node A  node B  path loss (dB)  [range (meters)]
+ * </pre>
+ *
+ * Lines are in time order, and the end of file may be indicated by a -1 in
+ * the first column. Blank lines and lines that do not start with a number,
+ * such as column headers, are skipped. Lines with the same time form a time slice: a sparse
+ * matrix of the path loss between node pairs, in effect until the next
+ * slice (and, before the first slice, from the start of the simulation).
+ * Pairs without an entry in either direction have infinite path loss.
+ * Node numbers are radio identifiers; locations are ignored.
+ *
+ * <p>The file is read through a memory-mapped reader. Opening the file
+ * only indexes the start of each slice; slices are parsed into open
+ * addressing hash tables on demand, as simulation time reaches them, and
+ * only the current slice is kept in memory. Lookups are a binary search
+ * over slice times, which is skipped while the current slice applies, and
+ * a constant time hash probe.
+ *
+ * @since SWANS1.0
+ */
+
+public class PathLossMatrix implements PathLoss
+{
+
+  /**
+   * Path loss matrix of a single time slice.
+   */
+  private static final class Slice
+  {
+    /** slice index. */
+    private final int index;
+    /** start time (inclusive). */
+    private final long start;
+    /** end time (exclusive). */
+    private final long end;
+    /** node pair keys; empty slots are -1. */
+    private final long[] keys;
+    /** path loss of each node pair (in dB). */
+    private final float[] loss;
+
+    /**
+     * Create empty slice.
+     *
+     * @param index slice index
+     * @param start start time
+     * @param end end time
+     * @param entries number of entries
+     */
+    private Slice(int index, long start, long end, int entries)
+    {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+      int size = 4;
+      while(size<entries*2) size *= 2;
+      keys = new long[size];
+      loss = new float[size];
+      Arrays.fill(keys, -1);
+    }
+
+    /**
+     * Return hash table slot of key.
+     *
+     * @param key node pair key
+     * @return slot of key, or of empty slot where it belongs
+     */
+    private int slot(long key)
+    {
+      int mask = keys.length-1;
+      long h = key*0x9e3779b97f4a7c15L;
+      int i = (int)(h>>>32) & mask;
+      while(keys[i]!=-1 && keys[i]!=key) i = (i+1) & mask;
+      return i;
+    }
+
+    /**
+     * Set path loss of node pair.
+     *
+     * @param key node pair key
+     * @param l path loss (in dB)
+     */
+    private void put(long key, float l)
+    {
+      int i = slot(key);
+      keys[i] = key;
+      loss[i] = l;
+    }
+
+    /**
+     * Return path loss of node pair.
+     *
+     * @param key node pair key
+     * @return path loss (in dB), or NaN if no entry
+     */
+    private float get(long key)
+    {
+      int i = slot(key);
+      return keys[i]==key ? loss[i] : Float.NaN;
+    }
+  } // class: Slice
+
+  /** link loss file reader. */
+  private final MappedReader in;
+
+  /** start time of each slice. */
+  private long[] times;
+
+  /** file offset of each slice. */
+  private long[] offsets;
+
+  /** line number of each slice, less one. */
+  private long[] lines;
+
+  /** number of entries of each slice. */
+  private int[] entries;
+
+  /** number of slices. */
+  private int slices;
+
+  /** current slice. */
+  private volatile Slice current;
+
+  /**
+   * Open and index link loss file.
+   *
+   * @param file link loss file
+   * @throws IOException unable to read file
+   */
+  public PathLossMatrix(File file) throws IOException
+  {
+    in = new MappedReader(file, "");
+    times = new long[64];
+    offsets = new long[64];
+    lines = new long[64];
+    entries = new int[64];
+    long last = Long.MIN_VALUE;
+    while(in.nextLine())
+    {
+      if(in.getNumTokens()==0 || !in.isNumeric(0)) continue;
+      if(in.getNumTokens()==1 && in.getInt(0)==-1) break;
+      if(in.getNumTokens()<4) throw in.error("expected time, node A, node B, path loss");
+      long t = toTime(in.getDouble(0));
+      if(t<last) throw in.error("link loss file not in time order");
+      if(t!=last)
+      {
+        addSlice(t, in.getLineStart(), in.getLineNumber()-1);
+        last = t;
+      }
+      entries[slices-1]++;
+    }
+    if(slices==0) throw new IOException("empty link loss file: "+file);
+    // sentinel: end of last slice
+    addSlice(Long.MAX_VALUE, in.getLineStart(), in.getLineNumber());
+    slices--;
+  }
+
+  /**
+   * Append slice to index.
+   *
+   * @param t start time
+   * @param offset file offset of first line
+   * @param line line number of first line, less one
+   */
+  private void addSlice(long t, long offset, long line)
+  {
+    if(slices==times.length)
+    {
+      long[] times2 = new long[slices*2], offsets2 = new long[slices*2], lines2 = new long[slices*2];
+      int[] entries2 = new int[slices*2];
+      System.arraycopy(times, 0, times2, 0, slices);
+      System.arraycopy(offsets, 0, offsets2, 0, slices);
+      System.arraycopy(lines, 0, lines2, 0, slices);
+      System.arraycopy(entries, 0, entries2, 0, slices);
+      times = times2;
+      offsets = offsets2;
+      lines = lines2;
+      entries = entries2;
+    }
+    times[slices] = t;
+    offsets[slices] = offset;
+    lines[slices] = line;
+    entries[slices] = 0;
+    slices++;
+  }
+
+  /**
+   * Convert file time to simulation time.
+   *
+   * @param seconds file time (in seconds)
+   * @return simulation time
+   */
+  private static long toTime(double seconds)
+  {
+    return (long)(seconds*Constants.SECOND);
+  }
+
+  /**
+   * Return node pair key.
+   *
+   * @param a node A
+   * @param b node B
+   * @return node pair key
+   */
+  private static long key(int a, int b)
+  {
+    return ((long)a<<32) | (b & 0xffffffffL);
+  }
+
+  //////////////////////////////////////////////////
+  // accessors
+  //
+
+  /**
+   * Return number of time slices.
+   *
+   * @return number of time slices
+   */
+  public int getNumSlices()
+  {
+    return slices;
+  }
+
+  /**
+   * Return start time of time slice.
+   *
+   * @param i slice index
+   * @return start time of slice
+   */
+  public long getSliceTime(int i)
+  {
+    return times[i];
+  }
+
+  /**
+   * Return index of time slice in effect at given time.
+   *
+   * @param time simulation time
+   * @return slice index
+   */
+  public int findSlice(long time)
+  {
+    int lo = 0, hi = slices-1;
+    while(lo<hi)
+    {
+      int mid = (lo+hi+1)>>>1;
+      if(times[mid]<=time) lo = mid; else hi = mid-1;
+    }
+    return lo;
+  }
+
+  /**
+   * Return path loss between nodes at given time.
+   *
+   * @param a node A
+   * @param b node B
+   * @param time simulation time
+   * @return path loss (in dB), or infinity if nodes are not linked
+   */
+  public double getLoss(int a, int b, long time)
+  {
+    Slice s = current;
+    if(s==null || time<s.start || time>=s.end)
+    {
+      s = load(time);
+    }
+    float l = s.get(key(a, b));
+    if(l!=l) l = s.get(key(b, a));
+    return l!=l ? Double.POSITIVE_INFINITY : l;
+  }
+
+  /**
+   * Load time slice in effect at given time, replacing current slice.
+   *
+   * @param time simulation time
+   * @return slice in effect at given time
+   */
+  private synchronized Slice load(long time)
+  {
+    int i = findSlice(time);
+    Slice s = current;
+    if(s!=null && s.index==i) return s;
+    s = new Slice(i, i==0 ? Long.MIN_VALUE : times[i], times[i+1], entries[i]);
+    try
+    {
+      in.seek(offsets[i], lines[i]);
+      for(int n=0; n<entries[i]; )
+      {
+        if(!in.nextLine()) throw in.error("unexpected end of file");
+        if(in.getNumTokens()==0 || !in.isNumeric(0)) continue;
+        if(in.getNumTokens()<4) throw in.error("expected time, node A, node B, path loss");
+        s.put(key(in.getInt(1), in.getInt(2)), (float)in.getDouble(3));
+        n++;
+      }
+    }
+    catch(IOException e)
+    {
+      throw new RuntimeException("unable to read link loss file: "+e.getMessage());
+    }
+    current = s;
+    return s;
+  }
+
+  /**
+   * Close link loss file.
+   *
+   * @throws IOException unable to close file
+   */
+  public void close() throws IOException
+  {
+    in.close();
+  }
+
+  //////////////////////////////////////////////////
+  // PathLoss interface
+  //
+
+  /** {@inheritDoc} */
+  public double compute(RadioInfo srcRadio, Location srcLocation,
+      RadioInfo dstRadio, Location dstLocation)
+  {
+    return getLoss(srcRadio.getUnique().getID().intValue(),
+        dstRadio.getUnique().getID().intValue(), JistAPI.getTime());
+  }
+
+} // class: PathLossMatrix
+
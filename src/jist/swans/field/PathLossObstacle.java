@@ -0,0 +1,541 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import jist.swans.radio.RadioInfo;
+import jist.swans.misc.Location;
+import jist.swans.misc.MappedReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Obstacle-aware path loss: the loss of an underlying (distance-based) path
+ * loss model, plus the attenuation of the obstacles along the line of
+ * sight. The field is divided into square cells, and the attenuation
+ * between each pair of cells is computed once, between cell centres, and
+ * cached. Links shorter than the exact range, for which the cell centres
+ * are a poor approximation, are intersected exactly with the obstacles.
+ *
+ * <p>The cache holds one float per unordered cell pair, so its size grows
+ * with the fourth power of the field length over the cell size. Cache
+ * entries are filled on first use, or all at once by precompute. Since
+ * obstacles only add loss, propagation ranges of the underlying model
+ * remain valid for pruning.
+ *
+ * @since SWANS1.0
+ */
+
+public abstract class PathLossObstacle implements PathLoss
+{
+
+  /** default cell size (meters). */
+  public static final float CELL_DEFAULT = 50;
+
+  /** largest number of cached cell pairs. */
+  public static final long CACHE_MAX = 1<<26;
+
+  /** underlying path loss model. */
+  protected final PathLoss base;
+
+  /** cell size (meters). */
+  protected final float cell;
+
+  /** number of cell columns and rows. */
+  protected final int cols, rows;
+
+  /** links shorter than this are computed exactly (meters). */
+  private float exact;
+
+  /** cached attenuation of cell pairs (dB), or NaN if not yet computed. */
+  private final float[] cache;
+
+  /**
+   * Create obstacle-aware path loss model.
+   *
+   * @param base underlying path loss model
+   * @param bounds field dimensions
+   * @param cell cell size (meters)
+   */
+  protected PathLossObstacle(PathLoss base, Location bounds, float cell)
+  {
+    if(cell<=0) throw new IllegalArgumentException("cell size must be positive");
+    this.base = base;
+    this.cell = cell;
+    cols = Math.max(1, (int)Math.ceil(bounds.getX()/cell));
+    rows = Math.max(1, (int)Math.ceil(bounds.getY()/cell));
+    long n = (long)cols*rows;
+    long size = n*(n+1)/2;
+    if(size>CACHE_MAX)
+    {
+      throw new IllegalArgumentException("too many cell pairs ("+size+"); increase cell size");
+    }
+    cache = new float[(int)size];
+    Arrays.fill(cache, Float.NaN);
+    exact = 2*cell;
+  }
+
+  //////////////////////////////////////////////////
+  // accessors
+  //
+
+  /**
+   * Return underlying path loss model.
+   *
+   * @return underlying path loss model
+   */
+  public PathLoss getBase()
+  {
+    return base;
+  }
+
+  /**
+   * Set distance below which links are intersected exactly with the
+   * obstacles, rather than looked up by cell pair. Defaults to two cells.
+   *
+   * @param exact exact range (meters)
+   */
+  public void setExactRange(float exact)
+  {
+    this.exact = exact;
+  }
+
+  /**
+   * Return cell of location, clipped to the field.
+   *
+   * @param x x-coordinate
+   * @param y y-coordinate
+   * @return cell index
+   */
+  protected int cellOf(float x, float y)
+  {
+    int c = Math.min(cols-1, Math.max(0, (int)(x/cell)));
+    int r = Math.min(rows-1, Math.max(0, (int)(y/cell)));
+    return r*cols+c;
+  }
+
+  /**
+   * Return attenuation between cells, computing it between cell centres if
+   * not yet cached. Concurrent callers may compute the same entry twice,
+   * with the same result.
+   *
+   * @param a cell index
+   * @param b cell index
+   * @return attenuation (dB)
+   */
+  public double getCellAttenuation(int a, int b)
+  {
+    int i = Math.min(a, b), j = Math.max(a, b);
+    int k = (int)((long)j*(j+1)/2)+i;
+    float v = cache[k];
+    if(v!=v)
+    {
+      v = (float)attenuation(
+          new Location.Location2D((i%cols+0.5f)*cell, (i/cols+0.5f)*cell),
+          new Location.Location2D((j%cols+0.5f)*cell, (j/cols+0.5f)*cell));
+      cache[k] = v;
+    }
+    return v;
+  }
+
+  /**
+   * Compute attenuation of all cell pairs.
+   */
+  public void precompute()
+  {
+    int n = cols*rows;
+    for(int a=0; a<n; a++)
+    {
+      for(int b=a; b<n; b++)
+      {
+        getCellAttenuation(a, b);
+      }
+    }
+  }
+
+  /**
+   * Compute exact obstacle attenuation along line of sight.
+   *
+   * @param src source location
+   * @param dst destination location
+   * @return attenuation (dB)
+   */
+  protected abstract double attenuation(Location src, Location dst);
+
+  //////////////////////////////////////////////////
+  // PathLoss interface
+  //
+
+  /** {@inheritDoc} */
+  public double compute(RadioInfo srcRadio, Location srcLocation,
+      RadioInfo dstRadio, Location dstLocation)
+  {
+    double loss = base.compute(srcRadio, srcLocation, dstRadio, dstLocation);
+    if(srcLocation.distanceSqr(dstLocation)<exact*exact)
+    {
+      return loss + attenuation(srcLocation, dstLocation);
+    }
+    return loss + getCellAttenuation(
+        cellOf(srcLocation.getX(), srcLocation.getY()),
+        cellOf(dstLocation.getX(), dstLocation.getY()));
+  }
+
+
+  //////////////////////////////////////////////////
+  // buildings
+  //
+
+  /**
+   * Building (polygon) obstacles, with a fixed attenuation per wall
+   * crossed. Walls are indexed by cell, and each line of sight visits only
+   * the cells it passes through. Each wall crossing is counted in the cell
+   * that contains it, so walls that span several cells are counted once.
+   *
+   * <p>Obstacle files hold one polygon per line: its attenuation per wall
+   * (dB), followed by its vertices as x,y pairs (meters). Blank lines and
+   * lines starting with '#' are ignored.
+   */
+  public static class Buildings extends PathLossObstacle
+  {
+    /** wall end-points. */
+    private float[] wx1, wy1, wx2, wy2;
+    /** wall attenuation (dB). */
+    private float[] watt;
+    /** number of walls. */
+    private int walls;
+    /** walls overlapping each cell. */
+    private int[][] cellWalls;
+
+    /**
+     * Create building obstacle model.
+     *
+     * @param base underlying path loss model
+     * @param bounds field dimensions
+     * @param cell cell size (meters)
+     * @param file obstacle file
+     * @throws IOException unable to read obstacle file
+     */
+    public Buildings(PathLoss base, Location bounds, float cell, File file) throws IOException
+    {
+      super(base, bounds, cell);
+      init();
+      MappedReader in = new MappedReader(file, ",");
+      try
+      {
+        while(in.nextLine())
+        {
+          int n = in.getNumTokens();
+          if(n==0 || in.getToken(0).startsWith("#")) continue;
+          if(n<7 || n%2==0) throw in.error("expected attenuation and at least three x,y vertices");
+          float[] xy = new float[n-1];
+          for(int i=1; i<n; i++) xy[i-1] = (float)in.getDouble(i);
+          addPolygon(xy, (float)in.getDouble(0));
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+      index();
+    }
+
+    /**
+     * Create building obstacle model.
+     *
+     * @param base underlying path loss model
+     * @param bounds field dimensions
+     * @param cell cell size (meters)
+     * @param polygons polygon vertices, as x,y pairs
+     * @param attenuation attenuation per wall of each polygon (dB)
+     */
+    public Buildings(PathLoss base, Location bounds, float cell,
+        float[][] polygons, float[] attenuation)
+    {
+      super(base, bounds, cell);
+      init();
+      for(int i=0; i<polygons.length; i++)
+      {
+        addPolygon(polygons[i], attenuation[i]);
+      }
+      index();
+    }
+
+    /**
+     * Allocate wall arrays.
+     */
+    private void init()
+    {
+      wx1 = new float[64];
+      wy1 = new float[64];
+      wx2 = new float[64];
+      wy2 = new float[64];
+      watt = new float[64];
+    }
+
+    /**
+     * Add walls of polygon.
+     *
+     * @param xy polygon vertices, as x,y pairs
+     * @param att attenuation per wall (dB)
+     */
+    private void addPolygon(float[] xy, float att)
+    {
+      int n = xy.length/2;
+      for(int i=0; i<n; i++)
+      {
+        int j = (i+1)%n;
+        if(walls==watt.length)
+        {
+          wx1 = grow(wx1);
+          wy1 = grow(wy1);
+          wx2 = grow(wx2);
+          wy2 = grow(wy2);
+          watt = grow(watt);
+        }
+        wx1[walls] = xy[2*i];
+        wy1[walls] = xy[2*i+1];
+        wx2[walls] = xy[2*j];
+        wy2[walls] = xy[2*j+1];
+        watt[walls] = att;
+        walls++;
+      }
+    }
+
+    /**
+     * Double array size.
+     *
+     * @param a array
+     * @return larger copy of array
+     */
+    private static float[] grow(float[] a)
+    {
+      float[] a2 = new float[a.length*2];
+      System.arraycopy(a, 0, a2, 0, a.length);
+      return a2;
+    }
+
+    /**
+     * Index walls by the cells their bounding boxes overlap.
+     */
+    private void index()
+    {
+      int[] counts = new int[cols*rows];
+      for(int pass=0; pass<2; pass++)
+      {
+        if(pass==1)
+        {
+          cellWalls = new int[counts.length][];
+          for(int c=0; c<counts.length; c++)
+          {
+            cellWalls[c] = new int[counts[c]];
+            counts[c] = 0;
+          }
+        }
+        for(int w=0; w<walls; w++)
+        {
+          int c1 = cellOf(Math.min(wx1[w], wx2[w]), Math.min(wy1[w], wy2[w]));
+          int c2 = cellOf(Math.max(wx1[w], wx2[w]), Math.max(wy1[w], wy2[w]));
+          for(int r=c1/cols; r<=c2/cols; r++)
+          {
+            for(int c=c1%cols; c<=c2%cols; c++)
+            {
+              int k = r*cols+c;
+              if(pass==1) cellWalls[k][counts[k]] = w;
+              counts[k]++;
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Return number of walls.
+     *
+     * @return number of walls
+     */
+    public int getNumWalls()
+    {
+      return walls;
+    }
+
+    /** {@inheritDoc} */
+    protected double attenuation(Location src, Location dst)
+    {
+      float x1 = src.getX(), y1 = src.getY(), x2 = dst.getX(), y2 = dst.getY();
+      float dx = x2-x1, dy = y2-y1;
+      int c = cellOf(x1, y1), end = cellOf(x2, y2);
+      int cx = c%cols, cy = c/cols;
+      int stepX = dx>0 ? 1 : -1, stepY = dy>0 ? 1 : -1;
+      // walk cells along line of sight
+      double tMaxX = dx!=0 ? ((cx+(dx>0 ? 1 : 0))*cell-x1)/dx : Double.POSITIVE_INFINITY;
+      double tMaxY = dy!=0 ? ((cy+(dy>0 ? 1 : 0))*cell-y1)/dy : Double.POSITIVE_INFINITY;
+      double tDeltaX = dx!=0 ? cell/Math.abs(dx) : Double.POSITIVE_INFINITY;
+      double tDeltaY = dy!=0 ? cell/Math.abs(dy) : Double.POSITIVE_INFINITY;
+      double total = 0;
+      while(true)
+      {
+        int[] ws = cellWalls[c];
+        for(int i=0; i<ws.length; i++)
+        {
+          int w = ws[i];
+          float ex = wx2[w]-wx1[w], ey = wy2[w]-wy1[w];
+          float d = dx*ey - dy*ex;
+          if(d==0) continue;
+          float ox = wx1[w]-x1, oy = wy1[w]-y1;
+          float t = (ox*ey - oy*ex)/d;
+          float u = (ox*dy - oy*dx)/d;
+          if(t<0 || t>1 || u<0 || u>1) continue;
+          // count crossing only in the cell that contains it
+          if(cellOf(x1+t*dx, y1+t*dy)==c) total += watt[w];
+        }
+        if(c==end) break;
+        if(tMaxX<tMaxY)
+        {
+          if(tMaxX>1) break;
+          tMaxX += tDeltaX;
+          cx += stepX;
+        }
+        else
+        {
+          if(tMaxY>1) break;
+          tMaxY += tDeltaY;
+          cy += stepY;
+        }
+        if(cx<0 || cx>=cols || cy<0 || cy>=rows) break;
+        c = cy*cols+cx;
+      }
+      return total;
+    }
+
+  } // class: Buildings
+
+
+  //////////////////////////////////////////////////
+  // terrain
+  //
+
+  /**
+   * Terrain obstacles from an elevation raster, with a fixed attenuation
+   * per meter of line of sight below ground. The line of sight runs
+   * between the antennas, at their heights above ground, and is sampled at
+   * the raster resolution.
+   *
+   * <p>Rasters are in ESRI ASCII grid format (ncols, nrows, xllcorner,
+   * yllcorner, cellsize and optional NODATA_value header lines, followed by
+   * elevations in meters, northernmost row first). The lower left corner
+   * of the raster is the field origin; missing or out of raster elevations
+   * are zero.
+   */
+  public static class Terrain extends PathLossObstacle
+  {
+    /** elevation of each raster cell (meters), southernmost row first. */
+    private float[] elev;
+    /** raster dimensions. */
+    private int ecols, erows;
+    /** raster cell size (meters). */
+    private float ecell;
+    /** attenuation per meter below ground (dB/m). */
+    private double dbPerMeter;
+
+    /**
+     * Create terrain obstacle model.
+     *
+     * @param base underlying path loss model
+     * @param bounds field dimensions
+     * @param cell cache cell size (meters)
+     * @param file elevation raster file
+     * @param dbPerMeter attenuation per meter below ground (dB/m)
+     * @throws IOException unable to read raster file
+     */
+    public Terrain(PathLoss base, Location bounds, float cell, File file, double dbPerMeter)
+      throws IOException
+    {
+      super(base, bounds, cell);
+      this.dbPerMeter = dbPerMeter;
+      MappedReader in = new MappedReader(file, "");
+      try
+      {
+        double nodata = Double.NaN;
+        while(ecell==0 || elev==null)
+        {
+          if(!in.nextLine()) throw in.error("incomplete raster header");
+          if(in.getNumTokens()==0) continue;
+          if(in.getNumTokens()!=2) throw in.error("expected raster header");
+          String key = in.getToken(0).toLowerCase();
+          if(key.equals("ncols")) ecols = in.getInt(1);
+          else if(key.equals("nrows")) erows = in.getInt(1);
+          else if(key.equals("cellsize")) ecell = (float)in.getDouble(1);
+          else if(key.equals("nodata_value")) nodata = in.getDouble(1);
+          else if(!key.equals("xllcorner") && !key.equals("yllcorner")
+              && !key.equals("xllcenter") && !key.equals("yllcenter"))
+          {
+            throw in.error("unknown raster header: "+key);
+          }
+          if(ecols>0 && erows>0 && ecell>0) elev = new float[ecols*erows];
+        }
+        int n = 0;
+        while(n<elev.length && in.nextLine())
+        {
+          int k = in.getNumTokens();
+          if(k==2 && in.getToken(0).equalsIgnoreCase("nodata_value"))
+          {
+            nodata = in.getDouble(1);
+            continue;
+          }
+          for(int i=0; i<k && n<elev.length; i++, n++)
+          {
+            double v = in.getDouble(i);
+            int r = erows-1-n/ecols, c = n%ecols;
+            elev[r*ecols+c] = v==nodata ? 0 : (float)v;
+          }
+        }
+        if(n<elev.length) throw in.error("expected "+elev.length+" elevations, found "+n);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+
+    /**
+     * Return ground elevation.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return ground elevation (meters)
+     */
+    public float getElevation(float x, float y)
+    {
+      int c = (int)Math.floor(x/ecell), r = (int)Math.floor(y/ecell);
+      if(c<0 || c>=ecols || r<0 || r>=erows) return 0;
+      return elev[r*ecols+c];
+    }
+
+    /** {@inheritDoc} */
+    protected double attenuation(Location src, Location dst)
+    {
+      float x1 = src.getX(), y1 = src.getY(), dx = dst.getX()-x1, dy = dst.getY()-y1;
+      float z1 = getElevation(x1, y1)+src.getHeight();
+      float dz = getElevation(dst.getX(), dst.getY())+dst.getHeight()-z1;
+      double dist = Math.sqrt(dx*dx+dy*dy);
+      int steps = (int)(dist/ecell)+1;
+      int blocked = 0;
+      for(int i=1; i<steps; i++)
+      {
+        float t = i/(float)steps;
+        if(getElevation(x1+t*dx, y1+t*dy)>z1+t*dz) blocked++;
+      }
+      return blocked*dist/steps*dbPerMeter;
+    }
+
+  } // class: Terrain
+
+} // class: PathLossObstacle
+
@@ -212,5 +212,62 @@ public interface Placement
 
   } // class: Grid
 
+
+  //////////////////////////////////////////////////
+  // clustered placement model
+  //
+
+  /**
+   * Clustered (non-uniform) placement. Cluster centres are placed uniformly,
+   * and each node is placed at a normally distributed offset from a random
+   * cluster centre, within the field.
+   */
+  public static class Cluster implements Placement
+  {
+    /** placement boundaries. */
+    private float x, y;
+    /** cluster centres. */
+    private float[] cx, cy;
+    /** standard deviation of offset from centre. */
+    private float radius;
+
+    /**
+     * Initialize clustered placement model.
+     *
+     * @param loc upper limit coordinate
+     * @param clusters number of clusters
+     * @param radius standard deviation of node offset from centre (in meters)
+     */
+    public Cluster(Location loc, int clusters, float radius)
+    {
+      this.x = loc.getX();
+      this.y = loc.getY();
+      this.radius = radius;
+      cx = new float[clusters];
+      cy = new float[clusters];
+      for(int i=0; i<clusters; i++)
+      {
+        cx[i] = Constants.random.nextFloat()*x;
+        cy[i] = Constants.random.nextFloat()*y;
+      }
+    }
+
+    //////////////////////////////////////////////////
+    // Placement interface
+    //
+
+    /** {@inheritDoc} */
+    public Location getNextLocation()
+    {
+      int i = Constants.random.nextInt(cx.length);
+      float px = cx[i] + (float)Constants.random.nextGaussian()*radius;
+      float py = cy[i] + (float)Constants.random.nextGaussian()*radius;
+      return new Location.Location2D(
+          Math.max(0, Math.min(x, px)),
+          Math.max(0, Math.min(y, py)));
+    }
+
+  } // class: Cluster
+
 } // interface: Placement
 
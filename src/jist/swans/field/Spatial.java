@@ -66,6 +66,25 @@ public abstract class Spatial
         Message msg, Long durationObj);
   }
 
+  /**
+   * Transmission visitor object that can bound the distance of its
+   * receivers, so that radios may be pruned by position alone.
+   *
+   * @since SWANS1.0
+   */
+  public static interface SpatialRangeVisitor extends SpatialTransmitVisitor
+  {
+    /**
+     * Compute distance beyond which no radio receives a transmission above
+     * the propagation limit, or is otherwise affected by the visitor.
+     *
+     * @param srcInfo source radio information
+     * @param limit propagation limit
+     * @return propagation range (units: meters), or infinity if unbounded
+     */
+    double computeRange(RadioInfo srcInfo, double limit);
+  }
+
   /**
    * General radio visitor object.
    *
@@ -253,6 +272,43 @@ public abstract class Spatial
     }
   }
 
+  /**
+   * Compute squared (horizontal) distance from location to nearest point of bin.
+   *
+   * @param src location
+   * @return squared distance to bin; zero if location inside bin
+   */
+  public float distanceSqr(Location src)
+  {
+    float x = src.getX(), y = src.getY();
+    float dx = x<bl.getX() ? bl.getX()-x : x>tr.getX() ? x-tr.getX() : 0;
+    float dy = y<bl.getY() ? bl.getY()-y : y>tr.getY() ? y-tr.getY() : 0;
+    return dx*dx + dy*dy;
+  }
+
+  /**
+   * Determine whether bin may hold receivers of a transmission. Bins are
+   * pruned by distance for range visitors, and by signal strength at the
+   * nearest point of the bin for other visitors.
+   *
+   * @param visitor transmission visitor object
+   * @param srcInfo transmission source radio
+   * @param srcLoc transmission source location
+   * @param limit propagation limit
+   * @return whether bin should be visited
+   */
+  protected boolean reaches(SpatialTransmitVisitor visitor, 
+      RadioInfo srcInfo, Location srcLoc, double limit)
+  {
+    if(visitor instanceof SpatialRangeVisitor)
+    {
+      double range = ((SpatialRangeVisitor)visitor).computeRange(srcInfo, limit);
+      return distanceSqr(srcLoc) <= range*range;
+    }
+    return srcLoc.inside(bl, tr) ||
+      visitor.computeSignal(srcInfo, srcLoc, getNearest(srcLoc))>=limit;
+  }
+
   /**
    * Return number of radios in bin.
    *
@@ -448,6 +504,234 @@ public abstract class Spatial
   } // class: LinearList
 
 
+  //////////////////////////////////////////////////
+  // packed array implementation
+  //
+
+  /**
+   * Linear-lookup (no binning) over radio positions packed into primitive
+   * arrays, indexed by radio identifier. Squared distances to all radios
+   * are computed in a tight loop, without touching the radio or location
+   * objects, and radios beyond the propagation range of a
+   * <code>SpatialRangeVisitor</code> are skipped before any path loss
+   * computation. Other visitors see every radio, as with LinearList.
+   */
+  public static class Packed extends Spatial
+  {
+    /** initial number of radio slots. */
+    private static final int INIT_LENGTH = 16;
+
+    /** radio x-coordinates, by identifier; NaN if slot empty. */
+    private float[] xs;
+    /** radio y-coordinates, by identifier. */
+    private float[] ys;
+    /** radio heights, by identifier. */
+    private float[] zs;
+    /** radio information, by identifier. */
+    private Field.RadioData[] data;
+    /** number of slots in use: largest radio identifier plus one. */
+    private int length;
+    /** whether any radio has a three-dimensional location. */
+    private boolean threeD;
+    /** scratch array of squared distances; null while in use. */
+    private float[] dist;
+
+    /**
+     * Create a new packed linear-lookup bin.
+     *
+     * @param tr top-right corner location
+     */
+    public Packed(Location tr)
+    {
+      super(tr);
+      init();
+    }
+
+    /**
+     * Create a new packed linear-lookup bin.
+     *
+     * @param bl bottom-left corner location
+     * @param tr top-right corner location
+     */
+    public Packed(Location bl, Location tr)
+    {
+      super(bl, tr);
+      init();
+    }
+
+    /**
+     * Create a new packed linear-lookup bin.
+     *
+     * @param bl bottom-left corner location
+     * @param br bottom-right corner location
+     * @param tl top-left corner location
+     * @param tr top-right corner location
+     */
+    public Packed(Location bl, Location br, Location tl, Location tr)
+    {
+      super(bl, br, tl, tr);
+      init();
+    }
+
+    /**
+     * Allocate empty radio slots.
+     */
+    private void init()
+    {
+      xs = new float[INIT_LENGTH];
+      ys = new float[INIT_LENGTH];
+      zs = new float[INIT_LENGTH];
+      data = new Field.RadioData[INIT_LENGTH];
+      dist = new float[INIT_LENGTH];
+      java.util.Arrays.fill(xs, Float.NaN);
+    }
+
+    /**
+     * Grow radio slots to hold given identifier.
+     *
+     * @param id radio identifier
+     */
+    private void ensureCapacity(int id)
+    {
+      if(id<xs.length) return;
+      int n = xs.length;
+      while(n<=id) n *= 2;
+      float[] xs2 = new float[n];
+      System.arraycopy(xs, 0, xs2, 0, xs.length);
+      java.util.Arrays.fill(xs2, xs.length, n, Float.NaN);
+      xs = xs2;
+      float[] ys2 = new float[n];
+      System.arraycopy(ys, 0, ys2, 0, ys.length);
+      ys = ys2;
+      float[] zs2 = new float[n];
+      System.arraycopy(zs, 0, zs2, 0, zs.length);
+      zs = zs2;
+      Field.RadioData[] data2 = new Field.RadioData[n];
+      System.arraycopy(data, 0, data2, 0, data.length);
+      data = data2;
+      dist = new float[n];
+    }
+
+    /**
+     * Store radio position in slot.
+     *
+     * @param id radio identifier
+     * @param loc radio location
+     */
+    private void set(int id, Location loc)
+    {
+      xs[id] = loc.getX();
+      ys[id] = loc.getY();
+      zs[id] = loc.getHeight();
+      if(loc instanceof Location.Location3D) threeD = true;
+    }
+
+    /** {@inheritDoc} */
+    public void add(Field.RadioData rd)
+    {
+      if(Main.ASSERT) Util.assertion(rd.loc.inside(bl, tr));
+      int id = rd.info.getUnique().getID().intValue();
+      ensureCapacity(id);
+      if(Main.ASSERT) Util.assertion(data[id]==null);
+      data[id] = rd;
+      set(id, rd.loc);
+      length = Math.max(length, id+1);
+      size++;
+    }
+
+    /** {@inheritDoc} */
+    public void del(Field.RadioData rd)
+    {
+      if(Main.ASSERT) Util.assertion(rd.loc.inside(bl, tr));
+      int id = rd.info.getUnique().getID().intValue();
+      if(Main.ASSERT) Util.assertion(data[id]==rd);
+      data[id] = null;
+      xs[id] = Float.NaN;
+      while(length>0 && data[length-1]==null) length--;
+      size--;
+    }
+
+    /** {@inheritDoc} */
+    public Field.RadioData move(Field.RadioData rd, Location l2)
+    {
+      if(l2.inside(bl, tr))
+      {
+        rd.loc = l2;
+        set(rd.info.getUnique().getID().intValue(), l2);
+        return null;
+      }
+      else
+      {
+        del(rd);
+        return rd;
+      }
+    }
+
+    /** {@inheritDoc} */
+    public int visitTransmit(SpatialTransmitVisitor visitor,
+        RadioInfo srcInfo, Location srcLoc,
+        Message msg, Long durationObj, double limit)
+    {
+      double range = visitor instanceof SpatialRangeVisitor
+        ? ((SpatialRangeVisitor)visitor).computeRange(srcInfo, limit)
+        : Double.POSITIVE_INFINITY;
+      float r2 = (float)(range*range);
+      // squared distances; empty slots are NaN and never within range
+      float[] dist = this.dist;
+      if(dist==null) dist = new float[xs.length];
+      this.dist = null;
+      final float[] xs = this.xs, ys = this.ys, zs = this.zs;
+      final float x = srcLoc.getX(), y = srcLoc.getY(), z = srcLoc.getHeight();
+      final int n = length;
+      if(threeD)
+      {
+        for(int i=0; i<n; i++)
+        {
+          float dx = xs[i]-x, dy = ys[i]-y, dz = zs[i]-z;
+          dist[i] = dx*dx + dy*dy + dz*dz;
+        }
+      }
+      else
+      {
+        for(int i=0; i<n; i++)
+        {
+          float dx = xs[i]-x, dy = ys[i]-y;
+          dist[i] = dx*dx + dy*dy;
+        }
+      }
+      // visit radios within range
+      int visited = 0;
+      for(int i=0; i<n; i++)
+      {
+        if(dist[i]<=r2)
+        {
+          Field.RadioData dst = data[i];
+          visitor.visitTransmit(srcInfo, srcLoc, dst.info, dst.entity, dst.loc, msg, durationObj);
+          visited++;
+        }
+      }
+      if(dist.length==xs.length) this.dist = dist;
+      return visited;
+    }
+
+    /** {@inheritDoc} */
+    public int visit(SpatialVisitor visitor)
+    {
+      int visited=0;
+      for(int i=0; i<length; i++)
+      {
+        if(data[i]!=null)
+        {
+          visitor.visit(data[i]);
+          visited++;
+        }
+      }
+      return visited;
+    }
+
+  } // class: Packed
+
+
   //////////////////////////////////////////////////
   // flat grid implementation
   //
@@ -690,8 +974,7 @@ public abstract class Spatial
     {
       if(di<0 || dj<0 || di>=bins.length || dj>=bins[0].length) return -1;
       LinearList bin = bins[di][dj];
-      if(!srcLoc.inside(bin.bl, bin.tr) &&
-        visitor.computeSignal(srcInfo, srcLoc, bin.getNearest(srcLoc))<limit) return -1;
+      if(!bin.reaches(visitor, srcInfo, srcLoc, limit)) return -1;
       int visited = 0;
       if(bin.size>0)
       {
@@ -848,8 +1131,7 @@ public abstract class Spatial
         RadioInfo srcInfo, Location srcLoc, 
         Message msg, Long durationObj, double limit)
     {
-      if(!srcLoc.inside(bl, tr) && 
-          visitor.computeSignal(srcInfo, srcLoc, getNearest(srcLoc))<limit) return 0;
+      if(!reaches(visitor, srcInfo, srcLoc, limit)) return 0;
       int total = 0;
       for(int i=0; i<bins.length; i++)
       {
@@ -878,6 +1160,434 @@ public abstract class Spatial
   } // class: HierGrid
 
 
+  //////////////////////////////////////////////////
+  // kd-tree implementation
+  //
+
+  /**
+   * Adaptive binning: a bucketed kd-tree. Leaves hold up to a fixed number
+   * of radios and are split at the median radio coordinate, along the axis
+   * of greater spread, so that bins follow the radio density rather than
+   * the field geometry. Sparse subtrees are collapsed back into a single
+   * leaf as radios leave. A radio that moves within its leaf region is
+   * updated in place; otherwise it is moved between leaves.
+   *
+   * <p>Subtrees beyond the propagation range of a
+   * <code>SpatialRangeVisitor</code> are pruned geometrically; for other
+   * visitors, subtrees are pruned by signal strength at their nearest
+   * point, as in the grid structures.
+   */
+  public static class KDTree extends Spatial
+  {
+    /** default maximum number of radios in a leaf. */
+    public static final int BUCKET_DEFAULT = 16;
+
+    /**
+     * Node of kd-tree: an internal node with two children, or a leaf with
+     * a bucket of radios.
+     */
+    private static final class Node
+    {
+      /** node region: lower limits (inclusive). */
+      private float x0, y0;
+      /** node region: upper limits. */
+      private float x1, y1;
+      /** parent node, or null for root. */
+      private Node parent;
+      /** split axis: true for x, false for y. */
+      private boolean splitX;
+      /** split coordinate: lower child holds coordinates below split. */
+      private float split;
+      /** child nodes, or null for leaf. */
+      private Node lo, hi;
+      /** leaf radios. */
+      private Field.RadioData[] items;
+      /** number of radios in subtree. */
+      private int size;
+
+      /**
+       * Create new, empty leaf.
+       *
+       * @param parent parent node
+       * @param x0 lower x limit
+       * @param y0 lower y limit
+       * @param x1 upper x limit
+       * @param y1 upper y limit
+       */
+      private Node(Node parent, float x0, float y0, float x1, float y1)
+      {
+        this.parent = parent;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+      }
+
+      /**
+       * Return whether node is a leaf.
+       *
+       * @return whether node is a leaf
+       */
+      private boolean isLeaf()
+      {
+        return lo==null;
+      }
+
+      /**
+       * Return child node containing location.
+       *
+       * @param loc location
+       * @return child node containing location
+       */
+      private Node child(Location loc)
+      {
+        return (splitX ? loc.getX() : loc.getY()) < split ? lo : hi;
+      }
+
+      /**
+       * Compute squared distance from location to node region.
+       *
+       * @param x x-coordinate
+       * @param y y-coordinate
+       * @return squared distance to nearest point of region
+       */
+      private float distanceSqr(float x, float y)
+      {
+        float dx = x<x0 ? x0-x : x>x1 ? x-x1 : 0;
+        float dy = y<y0 ? y0-y : y>y1 ? y-y1 : 0;
+        return dx*dx + dy*dy;
+      }
+    } // class: Node
+
+    /** maximum number of radios in a leaf. */
+    private final int bucket;
+    /** root node. */
+    private Node root;
+    /** number of leaves. */
+    private int leaves;
+
+    /**
+     * Create a new kd-tree.
+     *
+     * @param tr top-right corner location
+     */
+    public KDTree(Location tr)
+    {
+      this(tr, BUCKET_DEFAULT);
+    }
+
+    /**
+     * Create a new kd-tree.
+     *
+     * @param tr top-right corner location
+     * @param bucket maximum number of radios in a leaf
+     */
+    public KDTree(Location tr, int bucket)
+    {
+      super(tr);
+      this.bucket = bucket;
+      init();
+    }
+
+    /**
+     * Create a new kd-tree.
+     *
+     * @param bl bottom-left corner location
+     * @param tr top-right corner location
+     * @param bucket maximum number of radios in a leaf
+     */
+    public KDTree(Location bl, Location tr, int bucket)
+    {
+      super(bl, tr);
+      this.bucket = bucket;
+      init();
+    }
+
+    /**
+     * Create empty root leaf.
+     */
+    private void init()
+    {
+      if(bucket<2) throw new IllegalArgumentException("bucket size must be at least 2");
+      root = new Node(null, bl.getX(), bl.getY(), tr.getX(), tr.getY());
+      root.items = new Field.RadioData[bucket];
+      leaves = 1;
+    }
+
+    /**
+     * Return number of leaves.
+     *
+     * @return number of leaves
+     */
+    public int getNumLeaves()
+    {
+      return leaves;
+    }
+
+    /**
+     * Return leaf containing location.
+     *
+     * @param loc location
+     * @return leaf containing location
+     */
+    private Node find(Location loc)
+    {
+      Node n = root;
+      while(!n.isLeaf()) n = n.child(loc);
+      return n;
+    }
+
+    /**
+     * Insert radio into leaf, splitting leaf if full. Leaves that can not
+     * be split grow instead, and splitting is retried whenever they fill.
+     *
+     * @param n leaf containing radio location
+     * @param rd radio information
+     */
+    private void insert(Node n, Field.RadioData rd)
+    {
+      if(n.size==n.items.length)
+      {
+        if(split(n))
+        {
+          insert(n.child(rd.loc), rd);
+          return;
+        }
+        Field.RadioData[] items2 = new Field.RadioData[n.items.length*2];
+        System.arraycopy(n.items, 0, items2, 0, n.items.length);
+        n.items = items2;
+      }
+      n.items[n.size] = rd;
+      for(Node p=n; p!=null; p=p.parent) p.size++;
+    }
+
+    /**
+     * Remove radio from leaf, collapsing sparse subtrees.
+     *
+     * @param n leaf containing radio
+     * @param rd radio information
+     */
+    private void remove(Node n, Field.RadioData rd)
+    {
+      int i = 0;
+      while(n.items[i]!=rd) i++;
+      n.items[i] = n.items[n.size-1];
+      n.items[n.size-1] = null;
+      for(Node p=n; p!=null; p=p.parent) p.size--;
+      // collapse highest sparse ancestor
+      Node m = null;
+      for(Node p=n.parent; p!=null && p.size<=bucket/2; p=p.parent) m = p;
+      if(m!=null) collapse(m);
+    }
+
+    /**
+     * Split leaf at median radio coordinate along axis of greater spread.
+     * Leaves whose radios all share a location are left unsplit.
+     *
+     * @param n leaf to split
+     * @return whether leaf was split
+     */
+    private boolean split(Node n)
+    {
+      float[] xs = new float[n.size], ys = new float[n.size];
+      for(int i=0; i<n.size; i++)
+      {
+        xs[i] = n.items[i].loc.getX();
+        ys[i] = n.items[i].loc.getY();
+      }
+      java.util.Arrays.sort(xs);
+      java.util.Arrays.sort(ys);
+      boolean splitX = xs[n.size-1]-xs[0] >= ys[n.size-1]-ys[0];
+      float[] v = splitX ? xs : ys;
+      // find distinct value nearest to median
+      int mid = n.size/2, k = -1;
+      for(int d=0; d<n.size && k==-1; d++)
+      {
+        if(mid-d>0 && v[mid-d-1]<v[mid-d]) k = mid-d;
+        else if(mid+d<n.size && mid+d>0 && v[mid+d-1]<v[mid+d]) k = mid+d;
+      }
+      if(k==-1) return false;
+      n.splitX = splitX;
+      n.split = v[k];
+      n.lo = splitX
+        ? new Node(n, n.x0, n.y0, n.split, n.y1)
+        : new Node(n, n.x0, n.y0, n.x1, n.split);
+      n.hi = splitX
+        ? new Node(n, n.split, n.y0, n.x1, n.y1)
+        : new Node(n, n.x0, n.split, n.x1, n.y1);
+      n.lo.items = new Field.RadioData[Math.max(bucket, k)];
+      n.hi.items = new Field.RadioData[Math.max(bucket, n.size-k)];
+      for(int i=0; i<n.size; i++)
+      {
+        Node c = n.child(n.items[i].loc);
+        c.items[c.size++] = n.items[i];
+      }
+      n.items = null;
+      leaves++;
+      return true;
+    }
+
+    /**
+     * Replace subtree with a single leaf holding all its radios.
+     *
+     * @param n root of subtree
+     */
+    private void collapse(Node n)
+    {
+      Field.RadioData[] items = new Field.RadioData[bucket];
+      int count = gather(n, items, 0);
+      if(Main.ASSERT) Util.assertion(count==n.size);
+      n.lo = n.hi = null;
+      n.items = items;
+      leaves++;
+    }
+
+    /**
+     * Collect radios of subtree into array, discarding subtree leaves.
+     *
+     * @param n root of subtree
+     * @param items destination array
+     * @param count number of radios already in array
+     * @return number of radios in array
+     */
+    private int gather(Node n, Field.RadioData[] items, int count)
+    {
+      if(n.isLeaf())
+      {
+        System.arraycopy(n.items, 0, items, count, n.size);
+        leaves--;
+        return count+n.size;
+      }
+      count = gather(n.lo, items, count);
+      return gather(n.hi, items, count);
+    }
+
+    /** {@inheritDoc} */
+    public void add(Field.RadioData rd)
+    {
+      if(Main.ASSERT) Util.assertion(rd.loc.inside(bl, tr));
+      insert(find(rd.loc), rd);
+      size++;
+    }
+
+    /** {@inheritDoc} */
+    public void del(Field.RadioData rd)
+    {
+      if(Main.ASSERT) Util.assertion(rd.loc.inside(bl, tr));
+      remove(find(rd.loc), rd);
+      size--;
+    }
+
+    /** {@inheritDoc} */
+    public Field.RadioData move(Field.RadioData rd, Location l2)
+    {
+      if(!l2.inside(bl, tr))
+      {
+        del(rd);
+        return rd;
+      }
+      Node from = find(rd.loc), to = find(l2);
+      if(from!=to)
+      {
+        remove(from, rd);
+        rd.loc = l2;
+        insert(find(l2), rd);
+      }
+      else
+      {
+        rd.loc = l2;
+      }
+      return null;
+    }
+
+    /** {@inheritDoc} */
+    public int visitTransmit(SpatialTransmitVisitor visitor,
+        RadioInfo srcInfo, Location srcLoc,
+        Message msg, Long durationObj, double limit)
+    {
+      float r2 = Float.NaN;
+      if(visitor instanceof SpatialRangeVisitor)
+      {
+        double range = ((SpatialRangeVisitor)visitor).computeRange(srcInfo, limit);
+        r2 = (float)(range*range);
+      }
+      return visitTransmit(root, r2, visitor, srcInfo, srcLoc, msg, durationObj, limit);
+    }
+
+    /**
+     * Visit radios of subtree with transmission visitor.
+     *
+     * @param n root of subtree
+     * @param r2 squared propagation range, or NaN to prune by signal
+     * @param visitor transmission visitor object
+     * @param srcInfo transmission source radio
+     * @param srcLoc transmission source location
+     * @param msg message to transmit
+     * @param durationObj transmission duration
+     * @param limit propagation limit
+     * @return number of radios visited
+     */
+    private int visitTransmit(Node n, float r2, SpatialTransmitVisitor visitor,
+        RadioInfo srcInfo, Location srcLoc,
+        Message msg, Long durationObj, double limit)
+    {
+      if(n.size==0) return 0;
+      float x = srcLoc.getX(), y = srcLoc.getY();
+      float d2 = n.distanceSqr(x, y);
+      if(!Float.isNaN(r2))
+      {
+        if(d2>r2) return 0;
+      }
+      else if(d2>0)
+      {
+        Location nearest = new Location.Location2D(
+            Math.max(n.x0, Math.min(n.x1, x)), Math.max(n.y0, Math.min(n.y1, y)));
+        if(visitor.computeSignal(srcInfo, srcLoc, nearest)<limit) return 0;
+      }
+      if(!n.isLeaf())
+      {
+        return visitTransmit(n.lo, r2, visitor, srcInfo, srcLoc, msg, durationObj, limit)
+          + visitTransmit(n.hi, r2, visitor, srcInfo, srcLoc, msg, durationObj, limit);
+      }
+      int visited = 0;
+      for(int i=0; i<n.size; i++)
+      {
+        Field.RadioData dst = n.items[i];
+        visitor.visitTransmit(srcInfo, srcLoc, dst.info, dst.entity, dst.loc, msg, durationObj);
+        visited++;
+      }
+      return visited;
+    }
+
+    /** {@inheritDoc} */
+    public int visit(SpatialVisitor visitor)
+    {
+      return visit(root, visitor);
+    }
+
+    /**
+     * Visit radios of subtree.
+     *
+     * @param n root of subtree
+     * @param visitor visitor object
+     * @return number of radios visited
+     */
+    private int visit(Node n, SpatialVisitor visitor)
+    {
+      if(!n.isLeaf())
+      {
+        return visit(n.lo, visitor) + visit(n.hi, visitor);
+      }
+      for(int i=0; i<n.size; i++)
+      {
+        visitor.visit(n.items[i]);
+      }
+      return n.size;
+    }
+
+  } // class: KDTree
+
+
   //////////////////////////////////////////////////
   // tiled wraparound implementation
   //
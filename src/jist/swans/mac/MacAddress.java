@@ -57,6 +57,16 @@ public class MacAddress implements Comparable
     this.addr = addr;
   }
 
+  /**
+   * Return address data.
+   *
+   * @return address data
+   */
+  public int getAddr()
+  {
+    return addr;
+  }
+
   /**
    * Compute hash code for mac address.
    *
@@ -0,0 +1,246 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+/**
+ * Splits a range of independent work items into fixed-size chunks, and
+ * runs the chunks on a pool of daemon worker threads. The calling thread
+ * takes chunks as well, and returns only once all chunks are done. Chunk
+ * boundaries depend only on the number of items, so tasks that derive any
+ * randomness from the chunk index produce the same results regardless of
+ * the number of threads or their scheduling.
+ *
+ * <p>Tasks run outside of simulation time: they must not call entities,
+ * and may only write to state owned by their chunk.
+ *
+ * <p>Chunks are handed out under the pool monitor, one task at a time, which
+ * is all that is needed here; an executor would add a queued task per
+ * chunk without making the hand-off any cheaper. Workers are daemon
+ * threads, so a pool that is never closed does not keep the virtual
+ * machine alive; <code>close</code> stops them once the pool is no longer
+ * needed.
+ *
+ * @since SWANS1.0
+ */
+
+public final class FanOut
+{
+
+  /**
+   * Chunk of work.
+   */
+  public static interface Task
+  {
+    /**
+     * Process items of chunk.
+     *
+     * @param chunk chunk index
+     * @param from first item (inclusive)
+     * @param to last item (exclusive)
+     */
+    void run(int chunk, int from, int to);
+  }
+
+  /** default number of items per chunk. */
+  public static final int CHUNK_DEFAULT = 64;
+
+  /** number of items per chunk. */
+  private final int chunk;
+
+  /** worker threads. */
+  private final Thread[] workers;
+
+  /** current task, or null if idle. */
+  private Task task;
+
+  /** number of items of current task. */
+  private int items;
+
+  /** number of chunks of current task. */
+  private int chunks;
+
+  /** next chunk to hand out. */
+  private int next;
+
+  /** number of completed chunks. */
+  private int done;
+
+  /** first failure of current task. */
+  private Throwable failure;
+
+  /** whether pool is shut down. */
+  private boolean closed;
+
+  /**
+   * Create new fan-out pool.
+   *
+   * @param threads total number of threads, including caller
+   * @param chunk number of items per chunk
+   */
+  public FanOut(int threads, int chunk)
+  {
+    if(threads<1) throw new IllegalArgumentException("at least one thread required");
+    if(chunk<1) throw new IllegalArgumentException("chunk size must be positive");
+    this.chunk = chunk;
+    workers = new Thread[threads-1];
+    for(int i=0; i<workers.length; i++)
+    {
+      workers[i] = new Thread(new Runnable()
+      {
+        public void run()
+        {
+          workerLoop();
+        }
+      }, "FanOut-"+i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Return number of threads, including caller.
+   *
+   * @return number of threads
+   */
+  public int getThreads()
+  {
+    return workers.length+1;
+  }
+
+  /**
+   * Return number of chunks for given number of items.
+   *
+   * @param n number of items
+   * @return number of chunks
+   */
+  public int getChunks(int n)
+  {
+    return (n+chunk-1)/chunk;
+  }
+
+  /**
+   * Run task over all items, and wait for completion.
+   *
+   * @param t task
+   * @param n number of items
+   */
+  public void run(Task t, int n)
+  {
+    int c = getChunks(n);
+    if(c<=1 || workers.length==0)
+    {
+      for(int i=0; i<c; i++)
+      {
+        t.run(i, i*chunk, Math.min(n, (i+1)*chunk));
+      }
+      return;
+    }
+    synchronized(this)
+    {
+      if(closed) throw new IllegalStateException("fan-out pool closed");
+      task = t;
+      items = n;
+      chunks = c;
+      next = 0;
+      done = 0;
+      failure = null;
+      notifyAll();
+    }
+    work();
+    Throwable f;
+    synchronized(this)
+    {
+      while(done<chunks)
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException e)
+        {
+        }
+      }
+      task = null;
+      f = failure;
+      failure = null;
+    }
+    if(f instanceof RuntimeException) throw (RuntimeException)f;
+    if(f instanceof Error) throw (Error)f;
+  }
+
+  /**
+   * Process chunks of current task, until none are left.
+   */
+  private void work()
+  {
+    while(true)
+    {
+      Task t;
+      int c, n;
+      synchronized(this)
+      {
+        if(task==null || next==chunks) return;
+        t = task;
+        c = next++;
+        n = items;
+      }
+      try
+      {
+        t.run(c, c*chunk, Math.min(n, (c+1)*chunk));
+      }
+      catch(Throwable e)
+      {
+        synchronized(this)
+        {
+          if(failure==null) failure = e;
+        }
+      }
+      synchronized(this)
+      {
+        done++;
+        if(done==chunks) notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Worker thread: wait for tasks and process their chunks.
+   */
+  private void workerLoop()
+  {
+    while(true)
+    {
+      synchronized(this)
+      {
+        while(!closed && (task==null || next==chunks))
+        {
+          try
+          {
+            wait();
+          }
+          catch(InterruptedException e)
+          {
+          }
+        }
+        if(closed) return;
+      }
+      work();
+    }
+  }
+
+  /**
+   * Stop worker threads.
+   */
+  public synchronized void close()
+  {
+    closed = true;
+    notifyAll();
+  }
+
+} // class: FanOut
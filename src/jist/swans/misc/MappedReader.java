@@ -0,0 +1,409 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Line and token reader over a memory-mapped text file. The file is mapped
+ * one window at a time, so files of any size are read with bounded memory,
+ * and the reader may be repositioned to any earlier offset. Each line is
+ * split into tokens at whitespace and at given delimiter characters; numeric
+ * tokens are parsed in place, without creating strings.
+ *
+ * @since SWANS1.0
+ */
+
+public final class MappedReader
+{
+
+  /** size of mapped window (bytes). */
+  public static final int WINDOW = 1<<26;
+
+  /** file channel. */
+  private final RandomAccessFile raf;
+
+  /** file length. */
+  private final long length;
+
+  /** additional token delimiters. */
+  private final String delims;
+
+  /** current window. */
+  private MappedByteBuffer map;
+
+  /** file offset of current window. */
+  private long mapStart;
+
+  /** current line. */
+  private byte[] line = new byte[256];
+
+  /** length of current line. */
+  private int lineLength;
+
+  /** file offset of current line. */
+  private long lineStart;
+
+  /** number of lines read. */
+  private long lineNumber;
+
+  /** token start offsets within current line. */
+  private int[] tokenStart = new int[16];
+
+  /** token end offsets within current line. */
+  private int[] tokenEnd = new int[16];
+
+  /** number of tokens on current line. */
+  private int tokens;
+
+  /**
+   * Open memory-mapped reader.
+   *
+   * @param file text file
+   * @param delims token delimiters, in addition to whitespace
+   * @throws IOException unable to open file
+   */
+  public MappedReader(File file, String delims) throws IOException
+  {
+    raf = new RandomAccessFile(file, "r");
+    length = raf.length();
+    this.delims = delims;
+    seek(0);
+  }
+
+  /**
+   * Return file length.
+   *
+   * @return file length (in bytes)
+   */
+  public long length()
+  {
+    return length;
+  }
+
+  /**
+   * Return offset of next line.
+   *
+   * @return file offset of next line
+   */
+  public long getPosition()
+  {
+    return mapStart+(map==null ? 0 : map.position());
+  }
+
+  /**
+   * Reposition reader.
+   *
+   * @param pos file offset of next line
+   * @param number line number of next line
+   * @throws IOException unable to map file
+   */
+  public void seek(long pos, long number) throws IOException
+  {
+    if(pos<0 || pos>length) throw new IllegalArgumentException("invalid position: "+pos);
+    if(map!=null && pos>=mapStart && pos<=mapStart+map.limit())
+    {
+      map.position((int)(pos-mapStart));
+    }
+    else
+    {
+      mapStart = pos;
+      map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, length-pos));
+    }
+    lineNumber = number;
+    lineLength = 0;
+    tokens = 0;
+  }
+
+  /**
+   * Reposition reader.
+   *
+   * @param pos file offset of next line
+   * @throws IOException unable to map file
+   */
+  public void seek(long pos) throws IOException
+  {
+    seek(pos, 0);
+  }
+
+  /**
+   * Close reader.
+   *
+   * @throws IOException unable to close file
+   */
+  public void close() throws IOException
+  {
+    map = null;
+    raf.close();
+  }
+
+  //////////////////////////////////////////////////
+  // lines
+  //
+
+  /**
+   * Read next line, and split it into tokens.
+   *
+   * @return whether a line was read; false at end of file
+   * @throws IOException unable to map file
+   */
+  public boolean nextLine() throws IOException
+  {
+    lineStart = getPosition();
+    if(lineStart==length) return false;
+    lineLength = 0;
+    while(true)
+    {
+      if(!map.hasRemaining())
+      {
+        long pos = getPosition();
+        if(pos==length) break;
+        mapStart = pos;
+        map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, length-pos));
+      }
+      byte b = map.get();
+      if(b=='\n') break;
+      if(lineLength==line.length)
+      {
+        byte[] line2 = new byte[line.length*2];
+        System.arraycopy(line, 0, line2, 0, lineLength);
+        line = line2;
+      }
+      line[lineLength++] = b;
+    }
+    lineNumber++;
+    tokenize();
+    return true;
+  }
+
+  /**
+   * Split current line into tokens.
+   */
+  private void tokenize()
+  {
+    tokens = 0;
+    int i = 0;
+    while(true)
+    {
+      while(i<lineLength && isDelimiter(line[i])) i++;
+      if(i==lineLength) break;
+      if(tokens==tokenStart.length)
+      {
+        int[] start2 = new int[tokens*2], end2 = new int[tokens*2];
+        System.arraycopy(tokenStart, 0, start2, 0, tokens);
+        System.arraycopy(tokenEnd, 0, end2, 0, tokens);
+        tokenStart = start2;
+        tokenEnd = end2;
+      }
+      tokenStart[tokens] = i;
+      while(i<lineLength && !isDelimiter(line[i])) i++;
+      tokenEnd[tokens++] = i;
+    }
+  }
+
+  /**
+   * Return whether character separates tokens.
+   *
+   * @param b character
+   * @return whether character separates tokens
+   */
+  private boolean isDelimiter(byte b)
+  {
+    return b==' ' || b=='\t' || b=='\r' || delims.indexOf(b)!=-1;
+  }
+
+  /**
+   * Return file offset of current line.
+   *
+   * @return file offset of current line
+   */
+  public long getLineStart()
+  {
+    return lineStart;
+  }
+
+  /**
+   * Return line number of current line, counting from one.
+   *
+   * @return line number of current line
+   */
+  public long getLineNumber()
+  {
+    return lineNumber;
+  }
+
+  //////////////////////////////////////////////////
+  // tokens
+  //
+
+  /**
+   * Return number of tokens on current line.
+   *
+   * @return number of tokens on current line
+   */
+  public int getNumTokens()
+  {
+    return tokens;
+  }
+
+  /**
+   * Return whether token equals given string.
+   *
+   * @param i token index
+   * @param s string to compare
+   * @return whether token equals given string
+   */
+  public boolean tokenEquals(int i, String s)
+  {
+    int start = tokenStart[i], len = tokenEnd[i]-start;
+    if(len!=s.length()) return false;
+    for(int j=0; j<len; j++)
+    {
+      if(line[start+j]!=s.charAt(j)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Return token as a string.
+   *
+   * @param i token index
+   * @return token string
+   */
+  public String getToken(int i)
+  {
+    return new String(line, tokenStart[i], tokenEnd[i]-tokenStart[i]);
+  }
+
+  /**
+   * Return whether token starts like a number.
+   *
+   * @param i token index
+   * @return whether token starts with a digit, sign or decimal point
+   */
+  public boolean isNumeric(int i)
+  {
+    byte b = line[tokenStart[i]];
+    return (b>='0' && b<='9') || b=='-' || b=='+' || b=='.';
+  }
+
+  /**
+   * Parse token as an integer.
+   *
+   * @param i token index
+   * @return integer value
+   * @throws IOException token is not an integer
+   */
+  public int getInt(int i) throws IOException
+  {
+    int start = tokenStart[i], end = tokenEnd[i];
+    boolean neg = line[start]=='-';
+    if(neg || line[start]=='+') start++;
+    if(start==end || end-start>9)
+    {
+      try
+      {
+        return Integer.parseInt(getToken(i));
+      }
+      catch(NumberFormatException e)
+      {
+        throw error("expected integer: "+getToken(i));
+      }
+    }
+    int val = 0;
+    for(int j=start; j<end; j++)
+    {
+      int d = line[j]-'0';
+      if(d<0 || d>9) throw error("expected integer: "+getToken(i));
+      val = val*10+d;
+    }
+    return neg ? -val : val;
+  }
+
+  /**
+   * Parse token as a double. Plain decimals of up to 15 digits are parsed
+   * directly, and exactly; other forms (exponents, longer mantissas) are
+   * left to Double.parseDouble.
+   *
+   * @param i token index
+   * @return double value
+   * @throws IOException token is not a number
+   */
+  public double getDouble(int i) throws IOException
+  {
+    int start = tokenStart[i], end = tokenEnd[i];
+    boolean neg = line[start]=='-';
+    if(neg || line[start]=='+') start++;
+    long mant = 0;
+    int digits = 0, scale = 0;
+    boolean point = false;
+    for(int j=start; j<end; j++)
+    {
+      byte b = line[j];
+      if(b=='.' && !point)
+      {
+        point = true;
+        continue;
+      }
+      int d = b-'0';
+      if(d<0 || d>9 || digits==15) return Double.parseDouble(checkNumber(i));
+      mant = mant*10+d;
+      digits++;
+      if(point) scale++;
+    }
+    if(digits==0) throw error("expected number: "+getToken(i));
+    double val = mant/POW10[scale];
+    return neg ? -val : val;
+  }
+
+  /** powers of ten. */
+  private static final double[] POW10 =
+  {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+    1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+  };
+
+  /**
+   * Return token for library number parsing, or fail if it is not numeric.
+   *
+   * @param i token index
+   * @return token string
+   * @throws IOException token is not a number
+   */
+  private String checkNumber(int i) throws IOException
+  {
+    String s = getToken(i);
+    try
+    {
+      Double.parseDouble(s);
+    }
+    catch(NumberFormatException e)
+    {
+      throw error("expected number: "+s);
+    }
+    return s;
+  }
+
+  /**
+   * Create parse error for current line.
+   *
+   * @param msg error message
+   * @return parse error exception
+   */
+  public IOException error(String msg)
+  {
+    return new IOException("line "+lineNumber+": "+msg);
+  }
+
+} // class: MappedReader
+
@@ -0,0 +1,285 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import jist.runtime.EventTransport;
+import jist.swans.mac.MacAddress;
+import jist.swans.mac.MacMessage;
+import jist.swans.net.NetAddress;
+import jist.swans.net.NetMessage;
+import jist.swans.trans.TransTcp;
+import jist.swans.trans.TransUdp;
+
+import java.io.*;
+
+/**
+ * Event transport serializers for the core SWANS message and address
+ * types: 802.11 frames, IP packets, UDP and TCP segments, byte messages,
+ * and MAC and network addresses. These types are not
+ * <code>Serializable</code>, so they can only be sent over an event
+ * transport link once registered. Payloads of other types are encoded as
+ * any other event argument. SWANS registers them at startup, so that all
+ * linked SWANS engines agree on their tags.
+ *
+ * @since SWANS1.0
+ */
+
+public final class MessageSerializers
+{
+
+  /**
+   * Register serializers with the event transport.
+   */
+  public static void register()
+  {
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MacAddress.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        out.writeInt(((MacAddress)o).getAddr());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        return new MacAddress(in.readInt());
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return NetAddress.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        byte[] b = ((NetAddress)o).getIP().getAddress();
+        out.writeByte(b.length);
+        out.write(b);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        byte[] b = new byte[in.readByte()];
+        in.readFully(b);
+        return new NetAddress(b);
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MessageBytes.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        MessageBytes m = (MessageBytes)o;
+        out.writeInt(m.getLength());
+        out.write(m.getBytes(), m.getOffset(), m.getLength());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new MessageBytes(b);
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MacMessage.Rts.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        MacMessage.Rts m = (MacMessage.Rts)o;
+        EventTransport.writeArg(m.getDst(), out);
+        EventTransport.writeArg(m.getSrc(), out);
+        out.writeInt(m.getDuration());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        MacAddress dst = (MacAddress)EventTransport.readArg(in);
+        MacAddress src = (MacAddress)EventTransport.readArg(in);
+        return new MacMessage.Rts(dst, src, in.readInt());
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MacMessage.Cts.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        MacMessage.Cts m = (MacMessage.Cts)o;
+        EventTransport.writeArg(m.getDst(), out);
+        out.writeInt(m.getDuration());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        MacAddress dst = (MacAddress)EventTransport.readArg(in);
+        return new MacMessage.Cts(dst, in.readInt());
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MacMessage.Ack.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        MacMessage.Ack m = (MacMessage.Ack)o;
+        EventTransport.writeArg(m.getDst(), out);
+        out.writeInt(m.getDuration());
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        MacAddress dst = (MacAddress)EventTransport.readArg(in);
+        return new MacMessage.Ack(dst, in.readInt());
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return MacMessage.Data.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        MacMessage.Data m = (MacMessage.Data)o;
+        EventTransport.writeArg(m.getDst(), out);
+        EventTransport.writeArg(m.getSrc(), out);
+        out.writeInt(m.getDuration());
+        out.writeShort(m.getSeq());
+        out.writeShort(m.getFrag());
+        out.writeBoolean(m.getRetry());
+        EventTransport.writeArg(m.getBody(), out);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        MacAddress dst = (MacAddress)EventTransport.readArg(in);
+        MacAddress src = (MacAddress)EventTransport.readArg(in);
+        int duration = in.readInt();
+        short seq = in.readShort(), frag = in.readShort();
+        boolean retry = in.readBoolean();
+        return new MacMessage.Data(dst, src, duration, seq, frag, false, retry,
+            (Message)EventTransport.readArg(in));
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return NetMessage.Ip.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        NetMessage.Ip m = (NetMessage.Ip)o;
+        EventTransport.writeArg(m.getSrc(), out);
+        EventTransport.writeArg(m.getDst(), out);
+        out.writeShort(m.getProtocol());
+        out.writeByte(m.getPriority());
+        out.writeByte(m.getTTL());
+        out.writeShort(m.getId());
+        out.writeShort(m.getFragOffset());
+        out.writeBoolean(m.isFrozen());
+        NetAddress[] route = m.hasSourceRoute() ? m.getSourceRoute() : null;
+        out.writeInt(route==null ? -1 : route.length);
+        if(route!=null)
+        {
+          for(int i=0; i<route.length; i++)
+          {
+            EventTransport.writeArg(route[i], out);
+          }
+          out.writeInt(m.getSourceRoutePointer());
+        }
+        EventTransport.writeArg(m.getPayload(), out);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        NetAddress src = (NetAddress)EventTransport.readArg(in);
+        NetAddress dst = (NetAddress)EventTransport.readArg(in);
+        short protocol = in.readShort();
+        byte priority = in.readByte(), ttl = in.readByte();
+        short id = in.readShort(), fragOffset = in.readShort();
+        boolean frozen = in.readBoolean();
+        int n = in.readInt();
+        NetMessage.IpOptionSourceRoute srcRoute = null;
+        if(n>=0)
+        {
+          NetAddress[] route = new NetAddress[n];
+          for(int i=0; i<n; i++)
+          {
+            route[i] = (NetAddress)EventTransport.readArg(in);
+          }
+          srcRoute = new NetMessage.IpOptionSourceRoute(route, in.readInt());
+        }
+        NetMessage.Ip m = new NetMessage.Ip((Message)EventTransport.readArg(in),
+            src, dst, protocol, priority, ttl, id, fragOffset);
+        if(srcRoute!=null) m.setSourceRoute(srcRoute);
+        return frozen ? m.freeze() : m;
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return TransUdp.UdpMessage.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        TransUdp.UdpMessage m = (TransUdp.UdpMessage)o;
+        out.writeInt(m.getSrcPort());
+        out.writeInt(m.getDstPort());
+        EventTransport.writeArg(m.getPayload(), out);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        int srcPort = in.readInt(), dstPort = in.readInt();
+        return new TransUdp.UdpMessage(srcPort, dstPort, (Message)EventTransport.readArg(in));
+      }
+    });
+    EventTransport.addSerializer(new EventTransport.Serializer()
+    {
+      public Class getType()
+      {
+        return TransTcp.TcpMessage.class;
+      }
+      public void write(Object o, DataOutputStream out) throws IOException
+      {
+        TransTcp.TcpMessage m = (TransTcp.TcpMessage)o;
+        out.writeShort(m.getSrcPort());
+        out.writeShort(m.getDstPort());
+        out.writeInt(m.getSeqNum());
+        out.writeInt(m.getAckNum());
+        out.writeShort(m.getOffset());
+        out.writeByte((m.getURG() ? 32 : 0) | (m.getACK() ? 16 : 0) | (m.getPSH() ? 8 : 0)
+            | (m.getRST() ? 4 : 0) | (m.getSYN() ? 2 : 0) | (m.getFIN() ? 1 : 0));
+        out.writeShort(m.getWindowSize());
+        EventTransport.writeArg(m.getPayload(), out);
+      }
+      public Object read(DataInputStream in) throws IOException
+      {
+        short srcPort = in.readShort(), dstPort = in.readShort();
+        int seqNum = in.readInt(), ackNum = in.readInt();
+        short offset = in.readShort();
+        byte flags = in.readByte();
+        short windowSize = in.readShort();
+        return new TransTcp.TcpMessage(srcPort, dstPort, seqNum, ackNum, offset,
+            (flags & 32)!=0, (flags & 16)!=0, (flags & 8)!=0,
+            (flags & 4)!=0, (flags & 2)!=0, (flags & 1)!=0,
+            windowSize, (Message)EventTransport.readArg(in));
+      }
+    });
+  }
+
+} // class: MessageSerializers
@@ -0,0 +1,100 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import java.util.Random;
+
+/**
+ * Splittable random number generator (SplitMix64). Each value is a
+ * 64-bit mix of a counter that advances by a fixed odd increment, so the
+ * generator is a single long, is not synchronized, and draws a double in
+ * one step. A generator may be split into a new generator, seeded from its
+ * own output, whose stream is independent for all practical purposes; a
+ * tree of streams is thus determined by a single seed. A generator must
+ * only be used by one thread at a time.
+ *
+ * @since SWANS1.0
+ */
+
+public final class SplitRandom extends Random
+{
+
+  /** counter increment: odd, and golden ratio of 2^64. */
+  private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+  /** 2^-53: scale of 53-bit random doubles. */
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  /** generator state (counter). */
+  private long state;
+
+  /**
+   * Create new generator.
+   *
+   * @param seed initial seed
+   */
+  public SplitRandom(long seed)
+  {
+    super(seed);
+  }
+
+  /**
+   * Split off a new, independent generator. Advances this generator.
+   *
+   * @return new generator
+   */
+  public SplitRandom split()
+  {
+    return new SplitRandom(mix(nextLong() ^ GAMMA));
+  }
+
+  /**
+   * Mix 64 bits (variant 13 of Stafford's mixers).
+   *
+   * @param z input
+   * @return mixed output
+   */
+  private static long mix(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  //////////////////////////////////////////////////
+  // Random overrides
+  //
+
+  /** {@inheritDoc} */
+  public void setSeed(long seed)
+  {
+    // called from Random constructor, before field initializers
+    state = seed;
+  }
+
+  /** {@inheritDoc} */
+  protected int next(int bits)
+  {
+    return (int)(mix(state += GAMMA) >>> (64 - bits));
+  }
+
+  /** {@inheritDoc} */
+  public long nextLong()
+  {
+    return mix(state += GAMMA);
+  }
+
+  /** {@inheritDoc} */
+  public double nextDouble()
+  {
+    return (mix(state += GAMMA) >>> 11) * DOUBLE_UNIT;
+  }
+
+} // class: SplitRandom
+
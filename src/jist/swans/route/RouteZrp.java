@@ -18,6 +18,7 @@ import jist.swans.misc.Timer;
 import jist.swans.Constants;
 
 import jist.runtime.JistAPI;
+import jist.runtime.SimLog;
 
 import org.apache.log4j.Logger;
 
@@ -34,6 +35,9 @@ public class RouteZrp implements RouteInterface.Zrp
   /** logger for ZRP events. */
   public static final Logger logZRP = Logger.getLogger(RouteZrp.class.getName());
 
+  /** simulation log category for routed packets ("zrp"), on if logZRP is at info level. */
+  public static final SimLog.Category traceZRP = SimLog.getCategory("zrp", logZRP);
+
   //////////////////////////////////////////////////
   // data structures
   //
@@ -438,10 +442,7 @@ public class RouteZrp implements RouteInterface.Zrp
   {
     if(!(msg instanceof NetMessage.Ip)) throw new IllegalArgumentException("illegal packet type");
     NetMessage.Ip ip = (NetMessage.Ip)msg;
-    if(logZRP.isInfoEnabled())
-    {
-      logZRP.info("t="+JistAPI.getTime()+" at="+localAddr+" route "+ip);
-    }
+    traceZRP.log("at={} route {}", localAddr, ip);
     NetAddress nextHop = null;
     // compute next hop
     if(iarp.hasRoute(ip.getDst()))
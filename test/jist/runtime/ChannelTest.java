@@ -0,0 +1,73 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import jist.test.Test;
+
+/**
+ * Multi-slot channels shared by several blocking senders.
+ *
+ * @since JIST1.0
+ */
+
+public class ChannelTest extends Test
+{
+
+  /**
+   * Run channel benchmark, with and without continuation threads, and
+   * check its output.
+   *
+   * @param args benchmark parameters
+   * @param expect expected benchmark output
+   * @throws Exception test failure
+   */
+  private static void channel(String[] args, String expect) throws Exception
+  {
+    for(int threads=0; threads<2; threads++)
+    {
+      String[] jargs = new String[args.length+2+threads];
+      jargs[0] = "--nocache";
+      if(threads==1) jargs[1] = "--threads";
+      jargs[1+threads] = "jist.minisim.channel";
+      System.arraycopy(args, 0, jargs, 2+threads, args.length);
+      String out = jist(jargs);
+      check(out.indexOf("Exception")==-1, "failure:\n"+out);
+      check(out.indexOf(expect)!=-1, "unexpected output:\n"+out);
+    }
+  }
+
+  /**
+   * Senders that find the channel full wait in turn, and the data of each
+   * arrives in order.
+   *
+   * @throws Exception test failure
+   */
+  public static void testSenders() throws Exception
+  {
+    channel(new String[] { "-p", "4", "-n", "1000", "-c", "16" },
+        "channel: received=4000 receives=251 ordered=true ");
+    channel(new String[] { "-p", "8", "-n", "100", "-c", "2" },
+        "channel: received=800 receives=401 ordered=true ");
+  }
+
+  /**
+   * Batches larger than the channel enter it in parts, and a blocked
+   * receiver takes all available data at once.
+   *
+   * @throws Exception test failure
+   */
+  public static void testBatches() throws Exception
+  {
+    channel(new String[] { "-p", "10", "-n", "100", "-c", "3", "-b", "7" },
+        "channel: received=1000 receives=332 ordered=true ");
+    channel(new String[] { "-p", "4", "-n", "1000", "-c", "8", "-b", "5" },
+        "channel: received=4000 receives=501 ordered=true ");
+  }
+
+} // class: ChannelTest
@@ -0,0 +1,66 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import jist.test.Test;
+
+/**
+ * Entity unregistration under node churn.
+ *
+ * @since JIST1.0
+ */
+
+public class EntityTest extends Test
+{
+
+  /**
+   * Run churn benchmark, and return its output.
+   *
+   * @param args jist and benchmark parameters
+   * @return benchmark output
+   * @throws Exception test failure
+   */
+  private static String churn(String[] args) throws Exception
+  {
+    String out = jist(args);
+    check(out.indexOf("Exception")==-1, "failure:\n"+out);
+    return out;
+  }
+
+  /**
+   * Slots of departed nodes are reused, and their pending events
+   * discarded.
+   *
+   * @throws Exception test failure
+   */
+  public static void testChurn() throws Exception
+  {
+    String out = churn(new String[] { "--nocache", "jist.minisim.churn", "-n", "2000", "-c", "20000" });
+    check(out.indexOf("live=2004 slots=2004 partitions=1 ")!=-1, "slots not reused:\n"+out);
+    check(out.indexOf("received=2 sent=2 discarded=20 ")!=-1, "events not discarded:\n"+out);
+    out = churn(new String[] { "--nocache", "jist.minisim.churn", "-n", "2000", "-c", "20000", "-k" });
+    check(out.indexOf("live=22004 slots=22004 ")!=-1, "departed nodes not kept:\n"+out);
+    check(out.indexOf("received=22 sent=2 discarded=0 ")!=-1, "events lost:\n"+out);
+  }
+
+  /**
+   * Nodes that leave while blocked in a call do not resume, and leave no
+   * continuation thread behind.
+   *
+   * @throws Exception test failure
+   */
+  public static void testChurnBlocked() throws Exception
+  {
+    String out = churn(new String[] { "--nocache", "jist.minisim.churn", "-n", "2000", "-c", "20000", "-b" });
+    check(out.indexOf("received=2 sent=2 discarded=20 blocked=0")!=-1, "continuations resumed:\n"+out);
+    out = churn(new String[] { "--nocache", "--threads", "jist.minisim.churn", "-n", "2000", "-c", "20000", "-b" });
+    check(out.indexOf("received=2 sent=2 discarded=20 blocked=0")!=-1, "continuation threads leaked:\n"+out);
+  }
+
+} // class: EntityTest
@@ -0,0 +1,64 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.net.ServerSocket;
+import jist.test.Test;
+
+/**
+ * Events between two engines over an event transport link.
+ *
+ * @since JIST1.0
+ */
+
+public class EventTransportTest extends Test
+{
+
+  /**
+   * Exchange events between an accepting and a linking engine; each event
+   * carries a proxy entity of its sender, and both engines end.
+   *
+   * @throws Exception test failure
+   */
+  public static void testLink() throws Exception
+  {
+    ServerSocket s = new ServerSocket(0);
+    final int port = s.getLocalPort();
+    s.close();
+    final String[] accepted = new String[1];
+    Thread t = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          accepted[0] = jist(new String[] { "--nocache", "--accept", ""+port, "jist.minisim.link" });
+        }
+        catch(Exception e)
+        {
+          accepted[0] = e.toString();
+        }
+      }
+    };
+    t.start();
+    String linked = null;
+    for(int i=0; i<20; i++)
+    {
+      Thread.sleep(500);
+      linked = jist(new String[] { "--nocache", "--link", "localhost:"+port, "jist.minisim.link", "-n", "1000" });
+      if(linked.indexOf("ConnectException")==-1) break;
+    }
+    t.join(30000);
+    check(!t.isAlive(), "accepting engine did not end:\n"+linked);
+    String out = linked+accepted[0];
+    check(out.indexOf("link END: received=500 t=999")!=-1, "exchange incomplete:\n"+out);
+    check(out.indexOf("Exception")==-1, "failure:\n"+out);
+  }
+
+} // class: EventTransportTest
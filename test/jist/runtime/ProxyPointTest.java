@@ -0,0 +1,147 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import java.net.*;
+import jist.test.Test;
+
+/**
+ * Data relayed between proxied sockets.
+ *
+ * @since JIST1.0
+ */
+
+public class ProxyPointTest extends Test
+{
+
+  /** bytes sent by client. */
+  private static final int REQUEST_SIZE = 200000;
+
+  /**
+   * Return byte at given offset of test data.
+   *
+   * @param i offset
+   * @return test data byte
+   */
+  private static byte data(int i)
+  {
+    return (byte)(i*31+i/256);
+  }
+
+  /**
+   * Proxied server: reads a request until end-of-stream, checks it, and
+   * replies with its length once the client has half-closed.
+   */
+  private static class Server extends Thread
+  {
+    /** proxied server socket. */
+    private final ServerSocket ss;
+    /** reply sent, or failure. */
+    private String result;
+
+    /**
+     * Create proxied server.
+     *
+     * @param ss proxied server socket
+     */
+    public Server(ServerSocket ss)
+    {
+      this.ss = ss;
+    }
+
+    /** {@inheritDoc} */
+    public void run()
+    {
+      try
+      {
+        Socket s = ss.accept();
+        InputStream in = new BufferedInputStream(s.getInputStream());
+        int n = 0, b;
+        while((b=in.read())!=-1)
+        {
+          if((byte)b!=data(n)) throw new IOException("corrupt byte at "+n);
+          n++;
+        }
+        DataOutputStream out = new DataOutputStream(s.getOutputStream());
+        out.writeInt(n);
+        out.flush();
+        s.close();
+        result = "received="+n;
+      }
+      catch(IOException e)
+      {
+        result = e.toString();
+      }
+    }
+  } // class: Server
+
+  /**
+   * Relay data from a proxied client to a proxied server over loopback; the
+   * server replies after the client has shut down its output.
+   *
+   * @throws Exception test failure
+   */
+  public static void testRelay() throws Exception
+  {
+    final ProxyPoint pp = new ProxyPoint(0);
+    Thread t = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          while(!isInterrupted()) pp.select();
+        }
+        catch(IOException e)
+        {
+          e.printStackTrace();
+        }
+      }
+    };
+    t.start();
+    try
+    {
+      InetAddress proxy = InetAddress.getByName("localhost");
+      ServerSocket ss = new ProxyPoint.ProxyServerSocket(proxy, pp.getPort(), 0);
+      Server server = new Server(ss);
+      server.start();
+      Socket s = new ProxyPoint.ProxyClientSocket(proxy, pp.getPort(),
+          new Node(1).getHost(), ss.getLocalPort());
+      OutputStream out = new BufferedOutputStream(s.getOutputStream());
+      for(int i=0; i<REQUEST_SIZE; i++)
+      {
+        out.write(data(i));
+      }
+      out.flush();
+      s.shutdownOutput();
+      DataInputStream in = new DataInputStream(s.getInputStream());
+      checkEquals(REQUEST_SIZE, in.readInt(), "reply");
+      checkEquals(-1, in.read(), "end of reply");
+      s.close();
+      server.join(10000);
+      checkEquals("received="+REQUEST_SIZE, server.result, "server");
+    }
+    finally
+    {
+      t.interrupt();
+      t.join(10000);
+    }
+    String stats = pp.getStats();
+    for(int i=0; i<20 && stats.indexOf(" active=0 ")==-1; i++)
+    {
+      pp.select();
+      stats = pp.getStats();
+    }
+    pp.close();
+    check(stats.indexOf("listens=1 connects=1 refused=0 relays=1 active=0 ")!=-1, "stats: "+stats);
+    check(stats.indexOf(" bytes="+(REQUEST_SIZE+4)+" ")!=-1, "stats: "+stats);
+  }
+
+} // class: ProxyPointTest
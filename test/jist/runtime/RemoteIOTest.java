@@ -0,0 +1,117 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import jist.test.Test;
+
+/**
+ * Buffered remote output streams.
+ *
+ * @since JIST1.0
+ */
+
+public class RemoteIOTest extends Test
+{
+
+  /**
+   * Return number of live remote output sender threads.
+   *
+   * @return number of sender threads
+   */
+  private static int senders()
+  {
+    Thread[] threads = new Thread[Thread.activeCount()*2+10];
+    int n = Thread.enumerate(threads), senders = 0;
+    for(int i=0; i<n; i++)
+    {
+      if(threads[i].getName().equals("RemoteOutput")) senders++;
+    }
+    return senders;
+  }
+
+  /**
+   * Wait for sender threads to exit.
+   *
+   * @throws InterruptedException interrupted
+   */
+  private static void waitSenders() throws InterruptedException
+  {
+    for(int i=0; i<100 && senders()>0; i++) Thread.sleep(10);
+    checkEquals(0, senders(), "sender threads");
+  }
+
+  /**
+   * Flush transmits buffered output; idle streams hold no thread.
+   *
+   * @throws Exception test failure
+   */
+  public static void testFlush() throws Exception
+  {
+    ByteArrayOutputStream dst = new ByteArrayOutputStream();
+    RemoteIO.RemoteOutputStream out = new RemoteIO.RemoteOutputStream(
+        new RemoteIO.RemoteOutputStreamReceiverLocal(dst));
+    checkEquals(0, senders(), "sender before output");
+    PrintStream ps = new RemoteIO.PrintStreamWithExceptions(out);
+    ps.print("hello");
+    ps.flush();
+    checkEquals("hello", dst.toString(), "flushed output");
+    waitSenders();
+    // large, compressible output
+    StringBuffer sb = new StringBuffer();
+    for(int i=0; i<20000; i++) sb.append("line ").append(i).append('\n');
+    ps.print(sb.toString());
+    ps.flush();
+    checkEquals("hello"+sb, dst.toString(), "large output");
+    waitSenders();
+    // timed hand-off, without flush
+    ps.print("!");
+    for(int i=0; i<100 && dst.size()==sb.length()+5; i++) Thread.sleep(10);
+    checkEquals("hello"+sb+"!", dst.toString(), "timed output");
+    waitSenders();
+    ps.close();
+  }
+
+  /**
+   * Remote failures are raised by the next print.
+   *
+   * @throws Exception test failure
+   */
+  public static void testFailure() throws Exception
+  {
+    OutputStream broken = new OutputStream()
+    {
+      public void write(int b) throws IOException
+      {
+        throw new IOException("broken");
+      }
+    };
+    PrintStream ps = new RemoteIO.PrintStreamWithExceptions(new RemoteIO.RemoteOutputStream(
+          new RemoteIO.RemoteOutputStreamReceiverLocal(broken)));
+    ps.print("x");
+    try
+    {
+      ps.flush();
+      fail("flush failure not reported");
+    }
+    catch(RuntimeException e)
+    {
+    }
+    try
+    {
+      ps.print("y");
+      fail("print failure not reported");
+    }
+    catch(RuntimeException e)
+    {
+    }
+    waitSenders();
+  }
+
+} // class: RemoteIOTest
@@ -0,0 +1,88 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.util.Random;
+import jist.test.Test;
+
+/**
+ * Event queue ordering.
+ *
+ * @since JIST1.0
+ */
+
+public class SchedulerTest extends Test
+{
+
+  /**
+   * Insert and remove events at random, with many equal times, and check
+   * that events leave in time order, and in insertion order for equal
+   * times.
+   *
+   * @param s scheduler to check
+   */
+  private static void order(Scheduler s)
+  {
+    Random r = new Random(1);
+    long id = 0, lastTime = 0, lastId = 0;
+    for(int i=0; i<20000; i++)
+    {
+      if(s.isEmpty() || r.nextInt(3)!=0)
+      {
+        Event ev = new Event();
+        ev.time = lastTime+r.nextInt(50);
+        ev.id = ++id;
+        s.insert(ev);
+      }
+      else
+      {
+        Event ev = s.removeFirst();
+        check(ev.time>lastTime || (ev.time==lastTime && ev.id>lastId),
+            "out of order: "+ev.time+"/"+ev.id+" after "+lastTime+"/"+lastId);
+        lastTime = ev.time;
+        lastId = ev.id;
+      }
+    }
+    checkEquals(s.size(), countAndDrain(s), "size");
+  }
+
+  /**
+   * Remove all events from scheduler.
+   *
+   * @param s scheduler
+   * @return number of events removed
+   */
+  private static int countAndDrain(Scheduler s)
+  {
+    int n = 0;
+    while(!s.isEmpty())
+    {
+      s.removeFirst();
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Heap ordering.
+   */
+  public static void testHeap()
+  {
+    order(new Scheduler.Heap());
+  }
+
+  /**
+   * Calendar queue ordering.
+   */
+  public static void testCalendar()
+  {
+    order(new Scheduler.Calendar(1000, 16));
+  }
+
+} // class: SchedulerTest
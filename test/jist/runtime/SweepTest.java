@@ -0,0 +1,176 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.*;
+import jist.test.Test;
+
+/**
+ * Parameter sweep on local job slots.
+ *
+ * @since JIST1.0
+ */
+
+public class SweepTest extends Test
+{
+
+  /**
+   * Sweep simulation: prints its two arguments and their product.
+   */
+  public static class Sim
+  {
+    /**
+     * Simulation entry point.
+     *
+     * @param args command-line parameters: -a value -s seed
+     */
+    public static void main(String[] args)
+    {
+      int a = Integer.parseInt(args[1]), s = Integer.parseInt(args[3]);
+      System.out.println(a+" "+s+" "+(a*s));
+    }
+  } // class: Sim
+
+  /**
+   * Sweep simulation that fails at a = 2, with an error that escapes the
+   * simulation runtime.
+   */
+  public static class FailingSim
+  {
+    /**
+     * Simulation entry point.
+     *
+     * @param args command-line parameters: -a value -s seed
+     */
+    public static void main(String[] args)
+    {
+      if(Integer.parseInt(args[1])==2) throw new InternalError("failing point");
+      Sim.main(args);
+    }
+  } // class: FailingSim
+
+  /**
+   * Read file.
+   *
+   * @param f file to read
+   * @return file contents
+   * @throws IOException unable to read file
+   */
+  private static String read(File f) throws IOException
+  {
+    BufferedReader r = new BufferedReader(new FileReader(f));
+    StringBuffer sb = new StringBuffer();
+    String line;
+    while((line=r.readLine())!=null) sb.append(line).append('\n');
+    r.close();
+    return sb.toString();
+  }
+
+  /**
+   * Run sweep in given number of slots, and check results and progress.
+   *
+   * @param slots number of local job slots
+   * @throws Exception test failure
+   */
+  private static void sweep(int slots) throws Exception
+  {
+    File cache = File.createTempFile("jistsweep", null);
+    cache.delete();
+    File table = File.createTempFile("jistsweep", null);
+    table.deleteOnExit();
+    File f = tempFile(
+        "sim = "+Sim.class.getName()+"\n"
+        +"param.1 = -a 1 2 3\n"
+        +"replications = 4\n"
+        +"seed = -s\n"
+        +"cache = "+cache.getPath().replace('\\', '/')+"\n"
+        +"output = "+table.getPath().replace('\\', '/')+"\n");
+    String out = jist(new String[] { "--nocache", "-k", Integer.toString(slots), "--sweep", f.getPath() });
+    // progress on console, and not in job output
+    check(out.indexOf("** Sweep: 3 points x 4 replications; 0 cached, 12 queued.")!=-1, "no progress:\n"+out);
+    check(out.indexOf("** Sweep: 12/12 runs done.")!=-1, "no progress:\n"+out);
+    File[] results = cache.listFiles();
+    checkEquals(12, results.length, "cached results:\n"+out);
+    for(int i=0; i<results.length; i++)
+    {
+      String job = read(results[i]);
+      check(job.indexOf("** Sweep")==-1, "progress in job output:\n"+job);
+      results[i].delete();
+    }
+    cache.delete();
+    // mean of a*s over s=0..3 is 1.5a
+    String s = read(table);
+    check(s.indexOf("\n3\t4\t3.0\t0.0\t1.5\t")!=-1 && s.indexOf("\t4.5\t")!=-1, "table:\n"+s);
+  }
+
+  /**
+   * Run sweep with a failing point in given number of slots: the failure
+   * is reported, and the other points complete.
+   *
+   * @param slots number of local job slots
+   * @throws Exception test failure
+   */
+  private static void sweepFailure(int slots) throws Exception
+  {
+    File cache = File.createTempFile("jistsweep", null);
+    cache.delete();
+    File table = File.createTempFile("jistsweep", null);
+    table.deleteOnExit();
+    File f = tempFile(
+        "sim = "+FailingSim.class.getName()+"\n"
+        +"param.1 = -a 1 2 3\n"
+        +"replications = 1\n"
+        +"seed = -s\n"
+        +"cache = "+cache.getPath().replace('\\', '/')+"\n"
+        +"output = "+table.getPath().replace('\\', '/')+"\n");
+    String out = jist(new String[] { "--nocache", "-k", Integer.toString(slots), "--sweep", f.getPath() });
+    check(out.indexOf("** Sweep: run failed: "+FailingSim.class.getName()+" -a 2 -s 0: java.lang.InternalError: failing point")!=-1,
+        "failure not reported:\n"+out);
+    check(out.indexOf("** Sweep: 3/3 runs done.")!=-1, "sweep incomplete:\n"+out);
+    File[] results = cache.listFiles();
+    checkEquals(2, results.length, "cached results:\n"+out);
+    for(int i=0; i<results.length; i++)
+    {
+      results[i].delete();
+    }
+    cache.delete();
+  }
+
+  /**
+   * Single local slot: jobs redirect System.out.
+   *
+   * @throws Exception test failure
+   */
+  public static void testSweepOneSlot() throws Exception
+  {
+    sweep(1);
+  }
+
+  /**
+   * Several local slots: per-thread output.
+   *
+   * @throws Exception test failure
+   */
+  public static void testSweepSlots() throws Exception
+  {
+    sweep(2);
+  }
+
+  /**
+   * Failing runs are reported, rather than waited for.
+   *
+   * @throws Exception test failure
+   */
+  public static void testSweepFailure() throws Exception
+  {
+    sweepFailure(1);
+    sweepFailure(2);
+  }
+
+} // class: SweepTest
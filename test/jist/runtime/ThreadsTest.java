@@ -0,0 +1,69 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import jist.test.Test;
+
+/**
+ * Blocking calls with continuations and with continuation threads.
+ *
+ * @since JIST1.0
+ */
+
+public class ThreadsTest extends Test
+{
+
+  /**
+   * Run continuation benchmark to completion.
+   *
+   * @param threads whether to use continuation threads
+   * @throws Exception test failure
+   */
+  private static void cont(boolean threads) throws Exception
+  {
+    String[] args = threads
+      ? new String[] { "--nocache", "--threads", "jist.minisim.cont", "-m", "int", "-n", "1000" }
+      : new String[] { "--nocache", "jist.minisim.cont", "-m", "int", "-n", "1000" };
+    String out = jist(args);
+    check(out.indexOf("benchmark END")!=-1, "benchmark incomplete:\n"+out);
+  }
+
+  /**
+   * Blocking calls with continuations.
+   *
+   * @throws Exception test failure
+   */
+  public static void testContinuations() throws Exception
+  {
+    cont(false);
+  }
+
+  /**
+   * Blocking calls with continuation threads.
+   *
+   * @throws Exception test failure
+   */
+  public static void testThreads() throws Exception
+  {
+    cont(true);
+  }
+
+  /**
+   * SWANS sockets with continuation threads: application main is called
+   * reflectively, and socket calls go through entity proxies.
+   *
+   * @throws Exception test failure
+   */
+  public static void testThreadsTcp() throws Exception
+  {
+    String out = jist(new String[] { "--nocache", "--threads", "jist.swans.Main", "driver.tcp", "10000" });
+    check(out.indexOf("All 10000 bytes match")!=-1, "tcp transfer failed:\n"+out);
+  }
+
+} // class: ThreadsTest
@@ -0,0 +1,116 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import java.util.Arrays;
+import java.util.Random;
+import jist.swans.misc.SplitRandom;
+import jist.test.Test;
+
+/**
+ * Table-driven fading follows the distribution of the model it tabulates.
+ *
+ * @since SWANS1.0
+ */
+
+public class FadingTest extends Test
+{
+
+  /** number of draws per sample. */
+  private static final int NUM = 100000;
+
+  /** Kolmogorov-Smirnov critical value coefficient, at 0.1% significance. */
+  private static final double KS_COEFFICIENT = 1.949;
+
+  /**
+   * Draw sorted sample of fading losses, each no larger than the largest
+   * gain of the model.
+   *
+   * @param fading fading model
+   * @param random random number generator
+   * @return sorted sample
+   */
+  private static double[] sample(Fading.Stream fading, Random random)
+  {
+    double[] x = new double[NUM];
+    double max = fading.getMaxGain();
+    for(int i=0; i<NUM; i++)
+    {
+      x[i] = fading.compute(random);
+      check(x[i]<=max, "draw "+x[i]+" above largest gain "+max);
+    }
+    Arrays.sort(x);
+    return x;
+  }
+
+  /**
+   * Compute two-sample Kolmogorov-Smirnov statistic: the largest
+   * difference between the empirical distribution functions.
+   *
+   * @param x first sorted sample
+   * @param y second sorted sample
+   * @return Kolmogorov-Smirnov statistic
+   */
+  private static double ks(double[] x, double[] y)
+  {
+    int i = 0, j = 0;
+    double d = 0;
+    while(i<x.length && j<y.length)
+    {
+      double v = Math.min(x[i], y[j]);
+      while(i<x.length && x[i]<=v) i++;
+      while(j<y.length && y[j]<=v) j++;
+      d = Math.max(d, Math.abs((double)i/x.length - (double)j/y.length));
+    }
+    return d;
+  }
+
+  /**
+   * Check that table and exact draws of given model pass the two-sample
+   * Kolmogorov-Smirnov test.
+   *
+   * @param model Rayleigh or Rician fading model
+   * @param seed random seed
+   */
+  private static void checkTable(Fading.Stream model, long seed)
+  {
+    Fading.Table table = new Fading.Table(model);
+    double[] x = sample(model, new SplitRandom(seed));
+    double[] y = sample(table, new SplitRandom(seed+1));
+    double d = ks(x, y), critical = KS_COEFFICIENT * Math.sqrt(2.0 / NUM);
+    check(d<critical, model.getClass().getName()+": D="+d+" critical="+critical);
+  }
+
+  /**
+   * Table-driven Rayleigh and Rician fading.
+   */
+  public static void testTableDistribution()
+  {
+    checkTable(new Fading.Rayleigh(), 1);
+    checkTable(new Fading.Rician(0.5), 2);
+    checkTable(new Fading.Rician(4), 3);
+    checkTable(new Fading.Rician(20), 4);
+  }
+
+  /**
+   * Tables only accept models they can tabulate.
+   */
+  public static void testTableModel()
+  {
+    try
+    {
+      new Fading.Table(new Fading.None());
+      fail("table of no fading");
+    }
+    catch(IllegalArgumentException e)
+    {
+    }
+  }
+
+} // class: FadingTest
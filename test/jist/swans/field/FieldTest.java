@@ -0,0 +1,141 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import jist.swans.Constants;
+import jist.swans.radio.RadioInfo;
+import jist.swans.misc.Location;
+import jist.swans.misc.Util;
+import jist.test.Test;
+
+/**
+ * Field propagation ranges bound the signal at every receiver, and fields
+ * seed fading streams only when needed.
+ *
+ * @since SWANS1.0
+ */
+
+public class FieldTest extends Test
+{
+
+  /** propagation limit (in dBm). */
+  private static final double LIMIT = Constants.PROPAGATION_LIMIT_DEFAULT;
+
+  /**
+   * Field with given antenna gain and height bounds.
+   */
+  private static class BoundedField extends Field
+  {
+    /**
+     * Create field with given path loss model.
+     *
+     * @param pathloss path loss model
+     */
+    public BoundedField(PathLoss pathloss)
+    {
+      super(new Spatial.LinearList(new Location.Location2D(1000, 1000)),
+          new Fading.None(), pathloss, null, LIMIT);
+    }
+
+    /**
+     * Set largest antenna gain and height on field, and discard cached
+     * ranges.
+     *
+     * @param gain largest antenna gain (in dB)
+     * @param height largest antenna height (in meters)
+     */
+    public void setBounds(double gain, float height)
+    {
+      maxGain = gain;
+      maxHeight = height;
+      ranges.clear();
+    }
+
+    /**
+     * Return propagation range.
+     *
+     * @param info transmitting radio information
+     * @param power transmit power (in dBm)
+     * @return propagation range (in meters)
+     */
+    public double range(RadioInfo info, double power)
+    {
+      return computeRange(info, power, LIMIT);
+    }
+  } // class: BoundedField
+
+  /**
+   * Create radio information with given antenna gain.
+   *
+   * @param gain antenna gain (in dB)
+   * @return radio information
+   */
+  private static RadioInfo radio(double gain)
+  {
+    return new RadioInfo(null, RadioInfo.createShared(
+        Constants.FREQUENCY_DEFAULT, Constants.BANDWIDTH_DEFAULT,
+        Constants.TRANSMIT_DEFAULT, gain,
+        Util.fromDB(Constants.SENSITIVITY_DEFAULT), Util.fromDB(Constants.THRESHOLD_DEFAULT),
+        Constants.TEMPERATURE_DEFAULT, Constants.TEMPERATURE_FACTOR_DEFAULT,
+        Constants.AMBIENT_NOISE_DEFAULT));
+  }
+
+  /**
+   * Check that a receiver of given gain and height is above the limit just
+   * inside the range of a transmitter, and below it just outside.
+   *
+   * @param pathloss path loss model
+   * @param txGain transmitter antenna gain (in dB)
+   * @param rxGain receiver antenna gain (in dB)
+   * @param height antenna height of both radios (in meters)
+   * @param power transmit power (in dBm)
+   */
+  private static void checkRange(PathLoss pathloss, double txGain, double rxGain, float height, double power)
+  {
+    BoundedField field = new BoundedField(pathloss);
+    field.setBounds(Math.max(txGain, rxGain), height);
+    RadioInfo tx = radio(txGain), rx = radio(rxGain);
+    double range = field.range(tx, power);
+    String msg = "tx gain="+txGain+" rx gain="+rxGain+" height="+height+" range="+range;
+    Location origin = new Location.Location2D(0, 0, height);
+    double inside = power - pathloss.compute(tx, origin, rx, new Location.Location2D((float)(range*0.97), 0, height));
+    double outside = power - pathloss.compute(tx, origin, rx, new Location.Location2D((float)(range*1.03), 0, height));
+    check(inside>=LIMIT, "receiver inside range below limit: "+msg);
+    check(outside<LIMIT, "receiver outside range above limit: "+msg);
+  }
+
+  /**
+   * Ranges account for the largest receiver gain and antenna height.
+   */
+  public static void testRangeGainHeight()
+  {
+    PathLoss free = new PathLoss.FreeSpace(), tworay = new PathLoss.TwoRay();
+    checkRange(free, 0, 0, 1.5f, 15);
+    checkRange(free, 0, 10, 1.5f, 15);
+    checkRange(free, 5, 10, 1.5f, 15);
+    checkRange(tworay, 0, 0, 1.5f, 15);
+    checkRange(tworay, 0, 10, 1.5f, 15);
+    checkRange(tworay, 0, 0, 10, 15);
+    checkRange(tworay, 3, 10, 30, 15);
+  }
+
+  /**
+   * Fields without random fading do not draw from the global random number
+   * generator, so that they leave seeded simulations unchanged.
+   */
+  public static void testSeedLazy()
+  {
+    Constants.random.setSeed(5);
+    long expected = Constants.random.nextLong();
+    Constants.random.setSeed(5);
+    new BoundedField(new PathLoss.FreeSpace());
+    checkEquals(expected, Constants.random.nextLong(), "global random drawn");
+  }
+
+} // class: FieldTest
@@ -0,0 +1,244 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.field;
+
+import java.util.Random;
+import jist.swans.radio.RadioInfo;
+import jist.swans.radio.RadioInterface;
+import jist.swans.misc.Location;
+import jist.swans.misc.Message;
+import jist.test.Test;
+
+/**
+ * Spatial structures find every radio in range, under additions, moves
+ * and removals.
+ *
+ * @since SWANS1.0
+ */
+
+public class SpatialTest extends Test
+{
+
+  /** field size. */
+  private static final float SIZE = 1000;
+
+  /** propagation range of test visitor. */
+  private static final double RANGE = 120;
+
+  /**
+   * Test radio: only identifies itself.
+   */
+  private static class Radio implements RadioInterface
+  {
+    /** radio index. */
+    private final int id;
+
+    /**
+     * Create test radio.
+     *
+     * @param id radio index
+     */
+    public Radio(int id)
+    {
+      this.id = id;
+    }
+
+    /** {@inheritDoc} */
+    public void transmit(Message msg, long delay, long duration) { }
+    /** {@inheritDoc} */
+    public void endTransmit() { }
+    /** {@inheritDoc} */
+    public void receive(Message msg, Double power, Long duration) { }
+    /** {@inheritDoc} */
+    public void endReceive(Double power) { }
+    /** {@inheritDoc} */
+    public void setSleepMode(boolean sleep) { }
+  } // class: Radio
+
+  /**
+   * Radio identifier.
+   */
+  private static class Unique extends RadioInfo.RadioInfoUnique
+  {
+    /**
+     * Create radio identifier.
+     *
+     * @param id radio index
+     */
+    public Unique(int id)
+    {
+      this.id = new Integer(id);
+    }
+  } // class: Unique
+
+  /**
+   * Transmission visitor with fixed range: marks radios in range.
+   */
+  private static class Visitor implements Spatial.SpatialRangeVisitor, Spatial.SpatialVisitor
+  {
+    /** radios in range, or visited. */
+    private boolean[] seen;
+
+    /** number of radios marked twice. */
+    private int twice;
+
+    /**
+     * Create visitor.
+     *
+     * @param n number of radios
+     */
+    public Visitor(int n)
+    {
+      seen = new boolean[n];
+    }
+
+    /** {@inheritDoc} */
+    public double computeRange(RadioInfo srcInfo, double limit)
+    {
+      return RANGE;
+    }
+
+    /** {@inheritDoc} */
+    public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dst)
+    {
+      return 0;
+    }
+
+    /** {@inheritDoc} */
+    public void visitTransmit(RadioInfo srcInfo, Location srcLoc,
+        RadioInfo dstInfo, RadioInterface dstEntity, Location dstLoc,
+        Message msg, Long durationObj)
+    {
+      if(srcLoc.distance(dstLoc)<=RANGE) mark(((Radio)dstEntity).id);
+    }
+
+    /** {@inheritDoc} */
+    public void visit(Field.RadioData dst)
+    {
+      mark(((Radio)dst.entity).id);
+    }
+
+    /**
+     * Mark radio.
+     *
+     * @param i radio index
+     */
+    private void mark(int i)
+    {
+      if(seen[i]) twice++;
+      seen[i] = true;
+    }
+  } // class: Visitor
+
+  /**
+   * Random location inside field.
+   *
+   * @param r random number generator
+   * @return random location
+   */
+  private static Location random(Random r)
+  {
+    return new Location.Location2D(r.nextFloat()*SIZE*0.999f, r.nextFloat()*SIZE*0.999f);
+  }
+
+  /**
+   * Check spatial structure against brute force, as radios come, move and
+   * go.
+   *
+   * @param s spatial structure to check
+   */
+  private static void check(Spatial s)
+  {
+    Random r = new Random(9);
+    int n = 500;
+    Field.RadioData[] radios = new Field.RadioData[n];
+    boolean[] present = new boolean[n];
+    for(int i=0; i<n; i++)
+    {
+      radios[i] = new Field.RadioData();
+      radios[i].entity = new Radio(i);
+      radios[i].info = new RadioInfo(new Unique(i), null);
+      radios[i].loc = random(r);
+      s.add(radios[i]);
+      present[i] = true;
+    }
+    for(int step=0; step<2000; step++)
+    {
+      int i = r.nextInt(n);
+      switch(r.nextInt(4))
+      {
+        case 0:
+          if(present[i]) s.del(radios[i]); else s.add(radios[i]);
+          present[i] = !present[i];
+          break;
+        case 1:
+          if(!present[i]) break;
+          s.del(radios[i]);
+          radios[i].loc = random(r);
+          s.add(radios[i]);
+          break;
+        default:
+          if(!present[i]) break;
+          Location near = radios[i].loc;
+          Location to = new Location.Location2D(
+              Math.min(SIZE*0.999f, Math.max(0, near.getX()+r.nextFloat()*20-10)),
+              Math.min(SIZE*0.999f, Math.max(0, near.getY()+r.nextFloat()*20-10)));
+          s.moveInside(radios[i], to);
+      }
+      if(step%50!=0) continue;
+      // transmit from random present radio
+      int src = r.nextInt(n);
+      if(!present[src]) continue;
+      Visitor v = new Visitor(n);
+      s.visitTransmit(v, null, radios[src].loc, null, null, 0);
+      checkEquals(0, v.twice, "visited twice");
+      for(int j=0; j<n; j++)
+      {
+        boolean inRange = present[j] && radios[src].loc.distance(radios[j].loc)<=RANGE;
+        check(v.seen[j]==inRange, "radio "+j+(inRange ? " missed" : " wrongly in range")+" at step "+step);
+      }
+      // visit all
+      v = new Visitor(n);
+      s.visit(v);
+      checkEquals(0, v.twice, "visited twice");
+      for(int j=0; j<n; j++) check(v.seen[j]==present[j], "radio "+j+" at step "+step);
+    }
+  }
+
+  /** LinearList. */
+  public static void testLinearList()
+  {
+    check(new Spatial.LinearList(new Location.Location2D(SIZE, SIZE)));
+  }
+
+  /** Packed. */
+  public static void testPacked()
+  {
+    check(new Spatial.Packed(new Location.Location2D(SIZE, SIZE)));
+  }
+
+  /** Grid. */
+  public static void testGrid()
+  {
+    check(new Spatial.Grid(new Location.Location2D(SIZE, SIZE), 16));
+  }
+
+  /** HierGrid. */
+  public static void testHierGrid()
+  {
+    check(new Spatial.HierGrid(new Location.Location2D(SIZE, SIZE), 4));
+  }
+
+  /** KDTree. */
+  public static void testKDTree()
+  {
+    check(new Spatial.KDTree(new Location.Location2D(SIZE, SIZE), 8));
+  }
+
+} // class: SpatialTest
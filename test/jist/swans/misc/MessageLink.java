@@ -0,0 +1,124 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import jist.runtime.Controller;
+import jist.runtime.EventTransport;
+import jist.runtime.JistAPI;
+import jist.swans.mac.MacAddress;
+import jist.swans.mac.MacMessage;
+import jist.swans.net.NetAddress;
+import jist.swans.net.NetMessage;
+import jist.swans.trans.TransTcp;
+import jist.swans.trans.TransUdp;
+
+/**
+ * Linked SWANS simulation: the accepting engine publishes a receiver,
+ * and the linking engine sends it a MAC frame and a TCP segment.
+ *
+ * @since SWANS1.0
+ */
+
+public class MessageLink
+{
+
+  /**
+   * Linked entity proxy interface.
+   */
+  public interface Receiver extends JistAPI.Proxiable
+  {
+    /**
+     * Receive message from remote engine.
+     *
+     * @param msg message
+     * @param last whether this is the last message
+     */
+    void receive(Message msg, boolean last);
+  }
+
+  /**
+   * Describe message, with its nested payloads.
+   *
+   * @param msg message
+   * @return message description
+   */
+  public static String describe(Message msg)
+  {
+    if(msg instanceof MacMessage.Data)
+    {
+      MacMessage.Data m = (MacMessage.Data)msg;
+      return "mac(dst="+m.getDst()+" src="+m.getSrc()+" dur="+m.getDuration()
+        +" seq="+m.getSeq()+" frag="+m.getFrag()+" retry="+m.getRetry()
+        +" body="+describe(m.getBody())+")";
+    }
+    if(msg instanceof NetMessage.Ip)
+    {
+      NetMessage.Ip m = (NetMessage.Ip)msg;
+      return "ip(src="+m.getSrc()+" dst="+m.getDst()+" prot="+m.getProtocol()
+        +" ttl="+m.getTTL()+" id="+m.getId()+" frozen="+m.isFrozen()
+        +" route="+(m.hasSourceRoute() ? m.getSourceRoutePointer()+":"+m.getSourceRoute().length : "-")
+        +" data="+describe(m.getPayload())+")";
+    }
+    if(msg instanceof TransUdp.UdpMessage)
+    {
+      TransUdp.UdpMessage m = (TransUdp.UdpMessage)msg;
+      return "udp("+m.getSrcPort()+">"+m.getDstPort()+" data="+describe(m.getPayload())+")";
+    }
+    if(msg instanceof MessageBytes)
+    {
+      MessageBytes m = (MessageBytes)msg;
+      return "'"+new String(m.getBytes(), m.getOffset(), m.getLength())+"'";
+    }
+    return String.valueOf(msg);
+  }
+
+  /**
+   * Linked entity: prints the messages it receives.
+   */
+  public static class Node implements Receiver
+  {
+    /** {@inheritDoc} */
+    public void receive(Message msg, boolean last)
+    {
+      System.out.println("received "+describe(msg));
+      if(last)
+      {
+        JistAPI.end();
+      }
+    }
+  }
+
+  /**
+   * Simulation entry point.
+   *
+   * @param args command-line parameters: none to receive, or "send"
+   */
+  public static void main(String[] args)
+  {
+    EventTransport transport = Controller.getActiveController().getTransport();
+    Receiver self = (Receiver)JistAPI.proxy(new Node(), Receiver.class);
+    transport.setRoot(self);
+    if(args.length==0) return;
+    Receiver remote = (Receiver)transport.getLinks()[0].getRoot();
+    Message udp = new TransUdp.UdpMessage(7, 9, new MessageBytes("hello"));
+    NetMessage.Ip ip = new NetMessage.Ip(udp, NetAddress.LOCAL, new NetAddress(2),
+        (short)17, (byte)1, (byte)64, (short)5, (short)0);
+    ip.setSourceRoute(new NetMessage.IpOptionSourceRoute(
+          new NetAddress[] { new NetAddress(3), new NetAddress(2) }, 1));
+    Message data = new MacMessage.Data(new MacAddress(2), new MacAddress(1), 44,
+        (short)3, (short)0, false, true, ip.freeze());
+    Message tcp = new TransTcp.TcpMessage((short)80, (short)81, 100, 200, (short)0,
+        false, true, false, false, true, false, (short)512, new MessageBytes("syn"));
+    System.out.println("sent "+describe(data));
+    System.out.println("sent "+describe(tcp));
+    remote.receive(data, false);
+    remote.receive(tcp, true);
+  }
+
+} // class: MessageLink
@@ -0,0 +1,76 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import java.net.ServerSocket;
+import jist.test.Test;
+
+/**
+ * SWANS messages sent over an event transport link.
+ *
+ * @since SWANS1.0
+ */
+
+public class MessageSerializersTest extends Test
+{
+
+  /**
+   * Send a MAC frame carrying an IP packet, and a TCP segment, between
+   * two SWANS engines; both arrive intact.
+   *
+   * @throws Exception test failure
+   */
+  public static void testLink() throws Exception
+  {
+    ServerSocket s = new ServerSocket(0);
+    final int port = s.getLocalPort();
+    s.close();
+    final String[] accepted = new String[1];
+    Thread t = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          accepted[0] = jist(new String[] { "--nocache", "--accept", ""+port,
+            "jist.swans.Main", MessageLink.class.getName() });
+        }
+        catch(Exception e)
+        {
+          accepted[0] = e.toString();
+        }
+      }
+    };
+    t.start();
+    String linked = null;
+    for(int i=0; i<20; i++)
+    {
+      Thread.sleep(500);
+      linked = jist(new String[] { "--nocache", "--link", "localhost:"+port,
+        "jist.swans.Main", MessageLink.class.getName(), "send" });
+      if(linked.indexOf("ConnectException")==-1) break;
+    }
+    t.join(30000);
+    check(!t.isAlive(), "accepting engine did not end:\n"+linked);
+    String out = linked+accepted[0];
+    check(out.indexOf("Exception")==-1, "failure:\n"+out);
+    String[] lines = linked.split("\n");
+    int sent = 0;
+    for(int i=0; i<lines.length; i++)
+    {
+      if(!lines[i].startsWith("sent ")) continue;
+      sent++;
+      String msg = lines[i].substring("sent ".length()).trim();
+      check(accepted[0].indexOf("received "+msg)!=-1, "message not received intact: "+msg+"\n"+out);
+    }
+    checkEquals(2, sent, "messages sent:\n"+out);
+    check(linked.indexOf("route=1:2 data=udp(7>9 data='hello')")!=-1, "message description:\n"+linked);
+  }
+
+} // class: MessageSerializersTest
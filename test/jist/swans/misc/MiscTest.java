@@ -0,0 +1,192 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.misc;
+
+import java.io.*;
+import java.util.Random;
+import jist.test.Test;
+
+/**
+ * Random streams, trace file reader and fan-out pool.
+ *
+ * @since SWANS1.0
+ */
+
+public class MiscTest extends Test
+{
+
+  //////////////////////////////////////////////////
+  // SplitRandom
+  //
+
+  /**
+   * Same seed gives same stream; split streams differ.
+   */
+  public static void testSplitRandomStreams()
+  {
+    SplitRandom r1 = new SplitRandom(7), r2 = new SplitRandom(7);
+    for(int i=0; i<100; i++)
+    {
+      checkEquals(r1.nextLong(), r2.nextLong(), "same seed");
+    }
+    SplitRandom s1 = r1.split(), s2 = r1.split();
+    int same = 0;
+    for(int i=0; i<100; i++)
+    {
+      if(s1.nextLong()==s2.nextLong()) same++;
+    }
+    checkEquals(0, same, "split streams overlap");
+  }
+
+  /**
+   * Uniform doubles and integers: range, mean and variance.
+   */
+  public static void testSplitRandomUniform()
+  {
+    SplitRandom r = new SplitRandom(3);
+    int n = 100000;
+    double sum = 0, sum2 = 0;
+    for(int i=0; i<n; i++)
+    {
+      double x = r.nextDouble();
+      check(x>=0 && x<1, "out of range: "+x);
+      sum += x;
+      sum2 += x*x;
+    }
+    double mean = sum/n, var = sum2/n-mean*mean;
+    checkClose(0.5, mean, 0.005, "mean");
+    checkClose(1.0/12, var, 0.002, "variance");
+    int[] bins = new int[10];
+    for(int i=0; i<n; i++) bins[r.nextInt(10)]++;
+    for(int i=0; i<bins.length; i++) checkClose(n/10, bins[i], n/100, "nextInt bin "+i);
+  }
+
+  //////////////////////////////////////////////////
+  // MappedReader
+  //
+
+  /**
+   * Tokens, numbers, line numbers and seeking.
+   *
+   * @throws IOException test failure
+   */
+  public static void testMappedReader() throws IOException
+  {
+    File f = tempFile("$node_(3) set X_ 12.5\n\n  at 7 -42 1e3 \r\nlast:0.125");
+    MappedReader r = new MappedReader(f, ":");
+    check(r.nextLine(), "line 1");
+    checkEquals(4, r.getNumTokens(), "tokens");
+    check(r.tokenEquals(1, "set"), "token equals");
+    check(!r.tokenEquals(1, "se"), "token prefix");
+    checkEquals("$node_(3)", r.getToken(0), "token");
+    checkClose(12.5, r.getDouble(3), 0, "double");
+    long second = r.getPosition();
+    check(r.nextLine(), "line 2");
+    checkEquals(0, r.getNumTokens(), "empty line");
+    check(r.nextLine(), "line 3");
+    checkEquals(3, r.getLineNumber(), "line number");
+    checkEquals(7, r.getInt(1), "int");
+    checkEquals(-42, r.getInt(2), "negative int");
+    checkClose(1000, r.getDouble(3), 0, "exponent");
+    check(r.isNumeric(2) && !r.isNumeric(0), "numeric");
+    try
+    {
+      r.getInt(0);
+      fail("no parse error");
+    }
+    catch(IOException e)
+    {
+      check(e.getMessage().startsWith("line 3:"), "error line: "+e.getMessage());
+    }
+    check(r.nextLine(), "line 4");
+    checkEquals("last", r.getToken(0), "delimiter");
+    checkClose(0.125, r.getDouble(1), 0, "fraction");
+    check(!r.nextLine(), "end of file");
+    r.seek(second, 1);
+    check(r.nextLine() && r.nextLine(), "after seek");
+    checkEquals(3, r.getLineNumber(), "line number after seek");
+    checkEquals("at", r.getToken(0), "token after seek");
+    r.close();
+  }
+
+  /**
+   * Direct decimal parsing agrees with the library.
+   *
+   * @throws IOException test failure
+   */
+  public static void testMappedReaderDoubles() throws IOException
+  {
+    Random random = new Random(11);
+    StringBuffer sb = new StringBuffer();
+    String[] values = new String[2000];
+    for(int i=0; i<values.length; i++)
+    {
+      long mant = random.nextLong() % 100000000000000000L;
+      int scale = random.nextInt(12);
+      StringBuffer v = new StringBuffer(Long.toString(Math.abs(mant)));
+      while(v.length()<=scale) v.insert(0, '0');
+      v.insert(v.length()-scale, '.');
+      if(mant<0) v.insert(0, '-');
+      values[i] = v.toString();
+      sb.append(values[i]).append('\n');
+    }
+    MappedReader r = new MappedReader(tempFile(sb.toString()), "");
+    for(int i=0; i<values.length; i++)
+    {
+      check(r.nextLine(), "line "+i);
+      checkClose(Double.parseDouble(values[i]), r.getDouble(0), 0, values[i]);
+    }
+    r.close();
+  }
+
+  //////////////////////////////////////////////////
+  // FanOut
+  //
+
+  /**
+   * Every item is processed once, for several tasks in sequence, and
+   * failures reach the caller.
+   */
+  public static void testFanOut()
+  {
+    FanOut pool = new FanOut(3, 7);
+    checkEquals(3, pool.getThreads(), "threads");
+    checkEquals(15, pool.getChunks(100), "chunks");
+    for(int n=0; n<300; n+=37)
+    {
+      final int[] count = new int[n];
+      pool.run(new FanOut.Task()
+      {
+        public void run(int chunk, int from, int to)
+        {
+          checkEquals(chunk*7, from, "chunk start");
+          for(int i=from; i<to; i++) count[i]++;
+        }
+      }, n);
+      for(int i=0; i<n; i++) checkEquals(1, count[i], "item "+i+" of "+n);
+    }
+    try
+    {
+      pool.run(new FanOut.Task()
+      {
+        public void run(int chunk, int from, int to)
+        {
+          if(chunk==5) throw new IllegalStateException("chunk 5");
+        }
+      }, 100);
+      fail("failure lost");
+    }
+    catch(RuntimeException e)
+    {
+      check(e.toString().indexOf("chunk 5")!=-1, "wrong failure: "+e);
+    }
+    pool.close();
+  }
+
+} // class: MiscTest
@@ -0,0 +1,248 @@
+//////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.test;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Minimal test harness. A test class is any class with public static
+ * <code>test*</code> methods, which signal failure by throwing; this class
+ * provides the checks. Running this class with a list of test class names
+ * runs every test method (in name order), and exits with a non-zero status
+ * if any fail.
+ *
+ * @since JIST1.0
+ */
+
+public abstract class Test
+{
+
+  //////////////////////////////////////////////////
+  // checks
+  //
+
+  /**
+   * Test failure.
+   */
+  public static class Failure extends RuntimeException
+  {
+    /**
+     * Create new test failure.
+     *
+     * @param msg failure message
+     */
+    public Failure(String msg)
+    {
+      super(msg);
+    }
+  } // class: Failure
+
+  /**
+   * Fail test.
+   *
+   * @param msg failure message
+   */
+  public static void fail(String msg)
+  {
+    throw new Failure(msg);
+  }
+
+  /**
+   * Check condition.
+   *
+   * @param cond condition
+   * @param msg failure message
+   */
+  public static void check(boolean cond, String msg)
+  {
+    if(!cond) fail(msg);
+  }
+
+  /**
+   * Check integer equality.
+   *
+   * @param expected expected value
+   * @param actual actual value
+   * @param msg failure message
+   */
+  public static void checkEquals(long expected, long actual, String msg)
+  {
+    if(expected!=actual) fail(msg+": expected "+expected+", got "+actual);
+  }
+
+  /**
+   * Check object equality.
+   *
+   * @param expected expected value
+   * @param actual actual value
+   * @param msg failure message
+   */
+  public static void checkEquals(Object expected, Object actual, String msg)
+  {
+    if(expected==null ? actual!=null : !expected.equals(actual))
+    {
+      fail(msg+": expected "+expected+", got "+actual);
+    }
+  }
+
+  /**
+   * Check approximate equality.
+   *
+   * @param expected expected value
+   * @param actual actual value
+   * @param tolerance largest allowed difference
+   * @param msg failure message
+   */
+  public static void checkClose(double expected, double actual, double tolerance, String msg)
+  {
+    if(!(Math.abs(expected-actual)<=tolerance))
+    {
+      fail(msg+": expected "+expected+" +/- "+tolerance+", got "+actual);
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // helpers
+  //
+
+  /**
+   * Create temporary file with given contents, deleted on exit.
+   *
+   * @param contents file contents
+   * @return temporary file
+   * @throws IOException unable to write file
+   */
+  public static File tempFile(String contents) throws IOException
+  {
+    File f = File.createTempFile("jisttest", null);
+    f.deleteOnExit();
+    Writer w = new FileWriter(f);
+    w.write(contents);
+    w.close();
+    return f;
+  }
+
+  /**
+   * Run a JiST simulation in a new virtual machine, with the class path
+   * of this one.
+   *
+   * @param args jist command-line arguments
+   * @return simulation output (stdout and stderr)
+   * @throws IOException unable to start virtual machine
+   * @throws InterruptedException interrupted while waiting for simulation
+   */
+  public static String jist(String[] args) throws IOException, InterruptedException
+  {
+    String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+    String[] cmd = new String[args.length+4];
+    cmd[0] = java;
+    cmd[1] = "-cp";
+    cmd[2] = System.getProperty("java.class.path");
+    cmd[3] = "jist.runtime.Main";
+    System.arraycopy(args, 0, cmd, 4, args.length);
+    Process p = Runtime.getRuntime().exec(cmd);
+    p.getOutputStream().close();
+    final InputStream err = p.getErrorStream();
+    final ByteArrayOutputStream errOut = new ByteArrayOutputStream();
+    Thread t = new Thread()
+    {
+      public void run()
+      {
+        copy(err, errOut);
+      }
+    };
+    t.start();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    copy(p.getInputStream(), out);
+    t.join();
+    p.waitFor();
+    return out.toString()+errOut.toString();
+  }
+
+  /**
+   * Copy stream to end.
+   *
+   * @param in input stream
+   * @param out output stream
+   */
+  private static void copy(InputStream in, OutputStream out)
+  {
+    try
+    {
+      byte[] b = new byte[4096];
+      int n;
+      while((n=in.read(b))!=-1) out.write(b, 0, n);
+    }
+    catch(IOException e)
+    {
+      throw new RuntimeException(e.toString());
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // runner
+  //
+
+  /**
+   * Run all test methods of given test classes.
+   *
+   * @param args test class names
+   * @throws ClassNotFoundException unknown test class
+   */
+  public static void main(String[] args) throws ClassNotFoundException
+  {
+    int run = 0, failed = 0;
+    for(int i=0; i<args.length; i++)
+    {
+      Method[] methods = Class.forName(args[i]).getMethods();
+      TreeMap tests = new TreeMap();
+      for(int j=0; j<methods.length; j++)
+      {
+        if(methods[j].getName().startsWith("test")
+            && Modifier.isStatic(methods[j].getModifiers())
+            && methods[j].getParameterTypes().length==0)
+        {
+          tests.put(methods[j].getName(), methods[j]);
+        }
+      }
+      Iterator it = tests.values().iterator();
+      while(it.hasNext())
+      {
+        Method m = (Method)it.next();
+        String name = args[i]+"."+m.getName();
+        long start = System.currentTimeMillis();
+        run++;
+        try
+        {
+          m.invoke(null, new Object[] { });
+          System.out.println("ok   "+name+" ("+(System.currentTimeMillis()-start)+" ms)");
+        }
+        catch(InvocationTargetException e)
+        {
+          failed++;
+          System.out.println("FAIL "+name+": "+e.getTargetException());
+          if(!(e.getTargetException() instanceof Failure))
+          {
+            e.getTargetException().printStackTrace(System.out);
+          }
+        }
+        catch(IllegalAccessException e)
+        {
+          failed++;
+          System.out.println("FAIL "+name+": "+e);
+        }
+      }
+    }
+    System.out.println(run+" tests, "+failed+" failed");
+    System.exit(failed==0 ? 0 : 1);
+  }
+
+} // class: Test